@@ -0,0 +1,264 @@
+package ru.bivchallenge.benchmark;
+
+import ru.bivchallenge.config.*;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * A {@link CastleConfig} for benchmarks that reads and writes the tables of a temporary directory.
+ * Snapshots, the incremental mode, the server mode and the metrics file are disabled, so every benchmark measures
+ * the work itself.
+ */
+public class BenchmarkConfig implements CastleConfig {
+    private final Path directory;
+
+    public BenchmarkConfig(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public FastCSVConfig getFastCSVConfig() {
+        return () -> 64 * 1024;
+    }
+
+    @Override
+    public TableConfig getTableConfig() {
+        return new TableConfig() {
+            @Override
+            public Path getCompanyTablePath() {
+                return directory.resolve("company.tsv");
+            }
+
+            @Override
+            public Path getFounderLegalTablePath() {
+                return directory.resolve("founder_legal.tsv");
+            }
+
+            @Override
+            public Path getFounderNaturalTablePath() {
+                return directory.resolve("founder_natural.tsv");
+            }
+
+            @Override
+            public Path getBeneficiariesTablePath() {
+                return directory.resolve("beneficiaries.tsv");
+            }
+
+            @Override
+            public boolean isSnapshotEnabled() {
+                return false;
+            }
+
+            @Override
+            public Path getSnapshotDirectory() {
+                return directory.resolve("snapshots");
+            }
+
+            @Override
+            public boolean isLazyTextEnabled() {
+                return false;
+            }
+
+            @Override
+            public boolean isBeneficiaryIndexEnabled() {
+                return false;
+            }
+
+            @Override
+            public Path getBeneficiaryIndexPath() {
+                return directory.resolve("beneficiaries.index");
+            }
+
+            @Override
+            public boolean isOwnershipMatrixEnabled() {
+                return false;
+            }
+
+            @Override
+            public Path getOwnershipMatrixPath() {
+                return directory.resolve("ownership.triplets");
+            }
+        };
+    }
+
+    @Override
+    public OwnershipConfig getOwnershipConfig() {
+        return new OwnershipConfig() {
+            @Override
+            public GraphMode getGraphMode() {
+                return GraphMode.PER_COMPANY;
+            }
+
+            @Override
+            public CycleMode getCycleMode() {
+                return CycleMode.ENUMERATE;
+            }
+
+            @Override
+            public double getCycleTolerance() {
+                return 1e-14;
+            }
+
+            @Override
+            public int getCycleMaxIterations() {
+                return 10000;
+            }
+
+            @Override
+            public double getBeneficiaryThreshold() {
+                return 0.25;
+            }
+
+            @Override
+            public SearchMode getSearchMode() {
+                return SearchMode.EXACT;
+            }
+
+            @Override
+            public double getSearchEpsilon() {
+                return 1e-6;
+            }
+
+            @Override
+            public Path getPartitionDirectory() {
+                return directory.resolve("partitions");
+            }
+
+            @Override
+            public long getPartitionMemoryBudget() {
+                return 1L << 30;
+            }
+
+            @Override
+            public double getMatrixCutoff() {
+                return 1e-4;
+            }
+        };
+    }
+
+    @Override
+    public IncrementalConfig getIncrementalConfig() {
+        return new IncrementalConfig() {
+            @Override
+            public boolean isEnabled() {
+                return false;
+            }
+
+            @Override
+            public Path getStatePath() {
+                return directory.resolve("incremental.state");
+            }
+
+            @Override
+            public Path getFounderLegalDeltaPath() {
+                return directory.resolve("founder_legal_delta.tsv");
+            }
+
+            @Override
+            public Path getFounderNaturalDeltaPath() {
+                return directory.resolve("founder_natural_delta.tsv");
+            }
+
+            @Override
+            public Path getChangedCompaniesTablePath() {
+                return directory.resolve("changed_companies.tsv");
+            }
+        };
+    }
+
+    @Override
+    public CacheConfig getCacheConfig() {
+        return new CacheConfig() {
+            @Override
+            public boolean isEnabled() {
+                return false;
+            }
+
+            @Override
+            public Path getCachePath() {
+                return directory.resolve("results.cache");
+            }
+
+            @Override
+            public long getMaxSize() {
+                return 256L << 20;
+            }
+        };
+    }
+
+    @Override
+    public MetricsConfig getMetricsConfig() {
+        return new MetricsConfig() {
+            @Override
+            public boolean isEnabled() {
+                return false;
+            }
+
+            @Override
+            public Path getMetricsPath() {
+                return directory.resolve("metrics.prom");
+            }
+
+            @Override
+            public Duration getProgressInterval() {
+                return Duration.ZERO;
+            }
+        };
+    }
+
+    @Override
+    public DispatchConfig getDispatchConfig() {
+        return new DispatchConfig() {
+            @Override
+            public int getQueueCapacity() {
+                return 4096;
+            }
+
+            @Override
+            public boolean isOrdered() {
+                return false;
+            }
+
+            @Override
+            public WriterMode getWriterMode() {
+                return WriterMode.SINGLE;
+            }
+
+            @Override
+            public int getShardCount() {
+                return 1;
+            }
+        };
+    }
+
+    @Override
+    public ServerConfig getServerConfig() {
+        return new ServerConfig() {
+            @Override
+            public boolean isEnabled() {
+                return false;
+            }
+
+            @Override
+            public String getHost() {
+                return "127.0.0.1";
+            }
+
+            @Override
+            public int getPort() {
+                return 0;
+            }
+
+            @Override
+            public Duration getRefreshInterval() {
+                return Duration.ZERO;
+            }
+
+            @Override
+            public int getChainLimit() {
+                return 1000;
+            }
+        };
+    }
+}
@@ -0,0 +1,144 @@
+package ru.bivchallenge.benchmark;
+
+import de.siegmar.fastcsv.reader.CsvReader;
+import de.siegmar.fastcsv.writer.CsvWriter;
+import de.siegmar.fastcsv.writer.LineDelimiter;
+import ru.bivchallenge.dto.Company;
+import ru.bivchallenge.dto.LegalEntity;
+import ru.bivchallenge.dto.NaturalEntity;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic input data for the benchmarks: founder tables written as TSV files and the same registry as
+ * entity maps. Every company has a few natural founders and about every third company a legal founder,
+ * which is itself one of the companies.
+ */
+final class BenchmarkData {
+    static final String LEGAL_HEADER = "id\tcompany_id\togrn\tinn\tfull_name\tshare\tshare_percent";
+    static final String NATURAL_HEADER = "id\tcompany_id\tinn\tlast_name\tfirst_name\tsecond_name\tshare\tshare_percent";
+    static final String COMPANY_HEADER = "id\togrn\tinn\tfull_name";
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Creates the reader builder the application uses for its tables.
+     */
+    static CsvReader.CsvReaderBuilder csvReaderBuilder() {
+        return CsvReader.builder()
+                .fieldSeparator('\t')
+                .skipEmptyLines(true)
+                .ignoreDifferentFieldCount(true)
+                .detectBomHeader(true);
+    }
+
+    /**
+     * Creates the writer builder the application uses for the beneficiaries table.
+     */
+    static CsvWriter.CsvWriterBuilder csvWriterBuilder() {
+        return CsvWriter.builder()
+                .bufferSize(64 * 1024)
+                .fieldSeparator('\t')
+                .lineDelimiter(LineDelimiter.LF);
+    }
+
+    static Map<Long, Company> companies(int companyCount) {
+        Map<Long, Company> companies = new HashMap<>(companyCount * 2);
+        for (long id = 1; id <= companyCount; id++) {
+            companies.put(id, company(id));
+        }
+        return companies;
+    }
+
+    static Map<Long, LegalEntity> legalEntities(int companyCount, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        Map<Long, LegalEntity> legalEntities = new HashMap<>();
+        for (long companyId = 1; companyId <= companyCount; companyId++) {
+            if (companyId % 3 == 0) {
+                long id = companyCount + companyId;
+                LegalEntity legalEntity = new LegalEntity(id, companyId, "1" + id, "7" + id, "ООО \"КОМПАНИЯ " + id + "\"");
+                legalEntity.setShare(1000);
+                legalEntity.setSharePercent(0.2 + random.nextDouble() * 0.6);
+                legalEntities.put(id, legalEntity);
+            }
+        }
+        return legalEntities;
+    }
+
+    static Map<Long, NaturalEntity> naturalEntities(int companyCount, int foundersPerCompany, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        Map<Long, NaturalEntity> naturalEntities = new HashMap<>();
+        long id = 1;
+        for (long companyId = 1; companyId <= companyCount; companyId++) {
+            for (int founder = 0; founder < foundersPerCompany; founder++, id++) {
+                NaturalEntity naturalEntity = new NaturalEntity(id, companyId, "5" + id, "Иванов", "Иван", "Иванович");
+                naturalEntity.setShare(100);
+                naturalEntity.setSharePercent(random.nextDouble() / foundersPerCompany * 2);
+                naturalEntities.put(id, naturalEntity);
+            }
+        }
+        return naturalEntities;
+    }
+
+    static void writeCompanyTable(Path path, Map<Long, Company> companies) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write(COMPANY_HEADER);
+            writer.newLine();
+            for (Company company : companies.values()) {
+                writer.write(String.join("\t", company.separate()));
+                writer.newLine();
+            }
+        }
+    }
+
+    static void writeLegalTable(Path path, Map<Long, LegalEntity> legalEntities) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write(LEGAL_HEADER);
+            writer.newLine();
+            for (LegalEntity legalEntity : legalEntities.values()) {
+                writer.write(legalEntity.id() + "\t" + legalEntity.getCompanyId() + "\t" + legalEntity.getOgrn() + "\t"
+                        + legalEntity.getInn() + "\t" + legalEntity.getFullName() + "\t" + legalEntity.getShare() + "\t"
+                        + legalEntity.getSharePercent());
+                writer.newLine();
+            }
+        }
+    }
+
+    static void writeNaturalTable(Path path, Map<Long, NaturalEntity> naturalEntities) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write(NATURAL_HEADER);
+            writer.newLine();
+            for (NaturalEntity naturalEntity : naturalEntities.values()) {
+                writer.write(naturalEntity.id() + "\t" + naturalEntity.getCompanyId() + "\t" + naturalEntity.getInn() + "\t"
+                        + naturalEntity.getLastName() + "\t" + naturalEntity.getFirstName() + "\t"
+                        + naturalEntity.getSecondName() + "\t" + naturalEntity.getShare() + "\t"
+                        + naturalEntity.getSharePercent());
+                writer.newLine();
+            }
+        }
+    }
+
+    static Company company(long id) {
+        return new Company(id, "1" + id, "7" + id, "АО \"ГОЛОВНАЯ КОМПАНИЯ " + id + "\"");
+    }
+
+    /**
+     * Deletes a temporary benchmark directory with its files.
+     */
+    static void delete(Path directory) throws IOException {
+        try (var paths = Files.list(directory)) {
+            for (Path path : paths.toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+        Files.deleteIfExists(directory);
+    }
+}
@@ -0,0 +1,50 @@
+package ru.bivchallenge.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.bivchallenge.data.BenefeciarRegistry;
+import ru.bivchallenge.data.CompanyGraphManager;
+import ru.bivchallenge.graph.CondensationOwnershipEngine;
+import ru.bivchallenge.graph.CycleReport;
+import ru.bivchallenge.graph.OwnershipEngine;
+import ru.bivchallenge.graph.PropagationOwnershipEngine;
+import ru.bivchallenge.processor.GraphRepairProcessor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link CompanyGraphManager#getBeneficiaries(OwnershipEngine)} on repaired graphs of every
+ * {@link GraphShape} with the engines selected by the cycle modes. The path enumeration engine is left out:
+ * its cost is exponential in the depth of the diamond shape.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BeneficiariesBenchmark {
+
+    @Param({"CHAIN", "DIAMOND", "WIDE_FAN_IN", "CYCLIC"})
+    public GraphShape shape;
+
+    @Param({"16", "1000"})
+    public int size;
+
+    @Param({"PROPAGATION", "CONDENSATION"})
+    public String engine;
+
+    private CompanyGraphManager manager;
+    private OwnershipEngine ownershipEngine;
+
+    @Setup
+    public void setUp() {
+        manager = new GraphRepairProcessor().apply(shape.build(size));
+        ownershipEngine = switch (engine) {
+            case "PROPAGATION" -> new PropagationOwnershipEngine();
+            case "CONDENSATION" -> new CondensationOwnershipEngine(1e-14, 10000, new CycleReport());
+            default -> throw new IllegalArgumentException("Unknown engine: " + engine);
+        };
+    }
+
+    @Benchmark
+    public BenefeciarRegistry beneficiaries() {
+        return manager.getBeneficiaries(ownershipEngine);
+    }
+}
@@ -0,0 +1,59 @@
+package ru.bivchallenge.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.bivchallenge.data.BenefeciarRegistry;
+import ru.bivchallenge.dto.Benefeciar;
+import ru.bivchallenge.dto.NaturalEntity;
+import ru.bivchallenge.persistence.BenefeciarLocalDataDispatcher;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing the beneficiaries table with {@link BenefeciarLocalDataDispatcher#dispatch}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DispatchBenchmark {
+
+    @Param({"100000"})
+    public int companyCount;
+
+    private Path directory;
+    private BenefeciarLocalDataDispatcher dispatcher;
+    private Set<BenefeciarRegistry> registries;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("castle-jmh");
+        BenchmarkConfig config = new BenchmarkConfig(directory);
+        dispatcher = new BenefeciarLocalDataDispatcher(config, BenchmarkData.csvWriterBuilder());
+
+        Map<Long, NaturalEntity> naturalEntities = BenchmarkData.naturalEntities(companyCount, 2, 3);
+        registries = new HashSet<>();
+        Map<Long, BenefeciarRegistry> byCompany = new HashMap<>();
+        for (NaturalEntity naturalEntity : naturalEntities.values()) {
+            byCompany.computeIfAbsent(naturalEntity.getCompanyId(), id -> new BenefeciarRegistry(BenchmarkData.company(id)))
+                    .getBeneficiaries().add(new Benefeciar(naturalEntity, naturalEntity.getSharePercent()));
+        }
+        registries.addAll(byCompany.values());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(directory);
+    }
+
+    @Benchmark
+    public Set<BenefeciarRegistry> dispatch() {
+        dispatcher.dispatch(registries);
+        return registries;
+    }
+}
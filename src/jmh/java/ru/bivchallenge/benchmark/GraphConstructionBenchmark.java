@@ -0,0 +1,47 @@
+package ru.bivchallenge.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.bivchallenge.data.CompanyGraphManager;
+import ru.bivchallenge.dto.Company;
+import ru.bivchallenge.dto.LegalEntity;
+import ru.bivchallenge.dto.NaturalEntity;
+import ru.bivchallenge.processor.GraphInitializerProcessor;
+import ru.bivchallenge.processor.GraphPopulationProcessor;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building the per-company graphs: creating a {@link CompanyGraphManager} per company
+ * ({@link GraphInitializerProcessor}) and inserting the founders ({@link GraphPopulationProcessor}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class GraphConstructionBenchmark {
+
+    @Param({"100000"})
+    public int companyCount;
+
+    private Map<Long, Company> companies;
+    private Map<Long, LegalEntity> legalEntities;
+    private Map<Long, NaturalEntity> naturalEntities;
+
+    @Setup
+    public void setUp() {
+        companies = BenchmarkData.companies(companyCount);
+        legalEntities = BenchmarkData.legalEntities(companyCount, 1);
+        naturalEntities = BenchmarkData.naturalEntities(companyCount, 3, 2);
+    }
+
+    @Benchmark
+    public Map<Long, CompanyGraphManager> initialize() {
+        return new GraphInitializerProcessor(legalEntities).apply(companies);
+    }
+
+    @Benchmark
+    public Map<Long, CompanyGraphManager> initializeAndInsert() {
+        return new GraphPopulationProcessor(legalEntities, naturalEntities)
+                .apply(new GraphInitializerProcessor(legalEntities).apply(companies));
+    }
+}
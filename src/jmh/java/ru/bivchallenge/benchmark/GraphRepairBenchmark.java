@@ -0,0 +1,37 @@
+package ru.bivchallenge.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.bivchallenge.data.CompanyGraphManager;
+import ru.bivchallenge.processor.GraphRepairProcessor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link GraphRepairProcessor#apply} on the graph of a single head company of every {@link GraphShape}.
+ * Repair mutates the weights in place, so the graph is rebuilt before every operation; the rebuild is not measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class GraphRepairBenchmark {
+
+    @Param({"CHAIN", "DIAMOND", "WIDE_FAN_IN", "CYCLIC"})
+    public GraphShape shape;
+
+    @Param({"1000"})
+    public int size;
+
+    private final GraphRepairProcessor graphRepairProcessor = new GraphRepairProcessor();
+    private CompanyGraphManager manager;
+
+    @Setup(Level.Invocation)
+    public void build() {
+        manager = shape.build(size);
+        manager.getGraph();
+    }
+
+    @Benchmark
+    public CompanyGraphManager repair() {
+        return graphRepairProcessor.apply(manager);
+    }
+}
@@ -0,0 +1,132 @@
+package ru.bivchallenge.benchmark;
+
+import ru.bivchallenge.data.CompanyGraphManager;
+import ru.bivchallenge.dto.LegalEntity;
+import ru.bivchallenge.dto.NaturalEntity;
+import ru.bivchallenge.dto.OwnerEntity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ownership structures that stress different parts of the beneficiary computation. Each shape builds the graph
+ * of head company {@code 1}; the size is the number of legal entities in the structure.
+ */
+enum GraphShape {
+    /**
+     * A chain of legal entities, each owning 90% of the next one, with a natural person at the top.
+     */
+    CHAIN {
+        @Override
+        void populate(List<OwnerEntity> founders, int size) {
+            long owned = HEAD;
+            for (int i = 0; i < size; i++) {
+                founders.add(legal(LEGAL_BASE + i, owned, 0.9));
+                owned = LEGAL_BASE + i;
+            }
+            founders.add(natural(NATURAL_BASE, owned, 1.0));
+        }
+    },
+    /**
+     * Layers of two legal entities, each owning half of both entities of the layer below, so the number of
+     * paths doubles with every layer.
+     */
+    DIAMOND {
+        @Override
+        void populate(List<OwnerEntity> founders, int size) {
+            int layers = Math.max(1, size / 2);
+            founders.add(legal(LEGAL_BASE, HEAD, 0.5));
+            founders.add(legal(LEGAL_BASE + 1, HEAD, 0.5));
+            for (int layer = 1; layer < layers; layer++) {
+                for (int owner = 0; owner < 2; owner++) {
+                    for (int owned = 0; owned < 2; owned++) {
+                        founders.add(legal(LEGAL_BASE + 2L * layer + owner, LEGAL_BASE + 2L * (layer - 1) + owned, 0.5));
+                    }
+                }
+            }
+            founders.add(natural(NATURAL_BASE, LEGAL_BASE + 2L * (layers - 1), 1.0));
+            founders.add(natural(NATURAL_BASE + 1, LEGAL_BASE + 2L * (layers - 1) + 1, 1.0));
+        }
+    },
+    /**
+     * A head company owned by many legal entities, each owned by its own natural person, and by as many
+     * natural persons directly.
+     */
+    WIDE_FAN_IN {
+        @Override
+        void populate(List<OwnerEntity> founders, int size) {
+            for (int i = 0; i < size; i++) {
+                founders.add(legal(LEGAL_BASE + i, HEAD, 0.5 / size));
+                founders.add(natural(NATURAL_BASE + i, LEGAL_BASE + i, 1.0));
+                founders.add(natural(NATURAL_BASE + size + i, HEAD, 0.5 / size));
+            }
+        }
+    },
+    /**
+     * A ring of legal entities holding half of each other (a cross-holding), one of which owns the head company,
+     * each also half owned by a natural person.
+     */
+    CYCLIC {
+        @Override
+        void populate(List<OwnerEntity> founders, int size) {
+            founders.add(legal(LEGAL_BASE, HEAD, 1.0));
+            for (int i = 0; i < size; i++) {
+                founders.add(legal(LEGAL_BASE + (i + 1) % size, LEGAL_BASE + i, 0.5));
+                founders.add(natural(NATURAL_BASE + i, LEGAL_BASE + i, 0.5));
+            }
+        }
+    };
+
+    private static final long HEAD = 1;
+    private static final long LEGAL_BASE = 1_000_000;
+    private static final long NATURAL_BASE = 2_000_000;
+
+    /**
+     * Builds the graph of the head company with this shape.
+     *
+     * @param size the number of legal entities
+     * @return the manager of the head company; its graph is neither repaired nor frozen
+     */
+    CompanyGraphManager build(int size) {
+        List<OwnerEntity> founders = new ArrayList<>();
+        populate(founders, size);
+
+        Map<Long, LegalEntity> legalEntityRegistry = new HashMap<>();
+        for (OwnerEntity founder : founders) {
+            if (founder instanceof LegalEntity legalEntity) {
+                legalEntityRegistry.putIfAbsent(legalEntity.id(), legalEntity);
+            }
+        }
+        // Founders are listed top-down, so the company of every founder is already in the graph when it is added.
+        CompanyGraphManager manager = new CompanyGraphManager(BenchmarkData.company(HEAD), legalEntityRegistry);
+        for (OwnerEntity founder : founders) {
+            switch (founder) {
+                case LegalEntity legalEntity -> manager.addEntity(legalEntity);
+                case NaturalEntity naturalEntity -> manager.addEntity(naturalEntity);
+                default -> throw new IllegalArgumentException("Unknown founder: " + founder);
+            }
+        }
+        return manager;
+    }
+
+    /**
+     * Lists the founders of the shape, every founder after the founder row of the company it owns.
+     */
+    abstract void populate(List<OwnerEntity> founders, int size);
+
+    private static LegalEntity legal(long id, long companyId, double sharePercent) {
+        LegalEntity legalEntity = new LegalEntity(id, companyId, "1" + id, "7" + id, "ООО \"КОМПАНИЯ " + id + "\"");
+        legalEntity.setShare(100 * sharePercent);
+        legalEntity.setSharePercent(sharePercent);
+        return legalEntity;
+    }
+
+    private static NaturalEntity natural(long id, long companyId, double sharePercent) {
+        NaturalEntity naturalEntity = new NaturalEntity(id, companyId, "5" + id, "Иванов", "Иван", "Иванович");
+        naturalEntity.setShare(100 * sharePercent);
+        naturalEntity.setSharePercent(sharePercent);
+        return naturalEntity;
+    }
+}
@@ -0,0 +1,250 @@
+package ru.bivchallenge.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+
+/**
+ * The {@code RegistryGenerator} class writes a synthetic registry ({@code company.tsv}, {@code founder_legal.tsv}
+ * and {@code founder_natural.tsv}) of a given number of companies, from a thousand up to tens of millions.
+ *
+ * <p>Every company draws its structure from its own random generator seeded with the registry seed and the
+ * company id, so the same arguments always produce the same files and the tables are written in one streaming
+ * pass without keeping the registry in memory. The structures are:</p>
+ * <ul>
+ *     <li>companies owned by one to four natural persons;</li>
+ *     <li>runs of a thousand consecutive companies, each owned by the next one, forming deep holding chains;</li>
+ *     <li>diamonds, where two companies owning one company are both owned by a third;</li>
+ *     <li>cross-holdings of two companies owning shares of each other;</li>
+ *     <li>holdings, a few companies owning stakes in many others;</li>
+ *     <li>public companies with thousands of natural shareholders.</li>
+ * </ul>
+ * <p>Rows are damaged the way real extracts are: some shares are zero or missing, and some names contain a line
+ * break that splits the row in two.</p>
+ *
+ * <p>Legal founders use the id of the owning company, so one company can appear as a founder of several others.
+ * The per-company graph mode loads founders into maps keyed by id and rejects such registries; generate them with
+ * {@code --unique-founder-ids} to keep only the first founder row of every company.</p>
+ *
+ * <p>Usage: {@code RegistryGenerator <output directory> <company count> [seed] [--unique-founder-ids]}</p>
+ */
+public final class RegistryGenerator {
+    private static final int CHAIN_RUN = 1000;
+    private static final int HOLDING_COUNT = 64;
+    private static final String[] LAST_NAMES = {"Иванов", "Смирнов", "Кузнецов", "Попов", "Васильев", "Петров", "Соколов"};
+    private static final String[] FIRST_NAMES = {"Иван", "Сергей", "Алексей", "Дмитрий", "Андрей", "Михаил", "Николай"};
+    private static final String[] SECOND_NAMES = {"Иванович", "Сергеевич", "Алексеевич", "Дмитриевич", "Андреевич", ""};
+
+    private final long companyCount;
+    private final long seed;
+    private final boolean uniqueFounderIds;
+
+    private final BufferedWriter companies;
+    private final BufferedWriter legalFounders;
+    private final BufferedWriter naturalFounders;
+    private final StringBuilder row = new StringBuilder(256);
+    private final BitSet usedFounderIds;
+
+    private long naturalId;
+    private long legalRows;
+    private long naturalRows;
+
+    private RegistryGenerator(Path directory, long companyCount, long seed, boolean uniqueFounderIds) throws IOException {
+        this.companyCount = companyCount;
+        this.seed = seed;
+        this.uniqueFounderIds = uniqueFounderIds;
+        this.usedFounderIds = uniqueFounderIds ? new BitSet() : null;
+        Files.createDirectories(directory);
+        this.companies = writer(directory.resolve("company.tsv"), BenchmarkData.COMPANY_HEADER);
+        this.legalFounders = writer(directory.resolve("founder_legal.tsv"), BenchmarkData.LEGAL_HEADER);
+        this.naturalFounders = writer(directory.resolve("founder_natural.tsv"), BenchmarkData.NATURAL_HEADER);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: RegistryGenerator <output directory> <company count> [seed] [--unique-founder-ids]");
+            System.exit(2);
+        }
+        Path directory = Path.of(args[0]);
+        long companyCount = Long.parseLong(args[1].replace("_", ""));
+        long seed = args.length > 2 && !args[2].startsWith("--") ? Long.parseLong(args[2]) : 42L;
+        boolean uniqueFounderIds = args[args.length - 1].equals("--unique-founder-ids");
+
+        long start = System.nanoTime();
+        RegistryGenerator generator = new RegistryGenerator(directory, companyCount, seed, uniqueFounderIds);
+        generator.generate();
+        System.out.printf("Wrote %d companies, %d legal and %d natural founder rows to %s in %d ms%n",
+                companyCount, generator.legalRows, generator.naturalRows, directory,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void generate() throws IOException {
+        try (companies; legalFounders; naturalFounders) {
+            for (long companyId = 1; companyId <= companyCount; companyId++) {
+                SplittableRandom random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + companyId);
+                writeCompany(companyId, random);
+                writeFounders(companyId, random);
+            }
+        }
+    }
+
+    private void writeCompany(long companyId, SplittableRandom random) throws IOException {
+        row.setLength(0);
+        row.append(companyId).append('\t')
+                .append(digits(random, 13)).append('\t')
+                .append(digits(random, 10)).append('\t')
+                .append("ООО \"").append(brokenName(random, "ПРЕДПРИЯТИЕ " + companyId)).append('"');
+        companies.append(row).append('\n');
+    }
+
+    private void writeFounders(long companyId, SplittableRandom random) throws IOException {
+        boolean hasNext = companyId + 3 <= companyCount;
+        if (hasNext && (companyId / CHAIN_RUN) % 10 == 1) {
+            // a deep holding chain: every company of the run is owned by the next one
+            double share = 0.5 + random.nextDouble() * 0.5;
+            writeLegal(companyId + 1, companyId, share, random);
+            writeNaturals(companyId, 1 - share, 1, random);
+            return;
+        }
+        double archetype = random.nextDouble();
+        if (archetype < 0.0005) {
+            // a public company with a huge shareholder list
+            int shareholders = 1000 + random.nextInt((int) Math.min(100_000, companyCount / 10 + 1));
+            writeNaturals(companyId, 1.0, shareholders, random);
+        } else if (archetype < 0.55 || !hasNext) {
+            writeNaturals(companyId, 1.0, 1 + random.nextInt(4), random);
+        } else if (archetype < 0.70) {
+            double share = 0.5 + random.nextDouble() * 0.5;
+            writeLegal(companyId + 1, companyId, share, random);
+            writeNaturals(companyId, 1 - share, 1 + random.nextInt(2), random);
+        } else if (archetype < 0.75) {
+            // a diamond: the company is owned by the next two companies, both owned by the third one
+            writeLegal(companyId + 1, companyId, 0.5, random);
+            writeLegal(companyId + 2, companyId, 0.5, random);
+            writeLegal(companyId + 3, companyId + 1, 0.6, random);
+            writeLegal(companyId + 3, companyId + 2, 0.6, random);
+        } else if (archetype < 0.80) {
+            // a cross-holding: the company and the next one own 30% of each other
+            writeLegal(companyId + 1, companyId, 0.3, random);
+            writeLegal(companyId, companyId + 1, 0.3, random);
+            writeNaturals(companyId, 0.7, 1 + random.nextInt(3), random);
+        } else if (archetype < 0.90) {
+            // a stake of one of a few large holdings
+            long holding = 1 + (companyId * 31 + random.nextInt(HOLDING_COUNT)) % Math.min(companyCount, HOLDING_COUNT * 16);
+            double share = 0.1 + random.nextDouble() * 0.5;
+            writeLegal(holding, companyId, share, random);
+            writeNaturals(companyId, 1 - share, 1 + random.nextInt(3), random);
+        }
+        // the remaining companies have no founders at all
+    }
+
+    private void writeLegal(long founderId, long companyId, double sharePercent, SplittableRandom random) throws IOException {
+        if (founderId == companyId || uniqueFounderIds && !markFounder(founderId)) {
+            return;
+        }
+        row.setLength(0);
+        row.append(founderId).append('\t')
+                .append(companyId).append('\t')
+                .append(digits(random, 13)).append('\t')
+                .append(digits(random, 10)).append('\t')
+                .append("ООО \"").append(brokenName(random, "ПРЕДПРИЯТИЕ " + founderId)).append('"');
+        appendShares(sharePercent, random);
+        legalFounders.append(row).append('\n');
+        legalRows++;
+    }
+
+    private void writeNaturals(long companyId, double totalPercent, int count, SplittableRandom random) throws IOException {
+        double[] weights = new double[count];
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            weights[i] = 0.1 + random.nextDouble();
+            sum += weights[i];
+        }
+        for (int i = 0; i < count; i++) {
+            row.setLength(0);
+            row.append(++naturalId).append('\t')
+                    .append(companyId).append('\t')
+                    .append(digits(random, 12)).append('\t')
+                    .append(brokenName(random, LAST_NAMES[random.nextInt(LAST_NAMES.length)])).append('\t')
+                    .append(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)]).append('\t')
+                    .append(SECOND_NAMES[random.nextInt(SECOND_NAMES.length)]);
+            appendShares(totalPercent * weights[i] / sum, random);
+            naturalFounders.append(row).append('\n');
+            naturalRows++;
+        }
+    }
+
+    /**
+     * Appends the nominal share and the share percent; about 1% of rows miss the percent and 0.5% have a zero
+     * share without a percent.
+     */
+    private void appendShares(double sharePercent, SplittableRandom random) {
+        double damage = random.nextDouble();
+        if (damage < 0.005) {
+            row.append("\t0.00\t");
+        } else if (damage < 0.015) {
+            row.append('\t');
+            appendFixed(sharePercent * 10_000, 100);
+            row.append('\t');
+        } else {
+            row.append('\t');
+            appendFixed(sharePercent * 10_000, 100);
+            row.append('\t');
+            appendFixed(sharePercent, 1_000_000);
+        }
+    }
+
+    /**
+     * Appends a non-negative number with a fixed number of decimals, given as the scale {@code 10^decimals},
+     * without the cost and the locale dependence of {@link String#format}.
+     */
+    private void appendFixed(double value, long scale) {
+        long scaled = Math.round(value * scale);
+        row.append(scaled / scale).append('.');
+        String fraction = Long.toString(scaled % scale);
+        for (int i = fraction.length(); i < Long.toString(scale).length() - 1; i++) {
+            row.append('0');
+        }
+        row.append(fraction);
+    }
+
+    /**
+     * Returns the name, with a line break inserted into about 0.1% of names.
+     */
+    private static String brokenName(SplittableRandom random, String name) {
+        if (random.nextDouble() < 0.001 && name.length() > 2) {
+            int at = 1 + random.nextInt(name.length() - 1);
+            return name.substring(0, at) + '\n' + name.substring(at);
+        }
+        return name;
+    }
+
+    private boolean markFounder(long founderId) {
+        if (usedFounderIds.get((int) founderId)) {
+            return false;
+        }
+        usedFounderIds.set((int) founderId);
+        return true;
+    }
+
+    private static String digits(SplittableRandom random, int length) {
+        char[] digits = new char[length];
+        digits[0] = (char) ('1' + random.nextInt(9));
+        for (int i = 1; i < length; i++) {
+            digits[i] = (char) ('0' + random.nextInt(10));
+        }
+        return new String(digits);
+    }
+
+    private static BufferedWriter writer(Path path, String header) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(path), StandardCharsets.UTF_8), 1 << 20);
+        writer.write(header);
+        writer.write('\n');
+        return writer;
+    }
+}
@@ -0,0 +1,98 @@
+package ru.bivchallenge.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * The {@code ScalingHarness} class runs {@link ScalingRun} over one registry at an increasing number of threads
+ * and records a scaling curve.
+ *
+ * <p>Every run is a fresh JVM started with {@code -XX:ActiveProcessorCount}, which limits the thread pools of the
+ * executor and of the parallel streams, and with the heap options of the harness itself. Thread counts are the
+ * powers of two up to the maximum, plus the maximum. The stage lines of all runs are written to a results file
+ * with the columns {@code threads, stage, wall_ms, gc_ms, peak_rss_kb, output_bytes}, and the total wall time and
+ * speedup of every run are printed.</p>
+ *
+ * <p>Usage: {@code ScalingHarness <registry directory> <max threads> [graph mode] [results file]}</p>
+ *
+ * @see RegistryGenerator
+ */
+public final class ScalingHarness {
+
+    private ScalingHarness() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: ScalingHarness <registry directory> <max threads> [graph mode] [results file]");
+            System.exit(2);
+        }
+        Path directory = Path.of(args[0]);
+        int maxThreads = Integer.parseInt(args[1]);
+        String graphMode = args.length > 2 ? args[2] : "shared";
+        Path results = args.length > 3 ? Path.of(args[3]) : directory.resolve("scaling.tsv");
+
+        TreeSet<Integer> threadCounts = new TreeSet<>();
+        for (int threads = 1; threads < maxThreads; threads <<= 1) {
+            threadCounts.add(threads);
+        }
+        threadCounts.add(maxThreads);
+
+        long baseline = 0;
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(results, StandardCharsets.UTF_8))) {
+            writer.println("threads\tstage\twall_ms\tgc_ms\tpeak_rss_kb\toutput_bytes");
+            for (int threads : threadCounts) {
+                long total = 0;
+                for (String line : run(directory, threads, graphMode)) {
+                    writer.println(threads + "\t" + line);
+                    total += Long.parseLong(line.split("\t")[1]);
+                }
+                writer.flush();
+                if (baseline == 0) {
+                    baseline = total;
+                }
+                System.out.printf("%3d threads: %8d ms, speedup %.2f%n", threads, total, (double) baseline / Math.max(1, total));
+            }
+        }
+        System.out.println("Results written to " + results);
+    }
+
+    private static List<String> run(Path directory, int threads, String graphMode) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        command.add("-XX:ActiveProcessorCount=" + threads);
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (argument.startsWith("-Xm") || argument.startsWith("-XX:+Use") || argument.startsWith("-XX:MaxRAM")) {
+                command.add(argument);
+            }
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ScalingRun.class.getName());
+        command.add(directory.toString());
+        command.add(graphMode);
+
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            throw new IllegalStateException("Run with " + threads + " threads failed with exit code " + exitCode);
+        }
+        return lines;
+    }
+}
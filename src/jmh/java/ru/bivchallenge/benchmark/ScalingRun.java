@@ -0,0 +1,218 @@
+package ru.bivchallenge.benchmark;
+
+import ru.bivchallenge.config.*;
+import ru.bivchallenge.executor.ProcessDataExecutor;
+import ru.bivchallenge.metrics.RunMetrics;
+import ru.bivchallenge.persistence.*;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * One end-to-end run of {@link ProcessDataExecutor} over a registry directory, started by {@link ScalingHarness}
+ * in a fresh JVM per thread count.
+ *
+ * <p>The run is split into the stages {@code load} (the providers parse the tables, which they then cache),
+ * {@code compute} (the executor builds and repairs the graphs and computes the beneficiaries, while its writer
+ * thread already streams them to the beneficiaries table) and {@code dispatch} (writing what is left of the table
+ * once the computation ends), the last two taken from the executor's {@link RunMetrics}. For every stage one
+ * tab-separated line is printed to standard output: the stage, the wall time and the GC time in milliseconds,
+ * the peak resident set size in kilobytes and the size of the output in bytes. The partitioned graph mode streams
+ * the tables itself, so its {@code load} stage is taken from the executor as well.</p>
+ *
+ * <p>Usage: {@code ScalingRun <registry directory> <graph mode>}</p>
+ */
+public final class ScalingRun {
+
+    private static final String[] COMPUTE_STAGES = {"build", "repair", "compute"};
+    private static final String[] PARTITIONED_LOAD_STAGES = {"load", "partition"};
+
+    private ScalingRun() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path directory = Path.of(args[0]);
+        OwnershipConfig.GraphMode graphMode = OwnershipConfig.GraphMode.valueOf(args[1].replace('-', '_').toUpperCase());
+        CastleConfig config = forScaling(new PropertiesConfig(new String[0]), directory, graphMode);
+        Path output = config.getTableConfig().getBeneficiariesTablePath();
+
+        LegalEntityLocalProvider legalEntityProvider = new LegalEntityLocalProvider(config, BenchmarkData.csvReaderBuilder());
+        NaturalEntityLocalProvider naturalEntityProvider = new NaturalEntityLocalProvider(config, BenchmarkData.csvReaderBuilder());
+        CompanyLocalProvider companyProvider = new CompanyLocalProvider(config, BenchmarkData.csvReaderBuilder());
+        RunMetrics runMetrics = new RunMetrics();
+        ProcessDataExecutor executor = new ProcessDataExecutor(config, legalEntityProvider, naturalEntityProvider, companyProvider,
+                new BenefeciarLocalDataDispatcher(config, BenchmarkData.csvWriterBuilder()),
+                new ChangedCompanyLocalDataDispatcher(config, BenchmarkData.csvWriterBuilder()),
+                new IncrementalStateStore(config, legalEntityProvider, naturalEntityProvider), runMetrics);
+
+        if (graphMode != OwnershipConfig.GraphMode.PARTITIONED) {
+            long gcBefore = gcMillis();
+            long start = System.nanoTime();
+            companyProvider.get();
+            if (graphMode == OwnershipConfig.GraphMode.SHARED) {
+                legalEntityProvider.getTable();
+                naturalEntityProvider.getTable();
+            } else {
+                legalEntityProvider.get();
+                naturalEntityProvider.get();
+            }
+            report("load", System.nanoTime() - start, gcMillis() - gcBefore, 0);
+        }
+
+        executor.execute();
+        if (graphMode == OwnershipConfig.GraphMode.PARTITIONED) {
+            report("load", stageNanos(runMetrics, PARTITIONED_LOAD_STAGES), stageGcMillis(runMetrics, PARTITIONED_LOAD_STAGES), 0);
+        }
+        report("compute", stageNanos(runMetrics, COMPUTE_STAGES), stageGcMillis(runMetrics, COMPUTE_STAGES), 0);
+        report("dispatch", runMetrics.stageNanos("dispatch"), runMetrics.stageGcMillis("dispatch"), Files.size(output));
+    }
+
+    private static long stageNanos(RunMetrics runMetrics, String... stages) {
+        long nanos = 0;
+        for (String stage : stages) {
+            nanos += runMetrics.stageNanos(stage);
+        }
+        return nanos;
+    }
+
+    private static long stageGcMillis(RunMetrics runMetrics, String... stages) {
+        long millis = 0;
+        for (String stage : stages) {
+            millis += runMetrics.stageGcMillis(stage);
+        }
+        return millis;
+    }
+
+    private static void report(String stage, long nanos, long gcMillis, long outputBytes) throws IOException {
+        System.out.println(stage + "\t" + nanos / 1_000_000 + "\t" + gcMillis + "\t" + peakRssKilobytes() + "\t" + outputBytes);
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, bean.getCollectionTime());
+        }
+        return millis;
+    }
+
+    /**
+     * Reads the peak resident set size of this process from {@code /proc}, or returns {@code -1} where it is
+     * not available.
+     */
+    private static long peakRssKilobytes() throws IOException {
+        Path status = Path.of("/proc/self/status");
+        if (!Files.isReadable(status)) {
+            return -1;
+        }
+        for (String line : Files.readAllLines(status)) {
+            if (line.startsWith("VmHWM:")) {
+                return Long.parseLong(line.replaceAll("\\D", ""));
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the tables of the registry directory, overrides the graph mode and disables snapshots, the
+     * incremental mode and the metrics file, so that every run parses and computes the whole registry. The cycle settings and the
+     * writer buffer come from {@code application.properties}.
+     */
+    private static CastleConfig forScaling(CastleConfig config, Path directory, OwnershipConfig.GraphMode graphMode) {
+        OwnershipConfig ownershipConfig = config.getOwnershipConfig();
+        BenchmarkConfig benchmarkConfig = new BenchmarkConfig(directory);
+        return new CastleConfig() {
+            @Override
+            public FastCSVConfig getFastCSVConfig() {
+                return config.getFastCSVConfig();
+            }
+
+            @Override
+            public TableConfig getTableConfig() {
+                return benchmarkConfig.getTableConfig();
+            }
+
+            @Override
+            public OwnershipConfig getOwnershipConfig() {
+                return new OwnershipConfig() {
+                    @Override
+                    public GraphMode getGraphMode() {
+                        return graphMode;
+                    }
+
+                    @Override
+                    public CycleMode getCycleMode() {
+                        return ownershipConfig.getCycleMode();
+                    }
+
+                    @Override
+                    public double getCycleTolerance() {
+                        return ownershipConfig.getCycleTolerance();
+                    }
+
+                    @Override
+                    public int getCycleMaxIterations() {
+                        return ownershipConfig.getCycleMaxIterations();
+                    }
+
+                    @Override
+                    public double getBeneficiaryThreshold() {
+                        return ownershipConfig.getBeneficiaryThreshold();
+                    }
+
+                    @Override
+                    public SearchMode getSearchMode() {
+                        return ownershipConfig.getSearchMode();
+                    }
+
+                    @Override
+                    public double getSearchEpsilon() {
+                        return ownershipConfig.getSearchEpsilon();
+                    }
+
+                    @Override
+                    public Path getPartitionDirectory() {
+                        return directory.resolve("partitions");
+                    }
+
+                    @Override
+                    public long getPartitionMemoryBudget() {
+                        return ownershipConfig.getPartitionMemoryBudget();
+                    }
+
+                    @Override
+                    public double getMatrixCutoff() {
+                        return ownershipConfig.getMatrixCutoff();
+                    }
+                };
+            }
+
+            @Override
+            public IncrementalConfig getIncrementalConfig() {
+                return benchmarkConfig.getIncrementalConfig();
+            }
+
+            @Override
+            public CacheConfig getCacheConfig() {
+                return benchmarkConfig.getCacheConfig();
+            }
+
+            @Override
+            public MetricsConfig getMetricsConfig() {
+                return benchmarkConfig.getMetricsConfig();
+            }
+
+            @Override
+            public DispatchConfig getDispatchConfig() {
+                return config.getDispatchConfig();
+            }
+
+            @Override
+            public ServerConfig getServerConfig() {
+                return config.getServerConfig();
+            }
+        };
+    }
+}
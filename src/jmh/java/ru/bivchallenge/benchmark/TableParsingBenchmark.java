@@ -0,0 +1,72 @@
+package ru.bivchallenge.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.bivchallenge.data.FounderTable;
+import ru.bivchallenge.dto.Company;
+import ru.bivchallenge.dto.LegalEntity;
+import ru.bivchallenge.dto.NaturalEntity;
+import ru.bivchallenge.persistence.CompanyLocalProvider;
+import ru.bivchallenge.persistence.LegalEntityLocalProvider;
+import ru.bivchallenge.persistence.NaturalEntityLocalProvider;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing the TSV tables with the providers built on
+ * {@link ru.bivchallenge.persistence.AbstractLocalDataProvider}, both into entity maps and into columnar tables.
+ * A new provider is created per operation, since providers cache what they loaded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TableParsingBenchmark {
+
+    @Param({"100000"})
+    public int companyCount;
+
+    private Path directory;
+    private BenchmarkConfig config;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("castle-jmh");
+        config = new BenchmarkConfig(directory);
+        BenchmarkData.writeCompanyTable(config.getTableConfig().getCompanyTablePath(), BenchmarkData.companies(companyCount));
+        BenchmarkData.writeLegalTable(config.getTableConfig().getFounderLegalTablePath(), BenchmarkData.legalEntities(companyCount, 1));
+        BenchmarkData.writeNaturalTable(config.getTableConfig().getFounderNaturalTablePath(), BenchmarkData.naturalEntities(companyCount, 3, 2));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(directory);
+    }
+
+    @Benchmark
+    public Map<Long, Company> companies() {
+        return new CompanyLocalProvider(config, BenchmarkData.csvReaderBuilder()).get();
+    }
+
+    @Benchmark
+    public Map<Long, LegalEntity> legalEntities() {
+        return new LegalEntityLocalProvider(config, BenchmarkData.csvReaderBuilder()).get();
+    }
+
+    @Benchmark
+    public FounderTable<LegalEntity> legalEntityTable() {
+        return new LegalEntityLocalProvider(config, BenchmarkData.csvReaderBuilder()).getTable();
+    }
+
+    @Benchmark
+    public Map<Long, NaturalEntity> naturalEntities() {
+        return new NaturalEntityLocalProvider(config, BenchmarkData.csvReaderBuilder()).get();
+    }
+
+    @Benchmark
+    public FounderTable<NaturalEntity> naturalEntityTable() {
+        return new NaturalEntityLocalProvider(config, BenchmarkData.csvReaderBuilder()).getTable();
+    }
+}
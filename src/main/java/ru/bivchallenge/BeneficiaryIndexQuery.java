@@ -0,0 +1,31 @@
+package ru.bivchallenge;
+
+import ru.bivchallenge.persistence.BeneficiaryIndex;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+
+/**
+ * Prints the companies natural persons beneficially own from a beneficiary index, one
+ * {@code inn, company_id, percent} line per company, without loading the tables the index was built from.
+ * <p>
+ * Usage: {@code BeneficiaryIndexQuery <index> <inn> [<inn> ...]}
+ */
+public class BeneficiaryIndexQuery {
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BeneficiaryIndexQuery <index> <inn> [<inn> ...]");
+            System.exit(2);
+        }
+        PrintStream out = System.out;
+        try (BeneficiaryIndex index = BeneficiaryIndex.open(Path.of(args[0]))) {
+            out.println("inn\tcompany_id\tpercent");
+            for (int i = 1; i < args.length; i++) {
+                for (BeneficiaryIndex.Entry entry : index.lookup(args[i])) {
+                    out.println(args[i] + "\t" + entry.companyId() + "\t" + entry.percent());
+                }
+            }
+        }
+    }
+}
@@ -1,19 +1,19 @@
 package ru.bivchallenge;
 
 
-import ru.bivchallenge.executor.ProcessDataExecutor;
+import ru.bivchallenge.executor.Executor;
 import ru.bivchallenge.module.LocalDataModule;
 
-import java.util.concurrent.ExecutionException;
-
 public class CastleApplication {
-    public static void main(String[] args) throws ExecutionException, InterruptedException {
+    public static void main(String[] args) throws Exception {
         LocalDataModule localDataModule = new LocalDataModule(args);
         CastleComponent castleComponent = DaggerCastleComponent.builder()
                 .localDataModule(localDataModule)
                 .build();
 
-        ProcessDataExecutor processDataExecutor = castleComponent.createProcessDataExecutor();
-        processDataExecutor.execute();
+        Executor executor = castleComponent.castleConfig().getServerConfig().isEnabled()
+                ? castleComponent.createOwnershipQueryServer()
+                : castleComponent.createProcessDataExecutor();
+        executor.execute();
     }
 }
\ No newline at end of file
@@ -1,9 +1,11 @@
 package ru.bivchallenge;
 
 import dagger.Component;
+import ru.bivchallenge.config.CastleConfig;
 import ru.bivchallenge.executor.ProcessDataExecutor;
 import ru.bivchallenge.module.BindingModule;
 import ru.bivchallenge.module.LocalDataModule;
+import ru.bivchallenge.server.OwnershipQueryServer;
 
 import javax.inject.Singleton;
 
@@ -12,7 +14,8 @@ import javax.inject.Singleton;
  * for the application. It connects the {@link LocalDataModule} with the objects that require
  * its dependencies.
  * <p>
- * This component is responsible for creating and providing an instance of {@link ProcessDataExecutor}.
+ * This component is responsible for creating and providing an instance of {@link ProcessDataExecutor} for a batch
+ * run, or of {@link OwnershipQueryServer} in the server mode.
  * It is annotated with {@link Singleton} to ensure that the dependencies provided by this component
  * are singletons within the application scope.
  *
@@ -24,4 +27,8 @@ import javax.inject.Singleton;
 @Component(modules = {LocalDataModule.class, BindingModule.class})
 public interface CastleComponent {
     ProcessDataExecutor createProcessDataExecutor();
+
+    OwnershipQueryServer createOwnershipQueryServer();
+
+    CastleConfig castleConfig();
 }
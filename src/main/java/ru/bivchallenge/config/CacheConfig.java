@@ -0,0 +1,32 @@
+package ru.bivchallenge.config;
+
+import java.nio.file.Path;
+
+/**
+ * Represents the configuration interface for the result cache.
+ * Provides methods to retrieve where the beneficiaries of unchanged ownership components are kept between runs
+ * and how large the cache may grow.
+ */
+public interface CacheConfig {
+
+    /**
+     * Checks whether the beneficiaries of the components of the shared graph are cached between runs.
+     *
+     * @return {@code true} if the result cache is enabled
+     */
+    boolean isEnabled();
+
+    /**
+     * Retrieves the file path for the result cache.
+     *
+     * @return a {@link Path} to the cache file
+     */
+    Path getCachePath();
+
+    /**
+     * Retrieves the size the cache file may grow to before the least recently used components are evicted.
+     *
+     * @return the size limit in bytes
+     */
+    long getMaxSize();
+}
@@ -2,7 +2,7 @@ package ru.bivchallenge.config;
 
 /**
  * Represents the configuration interface for the castle application.
- * Provides methods to retrieve configuration details for FastCSV and table settings.
+ * Provides methods to retrieve configuration details for FastCSV, table, ownership, incremental, result cache, metrics, dispatch and server settings.
  */
 public interface CastleConfig {
 
@@ -19,4 +19,46 @@ public interface CastleConfig {
      * @return an instance of {@link TableConfig} containing table configuration details
      */
     TableConfig getTableConfig();
+
+    /**
+     * Retrieves the configuration settings for the ownership computation.
+     *
+     * @return an instance of {@link OwnershipConfig} containing ownership computation details
+     */
+    OwnershipConfig getOwnershipConfig();
+
+    /**
+     * Retrieves the configuration settings for the incremental mode.
+     *
+     * @return an instance of {@link IncrementalConfig} containing incremental mode details
+     */
+    IncrementalConfig getIncrementalConfig();
+
+    /**
+     * Retrieves the configuration settings for the result cache.
+     *
+     * @return an instance of {@link CacheConfig} containing result cache details
+     */
+    CacheConfig getCacheConfig();
+
+    /**
+     * Retrieves the configuration settings for the run metrics.
+     *
+     * @return an instance of {@link MetricsConfig} containing run metrics details
+     */
+    MetricsConfig getMetricsConfig();
+
+    /**
+     * Retrieves the configuration settings for dispatching the beneficiaries.
+     *
+     * @return an instance of {@link DispatchConfig} containing dispatch details
+     */
+    DispatchConfig getDispatchConfig();
+
+    /**
+     * Retrieves the configuration settings for the query server mode.
+     *
+     * @return an instance of {@link ServerConfig} containing query server details
+     */
+    ServerConfig getServerConfig();
 }
@@ -0,0 +1,52 @@
+package ru.bivchallenge.config;
+
+/**
+ * Represents the configuration interface for dispatching the beneficiaries.
+ * Provides methods to retrieve the capacity of the dispatch queue, whether the output is ordered and how the
+ * beneficiaries table is written.
+ */
+public interface DispatchConfig {
+
+    /**
+     * Retrieves the number of finished companies that may wait for the writer before the computing workers block.
+     *
+     * @return the capacity of the dispatch queue
+     */
+    int getQueueCapacity();
+
+    /**
+     * Checks whether the companies are written in the order of their ids rather than in the order they finish.
+     *
+     * @return {@code true} if the output is ordered by company id
+     */
+    boolean isOrdered();
+
+    /**
+     * Retrieves how the beneficiaries table is written.
+     *
+     * @return the writer mode
+     */
+    WriterMode getWriterMode();
+
+    /**
+     * Retrieves the number of files the parallel writer splits the beneficiaries table into.
+     *
+     * @return the shard count, 1 for a single beneficiaries table
+     */
+    int getShardCount();
+
+    /**
+     * Writers of the beneficiaries table.
+     */
+    enum WriterMode {
+        /**
+         * One writer thread formats every row through a single {@code CsvWriter}.
+         */
+        SINGLE,
+        /**
+         * The computing threads encode their own rows and commit them with positional writes, optionally
+         * into several shards.
+         */
+        PARALLEL
+    }
+}
@@ -0,0 +1,46 @@
+package ru.bivchallenge.config;
+
+import java.nio.file.Path;
+
+/**
+ * Represents the configuration interface for the incremental mode.
+ * Provides methods to retrieve the paths to the state of the previous run, the delta files applied to it
+ * and the list of changed companies.
+ */
+public interface IncrementalConfig {
+
+    /**
+     * Checks whether only the head companies affected by the founder table deltas are recomputed.
+     *
+     * @return {@code true} if the incremental mode is enabled
+     */
+    boolean isEnabled();
+
+    /**
+     * Retrieves the file path for the state of the previous run.
+     *
+     * @return a {@link Path} to the state file
+     */
+    Path getStatePath();
+
+    /**
+     * Retrieves the file path for the delta of the legal founders table.
+     *
+     * @return a {@link Path} to the legal founders delta file
+     */
+    Path getFounderLegalDeltaPath();
+
+    /**
+     * Retrieves the file path for the delta of the natural founders table.
+     *
+     * @return a {@link Path} to the natural founders delta file
+     */
+    Path getFounderNaturalDeltaPath();
+
+    /**
+     * Retrieves the file path for the list of companies whose beneficiaries changed.
+     *
+     * @return a {@link Path} to the changed companies table file
+     */
+    Path getChangedCompaniesTablePath();
+}
@@ -0,0 +1,32 @@
+package ru.bivchallenge.config;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Represents the configuration interface for the run metrics.
+ * Provides methods to retrieve where the metrics of a run are written and how often progress is reported.
+ */
+public interface MetricsConfig {
+
+    /**
+     * Checks whether the metrics of a run are written to the metrics file at the end of the run.
+     *
+     * @return {@code true} if the metrics file is written
+     */
+    boolean isEnabled();
+
+    /**
+     * Retrieves the file path for the metrics of a run, written in the Prometheus text format.
+     *
+     * @return a {@link Path} to the metrics file
+     */
+    Path getMetricsPath();
+
+    /**
+     * Retrieves the interval between two progress lines of a running stage.
+     *
+     * @return the progress interval, or {@link Duration#ZERO} if progress is not reported
+     */
+    Duration getProgressInterval();
+}
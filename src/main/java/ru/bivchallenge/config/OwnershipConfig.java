@@ -0,0 +1,132 @@
+package ru.bivchallenge.config;
+
+import java.nio.file.Path;
+
+/**
+ * Represents the configuration interface for the ownership computation.
+ * Provides methods to select how ownership graphs are laid out in memory, how ownership cycles are handled,
+ * how cyclic components are solved, which natural persons are reported as beneficiaries and how the registry is
+ * partitioned when it does not fit in memory.
+ */
+public interface OwnershipConfig {
+
+    /**
+     * Retrieves the layout of the ownership graphs.
+     *
+     * @return the graph mode
+     */
+    GraphMode getGraphMode();
+
+    /**
+     * Retrieves the strategy used for ownership graphs that contain cycles.
+     *
+     * @return the cycle handling mode
+     */
+    CycleMode getCycleMode();
+
+    /**
+     * Retrieves the convergence tolerance used when solving a cyclic component iteratively.
+     *
+     * @return the maximum change of a share between two iterations at which the solution is accepted
+     */
+    double getCycleTolerance();
+
+    /**
+     * Retrieves the maximum number of iterations spent on a single cyclic component.
+     *
+     * @return the iteration limit
+     */
+    int getCycleMaxIterations();
+
+    /**
+     * Retrieves the effective share a natural person must exceed to be reported as a beneficiary.
+     *
+     * @return the beneficiary threshold, a fraction of the head company
+     */
+    double getBeneficiaryThreshold();
+
+    /**
+     * Retrieves how thoroughly the owners of a head company are searched.
+     *
+     * @return the search mode
+     */
+    SearchMode getSearchMode();
+
+    /**
+     * Retrieves the share below which an ownership path is dropped in the {@link SearchMode#BOUNDED} mode.
+     *
+     * @return the smallest product of share weights along a path that is still followed
+     */
+    double getSearchEpsilon();
+
+    /**
+     * Retrieves the directory the partitions of the {@link GraphMode#PARTITIONED} mode are spilled to.
+     *
+     * @return the partition directory
+     */
+    Path getPartitionDirectory();
+
+    /**
+     * Retrieves the estimated heap a partition of the {@link GraphMode#PARTITIONED} mode may take once loaded.
+     *
+     * @return the memory budget of a partition in bytes
+     */
+    long getPartitionMemoryBudget();
+
+    /**
+     * Retrieves the smallest effective share kept in the ownership matrix.
+     *
+     * @return the matrix cutoff, a fraction of the company
+     */
+    double getMatrixCutoff();
+
+    /**
+     * Strategies for handling ownership cycles (cross-holdings).
+     */
+    enum CycleMode {
+        /**
+         * Enumerates simple paths and cuts any path that revisits a vertex, as the original implementation did.
+         */
+        ENUMERATE,
+        /**
+         * Condenses the graph into strongly connected components and solves every cyclic component,
+         * so that the share circulating inside a cross-holding is accounted for.
+         */
+        SOLVE
+    }
+
+    /**
+     * Strategies for searching the owners of a head company.
+     */
+    enum SearchMode {
+        /**
+         * Follows every ownership path, however small its share.
+         */
+        EXACT,
+        /**
+         * Drops paths whose share falls below the search epsilon and skips the persons whose share cannot exceed
+         * the beneficiary threshold. The reported shares may be lower than the exact ones by the dropped paths.
+         */
+        BOUNDED
+    }
+
+    /**
+     * Layouts of the ownership graphs.
+     */
+    enum GraphMode {
+        /**
+         * Builds a separate graph for every head company from the founders of that company.
+         */
+        PER_COMPANY,
+        /**
+         * Loads the whole registry into one shared graph and computes every head company as a traversal over it.
+         */
+        SHARED,
+        /**
+         * Spills the registry to disk in partitions of whole weakly connected components, and builds and computes
+         * one shared graph per partition, so that the heap is bounded by the largest component instead of the
+         * registry.
+         */
+        PARTITIONED
+    }
+}
@@ -5,6 +5,7 @@ import jakarta.inject.Inject;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Properties;
 
 /**
@@ -12,7 +13,8 @@ import java.util.Properties;
  * that loads configuration properties from a file named {@code application.properties}.
  * <p>
  * This class uses the {@link Properties} object to manage configuration values and provides
- * methods to retrieve configurations for {@link FastCSVConfig} and {@link TableConfig}.
+ * methods to retrieve configurations for {@link FastCSVConfig}, {@link TableConfig}, {@link OwnershipConfig},
+ * {@link IncrementalConfig}, {@link CacheConfig}, {@link MetricsConfig}, {@link DispatchConfig} and {@link ServerConfig}.
  *
  * <p>The configuration file must be located in the classpath, and its properties are loaded during
  * the initialization of this class. Any failure in loading the file results in a {@link RuntimeException}.
@@ -20,6 +22,12 @@ import java.util.Properties;
  * @see CastleConfig
  * @see FastCSVConfig
  * @see TableConfig
+ * @see OwnershipConfig
+ * @see IncrementalConfig
+ * @see CacheConfig
+ * @see MetricsConfig
+ * @see DispatchConfig
+ * @see ServerConfig
  */
 public class PropertiesConfig implements CastleConfig {
 
@@ -55,6 +63,157 @@ public class PropertiesConfig implements CastleConfig {
         );
     }
 
+    @Override
+    public OwnershipConfig getOwnershipConfig() {
+        return new OwnershipConfig() {
+            @Override
+            public GraphMode getGraphMode() {
+                return GraphMode.valueOf(properties.getProperty("ownership.graph.mode", "per-company")
+                        .replace('-', '_').toUpperCase());
+            }
+
+            @Override
+            public CycleMode getCycleMode() {
+                return CycleMode.valueOf(properties.getProperty("ownership.cycles.mode", "enumerate").toUpperCase());
+            }
+
+            @Override
+            public double getCycleTolerance() {
+                return Double.parseDouble(properties.getProperty("ownership.cycles.tolerance", "1e-14"));
+            }
+
+            @Override
+            public int getCycleMaxIterations() {
+                return Integer.parseInt(properties.getProperty("ownership.cycles.max-iterations", "10000"));
+            }
+
+            @Override
+            public double getBeneficiaryThreshold() {
+                return Double.parseDouble(properties.getProperty("ownership.threshold", "0.25"));
+            }
+
+            @Override
+            public SearchMode getSearchMode() {
+                return SearchMode.valueOf(properties.getProperty("ownership.search.mode", "exact").toUpperCase());
+            }
+
+            @Override
+            public double getSearchEpsilon() {
+                return Double.parseDouble(properties.getProperty("ownership.search.epsilon", "1e-6"));
+            }
+
+            @Override
+            public Path getPartitionDirectory() {
+                return Path.of(properties.getProperty("ownership.partition.directory", ".local/partitions"));
+            }
+
+            @Override
+            public long getPartitionMemoryBudget() {
+                return Long.parseLong(properties.getProperty("ownership.partition.memory-budget-mb", "1024")) << 20;
+            }
+
+            @Override
+            public double getMatrixCutoff() {
+                return Double.parseDouble(properties.getProperty("ownership.matrix.cutoff", "1e-4"));
+            }
+        };
+    }
+
+    @Override
+    public IncrementalConfig getIncrementalConfig() {
+        return new IncrementalConfig() {
+            @Override
+            public boolean isEnabled() {
+                return Boolean.parseBoolean(properties.getProperty("incremental.enabled", "false"));
+            }
+
+            @Override
+            public Path getStatePath() {
+                return Path.of(properties.getProperty("incremental.state", ".local/incremental.state"));
+            }
+
+            @Override
+            public Path getFounderLegalDeltaPath() {
+                return Path.of(properties.getProperty("incremental.delta.founder-legal", ".local/founder_legal_delta.tsv"));
+            }
+
+            @Override
+            public Path getFounderNaturalDeltaPath() {
+                return Path.of(properties.getProperty("incremental.delta.founder-natural", ".local/founder_natural_delta.tsv"));
+            }
+
+            @Override
+            public Path getChangedCompaniesTablePath() {
+                return Path.of(properties.getProperty("incremental.changed-companies", ".local/changed_companies.tsv"));
+            }
+        };
+    }
+
+    @Override
+    public CacheConfig getCacheConfig() {
+        return new CacheConfig() {
+            @Override
+            public boolean isEnabled() {
+                return Boolean.parseBoolean(properties.getProperty("cache.enabled", "false"));
+            }
+
+            @Override
+            public Path getCachePath() {
+                return Path.of(properties.getProperty("cache.file", ".local/results.cache"));
+            }
+
+            @Override
+            public long getMaxSize() {
+                return Long.parseLong(properties.getProperty("cache.max-size-mb", "256")) << 20;
+            }
+        };
+    }
+
+    @Override
+    public MetricsConfig getMetricsConfig() {
+        return new MetricsConfig() {
+            @Override
+            public boolean isEnabled() {
+                return Boolean.parseBoolean(properties.getProperty("metrics.enabled", "true"));
+            }
+
+            @Override
+            public Path getMetricsPath() {
+                return Path.of(properties.getProperty("metrics.file", ".local/metrics.prom"));
+            }
+
+            @Override
+            public Duration getProgressInterval() {
+                return Duration.ofSeconds(Long.parseLong(properties.getProperty("metrics.progress.interval-seconds", "10")));
+            }
+        };
+    }
+
+    @Override
+    public DispatchConfig getDispatchConfig() {
+        return new DispatchConfig() {
+            @Override
+            public int getQueueCapacity() {
+                return Integer.parseInt(properties.getProperty("dispatch.queue.capacity", "4096"));
+            }
+
+            @Override
+            public boolean isOrdered() {
+                return Boolean.parseBoolean(properties.getProperty("dispatch.ordered", "false"));
+            }
+
+            @Override
+            public WriterMode getWriterMode() {
+                return WriterMode.valueOf(properties.getProperty("dispatch.writer", "single").toUpperCase());
+            }
+
+            @Override
+            public int getShardCount() {
+                return Integer.parseInt(properties.getProperty("dispatch.shards", "1"));
+            }
+        };
+    }
+
     private TableConfig createTableConfig(String companyPath, String founderLegalPath, String founderNaturalPath, String beneficiariesPath) {
         return new TableConfig() {
             @Override
@@ -76,7 +235,71 @@ public class PropertiesConfig implements CastleConfig {
             public Path getBeneficiariesTablePath() {
                 return Path.of(beneficiariesPath);
             }
+
+            @Override
+            public boolean isSnapshotEnabled() {
+                return Boolean.parseBoolean(properties.getProperty("table.snapshot.enabled", "false"));
+            }
+
+            @Override
+            public Path getSnapshotDirectory() {
+                return Path.of(properties.getProperty("table.snapshot.directory", ".local/snapshots"));
+            }
+
+            @Override
+            public boolean isLazyTextEnabled() {
+                return Boolean.parseBoolean(properties.getProperty("table.lazy-text.enabled", "false"));
+            }
+
+            @Override
+            public boolean isBeneficiaryIndexEnabled() {
+                return Boolean.parseBoolean(properties.getProperty("table.beneficiary-index.enabled", "false"));
+            }
+
+            @Override
+            public Path getBeneficiaryIndexPath() {
+                return Path.of(properties.getProperty("table.beneficiary-index", ".local/beneficiaries.index"));
+            }
+
+            @Override
+            public boolean isOwnershipMatrixEnabled() {
+                return Boolean.parseBoolean(properties.getProperty("table.ownership-matrix.enabled", "false"));
+            }
+
+            @Override
+            public Path getOwnershipMatrixPath() {
+                return Path.of(properties.getProperty("table.ownership-matrix", ".local/ownership.triplets"));
+            }
         };
     }
-}
 
+    @Override
+    public ServerConfig getServerConfig() {
+        return new ServerConfig() {
+            @Override
+            public boolean isEnabled() {
+                return Boolean.parseBoolean(properties.getProperty("server.enabled", "false"));
+            }
+
+            @Override
+            public String getHost() {
+                return properties.getProperty("server.host", "127.0.0.1");
+            }
+
+            @Override
+            public int getPort() {
+                return Integer.parseInt(properties.getProperty("server.port", "8080"));
+            }
+
+            @Override
+            public Duration getRefreshInterval() {
+                return Duration.ofSeconds(Long.parseLong(properties.getProperty("server.refresh.interval-seconds", "60")));
+            }
+
+            @Override
+            public int getChainLimit() {
+                return Integer.parseInt(properties.getProperty("server.chains.limit", "1000"));
+            }
+        };
+    }
+}
@@ -0,0 +1,46 @@
+package ru.bivchallenge.config;
+
+import java.time.Duration;
+
+/**
+ * Represents the configuration interface for the query server mode.
+ * Provides methods to retrieve whether the application serves queries instead of running a batch, where it listens
+ * and how the loaded dataset is refreshed.
+ */
+public interface ServerConfig {
+
+    /**
+     * Checks whether the application runs as a long-running query server instead of a single batch run.
+     *
+     * @return {@code true} in the server mode
+     */
+    boolean isEnabled();
+
+    /**
+     * Retrieves the address the server listens on.
+     *
+     * @return the host name or address of the local endpoint
+     */
+    String getHost();
+
+    /**
+     * Retrieves the port the server listens on.
+     *
+     * @return the port, {@code 0} for any free port
+     */
+    int getPort();
+
+    /**
+     * Retrieves the interval between two checks of the tables for a refreshed dataset.
+     *
+     * @return the refresh interval, or {@link Duration#ZERO} if the dataset is only reloaded on request
+     */
+    Duration getRefreshInterval();
+
+    /**
+     * Retrieves the maximum number of ownership chains returned for a single pair.
+     *
+     * @return the chain limit
+     */
+    int getChainLimit();
+}
@@ -35,4 +35,56 @@ public interface TableConfig {
      * @return a {@link Path} to the beneficiaries table file
      */
     Path getBeneficiariesTablePath();
+
+    /**
+     * Checks whether parsed tables are cached in binary snapshots in the {@linkplain #getSnapshotDirectory()
+     * snapshot directory}.
+     *
+     * @return {@code true} if snapshots are read and written
+     */
+    boolean isSnapshotEnabled();
+
+    /**
+     * Retrieves the directory the snapshots of the parsed tables are kept in.
+     *
+     * @return a {@link Path} to the snapshot directory
+     */
+    Path getSnapshotDirectory();
+
+    /**
+     * Checks whether the founder and company tables leave their text fields in the memory-mapped source tables
+     * and decode them only for the rows that are materialized.
+     *
+     * @return {@code true} if the text columns are not decoded while the tables load
+     */
+    boolean isLazyTextEnabled();
+
+    /**
+     * Checks whether the inverted index from natural person to owned companies is written after the computation.
+     *
+     * @return {@code true} if the beneficiary index is written
+     */
+    boolean isBeneficiaryIndexEnabled();
+
+    /**
+     * Retrieves the file path for the beneficiary index.
+     *
+     * @return a {@link Path} to the beneficiary index file
+     */
+    Path getBeneficiaryIndexPath();
+
+    /**
+     * Checks whether the effective ownership of every company by every natural person is computed as a sparse
+     * matrix and written as binary triplets.
+     *
+     * @return {@code true} if the ownership matrix is written
+     */
+    boolean isOwnershipMatrixEnabled();
+
+    /**
+     * Retrieves the file path for the ownership matrix.
+     *
+     * @return a {@link Path} to the ownership matrix file
+     */
+    Path getOwnershipMatrixPath();
 }
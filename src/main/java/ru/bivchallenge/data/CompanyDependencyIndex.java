@@ -0,0 +1,322 @@
+package ru.bivchallenge.data;
+
+import ru.bivchallenge.dto.LegalEntity;
+import ru.bivchallenge.dto.NaturalEntity;
+import ru.bivchallenge.util.ChannelDataOutput;
+import ru.bivchallenge.util.KeyGroups;
+import ru.bivchallenge.util.MappedDataInput;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.IntToLongFunction;
+import java.util.stream.IntStream;
+
+/**
+ * The reverse dependency index of the incremental mode: the rows of the founder tables grouped by the company they
+ * own a share of, and the legal founder rows grouped by the legal entity that owns the share.
+ * <p>
+ * Following the second grouping from a company leads to the companies it owns shares of, so the heads affected by
+ * a delta are found without a graph; following the first leads to its founders, so only the rows upstream of the
+ * affected heads have to be built into a graph. Both traversals cost in proportion to the part of the registry
+ * they visit.
+ * <p>
+ * The index is kept in the {@link IncrementalState} and carried over to the next run with {@link #update}, which
+ * moves the rows through the row mappings of the deltas and adds the appended rows, so it is only built from whole
+ * tables when there is no previous state. Companies are numbered by their position in a sorted array of ids.
+ */
+public final class CompanyDependencyIndex {
+    private final long[] companyIds;
+    private final Groups legalFounders;
+    private final Groups naturalFounders;
+    private final Groups holdings;
+
+    private CompanyDependencyIndex(long[] companyIds, Groups legalFounders, Groups naturalFounders, Groups holdings) {
+        this.companyIds = companyIds;
+        this.legalFounders = legalFounders;
+        this.naturalFounders = naturalFounders;
+        this.holdings = holdings;
+    }
+
+    /**
+     * Builds the index of whole founder tables.
+     *
+     * @param legalEntityTable   the rows of the legal founders
+     * @param naturalEntityTable the rows of the natural founders
+     * @return the index
+     */
+    public static CompanyDependencyIndex of(FounderTable<LegalEntity> legalEntityTable,
+                                            FounderTable<NaturalEntity> naturalEntityTable) {
+        long[] companyIds = companyIds(new long[0], legalEntityTable, 0, naturalEntityTable, 0);
+        return new CompanyDependencyIndex(companyIds,
+                Groups.of(companyIds, 0, legalEntityTable.size(), legalEntityTable::companyId),
+                Groups.of(companyIds, 0, naturalEntityTable.size(), naturalEntityTable::companyId),
+                Groups.of(companyIds, 0, legalEntityTable.size(), legalEntityTable::id));
+    }
+
+    /**
+     * Returns the index of the founder tables after the deltas of a run. Rows of this index are moved to their rows
+     * in the updated tables and the rows added by the deltas are grouped, so the cost is a pass over the primitive
+     * arrays of the index and a sort of the added rows.
+     *
+     * @param legalEntityDelta   the delta applied to the legal founders this index was built for
+     * @param naturalEntityDelta the delta applied to the natural founders this index was built for
+     * @return the index of the updated tables
+     */
+    public CompanyDependencyIndex update(FounderTableDelta<LegalEntity> legalEntityDelta,
+                                         FounderTableDelta<NaturalEntity> naturalEntityDelta) {
+        FounderTable<LegalEntity> legalEntityTable = legalEntityDelta.table();
+        FounderTable<NaturalEntity> naturalEntityTable = naturalEntityDelta.table();
+        long[] updatedIds = companyIds(companyIds, legalEntityTable, legalEntityDelta.firstAddedRow(),
+                naturalEntityTable, naturalEntityDelta.firstAddedRow());
+        return new CompanyDependencyIndex(updatedIds,
+                legalFounders.update(companyIds, updatedIds, legalEntityDelta, legalEntityTable::companyId),
+                naturalFounders.update(companyIds, updatedIds, naturalEntityDelta, naturalEntityTable::companyId),
+                holdings.update(companyIds, updatedIds, legalEntityDelta, legalEntityTable::id));
+    }
+
+    /**
+     * Returns the companies whose beneficiaries can depend on the founder rows of the given companies: the
+     * companies themselves and every company they reach by following the shares of legal founders downstream.
+     *
+     * @param changedCompanyIds the ids of the companies whose founder rows changed
+     * @param legalEntityTable  the legal founders this index is built for
+     * @return the ids of the affected companies, including the given ones
+     */
+    public Set<Long> downstreamCompanies(long[] changedCompanyIds, FounderTable<LegalEntity> legalEntityTable) {
+        Set<Long> companies = new HashSet<>();
+        int[] queue = new int[16];
+        int tail = 0;
+        for (long companyId : changedCompanyIds) {
+            int company = Arrays.binarySearch(companyIds, companyId);
+            if (companies.add(companyId) && company >= 0) {
+                queue = enqueue(queue, tail++, company);
+            }
+        }
+        for (int next = 0; next < tail; next++) {
+            int company = queue[next];
+            for (int i = holdings.start(company); i < holdings.end(company); i++) {
+                long target = legalEntityTable.companyId(holdings.row(i));
+                if (companies.add(target)) {
+                    queue = enqueue(queue, tail++, Arrays.binarySearch(companyIds, target));
+                }
+            }
+        }
+        return companies;
+    }
+
+    /**
+     * Collects the founder rows of the given companies and of every legal founder upstream of them, which are the
+     * rows a graph needs to compute the beneficiaries of the companies.
+     *
+     * @param headCompanyIds   the ids of the companies
+     * @param legalEntityTable the legal founders this index is built for
+     * @return the legal and natural founder rows, each in ascending order
+     */
+    public UpstreamRows upstreamRows(long[] headCompanyIds, FounderTable<LegalEntity> legalEntityTable) {
+        boolean[] visited = new boolean[companyIds.length];
+        int[] queue = new int[16];
+        int tail = 0;
+        for (long companyId : headCompanyIds) {
+            int company = Arrays.binarySearch(companyIds, companyId);
+            if (company >= 0 && !visited[company]) {
+                visited[company] = true;
+                queue = enqueue(queue, tail++, company);
+            }
+        }
+        int[] legalRows = new int[16];
+        int legalCount = 0;
+        int[] naturalRows = new int[16];
+        int naturalCount = 0;
+        for (int next = 0; next < tail; next++) {
+            int company = queue[next];
+            for (int i = legalFounders.start(company); i < legalFounders.end(company); i++) {
+                int row = legalFounders.row(i);
+                legalRows = enqueue(legalRows, legalCount++, row);
+                int founder = Arrays.binarySearch(companyIds, legalEntityTable.id(row));
+                if (!visited[founder]) {
+                    visited[founder] = true;
+                    queue = enqueue(queue, tail++, founder);
+                }
+            }
+            for (int i = naturalFounders.start(company); i < naturalFounders.end(company); i++) {
+                naturalRows = enqueue(naturalRows, naturalCount++, naturalFounders.row(i));
+            }
+        }
+        legalRows = Arrays.copyOf(legalRows, legalCount);
+        naturalRows = Arrays.copyOf(naturalRows, naturalCount);
+        Arrays.sort(legalRows);
+        Arrays.sort(naturalRows);
+        return new UpstreamRows(legalRows, naturalRows);
+    }
+
+    /**
+     * Returns the number of companies in the index.
+     *
+     * @return the company count
+     */
+    public int companyCount() {
+        return companyIds.length;
+    }
+
+    /**
+     * Writes the index in a binary form that {@link #readFrom} restores.
+     *
+     * @param output the output
+     * @throws IOException if the index cannot be written
+     */
+    public void writeTo(ChannelDataOutput output) throws IOException {
+        output.writeInt(companyIds.length);
+        output.writeLongs(companyIds, companyIds.length);
+        legalFounders.writeTo(output);
+        naturalFounders.writeTo(output);
+        holdings.writeTo(output);
+    }
+
+    /**
+     * Reads an index written by {@link #writeTo}.
+     *
+     * @param input the input positioned at the index
+     * @return the index
+     * @throws IOException if the index cannot be read
+     */
+    public static CompanyDependencyIndex readFrom(MappedDataInput input) throws IOException {
+        long[] companyIds = input.readLongs(input.readInt());
+        return new CompanyDependencyIndex(companyIds, Groups.readFrom(input, companyIds.length),
+                Groups.readFrom(input, companyIds.length), Groups.readFrom(input, companyIds.length));
+    }
+
+    /**
+     * The founder rows upstream of some companies.
+     *
+     * @param legalRows   the rows of the legal founders, in ascending order
+     * @param naturalRows the rows of the natural founders, in ascending order
+     */
+    public record UpstreamRows(int[] legalRows, int[] naturalRows) {
+    }
+
+    /**
+     * Merges the ids of the companies of the rows from the given rows on into the sorted ids: the company ids of
+     * all founders and the ids of the legal founders, which are companies themselves.
+     */
+    private static long[] companyIds(long[] sortedIds, FounderTable<LegalEntity> legalEntityTable, int firstLegalRow,
+                                     FounderTable<NaturalEntity> naturalEntityTable, int firstNaturalRow) {
+        int legalCount = legalEntityTable.size() - firstLegalRow;
+        int naturalCount = naturalEntityTable.size() - firstNaturalRow;
+        long[] ids = new long[sortedIds.length + 2 * legalCount + naturalCount];
+        System.arraycopy(sortedIds, 0, ids, 0, sortedIds.length);
+        int count = sortedIds.length;
+        for (int row = firstLegalRow; row < legalEntityTable.size(); row++) {
+            ids[count++] = legalEntityTable.id(row);
+            ids[count++] = legalEntityTable.companyId(row);
+        }
+        for (int row = firstNaturalRow; row < naturalEntityTable.size(); row++) {
+            ids[count++] = naturalEntityTable.companyId(row);
+        }
+        if (count == sortedIds.length) {
+            return sortedIds;
+        }
+        Arrays.parallelSort(ids);
+        int distinct = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (i == 0 || ids[i] != ids[i - 1]) {
+                ids[distinct++] = ids[i];
+            }
+        }
+        return Arrays.copyOf(ids, distinct);
+    }
+
+    private static int[] enqueue(int[] queue, int index, int value) {
+        if (index == queue.length) {
+            queue = Arrays.copyOf(queue, index * 2);
+        }
+        queue[index] = value;
+        return queue;
+    }
+
+    /**
+     * Rows grouped by company, in ascending row order within every company.
+     */
+    private static final class Groups {
+        private final int[] offsets;
+        private final int[] rows;
+
+        private Groups(int[] offsets, int[] rows) {
+            this.offsets = offsets;
+            this.rows = rows;
+        }
+
+        /**
+         * Groups the rows from the first row on by the company the key function returns for them.
+         */
+        static Groups of(long[] companyIds, int firstRow, int endRow, IntToLongFunction companyId) {
+            int[] keys = IntStream.range(firstRow, endRow).parallel()
+                    .map(row -> Arrays.binarySearch(companyIds, companyId.applyAsLong(row)))
+                    .toArray();
+            KeyGroups groups = KeyGroups.of(keys, companyIds.length);
+            int[] offsets = new int[companyIds.length + 1];
+            for (int company = 0; company < companyIds.length; company++) {
+                offsets[company] = groups.start(company);
+            }
+            offsets[companyIds.length] = keys.length;
+            int[] rows = new int[keys.length];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = firstRow + groups.position(i);
+            }
+            return new Groups(offsets, rows);
+        }
+
+        /**
+         * Moves the rows of every company through the row mapping of a delta, dropping removed rows, and appends
+         * the rows added by the delta to their companies. Kept rows precede added ones in the updated table, so
+         * the rows of every company stay in ascending order.
+         */
+        Groups update(long[] companyIds, long[] updatedIds, FounderTableDelta<?> delta, IntToLongFunction companyId) {
+            Groups added = of(updatedIds, delta.firstAddedRow(), delta.table().size(), companyId);
+            int[] updatedOffsets = new int[updatedIds.length + 1];
+            int[] updatedRows = new int[rows.length + added.rows.length];
+            int count = 0;
+            int company = 0;
+            for (int updated = 0; updated < updatedIds.length; updated++) {
+                updatedOffsets[updated] = count;
+                if (company < companyIds.length && companyIds[company] == updatedIds[updated]) {
+                    for (int i = offsets[company]; i < offsets[company + 1]; i++) {
+                        int row = delta.row(rows[i]);
+                        if (row >= 0) {
+                            updatedRows[count++] = row;
+                        }
+                    }
+                    company++;
+                }
+                for (int i = added.start(updated); i < added.end(updated); i++) {
+                    updatedRows[count++] = added.row(i);
+                }
+            }
+            updatedOffsets[updatedIds.length] = count;
+            return new Groups(updatedOffsets, Arrays.copyOf(updatedRows, count));
+        }
+
+        int start(int company) {
+            return offsets[company];
+        }
+
+        int end(int company) {
+            return offsets[company + 1];
+        }
+
+        int row(int index) {
+            return rows[index];
+        }
+
+        void writeTo(ChannelDataOutput output) throws IOException {
+            output.writeInts(offsets, offsets.length);
+            output.writeInts(rows, rows.length);
+        }
+
+        static Groups readFrom(MappedDataInput input, int companyCount) throws IOException {
+            int[] offsets = input.readInts(companyCount + 1);
+            return new Groups(offsets, input.readInts(offsets[companyCount]));
+        }
+    }
+}
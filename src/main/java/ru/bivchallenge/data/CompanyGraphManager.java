@@ -1,25 +1,25 @@
 package ru.bivchallenge.data;
 
-import org.jgrapht.Graph;
-import org.jgrapht.GraphPath;
-import org.jgrapht.alg.shortestpath.AllDirectedPaths;
-import org.jgrapht.graph.DefaultDirectedWeightedGraph;
-import org.jgrapht.graph.DirectedMultigraph;
-import org.jgrapht.graph.SimpleDirectedWeightedGraph;
 import ru.bivchallenge.dto.*;
+import ru.bivchallenge.graph.*;
 
 import java.util.*;
 
 /**
  * Manages a graph representation of a company's structure, including relationships
  * between the head company, legal entities, and natural entities.
+ * <p>
+ * Entities are collected into an {@link OwnershipGraphBuilder}; the first call to {@link #getGraph()}
+ * freezes them into a compact {@link OwnershipGraph}, after which no more entities can be added.
  */
 public class CompanyGraphManager {
-    private final Graph<String, WeightedEdge> graph;
     private final Company headCompany;
     private final Map<Long, NaturalEntity> naturalEntityMap;
-    private final Map<Long, LegalEntity> legalEntityMap;
     private final Map<Long, LegalEntity> legalEntityRegistry;
+    private final int headVertex;
+
+    private OwnershipGraphBuilder builder;
+    private OwnershipGraph graph;
 
     /**
      * Constructs a new CompanyGraphManager with the given head company and legal entity registry.
@@ -32,18 +32,21 @@ public class CompanyGraphManager {
         this.legalEntityRegistry = legalEntityRegistry;
 
         this.naturalEntityMap = new HashMap<>();
-        this.legalEntityMap = new HashMap<>();
-        this.graph = new SimpleDirectedWeightedGraph<>(WeightedEdge.class);
+        this.builder = new OwnershipGraphBuilder();
 
-        graph.addVertex(vertexId("H", headCompany.id()));
+        this.headVertex = builder.addVertex(VertexType.HEAD, headCompany.id());
     }
 
     /**
-     * Returns the graph representing the company's structure.
+     * Returns the graph representing the company's structure, freezing it on the first call.
      *
      * @return the graph of the company structure
      */
-    public Graph<String, WeightedEdge> getGraph() {
+    public OwnershipGraph getGraph() {
+        if (graph == null) {
+            graph = builder.build();
+            builder = null;
+        }
         return graph;
     }
 
@@ -56,12 +59,13 @@ public class CompanyGraphManager {
         return headCompany;
     }
 
-    public String getCompanyVertex(long companyId) {
-        return companyId == headCompany.id() ? vertexId("H", headCompany.id()) : vertexId("L", companyId);
-    }
-
-    public String getNaturalVertex(long naturalId) {
-        return vertexId("N", naturalId);
+    /**
+     * Returns the vertex of the head company.
+     *
+     * @return the head vertex id
+     */
+    public int getHeadVertex() {
+        return headVertex;
     }
 
     public LegalEntity getLegalEntity(long companyId) {
@@ -78,40 +82,38 @@ public class CompanyGraphManager {
      * @param naturalEntity the natural entity to add
      */
     public void addEntity(NaturalEntity naturalEntity) {
-        String naturalVertex = vertexId("N", naturalEntity.id());
-        String companyVertex = getCompanyVertex(naturalEntity.getCompanyId());
-
-        if (naturalEntityMap.putIfAbsent(naturalEntity.id(), naturalEntity) == null) {
-            graph.addVertex(naturalVertex);
-        }
+        OwnershipGraphBuilder graphBuilder = openBuilder();
+        int naturalVertex = graphBuilder.addVertex(VertexType.NATURAL, naturalEntity.id());
+        naturalEntityMap.putIfAbsent(naturalEntity.id(), naturalEntity);
 
-        if (!graph.containsVertex(companyVertex)) {
-            addLegalEntityIfRegistered(naturalEntity.getCompanyId());
-        }
-
-        WeightedEdge edge = new WeightedEdge(naturalEntity.getSharePercent());
-        graph.addEdge(naturalVertex, companyVertex, edge);
+        int companyVertex = companyVertex(naturalEntity.getCompanyId());
+        graphBuilder.addEdge(naturalVertex, companyVertex, naturalEntity.getSharePercent());
     }
 
     /**
      * Adds a legal entity to the graph and connects it to its parent entity or the head company.
+     * A legal entity that is the head company itself, holding a share of one of its owners, is the head vertex.
      *
      * @param legalEntity the legal entity to add
      */
     public void addEntity(LegalEntity legalEntity) {
-        String legalVertex = vertexId("L", legalEntity.id());
-        String parentVertex = getCompanyVertex(legalEntity.getCompanyId());
+        OwnershipGraphBuilder graphBuilder = openBuilder();
+        int legalVertex = legalEntity.id() == headCompany.id()
+                ? headVertex
+                : graphBuilder.addVertex(VertexType.LEGAL, legalEntity.id());
 
-        if (legalEntityMap.putIfAbsent(legalEntity.id(), legalEntity) == null) {
-            graph.addVertex(legalVertex);
-        }
-
-        if (!graph.containsVertex(parentVertex)) {
-            addLegalEntityIfRegistered(legalEntity.getCompanyId());
-        }
+        int parentVertex = companyVertex(legalEntity.getCompanyId());
+        graphBuilder.addEdge(legalVertex, parentVertex, legalEntity.getSharePercent());
+    }
 
-        WeightedEdge edge = new WeightedEdge(legalEntity.getSharePercent());
-        graph.addEdge(legalVertex, parentVertex, edge);
+    /**
+     * Checks whether a legal entity is already in the graph, either as the head company or as a founder.
+     *
+     * @param legalId the id of the legal entity
+     * @return {@code true} if the legal entity has a vertex
+     */
+    public boolean containsLegalEntity(long legalId) {
+        return legalId == headCompany.id() || openBuilder().containsVertex(VertexType.LEGAL, legalId);
     }
 
     /**
@@ -120,58 +122,77 @@ public class CompanyGraphManager {
      * @return a registry of beneficiaries
      */
     public BenefeciarRegistry getBeneficiaries() {
-        BenefeciarRegistry beneficiaries = new BenefeciarRegistry(headCompany);
+        return getBeneficiaries(new PropagationOwnershipEngine());
+    }
 
-        for (Map.Entry<Long, NaturalEntity> entry : naturalEntityMap.entrySet()) {
-            String naturalVertex = vertexId("N", entry.getKey());
-            double totalOwnership = defineOwnershipPercentageForNaturalEntity(naturalVertex);
+    /**
+     * Calculates and returns the beneficiaries (natural entities with more than 25% ownership)
+     * using the given ownership engine.
+     *
+     * @param ownershipEngine the engine computing the effective share of every natural entity
+     * @return a registry of beneficiaries
+     */
+    public BenefeciarRegistry getBeneficiaries(OwnershipEngine ownershipEngine) {
+        return getBeneficiaries(ownershipEngine, OwnershipEngine.BENEFICIARY_THRESHOLD);
+    }
 
-            if (totalOwnership > 0.25) {
+    /**
+     * Calculates and returns the natural entities whose ownership exceeds the given threshold
+     * using the given ownership engine.
+     *
+     * @param ownershipEngine the engine computing the effective share of every natural entity
+     * @param threshold       the share a natural entity must exceed to be a beneficiary
+     * @return a registry of beneficiaries
+     */
+    public BenefeciarRegistry getBeneficiaries(OwnershipEngine ownershipEngine, double threshold) {
+        OwnershipGraph ownershipGraph = getGraph();
+        BenefeciarRegistry beneficiaries = new BenefeciarRegistry(headCompany);
+
+        ownershipEngine.compute(ownershipGraph, headVertex, threshold, (vertex, totalOwnership) -> {
+            if (totalOwnership > threshold) {
                 beneficiaries.getBeneficiaries().add(
-                        new Benefeciar(entry.getValue(), totalOwnership)
+                        new Benefeciar(naturalEntityMap.get(ownershipGraph.id(vertex)), totalOwnership)
                 );
             }
-        }
+        });
 
         return beneficiaries;
     }
 
-    private double defineOwnershipPercentageForNaturalEntity(String naturalVertex) {
-        // Start DFS from the natural entity vertex
-        return calculateOwnership(naturalVertex, vertexId("H", headCompany.id()), 1.0, new HashSet<>());
-    }
-
-    private double calculateOwnership(String currentVertex, String targetVertex, double currentOwnership, Set<String> visited) {
-        if (currentVertex.equals(targetVertex)) {
-            return currentOwnership;
+    /**
+     * Resolves the vertex of the company a founder belongs to. A legal company that is not in the graph yet
+     * is added together with the chain of its registered parents, so that it stays connected to the head.
+     */
+    private int companyVertex(long companyId) {
+        if (companyId == headCompany.id()) {
+            return headVertex;
         }
-
-        if (!visited.add(currentVertex)) {
-            return 0.0;
+        int vertex = builder.vertex(VertexType.LEGAL, companyId);
+        if (vertex < 0) {
+            vertex = builder.addVertex(VertexType.LEGAL, companyId);
+            addRegisteredParents(companyId);
         }
-
-        double totalOwnership = 0.0;
-
-        for (WeightedEdge edge : graph.outgoingEdgesOf(currentVertex)) {
-            String nextVertex = graph.getEdgeTarget(edge);
-
-            totalOwnership += calculateOwnership(nextVertex, targetVertex, currentOwnership * edge.getWeight(), visited);
-        }
-
-        visited.remove(currentVertex);
-
-        return totalOwnership;
+        return vertex;
     }
 
-
-    private void addLegalEntityIfRegistered(long companyId) {
+    private void addRegisteredParents(long companyId) {
         LegalEntity legalEntity = legalEntityRegistry.get(companyId);
-        if (legalEntity != null) {
-            addEntity(legalEntity);
+        while (legalEntity != null) {
+            int legalVertex = builder.addVertex(VertexType.LEGAL, legalEntity.id());
+            long parentId = legalEntity.getCompanyId();
+            boolean attached = parentId == headCompany.id() || builder.containsVertex(VertexType.LEGAL, parentId);
+            int parentVertex = parentId == headCompany.id()
+                    ? headVertex
+                    : builder.addVertex(VertexType.LEGAL, parentId);
+            builder.addEdge(legalVertex, parentVertex, legalEntity.getSharePercent());
+            legalEntity = attached ? null : legalEntityRegistry.get(parentId);
         }
     }
 
-    private String vertexId(String prefix, long id) {
-        return prefix + ":" + id;
+    private OwnershipGraphBuilder openBuilder() {
+        if (builder == null) {
+            throw new IllegalStateException("Graph of company " + headCompany.id() + " is already frozen");
+        }
+        return builder;
     }
 }
@@ -0,0 +1,120 @@
+package ru.bivchallenge.data;
+
+import ru.bivchallenge.dto.Company;
+import ru.bivchallenge.dto.LegalEntity;
+import ru.bivchallenge.dto.NaturalEntity;
+import ru.bivchallenge.graph.OwnershipGraph;
+import ru.bivchallenge.graph.VertexType;
+import ru.bivchallenge.graph.WeakComponents;
+
+/**
+ * The {@code ComponentFingerprints} class hashes the content of every weakly connected component of a shared
+ * graph, so that the beneficiaries computed for a component can be found again in a later run.
+ *
+ * <p>The fingerprint of a component covers the ids of its head companies and the id, company id, share and share
+ * percent of every founder row that owns one of its companies; the text columns do not affect beneficiaries and
+ * are left out. Every row is hashed on its own into 128 bits and the hashes are summed, so the fingerprint does not
+ * depend on the order of the rows in the tables, nor on how the components are numbered, nor on the rows of other
+ * components. The same component therefore has the same fingerprint in the shared and in the partitioned graph
+ * mode, and in every extract in which none of its rows changed.</p>
+ */
+public final class ComponentFingerprints {
+    private static final long HIGH_SEED = 0x243F6A8885A308D3L;
+    private static final long LOW_SEED = 0x13198A2E03707344L;
+    private static final long COMPANY_ROW = 1;
+    private static final long LEGAL_ROW = 2;
+    private static final long NATURAL_ROW = 3;
+
+    private final OwnershipGraph graph;
+    private final int[] components;
+    private final long[] highs;
+    private final long[] lows;
+
+    /**
+     * Hashes the components of a shared graph built from the given founder tables.
+     *
+     * @param graph              the shared graph
+     * @param companyTable       the head companies
+     * @param legalEntityTable   the legal founder rows the graph was built from
+     * @param naturalEntityTable the natural founder rows the graph was built from
+     */
+    public ComponentFingerprints(OwnershipGraph graph, FounderTable<Company> companyTable,
+                                 FounderTable<LegalEntity> legalEntityTable, FounderTable<NaturalEntity> naturalEntityTable) {
+        this.graph = graph;
+        this.components = WeakComponents.of(graph);
+        this.highs = new long[graph.vertexCount()];
+        this.lows = new long[graph.vertexCount()];
+        for (int row = 0; row < companyTable.size(); row++) {
+            addRow(COMPANY_ROW, companyTable.id(row), 0, 0, 0);
+        }
+        addRows(LEGAL_ROW, legalEntityTable);
+        addRows(NATURAL_ROW, naturalEntityTable);
+    }
+
+    /**
+     * Returns the component of a head company.
+     *
+     * @param companyId the id of the company
+     * @return the component, or {@code -1} if the company has no vertex and therefore no founders
+     */
+    public int component(long companyId) {
+        int vertex = graph.vertex(VertexType.LEGAL, companyId);
+        return vertex < 0 ? -1 : components[vertex];
+    }
+
+    /**
+     * Returns the fingerprint of a component.
+     *
+     * @param component a component returned by {@link #component(long)}
+     * @return the fingerprint
+     */
+    public Key key(int component) {
+        return new Key(highs[component], lows[component]);
+    }
+
+    private void addRows(long kind, FounderTable<?> table) {
+        for (int row = 0; row < table.size(); row++) {
+            addRow(kind, table.id(row), table.companyId(row), table.share(row), table.sharePercent(row));
+        }
+    }
+
+    /**
+     * Adds a row to the fingerprint of the component of its company; rows of companies outside the graph, such as
+     * head companies without founders, belong to no component.
+     */
+    private void addRow(long kind, long id, long companyId, double share, double sharePercent) {
+        int component = component(kind == COMPANY_ROW ? id : companyId);
+        if (component < 0) {
+            return;
+        }
+        highs[component] += hashRow(HIGH_SEED, kind, id, companyId, share, sharePercent);
+        lows[component] += hashRow(LOW_SEED, kind, id, companyId, share, sharePercent);
+    }
+
+    private static long hashRow(long seed, long kind, long id, long companyId, double share, double sharePercent) {
+        long hash = mix(seed ^ kind);
+        hash = mix(hash ^ id);
+        hash = mix(hash ^ companyId);
+        hash = mix(hash ^ Double.doubleToLongBits(share));
+        return mix(hash ^ Double.doubleToLongBits(sharePercent));
+    }
+
+    /**
+     * The SplitMix64 finalizer, a bijection of 64-bit values in which every input bit affects every output bit.
+     */
+    private static long mix(long value) {
+        value += 0x9E3779B97F4A7C15L;
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    /**
+     * The 128-bit fingerprint of a component.
+     *
+     * @param high the upper half
+     * @param low  the lower half
+     */
+    public record Key(long high, long low) {
+    }
+}
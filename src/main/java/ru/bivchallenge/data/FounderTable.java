@@ -0,0 +1,721 @@
+package ru.bivchallenge.data;
+
+import ru.bivchallenge.util.ChannelDataOutput;
+import ru.bivchallenge.util.LongIntHashMap;
+import ru.bivchallenge.util.MappedDataInput;
+import ru.bivchallenge.util.TabSeparatedBytes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The {@code FounderTable} class is a columnar (struct-of-arrays) store of the rows of a founder table.
+ *
+ * <p>The graph stages only need the numeric columns, which are kept in parallel primitive arrays: {@code id},
+ * {@code companyId}, {@code share} and {@code sharePercent}. The remaining text fields (names, tax numbers) are
+ * stored as UTF-8 bytes in a separate text section and decoded only on request. Entity objects are created
+ * by {@link #entity(int)} where the output needs them.</p>
+ *
+ * <p>The text section is split into segments of at most {@value #MAX_SEGMENT_SIZE} bytes, so a table is not
+ * limited by the maximum size of a single array.</p>
+ *
+ * <p>A row may also leave its text fields in the tab-separated source it was parsed from, such as a memory-mapped
+ * chunk of the table file (see {@link #builder(int, ByteBuffer, int[])}). Such a row keeps only the offset of the
+ * row in the source, and its text fields are located and decoded on every {@link #text} call. The source must not
+ * change while the table is in use. If the source was mapped from a file, {@link #writeReferencesTo} can store such
+ * rows by their offsets in that file instead of copying their text.</p>
+ *
+ * <p>A table is immutable once built. Rows keep the order in which they were added.</p>
+ *
+ * @param <T> the type of the entity materialized from a row
+ */
+public final class FounderTable<T> {
+    /**
+     * The maximum number of bytes of a text segment.
+     */
+    public static final int MAX_SEGMENT_SIZE = 1 << 30;
+
+    private final int size;
+    private final int textFieldCount;
+    private final long[] ids;
+    private final long[] companyIds;
+    private final double[] shares;
+    private final double[] sharePercents;
+    private final int[] textOffsets;
+    private final byte[][] segments;
+    private final int[] segmentFirstRows;
+    private final ByteBuffer[] sources;
+    private final long[] sourceOffsets;
+    private final int[] rowOffsets;
+    private final int[] textColumns;
+    private final RowMapper<T> rowMapper;
+
+    private volatile LongIntHashMap rowIndex;
+
+    private FounderTable(int size, int textFieldCount, long[] ids, long[] companyIds, double[] shares,
+                         double[] sharePercents, int[] textOffsets, byte[][] segments, int[] segmentFirstRows,
+                         ByteBuffer[] sources, long[] sourceOffsets, int[] rowOffsets, int[] textColumns,
+                         RowMapper<T> rowMapper) {
+        this.size = size;
+        this.textFieldCount = textFieldCount;
+        this.ids = ids;
+        this.companyIds = companyIds;
+        this.shares = shares;
+        this.sharePercents = sharePercents;
+        this.textOffsets = textOffsets;
+        this.segments = segments;
+        this.segmentFirstRows = segmentFirstRows;
+        this.sources = sources;
+        this.sourceOffsets = sourceOffsets;
+        this.rowOffsets = rowOffsets;
+        this.textColumns = textColumns;
+        this.rowMapper = rowMapper;
+    }
+
+    private FounderTable(Builder builder, RowMapper<T> rowMapper) {
+        this.size = builder.size;
+        this.textFieldCount = builder.textFieldCount;
+        this.ids = Arrays.copyOf(builder.ids, size);
+        this.companyIds = Arrays.copyOf(builder.companyIds, size);
+        this.shares = Arrays.copyOf(builder.shares, size);
+        this.sharePercents = Arrays.copyOf(builder.sharePercents, size);
+        this.textOffsets = Arrays.copyOf(builder.textOffsets, size * textFieldCount);
+        builder.sealSegment();
+        this.segments = builder.segments.toArray(new byte[0][]);
+        this.segmentFirstRows = builder.segmentFirstRows.stream().mapToInt(Integer::intValue).toArray();
+        this.sources = builder.rowOffsets == null ? null : builder.sources.toArray(new ByteBuffer[0]);
+        this.sourceOffsets = builder.rowOffsets == null ? null
+                : builder.sourceOffsets.stream().mapToLong(Long::longValue).toArray();
+        this.rowOffsets = builder.rowOffsets == null ? null : Arrays.copyOf(builder.rowOffsets, size);
+        this.textColumns = builder.textColumns;
+        this.rowMapper = rowMapper;
+    }
+
+    /**
+     * Creates a builder for a table with the given number of text fields per row.
+     *
+     * @param textFieldCount the number of text fields of every row
+     * @return a new builder
+     */
+    public static Builder builder(int textFieldCount) {
+        return new Builder(textFieldCount, null, -1, null);
+    }
+
+    /**
+     * Creates a builder for a table whose rows may refer to their text fields in a tab-separated source instead of
+     * copying them (see {@link Builder#addSourceRow}).
+     *
+     * @param textFieldCount the number of text fields of every row
+     * @param source         the UTF-8 bytes of the rows, which must not change while the table is in use
+     * @param textColumns    the column of the source row holding every text field
+     * @return a new builder
+     */
+    public static Builder builder(int textFieldCount, ByteBuffer source, int[] textColumns) {
+        return builder(textFieldCount, source, -1, textColumns);
+    }
+
+    /**
+     * Creates a builder for a table whose rows may refer to their text fields in a source mapped from a file, like
+     * {@link #builder(int, ByteBuffer, int[])}. Such rows are written by {@link #writeReferencesTo} as their offsets
+     * in the file.
+     *
+     * @param textFieldCount the number of text fields of every row
+     * @param source         the UTF-8 bytes of the rows, which must not change while the table is in use
+     * @param sourceOffset   the offset in the file the source was mapped from, or {@code -1} if it was not mapped
+     * @param textColumns    the column of the source row holding every text field
+     * @return a new builder
+     */
+    public static Builder builder(int textFieldCount, ByteBuffer source, long sourceOffset, int[] textColumns) {
+        if (textColumns.length != textFieldCount) {
+            throw new IllegalArgumentException("Expected " + textFieldCount + " text columns, got " + textColumns.length);
+        }
+        return new Builder(textFieldCount, source, sourceOffset, textColumns.clone());
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return the row count
+     */
+    public int size() {
+        return size;
+    }
+
+    public long id(int row) {
+        return ids[row];
+    }
+
+    public long companyId(int row) {
+        return companyIds[row];
+    }
+
+    public double share(int row) {
+        return shares[row];
+    }
+
+    public double sharePercent(int row) {
+        return sharePercents[row];
+    }
+
+    /**
+     * Returns a table of the same rows with other share percents, such as the repaired ones. Every other column
+     * is shared with this table.
+     *
+     * @param sharePercents the share percent of every row
+     * @return the table with the given share percents
+     * @throws IllegalArgumentException if the number of share percents is not the number of rows
+     */
+    public FounderTable<T> withSharePercents(double[] sharePercents) {
+        if (sharePercents.length != size) {
+            throw new IllegalArgumentException("Expected " + size + " share percents, got " + sharePercents.length);
+        }
+        return new FounderTable<>(size, textFieldCount, ids, companyIds, shares, sharePercents, textOffsets, segments,
+                segmentFirstRows, sources, sourceOffsets, rowOffsets, textColumns, rowMapper);
+    }
+
+    /**
+     * Decodes a text field of a row.
+     *
+     * @param row   the row
+     * @param field the index of the text field
+     * @return the field value
+     */
+    public String text(int row, int field) {
+        int segment = segment(row);
+        if (rowOffsets != null && rowOffsets[row] >= 0) {
+            return sourceText(sources[segment], rowOffsets[row], textColumns[field]);
+        }
+        int index = row * textFieldCount + field;
+        int start = textOffsets[index];
+        int end;
+        if (field + 1 < textFieldCount) {
+            end = textOffsets[index + 1];
+        } else if (row + 1 < size && (segment + 1 == segmentFirstRows.length || row + 1 < segmentFirstRows[segment + 1])) {
+            end = textOffsets[index + 1];
+        } else {
+            end = segments[segment].length;
+        }
+        return new String(segments[segment], start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the first row with the given id.
+     *
+     * @param id the entity id
+     * @return the row, or {@code -1} if there is no such row
+     */
+    public int row(long id) {
+        LongIntHashMap index = rowIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = rowIndex;
+                if (index == null) {
+                    index = new LongIntHashMap(size);
+                    for (int row = 0; row < size; row++) {
+                        index.putIfAbsent(ids[row], row);
+                    }
+                    rowIndex = index;
+                }
+            }
+        }
+        return index.get(id);
+    }
+
+    /**
+     * Creates the entity object of a row.
+     *
+     * @param row the row
+     * @return the entity
+     */
+    public T entity(int row) {
+        return rowMapper.map(this, row);
+    }
+
+    /**
+     * Creates the entity objects of all rows, keyed by their ids.
+     *
+     * @param idFunction the function returning the id of an entity
+     * @return a map of entities by their ids
+     * @throws IllegalStateException if two rows have the same id
+     */
+    public Map<Long, T> toMap(Function<T, Long> idFunction) {
+        return IntStream.range(0, size)
+                .mapToObj(this::entity)
+                .collect(Collectors.toMap(idFunction, Function.identity()));
+    }
+
+    /**
+     * Writes the columns and the text section of the table in a binary form that {@link #readFrom} restores.
+     *
+     * @param output the output to write to
+     * @throws IOException if the output cannot be written
+     */
+    public void writeTo(ChannelDataOutput output) throws IOException {
+        if (rowOffsets != null) {
+            // The source is not part of the binary form, so the text of the rows is copied first.
+            copyText().writeTo(output);
+            return;
+        }
+        writeColumns(output);
+    }
+
+    /**
+     * Writes the table like {@link #writeTo}, except that the rows whose text fields are in a source mapped from a
+     * file are written as their offsets in that file, which
+     * {@link #readFrom(MappedDataInput, RowMapper, SourceMapper)} maps again. The text of the other rows, including
+     * the rows of sources that were not mapped from a file, is copied.
+     *
+     * @param output the output to write to
+     * @throws IOException if the output cannot be written
+     */
+    public void writeReferencesTo(ChannelDataOutput output) throws IOException {
+        boolean mapped = rowOffsets != null;
+        for (int segment = 0; mapped && segment < segments.length; segment++) {
+            mapped = sources[segment] == null || sourceOffsets[segment] >= 0;
+        }
+        if (rowOffsets != null && !mapped) {
+            copyText().writeReferencesTo(output);
+            return;
+        }
+        writeColumns(output);
+        output.writeInt(mapped ? 1 : 0);
+        if (mapped) {
+            output.writeInts(textColumns, textFieldCount);
+            output.writeInts(rowOffsets, size);
+            for (int segment = 0; segment < segments.length; segment++) {
+                output.writeLong(sources[segment] == null ? -1 : sourceOffsets[segment]);
+                output.writeInt(sources[segment] == null ? 0 : sources[segment].limit());
+            }
+        }
+    }
+
+    /**
+     * Reads a table written by {@link #writeTo}.
+     *
+     * @param input     the input to read from
+     * @param rowMapper the function creating the entity object of a row
+     * @param <T>       the type of the entity
+     * @return the table
+     * @throws IOException if the input cannot be read or is truncated
+     */
+    public static <T> FounderTable<T> readFrom(MappedDataInput input, RowMapper<T> rowMapper) throws IOException {
+        int size = input.readInt();
+        int textFieldCount = input.readInt();
+        int segmentCount = input.readInt();
+        long[] ids = input.readLongs(size);
+        long[] companyIds = input.readLongs(size);
+        double[] shares = input.readDoubles(size);
+        double[] sharePercents = input.readDoubles(size);
+        int[] textOffsets = input.readInts(size * textFieldCount);
+        int[] segmentFirstRows = input.readInts(segmentCount);
+        byte[][] segments = new byte[segmentCount][];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = input.readBytes(input.readInt());
+        }
+        return new FounderTable<>(size, textFieldCount, ids, companyIds, shares, sharePercents,
+                textOffsets, segments, segmentFirstRows, null, null, null, null, rowMapper);
+    }
+
+    /**
+     * Reads a table written by {@link #writeReferencesTo}, mapping the sources of its rows from the file they
+     * were mapped from when the table was written. The file must not have changed since.
+     *
+     * @param input        the input to read from
+     * @param rowMapper    the function creating the entity object of a row
+     * @param sourceMapper the function mapping a range of the file
+     * @param <T>          the type of the entity
+     * @return the table
+     * @throws IOException if the input cannot be read or is truncated, or a source cannot be mapped
+     */
+    public static <T> FounderTable<T> readFrom(MappedDataInput input, RowMapper<T> rowMapper,
+                                               SourceMapper sourceMapper) throws IOException {
+        FounderTable<T> table = readFrom(input, rowMapper);
+        if (input.readInt() == 0) {
+            return table;
+        }
+        int[] textColumns = input.readInts(table.textFieldCount);
+        int[] rowOffsets = input.readInts(table.size);
+        ByteBuffer[] sources = new ByteBuffer[table.segments.length];
+        long[] sourceOffsets = new long[table.segments.length];
+        for (int segment = 0; segment < sources.length; segment++) {
+            sourceOffsets[segment] = input.readLong();
+            int length = input.readInt();
+            sources[segment] = sourceOffsets[segment] < 0 ? null : sourceMapper.map(sourceOffsets[segment], length);
+        }
+        return new FounderTable<>(table.size, table.textFieldCount, table.ids, table.companyIds, table.shares,
+                table.sharePercents, table.textOffsets, table.segments, table.segmentFirstRows, sources,
+                sourceOffsets, rowOffsets, textColumns, rowMapper);
+    }
+
+    /**
+     * Returns the number of text fields of every row.
+     *
+     * @return the text field count
+     */
+    public int textFieldCount() {
+        return textFieldCount;
+    }
+
+    /**
+     * Copies the text of every row into a table without sources.
+     */
+    private FounderTable<T> copyText() {
+        Builder copy = builder(textFieldCount);
+        for (int row = 0; row < size; row++) {
+            copy.add(this, row);
+        }
+        return copy.build(rowMapper);
+    }
+
+    private void writeColumns(ChannelDataOutput output) throws IOException {
+        output.writeInt(size);
+        output.writeInt(textFieldCount);
+        output.writeInt(segments.length);
+        output.writeLongs(ids, size);
+        output.writeLongs(companyIds, size);
+        output.writeDoubles(shares, size);
+        output.writeDoubles(sharePercents, size);
+        output.writeInts(textOffsets, size * textFieldCount);
+        output.writeInts(segmentFirstRows, segments.length);
+        for (byte[] segment : segments) {
+            output.writeInt(segment.length);
+            output.writeBytes(segment, segment.length);
+        }
+    }
+
+    private static String sourceText(ByteBuffer source, int rowOffset, int column) {
+        int start = TabSeparatedBytes.fieldStart(source, rowOffset, column);
+        return start < 0 ? "" : TabSeparatedBytes.decode(source, start, TabSeparatedBytes.fieldEnd(source, start));
+    }
+
+    private int segment(int row) {
+        int segment = Arrays.binarySearch(segmentFirstRows, row);
+        if (segment < 0) {
+            return -segment - 2;
+        }
+        // Empty segments share their first row with the next one; take the last of them.
+        while (segment + 1 < segmentFirstRows.length && segmentFirstRows[segment + 1] == row) {
+            segment++;
+        }
+        return segment;
+    }
+
+    /**
+     * Creates the entity object of a row of a table.
+     *
+     * @param <T> the type of the entity
+     */
+    @FunctionalInterface
+    public interface RowMapper<T> {
+        T map(FounderTable<T> table, int row);
+    }
+
+    /**
+     * Maps a range of the file the sources of a table were mapped from.
+     */
+    @FunctionalInterface
+    public interface SourceMapper {
+        ByteBuffer map(long offset, int length) throws IOException;
+    }
+
+    /**
+     * Receives the blocks of rows of a table while it is being loaded, in file order and one block at a time.
+     *
+     * @param <T> the type of the entity
+     */
+    @FunctionalInterface
+    public interface BlockConsumer<T> {
+        /**
+         * Accepts a block of rows.
+         *
+         * @param block    the rows of the block
+         * @param firstRow the row of the whole table that the first row of the block becomes
+         */
+        void accept(FounderTable<T> block, int firstRow);
+    }
+
+    /**
+     * Accumulates rows in growable primitive arrays. A builder is not thread-safe; tables parsed in parallel
+     * are assembled from one builder per chunk with {@link #append(Builder)}. Rows referring to a source and rows
+     * with copied text may be mixed, as long as all sources have the same text columns.
+     */
+    public static final class Builder {
+        private final int textFieldCount;
+        private int size;
+        private long[] ids = new long[16];
+        private long[] companyIds = new long[16];
+        private double[] shares = new double[16];
+        private double[] sharePercents = new double[16];
+        private int[] textOffsets;
+
+        private final List<byte[]> segments = new ArrayList<>();
+        private final List<Integer> segmentFirstRows = new ArrayList<>();
+        private byte[] text = new byte[256];
+        private int textLength;
+
+        private final ByteBuffer source;
+        private final long sourceOffset;
+        private final List<ByteBuffer> sources = new ArrayList<>();
+        private final List<Long> sourceOffsets = new ArrayList<>();
+        private int[] textColumns;
+        private int[] rowOffsets;
+
+        private Builder(int textFieldCount, ByteBuffer source, long sourceOffset, int[] textColumns) {
+            this.textFieldCount = textFieldCount;
+            this.textOffsets = new int[16 * textFieldCount];
+            this.segmentFirstRows.add(0);
+            this.source = source;
+            this.sourceOffset = sourceOffset;
+            this.textColumns = textColumns;
+        }
+
+        /**
+         * Adds a row.
+         *
+         * @param id           the entity id
+         * @param companyId    the id of the company the entity owns a share of
+         * @param share        the nominal share
+         * @param sharePercent the share as a fraction of the company
+         * @param texts        the text fields, exactly as many as the table has
+         * @return this builder
+         */
+        public Builder add(long id, long companyId, double share, double sharePercent, String... texts) {
+            if (texts.length != textFieldCount) {
+                throw new IllegalArgumentException("Expected " + textFieldCount + " text fields, got " + texts.length);
+            }
+            byte[][] encoded = new byte[textFieldCount][];
+            long rowTextLength = 0;
+            for (int field = 0; field < textFieldCount; field++) {
+                encoded[field] = texts[field] == null ? new byte[0] : texts[field].getBytes(StandardCharsets.UTF_8);
+                rowTextLength += encoded[field].length;
+            }
+            if (textLength + rowTextLength > MAX_SEGMENT_SIZE) {
+                sealSegment();
+                segmentFirstRows.add(size);
+            }
+
+            ensureRowCapacity(size + 1);
+            ids[size] = id;
+            companyIds[size] = companyId;
+            shares[size] = share;
+            sharePercents[size] = sharePercent;
+            for (int field = 0; field < textFieldCount; field++) {
+                textOffsets[size * textFieldCount + field] = textLength;
+                appendText(encoded[field]);
+            }
+            if (rowOffsets != null) {
+                rowOffsets[size] = -1;
+            }
+            size++;
+            return this;
+        }
+
+        /**
+         * Adds a row whose text fields stay in the source of this builder.
+         *
+         * @param id           the entity id
+         * @param companyId    the id of the company the entity owns a share of
+         * @param share        the nominal share
+         * @param sharePercent the share as a fraction of the company
+         * @param rowOffset    the offset of the first byte of the row in the source
+         * @return this builder
+         * @throws IllegalStateException if the builder has no source
+         */
+        public Builder addSourceRow(long id, long companyId, double share, double sharePercent, int rowOffset) {
+            if (source == null) {
+                throw new IllegalStateException("The builder has no source");
+            }
+            if (rowOffsets == null) {
+                rowOffsets = newRowOffsets(ids.length, size);
+            }
+            ensureRowCapacity(size + 1);
+            ids[size] = id;
+            companyIds[size] = companyId;
+            shares[size] = share;
+            sharePercents[size] = sharePercent;
+            // Zero-length text fields keep the offsets of the copied rows around it in order.
+            Arrays.fill(textOffsets, size * textFieldCount, (size + 1) * textFieldCount, textLength);
+            rowOffsets[size] = rowOffset;
+            size++;
+            return this;
+        }
+
+        /**
+         * Appends text to a text field of the last row, copying the text fields of the row if they are in the
+         * source. Only a row added to this builder after its last {@link #append(Builder)} can be changed.
+         *
+         * @param field  the index of the text field
+         * @param suffix the text to append
+         * @return this builder
+         * @throws IllegalStateException if there is no such row
+         */
+        public Builder appendToText(int field, String suffix) {
+            int row = size - 1;
+            if (row < 0 || segments.size() == segmentFirstRows.size() || row < segmentFirstRows.get(segmentFirstRows.size() - 1)) {
+                throw new IllegalStateException("The last row cannot be changed");
+            }
+            String[] texts = new String[textFieldCount];
+            for (int i = 0; i < textFieldCount; i++) {
+                texts[i] = rowText(row, i);
+            }
+            texts[field] += suffix;
+            // The last row of the open segment owns the end of the text buffer.
+            textLength = textOffsets[row * textFieldCount];
+            size--;
+            return add(ids[row], companyIds[row], shares[row], sharePercents[row], texts);
+        }
+
+        /**
+         * Adds a copy of a row of another table with the same text fields.
+         *
+         * @param table the table to copy from
+         * @param row   the row to copy
+         * @return this builder
+         */
+        public Builder add(FounderTable<?> table, int row) {
+            if (table.textFieldCount != textFieldCount) {
+                throw new IllegalArgumentException("Tables have different text field counts");
+            }
+            String[] texts = new String[textFieldCount];
+            for (int field = 0; field < textFieldCount; field++) {
+                texts[field] = table.text(row, field);
+            }
+            return add(table.id(row), table.companyId(row), table.share(row), table.sharePercent(row), texts);
+        }
+
+        /**
+         * Appends all rows of another builder after the rows of this one. The other builder must not be used
+         * afterwards.
+         *
+         * @param other the builder to append
+         * @return this builder
+         */
+        public Builder append(Builder other) {
+            if (other.textFieldCount != textFieldCount) {
+                throw new IllegalArgumentException("Tables have different text field counts");
+            }
+            if (other.size == 0) {
+                return this;
+            }
+            if (other.rowOffsets != null) {
+                if (textColumns == null) {
+                    textColumns = other.textColumns;
+                } else if (!Arrays.equals(textColumns, other.textColumns)) {
+                    throw new IllegalArgumentException("Tables have different text columns");
+                }
+                if (rowOffsets == null) {
+                    rowOffsets = newRowOffsets(ids.length, size);
+                }
+            }
+            sealSegment();
+            other.sealSegment();
+            ensureRowCapacity(size + other.size);
+            if (rowOffsets != null) {
+                if (other.rowOffsets != null) {
+                    System.arraycopy(other.rowOffsets, 0, rowOffsets, size, other.size);
+                } else {
+                    Arrays.fill(rowOffsets, size, size + other.size, -1);
+                }
+            }
+            System.arraycopy(other.ids, 0, ids, size, other.size);
+            System.arraycopy(other.companyIds, 0, companyIds, size, other.size);
+            System.arraycopy(other.shares, 0, shares, size, other.size);
+            System.arraycopy(other.sharePercents, 0, sharePercents, size, other.size);
+            System.arraycopy(other.textOffsets, 0, textOffsets, size * textFieldCount, other.size * textFieldCount);
+            for (int i = 0; i < other.segments.size(); i++) {
+                segments.add(other.segments.get(i));
+                sources.add(other.sources.get(i));
+                sourceOffsets.add(other.sourceOffsets.get(i));
+                segmentFirstRows.add(size + other.segmentFirstRows.get(i));
+            }
+            size += other.size;
+            // Continue in a fresh segment after the appended ones.
+            segmentFirstRows.add(size);
+            text = new byte[256];
+            textLength = 0;
+            return this;
+        }
+
+        /**
+         * Returns the number of rows added so far.
+         *
+         * @return the row count
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Freezes the rows into a table.
+         *
+         * @param rowMapper the function creating the entity object of a row
+         * @param <T>       the type of the entity
+         * @return the table
+         */
+        public <T> FounderTable<T> build(RowMapper<T> rowMapper) {
+            return new FounderTable<>(this, rowMapper);
+        }
+
+        /**
+         * Moves the current text buffer into the list of segments. Every entry of {@code segmentFirstRows} has
+         * exactly one segment once sealed.
+         */
+        private void sealSegment() {
+            if (segments.size() < segmentFirstRows.size()) {
+                segments.add(Arrays.copyOf(text, textLength));
+                sources.add(source);
+                sourceOffsets.add(sourceOffset);
+                text = new byte[256];
+                textLength = 0;
+            }
+        }
+
+        /**
+         * Decodes a text field of a row of the open segment.
+         */
+        private String rowText(int row, int field) {
+            if (rowOffsets != null && rowOffsets[row] >= 0) {
+                return sourceText(source, rowOffsets[row], textColumns[field]);
+            }
+            int index = row * textFieldCount + field;
+            int end = index + 1 < size * textFieldCount ? textOffsets[index + 1] : textLength;
+            return new String(text, textOffsets[index], end - textOffsets[index], StandardCharsets.UTF_8);
+        }
+
+        private static int[] newRowOffsets(int capacity, int copiedRows) {
+            int[] offsets = new int[capacity];
+            Arrays.fill(offsets, 0, copiedRows, -1);
+            return offsets;
+        }
+
+        private void appendText(byte[] bytes) {
+            if (textLength + bytes.length > text.length) {
+                text = Arrays.copyOf(text, (int) Math.min(MAX_SEGMENT_SIZE, Math.max((long) text.length << 1, (long) textLength + bytes.length)));
+            }
+            System.arraycopy(bytes, 0, text, textLength, bytes.length);
+            textLength += bytes.length;
+        }
+
+        private void ensureRowCapacity(int capacity) {
+            if (capacity > ids.length) {
+                int newCapacity = Math.max(capacity, ids.length << 1);
+                ids = Arrays.copyOf(ids, newCapacity);
+                companyIds = Arrays.copyOf(companyIds, newCapacity);
+                shares = Arrays.copyOf(shares, newCapacity);
+                sharePercents = Arrays.copyOf(sharePercents, newCapacity);
+                textOffsets = Arrays.copyOf(textOffsets, newCapacity * textFieldCount);
+                if (rowOffsets != null) {
+                    rowOffsets = Arrays.copyOf(rowOffsets, newCapacity);
+                }
+            }
+        }
+    }
+}
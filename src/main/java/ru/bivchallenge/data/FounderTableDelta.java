@@ -0,0 +1,40 @@
+package ru.bivchallenge.data;
+
+/**
+ * The result of applying a delta file to a {@link FounderTable}: the updated table, the ids of the companies
+ * whose founder rows were added, removed or changed, and where the rows of the previous table went.
+ * <p>
+ * Rows that are kept stay in their order at the start of the updated table and added rows follow them, so
+ * anything indexed by the rows of the previous table can be carried over with {@link #row(int)} and
+ * {@link #firstAddedRow()} instead of being rebuilt.
+ *
+ * @param table             the table with the delta applied
+ * @param changedCompanyIds the distinct company ids of all delta rows
+ * @param rowMapping        the row of the updated table of every row of the previous table, {@code -1} for
+ *                          removed rows, or {@code null} if the table is unchanged
+ * @param firstAddedRow     the first row of the updated table that was added by the delta
+ * @param <T>               the type of the entity materialized from a row
+ */
+public record FounderTableDelta<T>(FounderTable<T> table, long[] changedCompanyIds, int[] rowMapping, int firstAddedRow) {
+
+    /**
+     * Creates the result of an empty delta.
+     *
+     * @param table the unchanged table
+     * @param <T>   the type of the entity materialized from a row
+     * @return the delta leaving every row in place
+     */
+    public static <T> FounderTableDelta<T> unchanged(FounderTable<T> table) {
+        return new FounderTableDelta<>(table, new long[0], null, table.size());
+    }
+
+    /**
+     * Returns the row of the updated table that a row of the previous table became.
+     *
+     * @param previousRow a row of the previous table
+     * @return the row of the updated table, or {@code -1} if the row was removed
+     */
+    public int row(int previousRow) {
+        return rowMapping == null ? previousRow : rowMapping[previousRow];
+    }
+}
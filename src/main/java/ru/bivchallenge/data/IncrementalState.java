@@ -0,0 +1,109 @@
+package ru.bivchallenge.data;
+
+import ru.bivchallenge.dto.Benefeciar;
+import ru.bivchallenge.dto.Company;
+import ru.bivchallenge.dto.LegalEntity;
+import ru.bivchallenge.dto.NaturalEntity;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * The state an incremental run starts from: the founder tables as of the previous run, their
+ * {@link CompanyDependencyIndex} and the beneficiaries computed for every head company in it.
+ * <p>
+ * Beneficiaries are kept as natural entity ids and percents rather than entity objects, so the state stays
+ * compact; the entities are restored from the natural founders table when the output is written.
+ *
+ * @param legalEntityTable   the legal founders with all deltas up to the previous run applied
+ * @param naturalEntityTable the natural founders with all deltas up to the previous run applied
+ * @param dependencyIndex    the reverse dependency index of both tables
+ * @param beneficiaries      the beneficiaries of every head company computed so far, keyed by company id;
+ *                           companies without beneficiaries have an empty entry
+ */
+public record IncrementalState(FounderTable<LegalEntity> legalEntityTable,
+                               FounderTable<NaturalEntity> naturalEntityTable,
+                               CompanyDependencyIndex dependencyIndex,
+                               Map<Long, Beneficiaries> beneficiaries) {
+
+    /**
+     * The beneficiaries of one head company, sorted by natural entity id unless extracted in the order of the
+     * registry.
+     *
+     * @param naturalEntityIds the ids of the beneficiaries
+     * @param percents         the ownership percentages of the beneficiaries
+     */
+    public record Beneficiaries(long[] naturalEntityIds, double[] percents) {
+
+        /**
+         * Extracts the beneficiaries of a registry.
+         *
+         * @param registry the registry of a head company
+         * @return the beneficiaries sorted by natural entity id
+         */
+        public static Beneficiaries of(BenefeciarRegistry registry) {
+            Benefeciar[] sorted = registry.getBeneficiaries().toArray(new Benefeciar[0]);
+            Arrays.sort(sorted, Comparator.comparingLong(benefeciar -> benefeciar.naturalEntity().id()));
+            long[] ids = new long[sorted.length];
+            double[] percents = new double[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                ids[i] = sorted[i].naturalEntity().id();
+                percents[i] = sorted[i].percent();
+            }
+            return new Beneficiaries(ids, percents);
+        }
+
+        /**
+         * Extracts the beneficiaries of a registry in the order of the registry, so that the restored registry is
+         * written exactly like the one computed.
+         *
+         * @param registry the registry of a head company
+         * @return the beneficiaries in the order of the registry
+         */
+        public static Beneficiaries inRegistryOrder(BenefeciarRegistry registry) {
+            long[] ids = new long[registry.getBeneficiaries().size()];
+            double[] percents = new double[ids.length];
+            int i = 0;
+            for (Benefeciar benefeciar : registry.getBeneficiaries()) {
+                ids[i] = benefeciar.naturalEntity().id();
+                percents[i++] = benefeciar.percent();
+            }
+            return new Beneficiaries(ids, percents);
+        }
+
+        /**
+         * Restores the registry of a head company.
+         *
+         * @param company            the head company
+         * @param naturalEntityTable the table the natural entities are restored from
+         * @return the registry; beneficiaries missing from the table are left out
+         */
+        public BenefeciarRegistry toRegistry(Company company, FounderTable<NaturalEntity> naturalEntityTable) {
+            BenefeciarRegistry registry = new BenefeciarRegistry(company);
+            for (int i = 0; i < naturalEntityIds.length; i++) {
+                int row = naturalEntityTable.row(naturalEntityIds[i]);
+                if (row >= 0) {
+                    registry.getBeneficiaries().add(new Benefeciar(naturalEntityTable.entity(row), percents[i]));
+                }
+            }
+            return registry;
+        }
+
+        public boolean isEmpty() {
+            return naturalEntityIds.length == 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Beneficiaries that)) return false;
+            return Arrays.equals(naturalEntityIds, that.naturalEntityIds) && Arrays.equals(percents, that.percents);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(naturalEntityIds) + Arrays.hashCode(percents);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package ru.bivchallenge.data;
+
+/**
+ * One ownership path from a natural person to a head company.
+ *
+ * @param companyIds the ids of the companies along the path, from the company the person owns a share of
+ *                   to the head company
+ * @param share      the product of the shares along the path
+ */
+public record OwnershipChain(long[] companyIds, double share) {
+}
@@ -0,0 +1,356 @@
+package ru.bivchallenge.data;
+
+import ru.bivchallenge.dto.*;
+import ru.bivchallenge.graph.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Manages one ownership graph shared by all head companies of the registry.
+ * <p>
+ * The graph is built directly from the columnar {@link FounderTable}s of the founder tables, either from the whole
+ * tables or block by block while they are loaded (see {@link Builder}).
+ * Every company is a single {@link VertexType#LEGAL} vertex keyed by its id, every legal founder is connected to
+ * the company it owns a share of, and every natural founder to its company. Nothing is copied per head company:
+ * the beneficiaries of a head are computed by a traversal of the part of the shared graph that can reach it,
+ * so memory grows with the number of distinct entities and edges rather than with heads &times; upstream size.
+ * <p>
+ * Legal founders are followed transitively up to the natural persons behind them, as in the per-company graphs
+ * populated by {@link ru.bivchallenge.processor.GraphPopulationProcessor}, so both modes report the same
+ * beneficiaries; the shared graph only stores every company once.
+ * <p>
+ * The graph is frozen on construction, with the share percents of the tables it is built from as its weights. The
+ * tables are repaired beforehand by {@link ru.bivchallenge.processor.FounderShareRepairProcessor}, as the rows of
+ * the per-company graphs are; afterwards the graph is only read, so any number of threads can compute beneficiaries
+ * concurrently, each with its own {@link OwnershipEngine}.
+ */
+public class SharedGraphManager {
+    private final FounderTable<LegalEntity> legalEntityTable;
+    private final FounderTable<NaturalEntity> naturalEntityTable;
+    private final OwnershipGraph graph;
+    private final int[] vertexRows;
+
+    /**
+     * Builds the shared graph from the columnar founder tables, whose share percents become its weights.
+     *
+     * @param legalEntityTable   the rows of the legal founders
+     * @param naturalEntityTable the rows of the natural founders
+     */
+    public SharedGraphManager(FounderTable<LegalEntity> legalEntityTable, FounderTable<NaturalEntity> naturalEntityTable) {
+        this(legalEntityTable, naturalEntityTable, new Builder(legalEntityTable.size(), naturalEntityTable.size())
+                .addLegalEntities(legalEntityTable, 0)
+                .completeLegalEntities()
+                .addNaturalEntities(naturalEntityTable, 0));
+    }
+
+    /**
+     * Builds the part of the shared graph formed by some of the founder rows, such as the rows upstream of some head
+     * companies (see {@link CompanyDependencyIndex#upstreamRows}). The vertices refer to the rows of the whole tables.
+     *
+     * @param legalEntityTable   the rows of the legal founders
+     * @param naturalEntityTable the rows of the natural founders
+     * @param upstreamRows       the rows of both tables to build the graph from, each in ascending order
+     */
+    public SharedGraphManager(FounderTable<LegalEntity> legalEntityTable, FounderTable<NaturalEntity> naturalEntityTable,
+                              CompanyDependencyIndex.UpstreamRows upstreamRows) {
+        this(legalEntityTable, naturalEntityTable,
+                new Builder(upstreamRows.legalRows().length, upstreamRows.naturalRows().length)
+                        .addLegalRows(legalEntityTable, upstreamRows.legalRows())
+                        .completeLegalEntities()
+                        .addNaturalRows(naturalEntityTable, upstreamRows.naturalRows()));
+    }
+
+    private SharedGraphManager(FounderTable<LegalEntity> legalEntityTable, FounderTable<NaturalEntity> naturalEntityTable,
+                               Builder builder) {
+        this.legalEntityTable = legalEntityTable;
+        this.naturalEntityTable = naturalEntityTable;
+        this.graph = builder.graphBuilder.build();
+        this.vertexRows = Arrays.copyOf(builder.rows, graph.vertexCount());
+        if (builder.rows.length < vertexRows.length) {
+            Arrays.fill(vertexRows, builder.rows.length, vertexRows.length, -1);
+        }
+        for (int addedEdge = 0; addedEdge < builder.addedEdgeCount; addedEdge++) {
+            int edge = builder.graphBuilder.builtEdge(addedEdge);
+            if (edge >= 0) {
+                int row = builder.edgeRows[addedEdge];
+                graph.setWeight(edge, row >= 0 ? legalEntityTable.sharePercent(row) : naturalEntityTable.sharePercent(-1 - row));
+            }
+        }
+    }
+
+    /**
+     * Returns the shared graph.
+     *
+     * @return the graph of the whole registry
+     */
+    public OwnershipGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Calculates and returns the beneficiaries (natural entities with more than 25% ownership) of a head company.
+     * Entity objects are only created for the beneficiaries.
+     *
+     * @param headCompany     the head company
+     * @param ownershipEngine the engine computing the effective share of every natural entity
+     * @return a registry of beneficiaries, empty if the company has no founders
+     */
+    public BenefeciarRegistry getBeneficiaries(Company headCompany, OwnershipEngine ownershipEngine) {
+        return getBeneficiaries(headCompany, ownershipEngine, OwnershipEngine.BENEFICIARY_THRESHOLD);
+    }
+
+    /**
+     * Calculates and returns the natural entities whose ownership of a head company exceeds the given threshold.
+     * Entity objects are only created for the beneficiaries.
+     *
+     * @param headCompany     the head company
+     * @param ownershipEngine the engine computing the effective share of every natural entity
+     * @param threshold       the share a natural entity must exceed to be a beneficiary
+     * @return a registry of beneficiaries, empty if the company has no founders
+     */
+    public BenefeciarRegistry getBeneficiaries(Company headCompany, OwnershipEngine ownershipEngine, double threshold) {
+        BenefeciarRegistry beneficiaries = new BenefeciarRegistry(headCompany);
+        int headVertex = graph.vertex(VertexType.LEGAL, headCompany.id());
+        if (headVertex < 0) {
+            return beneficiaries;
+        }
+
+        ownershipEngine.compute(graph, headVertex, threshold, (vertex, totalOwnership) -> {
+            if (totalOwnership > threshold) {
+                beneficiaries.getBeneficiaries().add(
+                        new Benefeciar(naturalEntityTable.entity(vertexRows[vertex]), totalOwnership)
+                );
+            }
+        });
+
+        return beneficiaries;
+    }
+
+    /**
+     * Calculates the beneficiaries of a head company like {@link #getBeneficiaries(Company, OwnershipEngine, double)},
+     * creating the company object from its row only if it has any beneficiaries.
+     *
+     * @param companyTable    the table of the head companies
+     * @param companyRow      the row of the head company
+     * @param ownershipEngine the engine computing the effective share of every natural entity
+     * @param threshold       the share a natural entity must exceed to be a beneficiary
+     * @return a registry of beneficiaries, or {@code null} if the company has none
+     */
+    public BenefeciarRegistry getBeneficiaries(FounderTable<Company> companyTable, int companyRow,
+                                               OwnershipEngine ownershipEngine, double threshold) {
+        int headVertex = graph.vertex(VertexType.LEGAL, companyTable.id(companyRow));
+        if (headVertex < 0) {
+            return null;
+        }
+
+        List<Benefeciar> found = new ArrayList<>();
+        ownershipEngine.compute(graph, headVertex, threshold, (vertex, totalOwnership) -> {
+            if (totalOwnership > threshold) {
+                found.add(new Benefeciar(naturalEntityTable.entity(vertexRows[vertex]), totalOwnership));
+            }
+        });
+        if (found.isEmpty()) {
+            return null;
+        }
+
+        BenefeciarRegistry beneficiaries = new BenefeciarRegistry(companyTable.entity(companyRow));
+        beneficiaries.getBeneficiaries().addAll(found);
+        return beneficiaries;
+    }
+
+    /**
+     * Finds the ownership paths through which a natural person owns a share of a head company, in the order of
+     * decreasing share. At most {@code limit} paths are searched, so the result is partial for persons with more.
+     *
+     * @param headCompanyId   the id of the head company
+     * @param naturalEntityId the id of the natural person
+     * @param limit           the maximum number of paths
+     * @return the paths, empty if either is not in the graph or the person does not reach the head
+     */
+    public List<OwnershipChain> getOwnershipChains(long headCompanyId, long naturalEntityId, int limit) {
+        int headVertex = graph.vertex(VertexType.LEGAL, headCompanyId);
+        int naturalVertex = graph.vertex(VertexType.NATURAL, naturalEntityId);
+        if (headVertex < 0 || naturalVertex < 0) {
+            return List.of();
+        }
+        List<OwnershipChain> chains = new ArrayList<>();
+        PathEnumerationOwnershipEngine.enumeratePaths(graph, naturalVertex, headVertex, limit, (path, length, share) -> {
+            long[] companyIds = new long[length - 1];
+            for (int i = 1; i < length; i++) {
+                companyIds[i - 1] = graph.id(path[i]);
+            }
+            chains.add(new OwnershipChain(companyIds, share));
+        });
+        chains.sort(Comparator.comparingDouble(OwnershipChain::share).reversed());
+        return chains;
+    }
+
+    /**
+     * Adds the founder rows to the shared graph while the founder tables are still being loaded, e.g. as
+     * {@link FounderTable.BlockConsumer}s of the providers.
+     * <p>
+     * Blocks of legal founders are added as they arrive. Blocks of natural founders that arrive before
+     * {@link #completeLegalEntities()} wait until then, so the vertices and edges are numbered exactly as in
+     * a graph built from the whole tables. Each kind of block must arrive in file order; the methods may be called
+     * from different threads. The weights are only taken from the tables the graph is frozen with, so the blocks
+     * may be added before the tables are repaired.
+     */
+    public static final class Builder {
+        private final OwnershipGraphBuilder graphBuilder;
+        private final List<FounderTable<NaturalEntity>> pendingNaturalBlocks = new ArrayList<>();
+        private final List<Integer> pendingNaturalFirstRows = new ArrayList<>();
+        private int[] rows;
+        private int[] edgeRows;
+        private int addedEdgeCount;
+        private boolean legalEntitiesComplete;
+
+        /**
+         * Creates a builder for founder tables of unknown size.
+         */
+        public Builder() {
+            this(0, 0);
+        }
+
+        private Builder(int legalRowCount, int naturalRowCount) {
+            int edgeCount = legalRowCount + naturalRowCount;
+            this.graphBuilder = edgeCount == 0 ? new OwnershipGraphBuilder()
+                    : new OwnershipGraphBuilder(edgeCount + legalRowCount, edgeCount);
+            this.rows = new int[Math.max(16, edgeCount + legalRowCount)];
+            Arrays.fill(rows, -1);
+            this.edgeRows = new int[Math.max(16, edgeCount)];
+        }
+
+        /**
+         * Adds a block of legal founder rows.
+         *
+         * @param block    the rows
+         * @param firstRow the row of the legal founder table that the first row of the block is
+         * @return this builder
+         * @throws IllegalStateException if the legal founders are already complete
+         */
+        public synchronized Builder addLegalEntities(FounderTable<LegalEntity> block, int firstRow) {
+            if (legalEntitiesComplete) {
+                throw new IllegalStateException("Legal founders are already complete");
+            }
+            for (int row = 0; row < block.size(); row++) {
+                addLegalRow(block, row, firstRow + row);
+            }
+            return this;
+        }
+
+        /**
+         * Marks the legal founders as complete and adds the blocks of natural founders that were waiting for them.
+         *
+         * @return this builder
+         */
+        public synchronized Builder completeLegalEntities() {
+            if (!legalEntitiesComplete) {
+                legalEntitiesComplete = true;
+                for (int i = 0; i < pendingNaturalBlocks.size(); i++) {
+                    addNaturalBlock(pendingNaturalBlocks.get(i), pendingNaturalFirstRows.get(i));
+                }
+                pendingNaturalBlocks.clear();
+                pendingNaturalFirstRows.clear();
+            }
+            return this;
+        }
+
+        /**
+         * Adds a block of natural founder rows, or keeps it until the legal founders are complete.
+         *
+         * @param block    the rows
+         * @param firstRow the row of the natural founder table that the first row of the block is
+         * @return this builder
+         */
+        public synchronized Builder addNaturalEntities(FounderTable<NaturalEntity> block, int firstRow) {
+            if (legalEntitiesComplete) {
+                addNaturalBlock(block, firstRow);
+            } else {
+                pendingNaturalBlocks.add(block);
+                pendingNaturalFirstRows.add(firstRow);
+            }
+            return this;
+        }
+
+        /**
+         * Freezes the graph. The tables must hold exactly the rows of the added blocks; their share percents
+         * become the weights of the graph.
+         *
+         * @param legalEntityTable   the rows of the legal founders
+         * @param naturalEntityTable the rows of the natural founders
+         * @return the shared graph manager
+         */
+        public synchronized SharedGraphManager build(FounderTable<LegalEntity> legalEntityTable,
+                                                     FounderTable<NaturalEntity> naturalEntityTable) {
+            completeLegalEntities();
+            return new SharedGraphManager(legalEntityTable, naturalEntityTable, this);
+        }
+
+        private Builder addLegalRows(FounderTable<LegalEntity> table, int[] tableRows) {
+            for (int row : tableRows) {
+                addLegalRow(table, row, row);
+            }
+            return this;
+        }
+
+        private Builder addNaturalRows(FounderTable<NaturalEntity> table, int[] tableRows) {
+            for (int row : tableRows) {
+                addNaturalRow(table, row, row);
+            }
+            return this;
+        }
+
+        private void addNaturalBlock(FounderTable<NaturalEntity> block, int firstRow) {
+            for (int row = 0; row < block.size(); row++) {
+                addNaturalRow(block, row, firstRow + row);
+            }
+        }
+
+        private void addLegalRow(FounderTable<LegalEntity> block, int row, int tableRow) {
+            int legalVertex = graphBuilder.addVertex(VertexType.LEGAL, block.id(row));
+            int companyVertex = graphBuilder.addVertex(VertexType.LEGAL, block.companyId(row));
+            recordEdge(graphBuilder.addEdge(legalVertex, companyVertex, 0.0), tableRow);
+            rows = recordRow(rows, legalVertex, tableRow);
+        }
+
+        private void addNaturalRow(FounderTable<NaturalEntity> block, int row, int tableRow) {
+            int naturalVertex = graphBuilder.addVertex(VertexType.NATURAL, block.id(row));
+            int companyVertex = graphBuilder.addVertex(VertexType.LEGAL, block.companyId(row));
+            recordEdge(graphBuilder.addEdge(naturalVertex, companyVertex, 0.0), -1 - tableRow);
+            rows = recordRow(rows, naturalVertex, tableRow);
+        }
+
+        /**
+         * Remembers the founder row of an added edge, a legal row as is and a natural row {@code r} as
+         * {@code -1 - r}, to take the weight of the edge from when the graph is frozen.
+         */
+        private void recordEdge(int edge, int tableRow) {
+            if (edge < 0) {
+                return;
+            }
+            if (edge >= edgeRows.length) {
+                edgeRows = Arrays.copyOf(edgeRows, Math.max(edge + 1, edgeRows.length << 1));
+            }
+            edgeRows[edge] = tableRow;
+            addedEdgeCount = edge + 1;
+        }
+
+        /**
+         * Remembers the first founder row of a vertex; further rows with the same id only contribute edges.
+         */
+        private static int[] recordRow(int[] rows, int vertex, int row) {
+            if (vertex >= rows.length) {
+                int length = rows.length;
+                rows = Arrays.copyOf(rows, Math.max(vertex + 1, length << 1));
+                Arrays.fill(rows, length, rows.length, -1);
+            }
+            if (rows[vertex] < 0) {
+                rows[vertex] = row;
+            }
+            return rows;
+        }
+    }
+}
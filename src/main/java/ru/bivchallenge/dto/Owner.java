@@ -29,4 +29,11 @@ public interface Owner {
      * @return the ownership share percentage
      */
     double getSharePercent();
+
+    /**
+     * Sets the ownership share as a percentage of the total ownership, e.g. once a missing share is repaired.
+     *
+     * @param sharePercent the ownership share percentage
+     */
+    void setSharePercent(double sharePercent);
 }
@@ -0,0 +1,44 @@
+package ru.bivchallenge.executor;
+
+import ru.bivchallenge.config.TableConfig;
+import ru.bivchallenge.data.BenefeciarRegistry;
+import ru.bivchallenge.metrics.RunMetrics;
+import ru.bivchallenge.persistence.BeneficiaryIndexBuilder;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Collects the non-empty beneficiary registries of a run into a {@link BeneficiaryIndexBuilder} and writes the
+ * inverted index from natural person to owned companies once all companies are computed, timed as the
+ * {@code index} stage.
+ */
+final class BeneficiaryIndexPipeline implements Pipeline {
+    private final BeneficiaryIndexBuilder beneficiaryIndex = new BeneficiaryIndexBuilder();
+
+    private BeneficiaryIndexPipeline() {
+    }
+
+    /**
+     * Opens the index of the run, or returns {@code null} if it is disabled.
+     */
+    static BeneficiaryIndexPipeline open(TableConfig tableConfig) {
+        return tableConfig.isBeneficiaryIndexEnabled() ? new BeneficiaryIndexPipeline() : null;
+    }
+
+    /**
+     * Adds a computed registry to the index; called by the computing workers concurrently.
+     */
+    void accept(BenefeciarRegistry registry) {
+        beneficiaryIndex.accept(registry);
+    }
+
+    @Override
+    public void run(PipelineContext context) throws ExecutionException, InterruptedException {
+        try (RunMetrics.Stage ignored = context.metrics().stage("index")) {
+            context.pool().submit(() -> {
+                beneficiaryIndex.write(context.config().getTableConfig().getBeneficiaryIndexPath());
+                return null;
+            }).get();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package ru.bivchallenge.executor;
+
+import ru.bivchallenge.config.IncrementalConfig;
+import ru.bivchallenge.data.BenefeciarRegistry;
+import ru.bivchallenge.data.CompanyDependencyIndex;
+import ru.bivchallenge.data.FounderTable;
+import ru.bivchallenge.data.FounderTableDelta;
+import ru.bivchallenge.data.IncrementalState;
+import ru.bivchallenge.data.SharedGraphManager;
+import ru.bivchallenge.dto.Company;
+import ru.bivchallenge.dto.LegalEntity;
+import ru.bivchallenge.dto.NaturalEntity;
+import ru.bivchallenge.metrics.ProgressReporter;
+import ru.bivchallenge.metrics.RunMetrics;
+import ru.bivchallenge.persistence.DataDispatcher;
+import ru.bivchallenge.persistence.FounderDataProvider;
+import ru.bivchallenge.persistence.IncrementalStateStore;
+import ru.bivchallenge.persistence.TableDataProvider;
+import ru.bivchallenge.processor.FounderShareRepairProcessor;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.LongToIntFunction;
+import java.util.stream.LongStream;
+
+/**
+ * Computes the beneficiaries incrementally. The founder tables are taken from the {@link IncrementalState} of the
+ * previous run and the configured delta files are applied to them. Only the head companies downstream of a changed
+ * founder row and head companies new to the registry are computed, on a shared graph of the founder rows upstream
+ * of them; both are found with the {@link CompanyDependencyIndex} kept in the state, which the deltas update rather
+ * than rebuild. The beneficiaries of all other heads are carried over from the state. The full beneficiaries table
+ * is dispatched as usual, together with the companies whose beneficiaries changed, including the companies removed
+ * from the company table that had beneficiaries, and the state is replaced for the next run, timed as the
+ * {@code state} stage.
+ *
+ * <p>Only the computation is incremental: the company table is read and the founder tables, the dependency index
+ * and the beneficiaries of every head are loaded and stored as a whole, and the full beneficiaries table is written,
+ * so every run still costs time linear in the size of the registry, however small the delta.</p>
+ *
+ * <p>Without a previous state every head company is computed once. The incremental mode always uses the shared
+ * graph, since a delta row can affect heads far downstream of its company.</p>
+ */
+final class IncrementalPipeline extends SharedGraphPipeline {
+    private static final System.Logger LOGGER = System.getLogger(IncrementalPipeline.class.getName());
+
+    private final DataDispatcher<Company> changedCompanyDataDispatcher;
+    private final IncrementalStateStore incrementalStateStore;
+
+    IncrementalPipeline(FounderDataProvider<LegalEntity> legalEntityDataProvider,
+                        FounderDataProvider<NaturalEntity> naturalEntityDataProvider,
+                        TableDataProvider<Company> companyDataProvider,
+                        DataDispatcher<Company> changedCompanyDataDispatcher,
+                        IncrementalStateStore incrementalStateStore) {
+        super(legalEntityDataProvider, naturalEntityDataProvider, companyDataProvider);
+        this.changedCompanyDataDispatcher = changedCompanyDataDispatcher;
+        this.incrementalStateStore = incrementalStateStore;
+    }
+
+    @Override
+    public void run(PipelineContext context) throws ExecutionException, InterruptedException {
+        RunMetrics runMetrics = context.metrics();
+        CompletableFuture<Map<Long, Company>> companyDataFuture = CompletableFuture.supplyAsync(companyDataProvider::get, context.pool());
+        IncrementalConfig incrementalConfig = context.config().getIncrementalConfig();
+
+        Map<Long, Company> companyMap;
+        FounderTable<LegalEntity> legalEntityTable;
+        FounderTable<NaturalEntity> naturalEntityTable;
+        CompanyDependencyIndex dependencyIndex;
+        Map<Long, IncrementalState.Beneficiaries> previousBeneficiaries;
+        long[] changedCompanyIds;
+        try (RunMetrics.Stage ignored = runMetrics.stage("load"); ProgressReporter ignoredProgress = context.loadProgress()) {
+            Optional<IncrementalState> previousState = incrementalStateStore.load();
+            if (previousState.isPresent()) {
+                CompletableFuture<FounderTableDelta<LegalEntity>> legalEntityDeltaFuture = CompletableFuture.supplyAsync(() -> legalEntityDataProvider
+                        .applyDelta(previousState.get().legalEntityTable(), incrementalConfig.getFounderLegalDeltaPath()), context.pool());
+                CompletableFuture<FounderTableDelta<NaturalEntity>> naturalEntityDeltaFuture = CompletableFuture.supplyAsync(() -> naturalEntityDataProvider
+                        .applyDelta(previousState.get().naturalEntityTable(), incrementalConfig.getFounderNaturalDeltaPath()), context.pool());
+                FounderTableDelta<LegalEntity> legalEntityDelta = legalEntityDeltaFuture.get();
+                FounderTableDelta<NaturalEntity> naturalEntityDelta = naturalEntityDeltaFuture.get();
+
+                legalEntityTable = legalEntityDelta.table();
+                naturalEntityTable = naturalEntityDelta.table();
+                dependencyIndex = previousState.get().dependencyIndex().update(legalEntityDelta, naturalEntityDelta);
+                previousBeneficiaries = previousState.get().beneficiaries();
+                changedCompanyIds = LongStream.concat(
+                        Arrays.stream(legalEntityDelta.changedCompanyIds()),
+                        Arrays.stream(naturalEntityDelta.changedCompanyIds())
+                ).toArray();
+                LOGGER.log(System.Logger.Level.INFO, "Delta changed " + legalEntityDelta.changedCompanyIds().length + " + "
+                        + naturalEntityDelta.changedCompanyIds().length + " companies");
+            } else {
+                LOGGER.log(System.Logger.Level.INFO, "No previous state at " + incrementalConfig.getStatePath() + ", computing all companies");
+                CompletableFuture<FounderTable<LegalEntity>> legalEntityTableFuture = CompletableFuture.supplyAsync(legalEntityDataProvider::getTable, context.pool());
+                CompletableFuture<FounderTable<NaturalEntity>> naturalEntityTableFuture = CompletableFuture.supplyAsync(naturalEntityDataProvider::getTable, context.pool());
+                legalEntityTable = legalEntityTableFuture.get();
+                naturalEntityTable = naturalEntityTableFuture.get();
+                dependencyIndex = CompanyDependencyIndex.of(legalEntityTable, naturalEntityTable);
+                previousBeneficiaries = Map.of();
+                changedCompanyIds = new long[0];
+            }
+            companyMap = companyDataFuture.get();
+        }
+
+        // Only the heads downstream of the delta and the heads new to the registry are computed, on a graph of
+        // the founder rows upstream of them; every other head keeps its beneficiaries.
+        Set<Long> affectedCompanyIds = dependencyIndex.downstreamCompanies(changedCompanyIds, legalEntityTable);
+        LOGGER.log(System.Logger.Level.INFO, "Delta affects " + affectedCompanyIds.size() + " companies");
+        long[] computedCompanyIds = companyMap.keySet().stream()
+                .filter(companyId -> !previousBeneficiaries.containsKey(companyId) || affectedCompanyIds.contains(companyId))
+                .mapToLong(Long::longValue)
+                .toArray();
+        // The state keeps the tables as read, so that the next delta is repaired together with the rows it joins.
+        FounderShareRepairProcessor.RepairedTables repairedTables = repair(context, legalEntityTable, naturalEntityTable);
+        SharedGraphManager sharedGraphManager;
+        try (RunMetrics.Stage ignored = runMetrics.stage("build")) {
+            sharedGraphManager = previousBeneficiaries.isEmpty()
+                    ? new SharedGraphManager(repairedTables.legalEntityTable(), repairedTables.naturalEntityTable())
+                    : new SharedGraphManager(repairedTables.legalEntityTable(), repairedTables.naturalEntityTable(),
+                    dependencyIndex.upstreamRows(computedCompanyIds, legalEntityTable));
+        }
+        LOGGER.log(System.Logger.Level.INFO, "Built the upstream of " + computedCompanyIds.length + " companies with "
+                + sharedGraphManager.getGraph().edgeCount() + " edges");
+
+        Map<Long, IncrementalState.Beneficiaries> beneficiaries = new ConcurrentHashMap<>(companyMap.size());
+        Set<Company> changedCompanies = ConcurrentHashMap.newKeySet();
+        try (RunMetrics.Stage ignored = runMetrics.stage("compute"); ProgressReporter ignoredProgress = context.computeProgress(companyMap.size())) {
+            LongToIntFunction upstreamCost = upstreamCost(sharedGraphManager);
+            long[] companyIds = companyMap.keySet().stream().mapToLong(Long::longValue).toArray();
+            context.computeCompanies(companyIds, companyId -> {
+                Company company = companyMap.get(companyId);
+                IncrementalState.Beneficiaries previous = previousBeneficiaries.get(companyId);
+                if (previous != null && !affectedCompanyIds.contains(companyId)) {
+                    beneficiaries.put(companyId, previous);
+                    runMetrics.counter(RunMetrics.COMPANIES_PROCESSED).increment();
+                    if (previous.isEmpty()) {
+                        return null;
+                    }
+                    runMetrics.counter(RunMetrics.BENEFICIARIES_EMITTED).add(previous.naturalEntityIds().length);
+                    return previous.toRegistry(company, naturalEntityTable);
+                }
+                BenefeciarRegistry registry = context.measureCompany(() -> sharedGraphManager.getBeneficiaries(
+                        company, context.ownershipEngine(), context.beneficiaryThreshold()));
+                IncrementalState.Beneficiaries current = IncrementalState.Beneficiaries.of(registry);
+                beneficiaries.put(companyId, current);
+                if (previous == null ? !current.isEmpty() : !previous.equals(current)) {
+                    changedCompanies.add(company);
+                }
+                return registry;
+            }, companyId -> previousBeneficiaries.containsKey(companyId) && !affectedCompanyIds.contains(companyId)
+                    ? 0 : upstreamCost.applyAsInt(companyId), 0);
+        }
+        // A company removed from the company table loses its beneficiaries; only its id is left to report.
+        previousBeneficiaries.forEach((companyId, previous) -> {
+            if (!previous.isEmpty() && !companyMap.containsKey(companyId)) {
+                changedCompanies.add(new Company(companyId, "", "", ""));
+            }
+        });
+
+        try (RunMetrics.Stage ignored = runMetrics.stage("state")) {
+            incrementalStateStore.store(new IncrementalState(legalEntityTable, naturalEntityTable, dependencyIndex, beneficiaries));
+            changedCompanyDataDispatcher.dispatch(changedCompanies);
+        }
+        LOGGER.log(System.Logger.Level.INFO, "Beneficiaries changed for " + changedCompanies.size() + " companies");
+    }
+}
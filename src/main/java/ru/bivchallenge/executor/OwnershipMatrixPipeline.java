@@ -0,0 +1,85 @@
+package ru.bivchallenge.executor;
+
+import ru.bivchallenge.config.CastleConfig;
+import ru.bivchallenge.config.OwnershipConfig;
+import ru.bivchallenge.config.TableConfig;
+import ru.bivchallenge.data.SharedGraphManager;
+import ru.bivchallenge.graph.OwnershipMatrix;
+import ru.bivchallenge.metrics.RunMetrics;
+import ru.bivchallenge.persistence.OwnershipTripletWriter;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Computes the effective ownership of every company by every natural person of the shared graph, or of every
+ * partition, as an {@link OwnershipMatrix} and appends it to an {@link OwnershipTripletWriter}, which is committed
+ * once the beneficiaries are dispatched. A writer closed without being committed leaves no matrix behind.
+ */
+final class OwnershipMatrixPipeline implements Pipeline, AutoCloseable {
+    private static final System.Logger LOGGER = System.getLogger(OwnershipMatrixPipeline.class.getName());
+
+    private final OwnershipTripletWriter ownershipMatrix;
+
+    private OwnershipMatrixPipeline(OwnershipTripletWriter ownershipMatrix) {
+        this.ownershipMatrix = ownershipMatrix;
+    }
+
+    /**
+     * Opens the writer of the ownership matrix of the shared graph modes, or returns {@code null} if it is disabled
+     * or the run computes per-company graphs or incrementally.
+     */
+    static OwnershipMatrixPipeline open(CastleConfig castleConfig) {
+        TableConfig tableConfig = castleConfig.getTableConfig();
+        if (!tableConfig.isOwnershipMatrixEnabled()) {
+            return null;
+        }
+        if (castleConfig.getIncrementalConfig().isEnabled()
+                || castleConfig.getOwnershipConfig().getGraphMode() == OwnershipConfig.GraphMode.PER_COMPANY) {
+            LOGGER.log(System.Logger.Level.WARNING, "The ownership matrix is computed from the shared graph only, not writing "
+                    + tableConfig.getOwnershipMatrixPath());
+            return null;
+        }
+        try {
+            return new OwnershipMatrixPipeline(new OwnershipTripletWriter(tableConfig.getOwnershipMatrixPath()));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write ownership matrix to " + tableConfig.getOwnershipMatrixPath(), e);
+        }
+    }
+
+    /**
+     * Computes the effective ownership matrix of a repaired shared graph and appends it to the writer, timed as the
+     * {@code matrix} stage.
+     */
+    void write(PipelineContext context, SharedGraphManager sharedGraphManager) throws ExecutionException, InterruptedException {
+        OwnershipConfig ownershipConfig = context.config().getOwnershipConfig();
+        try (RunMetrics.Stage ignored = context.metrics().stage("matrix")) {
+            OwnershipMatrix matrix = context.pool().submit(() -> OwnershipMatrix.compute(sharedGraphManager.getGraph(),
+                    ownershipConfig.getMatrixCutoff(), ownershipConfig.getCycleTolerance(), ownershipConfig.getCycleMaxIterations())).get();
+            if (matrix.unconvergedRowCount() > 0) {
+                LOGGER.log(System.Logger.Level.WARNING, matrix.unconvergedRowCount() + " of " + matrix.rowCount()
+                        + " ownership matrix rows did not converge within " + ownershipConfig.getCycleMaxIterations() + " iterations");
+            }
+            context.pool().submit(() -> {
+                ownershipMatrix.write(matrix);
+                return null;
+            }).get();
+        }
+    }
+
+    /**
+     * Commits the matrix written so far.
+     */
+    @Override
+    public void run(PipelineContext context) throws ExecutionException, InterruptedException {
+        context.pool().submit(() -> {
+            ownershipMatrix.commit();
+            return null;
+        }).get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        ownershipMatrix.close();
+    }
+}
@@ -0,0 +1,57 @@
+package ru.bivchallenge.executor;
+
+import ru.bivchallenge.config.OwnershipConfig;
+import ru.bivchallenge.data.SharedGraphManager;
+import ru.bivchallenge.dto.Company;
+import ru.bivchallenge.dto.LegalEntity;
+import ru.bivchallenge.dto.NaturalEntity;
+import ru.bivchallenge.metrics.ProgressReporter;
+import ru.bivchallenge.metrics.RunMetrics;
+import ru.bivchallenge.persistence.ComponentPartitions;
+import ru.bivchallenge.persistence.FounderDataProvider;
+import ru.bivchallenge.persistence.TableDataProvider;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Streams the tables to disk in partitions of whole weakly connected components (see {@link ComponentPartitions})
+ * and loads, repairs, builds and computes one {@link SharedGraphManager} graph per partition, releasing each before
+ * the next is loaded, so that the heap is bounded by the largest component rather than the registry. Ordered output
+ * is then sorted by company id within every partition.
+ */
+final class PartitionedPipeline extends SharedGraphPipeline {
+
+    PartitionedPipeline(FounderDataProvider<LegalEntity> legalEntityDataProvider,
+                        FounderDataProvider<NaturalEntity> naturalEntityDataProvider,
+                        TableDataProvider<Company> companyDataProvider) {
+        super(legalEntityDataProvider, naturalEntityDataProvider, companyDataProvider);
+    }
+
+    @Override
+    public void run(PipelineContext context) throws ExecutionException, InterruptedException {
+        OwnershipConfig ownershipConfig = context.config().getOwnershipConfig();
+        ComponentPartitions partitions;
+        try (RunMetrics.Stage ignored = context.metrics().stage("partition"); ProgressReporter ignoredProgress = context.loadProgress()) {
+            partitions = context.pool().submit(() -> ComponentPartitions.write(companyDataProvider, legalEntityDataProvider,
+                    naturalEntityDataProvider, ownershipConfig.getPartitionDirectory(), ownershipConfig.getPartitionMemoryBudget())).get();
+        }
+
+        try (partitions; ProgressReporter ignoredProgress = context.computeProgress(partitions.companyCount())) {
+            long sequence = 0;
+            for (int partition = 0; partition < partitions.partitionCount(); partition++) {
+                int index = partition;
+                ComponentPartitions.Partition rows;
+                try (RunMetrics.Stage ignored = context.metrics().stage("load")) {
+                    rows = context.pool().submit(() -> partitions.load(index)).get();
+                }
+                SharedGraphManager sharedGraphManager = repairAndBuild(context, rows.legalEntities(), rows.naturalEntities());
+                writeOwnershipMatrix(context, sharedGraphManager);
+
+                try (RunMetrics.Stage ignored = context.metrics().stage("compute")) {
+                    computeCompanies(context, sharedGraphManager, rows.companies(), rows.legalEntities(), rows.naturalEntities(), sequence);
+                }
+                sequence += rows.companies().size();
+            }
+        }
+    }
+}
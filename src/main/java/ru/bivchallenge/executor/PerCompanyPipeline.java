@@ -0,0 +1,83 @@
+package ru.bivchallenge.executor;
+
+import ru.bivchallenge.data.CompanyGraphManager;
+import ru.bivchallenge.dto.Company;
+import ru.bivchallenge.dto.LegalEntity;
+import ru.bivchallenge.dto.NaturalEntity;
+import ru.bivchallenge.graph.OwnershipGraph;
+import ru.bivchallenge.metrics.ProgressReporter;
+import ru.bivchallenge.metrics.RunMetrics;
+import ru.bivchallenge.persistence.FounderDataProvider;
+import ru.bivchallenge.persistence.TableDataProvider;
+import ru.bivchallenge.processor.FounderShareRepairProcessor;
+import ru.bivchallenge.processor.GraphInitializerProcessor;
+import ru.bivchallenge.processor.GraphPopulationProcessor;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Computes the beneficiaries on one {@link CompanyGraphManager} graph per head company: loads the entity maps
+ * concurrently, repairs the founder shares once per company (see {@link FounderShareRepairProcessor}) and
+ * populates every graph from a single worker (see {@link GraphPopulationProcessor}).
+ */
+final class PerCompanyPipeline implements Pipeline {
+    private final FounderDataProvider<LegalEntity> legalEntityDataProvider;
+    private final FounderDataProvider<NaturalEntity> naturalEntityDataProvider;
+    private final TableDataProvider<Company> companyDataProvider;
+
+    PerCompanyPipeline(FounderDataProvider<LegalEntity> legalEntityDataProvider,
+                       FounderDataProvider<NaturalEntity> naturalEntityDataProvider,
+                       TableDataProvider<Company> companyDataProvider) {
+        this.legalEntityDataProvider = legalEntityDataProvider;
+        this.naturalEntityDataProvider = naturalEntityDataProvider;
+        this.companyDataProvider = companyDataProvider;
+    }
+
+    @Override
+    public void run(PipelineContext context) throws ExecutionException, InterruptedException {
+        RunMetrics runMetrics = context.metrics();
+        CompletableFuture<Map<Long, Company>> companyDataFuture = CompletableFuture.supplyAsync(companyDataProvider::get, context.pool());
+        CompletableFuture<Map<Long, LegalEntity>> legalEntityDataFuture = CompletableFuture.supplyAsync(legalEntityDataProvider::get, context.pool());
+        CompletableFuture<Map<Long, NaturalEntity>> naturalEntityDataFuture = CompletableFuture.supplyAsync(naturalEntityDataProvider::get, context.pool());
+
+        Map<Long, Company> companyMap;
+        Map<Long, LegalEntity> legalEntityMap;
+        Map<Long, NaturalEntity> naturalEntityMap;
+        try (RunMetrics.Stage ignored = runMetrics.stage("load"); ProgressReporter ignoredProgress = context.loadProgress()) {
+            companyMap = companyDataFuture.get();
+            legalEntityMap = legalEntityDataFuture.get();
+            naturalEntityMap = naturalEntityDataFuture.get();
+        }
+
+        try (RunMetrics.Stage ignored = runMetrics.stage("repair")) {
+            FounderShareRepairProcessor founderShareRepairProcessor = new FounderShareRepairProcessor();
+            CompletableFuture.runAsync(() -> founderShareRepairProcessor.apply(legalEntityMap, naturalEntityMap), context.pool()).get();
+            runMetrics.counter(RunMetrics.EDGES_REPAIRED).add(founderShareRepairProcessor.getRepairedEdgeCount());
+        }
+
+        Map<Long, CompanyGraphManager> companyGraphMap;
+        try (RunMetrics.Stage ignored = runMetrics.stage("build")) {
+            GraphInitializerProcessor graphInitializerProcessor = new GraphInitializerProcessor(legalEntityMap);
+            GraphPopulationProcessor graphPopulationProcessor = new GraphPopulationProcessor(legalEntityMap, naturalEntityMap);
+            companyGraphMap = CompletableFuture.supplyAsync(
+                    () -> graphPopulationProcessor.apply(graphInitializerProcessor.apply(companyMap)), context.pool()).get();
+        }
+
+        try (RunMetrics.Stage ignored = runMetrics.stage("compute"); ProgressReporter ignoredProgress = context.computeProgress(companyGraphMap.size())) {
+            long[] companyIds = companyGraphMap.keySet().stream().mapToLong(Long::longValue).toArray();
+            context.computeCompanies(companyIds, companyId -> context.measureCompany(
+                    () -> companyGraphMap.get(companyId).getBeneficiaries(context.ownershipEngine(), context.beneficiaryThreshold())),
+                    companyId -> graphCost(companyGraphMap.get(companyId).getGraph()), 0);
+        }
+    }
+
+    /**
+     * Estimates the cost of computing the head company of a {@link CompanyGraphManager} graph, which holds exactly
+     * its upstream, by the number of its vertices and edges.
+     */
+    private static int graphCost(OwnershipGraph graph) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) graph.vertexCount() + graph.edgeCount());
+    }
+}
@@ -0,0 +1,23 @@
+package ru.bivchallenge.executor;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A part of a run of {@link ProcessDataExecutor}: either a mode computing the beneficiaries of the head companies
+ * into the sink of the {@link PipelineContext}, or an optional output, such as the beneficiary index, completed once
+ * every company is computed and the sink is closed.
+ *
+ * @see PipelineContext
+ */
+@FunctionalInterface
+interface Pipeline {
+
+    /**
+     * Runs this part of the run on the pool of the context, timing its stages in the context's metrics.
+     *
+     * @param context the state shared by the pipelines of the run
+     * @throws ExecutionException   if a task of the pool fails
+     * @throws InterruptedException if the run is interrupted
+     */
+    void run(PipelineContext context) throws ExecutionException, InterruptedException;
+}
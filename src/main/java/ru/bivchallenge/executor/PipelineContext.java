@@ -0,0 +1,175 @@
+package ru.bivchallenge.executor;
+
+import ru.bivchallenge.config.CastleConfig;
+import ru.bivchallenge.data.BenefeciarRegistry;
+import ru.bivchallenge.graph.OwnershipEngine;
+import ru.bivchallenge.metrics.ProgressReporter;
+import ru.bivchallenge.metrics.RunMetrics;
+import ru.bivchallenge.persistence.DataSink;
+import ru.bivchallenge.persistence.StreamingDataSink;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+import java.util.function.LongToIntFunction;
+import java.util.function.Supplier;
+
+/**
+ * The state shared by the {@link Pipeline pipelines} of one run of {@link ProcessDataExecutor}: the configuration,
+ * the metrics, the worker pool, the sink of the beneficiaries and the optional outputs, together with the
+ * scheduling of the head companies over the workers that every mode uses.
+ */
+final class PipelineContext {
+    private final CastleConfig castleConfig;
+    private final RunMetrics runMetrics;
+    private final ForkJoinPool customThreadPool;
+    private final ThreadLocal<OwnershipEngine> ownershipEngine;
+    private final DataSink<BenefeciarRegistry> benefeciarSink;
+    private final BeneficiaryIndexPipeline beneficiaryIndex;
+    private final ResultCachePipeline resultCache;
+    private final OwnershipMatrixPipeline ownershipMatrix;
+
+    /**
+     * @param beneficiaryIndex the index every non-empty registry is added to, or {@code null}
+     * @param resultCache      the cache of the components of the shared graph, or {@code null}
+     * @param ownershipMatrix  the writer of the ownership matrix of the shared graph, or {@code null}
+     */
+    PipelineContext(CastleConfig castleConfig, RunMetrics runMetrics, ForkJoinPool customThreadPool,
+                    ThreadLocal<OwnershipEngine> ownershipEngine, DataSink<BenefeciarRegistry> benefeciarSink,
+                    BeneficiaryIndexPipeline beneficiaryIndex, ResultCachePipeline resultCache,
+                    OwnershipMatrixPipeline ownershipMatrix) {
+        this.castleConfig = castleConfig;
+        this.runMetrics = runMetrics;
+        this.customThreadPool = customThreadPool;
+        this.ownershipEngine = ownershipEngine;
+        this.benefeciarSink = benefeciarSink;
+        this.beneficiaryIndex = beneficiaryIndex;
+        this.resultCache = resultCache;
+        this.ownershipMatrix = ownershipMatrix;
+    }
+
+    CastleConfig config() {
+        return castleConfig;
+    }
+
+    RunMetrics metrics() {
+        return runMetrics;
+    }
+
+    ForkJoinPool pool() {
+        return customThreadPool;
+    }
+
+    /**
+     * Returns the ownership engine of the calling worker.
+     */
+    OwnershipEngine ownershipEngine() {
+        return ownershipEngine.get();
+    }
+
+    /**
+     * Returns the result cache of the shared graph modes, or {@code null} if it is disabled.
+     */
+    ResultCachePipeline resultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Returns the writer of the ownership matrix of the shared graph modes, or {@code null} if it is disabled.
+     */
+    OwnershipMatrixPipeline ownershipMatrix() {
+        return ownershipMatrix;
+    }
+
+    double beneficiaryThreshold() {
+        return castleConfig.getOwnershipConfig().getBeneficiaryThreshold();
+    }
+
+    /**
+     * Computes the beneficiaries of every head company and streams the non-empty registries to the sink.
+     * <p>
+     * Every worker of the pool claims the next company of a schedule until none is left, so no worker idles while
+     * another still has a run of companies to compute. Unordered, the companies are scheduled largest-first by
+     * their estimated cost: the most expensive heads start at once and the cheap ones fill in the gaps at the end,
+     * so the compute stage takes close to the total work divided by the workers rather than ending with one
+     * conglomerate on one worker. Ordered, the companies are scheduled by id, so the company the sink waits for is
+     * always being computed by a running worker and the sink's reorder buffer only holds companies finished early.
+     *
+     * @param companyIds    the ids of the head companies
+     * @param computation   computes the registry of a company, or {@code null} if it has no output
+     * @param cost          estimates the cost of computing a company, in any unit
+     * @param firstSequence the sequence number of the first company in an ordered sink
+     */
+    void computeCompanies(long[] companyIds, LongFunction<BenefeciarRegistry> computation, LongToIntFunction cost,
+                          long firstSequence) throws ExecutionException, InterruptedException {
+        LongFunction<BenefeciarRegistry> indexed = beneficiaryIndex == null ? computation : companyId -> {
+            BenefeciarRegistry registry = computation.apply(companyId);
+            if (registry != null && !registry.getBeneficiaries().isEmpty()) {
+                beneficiaryIndex.accept(registry);
+            }
+            return registry;
+        };
+        StreamingDataSink<BenefeciarRegistry> orderedSink = benefeciarSink instanceof StreamingDataSink<BenefeciarRegistry> streamingSink
+                && streamingSink.isOrdered() ? streamingSink : null;
+        long[] schedule = orderedSink != null
+                ? Arrays.stream(companyIds).sorted().toArray()
+                : customThreadPool.submit(() -> largestFirst(companyIds, cost)).get();
+        AtomicInteger cursor = new AtomicInteger();
+        CompletableFuture<?>[] workers = new CompletableFuture<?>[customThreadPool.getParallelism()];
+        for (int worker = 0; worker < workers.length; worker++) {
+            workers[worker] = CompletableFuture.runAsync(() -> {
+                for (int sequence = cursor.getAndIncrement(); sequence < schedule.length; sequence = cursor.getAndIncrement()) {
+                    BenefeciarRegistry registry = indexed.apply(schedule[sequence]);
+                    boolean empty = registry == null || registry.getBeneficiaries().isEmpty();
+                    if (orderedSink != null) {
+                        orderedSink.accept(firstSequence + sequence, empty ? null : registry);
+                    } else if (!empty) {
+                        benefeciarSink.accept(registry);
+                    }
+                }
+            }, customThreadPool);
+        }
+        CompletableFuture.allOf(workers).get();
+    }
+
+    /**
+     * Orders the companies by decreasing estimated cost, companies of equal cost keeping their order. The cost and
+     * the position of every company are packed into one {@code long}, so the order is a parallel primitive sort.
+     */
+    private static long[] largestFirst(long[] companyIds, LongToIntFunction cost) {
+        long[] keys = new long[companyIds.length];
+        Arrays.parallelSetAll(keys, position -> (long) ~cost.applyAsInt(companyIds[position]) << 32 | position);
+        Arrays.parallelSort(keys);
+        long[] schedule = new long[companyIds.length];
+        Arrays.parallelSetAll(schedule, position -> companyIds[(int) keys[position]]);
+        return schedule;
+    }
+
+    /**
+     * Computes the beneficiaries of one head company, recording the time spent in the company latency histogram
+     * and counting the company and its beneficiaries.
+     */
+    BenefeciarRegistry measureCompany(Supplier<BenefeciarRegistry> beneficiaries) {
+        long start = System.nanoTime();
+        BenefeciarRegistry registry = beneficiaries.get();
+        runMetrics.companyLatency().record(System.nanoTime() - start);
+        runMetrics.counter(RunMetrics.COMPANIES_PROCESSED).increment();
+        if (registry != null) {
+            runMetrics.counter(RunMetrics.BENEFICIARIES_EMITTED).add(registry.getBeneficiaries().size());
+        }
+        return registry;
+    }
+
+    ProgressReporter loadProgress() {
+        return new ProgressReporter("load", "rows", () -> runMetrics.total(RunMetrics.ROWS_PARSED), -1,
+                castleConfig.getMetricsConfig().getProgressInterval());
+    }
+
+    ProgressReporter computeProgress(long companyCount) {
+        return new ProgressReporter("compute", "companies", () -> runMetrics.total(RunMetrics.COMPANIES_PROCESSED),
+                companyCount, castleConfig.getMetricsConfig().getProgressInterval());
+    }
+}
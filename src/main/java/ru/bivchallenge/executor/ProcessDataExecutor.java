@@ -1,100 +1,166 @@
 package ru.bivchallenge.executor;
 
 import jakarta.inject.Inject;
+import ru.bivchallenge.config.CastleConfig;
+import ru.bivchallenge.config.DispatchConfig;
+import ru.bivchallenge.config.TableConfig;
 import ru.bivchallenge.data.BenefeciarRegistry;
-import ru.bivchallenge.data.CompanyGraphManager;
-import ru.bivchallenge.dto.*;
+import ru.bivchallenge.dto.Company;
+import ru.bivchallenge.dto.LegalEntity;
+import ru.bivchallenge.dto.NaturalEntity;
+import ru.bivchallenge.graph.CycleReport;
+import ru.bivchallenge.graph.OwnershipEngine;
+import ru.bivchallenge.graph.OwnershipEngineFactory;
+import ru.bivchallenge.metrics.ProgressReporter;
+import ru.bivchallenge.metrics.RunMetrics;
 import ru.bivchallenge.persistence.DataDispatcher;
-import ru.bivchallenge.persistence.DataProvider;
-import ru.bivchallenge.processor.GraphInitializerProcessor;
-import ru.bivchallenge.processor.GraphRepairProcessor;
+import ru.bivchallenge.persistence.DataSink;
+import ru.bivchallenge.persistence.FounderDataProvider;
+import ru.bivchallenge.persistence.IncrementalStateStore;
+import ru.bivchallenge.persistence.StreamingDataSink;
+import ru.bivchallenge.persistence.TableDataProvider;
 
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.*;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * The {@code ProcessDataExecutor} class orchestrates concurrent processing of entity data into graph structures
  * and dispatches beneficiary information after computation.
  *
- * <p><b>Workflow:</b></p>
+ * <p>The executor dispatches the run to the {@link Pipeline} of the configured mode and then completes the optional
+ * outputs of the run:</p>
  * <ul>
- *     <li>Fetches data for companies, legal entities, and natural entities concurrently.</li>
- *     <li>Processes these entities into {@link CompanyGraphManager} graphs using parallel streams.</li>
- *     <li>Repairs graphs and extracts beneficiary data concurrently.</li>
- *     <li>Dispatches the beneficiary data using {@link DataDispatcher}.</li>
+ *     <li>{@link PerCompanyPipeline} builds one {@link ru.bivchallenge.data.CompanyGraphManager} graph per head
+ *     company, {@link SharedPipeline} one {@link ru.bivchallenge.data.SharedGraphManager} graph of the registry
+ *     and {@link PartitionedPipeline} one per partition of whole connected components; {@link IncrementalPipeline}
+ *     applies delta files to the state of the previous run and recomputes only the affected head companies.</li>
+ *     <li>Every mode computes the head companies concurrently through its {@link PipelineContext}, scheduling them
+ *     largest-first by their estimated cost, or by id when the output is ordered.</li>
+ *     <li>Every finished beneficiary registry is streamed through a bounded {@link StreamingDataSink} to the
+ *     {@link DataDispatcher}, whose writer thread writes it while later companies are still being computed;
+ *     optionally in the order of the company ids. A thread-safe {@link DataSink}, such as the one of the parallel
+ *     writer, is written by the computing threads directly when the output is unordered. The sink is closed,
+ *     which moves the table into place, only once every company is computed, and aborted if the run fails, so a
+ *     failed run never leaves a truncated table that looks complete.</li>
+ *     <li>Optionally, the {@link ResultCachePipeline} reuses the beneficiaries of unchanged components of the shared
+ *     graph, the {@link OwnershipMatrixPipeline} writes the effective ownership matrix and the
+ *     {@link BeneficiaryIndexPipeline} writes the inverted index from natural person to owned companies.</li>
+ *     <li>Logs the {@link CycleReport} of the cyclic ownership components that were met.</li>
  * </ul>
  *
+ * <p>Every run is measured in its {@link RunMetrics}: the stages {@code load}, {@code build}, {@code repair},
+ * {@code compute} and {@code dispatch} (and {@code state} in the incremental mode, {@code partition} in the
+ * partitioned mode, {@code index} when the beneficiary index is written, {@code cache} when the result cache is
+ * stored, {@code matrix} when the ownership matrix is written) are timed and emitted as JFR events, the rows,
+ * repaired edges, companies, beneficiaries and result cache hits are counted and the time spent per head company
+ * is recorded in a histogram. While the tables are loaded and the beneficiaries computed, a
+ * {@link ProgressReporter} logs the rate and the estimated time left. At the end of the run the metrics are
+ * summarized in the log and written to the configured metrics file.</p>
+ *
  * @see Executor
  */
 public class ProcessDataExecutor implements Executor {
-    private final DataProvider<LegalEntity> legalEntityDataProvider;
-    private final DataProvider<NaturalEntity> naturalEntityDataProvider;
-    private final DataProvider<Company> companyDataProvider;
+    private static final System.Logger LOGGER = System.getLogger(ProcessDataExecutor.class.getName());
+
+    private final FounderDataProvider<LegalEntity> legalEntityDataProvider;
+    private final FounderDataProvider<NaturalEntity> naturalEntityDataProvider;
+    private final TableDataProvider<Company> companyDataProvider;
     private final DataDispatcher<BenefeciarRegistry> benefeciarSetDataDispatcher;
+    private final DataDispatcher<Company> changedCompanyDataDispatcher;
+    private final IncrementalStateStore incrementalStateStore;
+    private final RunMetrics runMetrics;
+    private final CastleConfig castleConfig;
 
     @Inject
     public ProcessDataExecutor(
-            DataProvider<LegalEntity> legalEntityDataProvider,
-            DataProvider<NaturalEntity> naturalEntityDataProvider,
-            DataProvider<Company> companyDataProvider,
-            DataDispatcher<BenefeciarRegistry> benefeciarSetDataDispatcher
+            CastleConfig castleConfig,
+            FounderDataProvider<LegalEntity> legalEntityDataProvider,
+            FounderDataProvider<NaturalEntity> naturalEntityDataProvider,
+            TableDataProvider<Company> companyDataProvider,
+            DataDispatcher<BenefeciarRegistry> benefeciarSetDataDispatcher,
+            DataDispatcher<Company> changedCompanyDataDispatcher,
+            IncrementalStateStore incrementalStateStore,
+            RunMetrics runMetrics
     ) {
         this.legalEntityDataProvider = legalEntityDataProvider;
         this.naturalEntityDataProvider = naturalEntityDataProvider;
         this.companyDataProvider = companyDataProvider;
         this.benefeciarSetDataDispatcher = benefeciarSetDataDispatcher;
+        this.changedCompanyDataDispatcher = changedCompanyDataDispatcher;
+        this.incrementalStateStore = incrementalStateStore;
+        this.runMetrics = runMetrics;
+        this.castleConfig = castleConfig;
     }
 
     @Override
     public void execute() throws ExecutionException, InterruptedException {
         ForkJoinPool customThreadPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
         try {
-            CompletableFuture<Map<Long, Company>> companyDataFuture = CompletableFuture.supplyAsync(companyDataProvider::get, customThreadPool);
-            CompletableFuture<Map<Long, LegalEntity>> legalEntityDataFuture = CompletableFuture.supplyAsync(legalEntityDataProvider::get, customThreadPool);
-            CompletableFuture<Map<Long, NaturalEntity>> naturalEntityDataFuture = CompletableFuture.supplyAsync(naturalEntityDataProvider::get, customThreadPool);
-
-            Map<Long, Company> companyMap = companyDataFuture.get();
-            Map<Long, LegalEntity> legalEntityMap = legalEntityDataFuture.get();
-            Map<Long, NaturalEntity> naturalEntityMap = naturalEntityDataFuture.get();
-
-            GraphInitializerProcessor graphInitializerProcessor = new GraphInitializerProcessor(legalEntityMap);
-            Map<Long, CompanyGraphManager> companyGraphMap = graphInitializerProcessor.apply(companyMap);
+            CycleReport cycleReport = new CycleReport();
+            ThreadLocal<OwnershipEngine> ownershipEngine = ThreadLocal.withInitial(
+                    new OwnershipEngineFactory(castleConfig.getOwnershipConfig(), cycleReport));
+            TableConfig tableConfig = castleConfig.getTableConfig();
+            BeneficiaryIndexPipeline beneficiaryIndex = BeneficiaryIndexPipeline.open(tableConfig);
+            ResultCachePipeline resultCache = ResultCachePipeline.open(castleConfig);
+            DataSink<BenefeciarRegistry> benefeciarSink = openBenefeciarSink(castleConfig.getDispatchConfig());
+            try (OwnershipMatrixPipeline ownershipMatrix = OwnershipMatrixPipeline.open(castleConfig)) {
+                PipelineContext context = new PipelineContext(castleConfig, runMetrics, customThreadPool, ownershipEngine,
+                        benefeciarSink, beneficiaryIndex, resultCache, ownershipMatrix);
+                computation().run(context);
 
-            CompletableFuture<Void> processLegalEntities = CompletableFuture.runAsync(() -> legalEntityMap.values()
-                    .parallelStream()
-                    .forEach(legalEntity -> {
-                        CompanyGraphManager manager = companyGraphMap.get(legalEntity.getCompanyId());
-                        if (manager != null) {
-                            manager.addEntity(legalEntity);
-                        }
-                    }), customThreadPool);
-            processLegalEntities.join();
-
-            CompletableFuture<Void> processNaturalEntities = CompletableFuture.runAsync(() -> naturalEntityMap.values()
-                    .parallelStream()
-                    .forEach(naturalEntity -> {
-                        CompanyGraphManager manager = companyGraphMap.get(naturalEntity.getCompanyId());
-                        if (manager != null) {
-                            manager.addEntity(naturalEntity);
-                        }
-                    }), customThreadPool);
-            processNaturalEntities.join();
-
-            GraphRepairProcessor graphRepairProcessor = new GraphRepairProcessor();
-            Set<BenefeciarRegistry> benefeciarRegistry = ConcurrentHashMap.newKeySet();
-            companyGraphMap.values().parallelStream().forEach(manager -> {
-                graphRepairProcessor.apply(manager);
-                BenefeciarRegistry beneficiaries = manager.getBeneficiaries();
-                if (beneficiaries != null && !beneficiaries.getBeneficiaries().isEmpty()) {
-                    benefeciarRegistry.add(beneficiaries);
+                try (RunMetrics.Stage ignored = runMetrics.stage("dispatch")) {
+                    benefeciarSink.close();
                 }
-            });
-
-            benefeciarSetDataDispatcher.dispatch(benefeciarRegistry);
+                // The outputs are completed only once the beneficiaries table is, in the order they are listed.
+                for (Pipeline output : Arrays.asList(ownershipMatrix, beneficiaryIndex, resultCache)) {
+                    if (output != null) {
+                        output.run(context);
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to write ownership matrix to " + tableConfig.getOwnershipMatrixPath(), e);
+            } finally {
+                // Only a run that got to close the sink completes the beneficiaries table; a failed one discards it.
+                benefeciarSink.abort();
+            }
+            LOGGER.log(System.Logger.Level.INFO, cycleReport.summary());
+            LOGGER.log(System.Logger.Level.INFO, runMetrics.summary());
+            if (castleConfig.getMetricsConfig().isEnabled()) {
+                runMetrics.writeTo(castleConfig.getMetricsConfig().getMetricsPath());
+            }
 
         } finally {
             customThreadPool.shutdown();
         }
     }
+
+    /**
+     * Selects the pipeline of the configured mode: incremental, or else the one of the graph mode.
+     */
+    private Pipeline computation() {
+        if (castleConfig.getIncrementalConfig().isEnabled()) {
+            return new IncrementalPipeline(legalEntityDataProvider, naturalEntityDataProvider, companyDataProvider,
+                    changedCompanyDataDispatcher, incrementalStateStore);
+        }
+        return switch (castleConfig.getOwnershipConfig().getGraphMode()) {
+            case PER_COMPANY -> new PerCompanyPipeline(legalEntityDataProvider, naturalEntityDataProvider, companyDataProvider);
+            case SHARED -> new SharedPipeline(legalEntityDataProvider, naturalEntityDataProvider, companyDataProvider);
+            case PARTITIONED -> new PartitionedPipeline(legalEntityDataProvider, naturalEntityDataProvider, companyDataProvider);
+        };
+    }
+
+    /**
+     * Opens the sink the computing workers write the beneficiaries to: the dispatcher's own sink if it is
+     * thread-safe and the output is unordered, otherwise a {@link StreamingDataSink} feeding the dispatcher's sink
+     * from its writer thread.
+     */
+    private DataSink<BenefeciarRegistry> openBenefeciarSink(DispatchConfig dispatchConfig) {
+        DataSink<BenefeciarRegistry> sink = benefeciarSetDataDispatcher.open();
+        if (sink.isThreadSafe() && !dispatchConfig.isOrdered()) {
+            return sink;
+        }
+        return new StreamingDataSink<>(sink, dispatchConfig.getQueueCapacity(), dispatchConfig.isOrdered());
+    }
 }
@@ -0,0 +1,127 @@
+package ru.bivchallenge.executor;
+
+import ru.bivchallenge.config.CacheConfig;
+import ru.bivchallenge.config.CastleConfig;
+import ru.bivchallenge.config.OwnershipConfig;
+import ru.bivchallenge.data.BenefeciarRegistry;
+import ru.bivchallenge.data.ComponentFingerprints;
+import ru.bivchallenge.data.FounderTable;
+import ru.bivchallenge.data.IncrementalState;
+import ru.bivchallenge.data.SharedGraphManager;
+import ru.bivchallenge.dto.Company;
+import ru.bivchallenge.dto.LegalEntity;
+import ru.bivchallenge.dto.NaturalEntity;
+import ru.bivchallenge.metrics.RunMetrics;
+import ru.bivchallenge.persistence.ResultCache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.LongFunction;
+import java.util.function.LongToIntFunction;
+
+/**
+ * Reuses the beneficiaries of the components of the shared graph that are unchanged since an earlier run from a
+ * {@link ResultCache}, keyed by the {@link ComponentFingerprints fingerprint} of every component, adds the
+ * components it computes to the cache and stores the cache once all companies are computed, timed as the
+ * {@code cache} stage.
+ */
+final class ResultCachePipeline implements Pipeline {
+    private static final IncrementalState.Beneficiaries NO_BENEFICIARIES = new IncrementalState.Beneficiaries(new long[0], new double[0]);
+
+    private final ResultCache resultCache;
+
+    private ResultCachePipeline(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * Opens the result cache of the shared graph modes, or returns {@code null} if it is disabled or the run
+     * computes per-company graphs or incrementally.
+     */
+    static ResultCachePipeline open(CastleConfig castleConfig) {
+        CacheConfig cacheConfig = castleConfig.getCacheConfig();
+        if (!cacheConfig.isEnabled() || castleConfig.getIncrementalConfig().isEnabled()
+                || castleConfig.getOwnershipConfig().getGraphMode() == OwnershipConfig.GraphMode.PER_COMPANY) {
+            return null;
+        }
+        OwnershipConfig ownershipConfig = castleConfig.getOwnershipConfig();
+        return new ResultCachePipeline(ResultCache.load(cacheConfig.getCachePath(), "threshold=" + ownershipConfig.getBeneficiaryThreshold()
+                + ";cycles=" + ownershipConfig.getCycleMode() + ";tolerance=" + ownershipConfig.getCycleTolerance()
+                + ";max-iterations=" + ownershipConfig.getCycleMaxIterations() + ";search=" + ownershipConfig.getSearchMode()
+                + ";epsilon=" + ownershipConfig.getSearchEpsilon()));
+    }
+
+    /**
+     * Computes the beneficiaries of the head companies of a shared graph through the cache: the components of the
+     * graph are looked up by their fingerprint first, the companies of a component found in the cache are restored
+     * from it and cost nothing to schedule, and the beneficiaries of all other components are added to the cache
+     * once computed.
+     */
+    void computeCompanies(PipelineContext context, SharedGraphManager sharedGraphManager, long[] companyIds,
+                          FounderTable<Company> companyTable, FounderTable<LegalEntity> legalEntityTable,
+                          FounderTable<NaturalEntity> naturalEntityTable, LongFunction<BenefeciarRegistry> computation,
+                          LongToIntFunction upstreamCost, long firstSequence) throws ExecutionException, InterruptedException {
+        ComponentFingerprints fingerprints = new ComponentFingerprints(sharedGraphManager.getGraph(), companyTable,
+                legalEntityTable, naturalEntityTable);
+        ResultCache.Entry[] cached = new ResultCache.Entry[sharedGraphManager.getGraph().vertexCount()];
+        boolean[] lookedUp = new boolean[cached.length];
+        for (long companyId : companyIds) {
+            int component = fingerprints.component(companyId);
+            if (component >= 0 && !lookedUp[component]) {
+                lookedUp[component] = true;
+                cached[component] = resultCache.get(fingerprints.key(component));
+            }
+        }
+
+        RunMetrics runMetrics = context.metrics();
+        Map<Long, IncrementalState.Beneficiaries> computed = new ConcurrentHashMap<>();
+        context.computeCompanies(companyIds, companyId -> {
+            int component = fingerprints.component(companyId);
+            IncrementalState.Beneficiaries previous = component < 0 || cached[component] == null ? null : cached[component].get(companyId);
+            if (previous != null) {
+                runMetrics.counter(RunMetrics.COMPANIES_PROCESSED).increment();
+                if (previous.isEmpty()) {
+                    return null;
+                }
+                runMetrics.counter(RunMetrics.BENEFICIARIES_EMITTED).add(previous.naturalEntityIds().length);
+                return previous.toRegistry(companyTable.entity(companyTable.row(companyId)), naturalEntityTable);
+            }
+            BenefeciarRegistry registry = computation.apply(companyId);
+            if (component >= 0) {
+                computed.put(companyId, registry == null ? NO_BENEFICIARIES : IncrementalState.Beneficiaries.inRegistryOrder(registry));
+            }
+            return registry;
+        }, companyId -> {
+            int component = fingerprints.component(companyId);
+            return component >= 0 && cached[component] != null ? 0 : upstreamCost.applyAsInt(companyId);
+        }, firstSequence);
+
+        Map<Integer, List<Long>> computedComponents = new HashMap<>();
+        computed.keySet().stream().sorted().forEach(companyId -> computedComponents
+                .computeIfAbsent(fingerprints.component(companyId), component -> new ArrayList<>()).add(companyId));
+        for (Map.Entry<Integer, List<Long>> component : computedComponents.entrySet()) {
+            List<Long> heads = component.getValue();
+            long[] headIds = new long[heads.size()];
+            IncrementalState.Beneficiaries[] beneficiaries = new IncrementalState.Beneficiaries[heads.size()];
+            for (int head = 0; head < headIds.length; head++) {
+                headIds[head] = heads.get(head);
+                beneficiaries[head] = computed.get(headIds[head]);
+            }
+            resultCache.put(fingerprints.key(component.getKey()), new ResultCache.Entry(headIds, beneficiaries));
+        }
+    }
+
+    @Override
+    public void run(PipelineContext context) throws ExecutionException, InterruptedException {
+        RunMetrics runMetrics = context.metrics();
+        try (RunMetrics.Stage ignored = runMetrics.stage("cache")) {
+            context.pool().submit(() -> resultCache.store(context.config().getCacheConfig().getMaxSize())).get();
+        }
+        runMetrics.counter(RunMetrics.RESULT_CACHE_HITS).add(resultCache.getHitCount());
+        runMetrics.counter(RunMetrics.RESULT_CACHE_MISSES).add(resultCache.getMissCount());
+    }
+}
@@ -0,0 +1,109 @@
+package ru.bivchallenge.executor;
+
+import ru.bivchallenge.data.BenefeciarRegistry;
+import ru.bivchallenge.data.FounderTable;
+import ru.bivchallenge.data.SharedGraphManager;
+import ru.bivchallenge.dto.Company;
+import ru.bivchallenge.dto.LegalEntity;
+import ru.bivchallenge.dto.NaturalEntity;
+import ru.bivchallenge.graph.OwnershipGraph;
+import ru.bivchallenge.graph.UpstreamCost;
+import ru.bivchallenge.graph.VertexType;
+import ru.bivchallenge.metrics.RunMetrics;
+import ru.bivchallenge.persistence.FounderDataProvider;
+import ru.bivchallenge.persistence.TableDataProvider;
+import ru.bivchallenge.processor.FounderShareRepairProcessor;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.function.LongFunction;
+import java.util.function.LongToIntFunction;
+
+/**
+ * The base of the modes computing the beneficiaries on a {@link SharedGraphManager} graph: repairing the founder
+ * tables and building the graph of them, writing its ownership matrix and computing its head companies, through
+ * the result cache when the run has one.
+ */
+abstract class SharedGraphPipeline implements Pipeline {
+    protected final FounderDataProvider<LegalEntity> legalEntityDataProvider;
+    protected final FounderDataProvider<NaturalEntity> naturalEntityDataProvider;
+    protected final TableDataProvider<Company> companyDataProvider;
+
+    protected SharedGraphPipeline(FounderDataProvider<LegalEntity> legalEntityDataProvider,
+                                  FounderDataProvider<NaturalEntity> naturalEntityDataProvider,
+                                  TableDataProvider<Company> companyDataProvider) {
+        this.legalEntityDataProvider = legalEntityDataProvider;
+        this.naturalEntityDataProvider = naturalEntityDataProvider;
+        this.companyDataProvider = companyDataProvider;
+    }
+
+    /**
+     * Repairs the founder tables and builds the shared graph of them, timed as the {@code repair} and
+     * {@code build} stages.
+     */
+    protected static SharedGraphManager repairAndBuild(PipelineContext context, FounderTable<LegalEntity> legalEntityTable,
+                                                       FounderTable<NaturalEntity> naturalEntityTable) {
+        FounderShareRepairProcessor.RepairedTables repairedTables = repair(context, legalEntityTable, naturalEntityTable);
+        try (RunMetrics.Stage ignored = context.metrics().stage("build")) {
+            return new SharedGraphManager(repairedTables.legalEntityTable(), repairedTables.naturalEntityTable());
+        }
+    }
+
+    /**
+     * Repairs the share percents of the founder tables by the rules of the per-company mode, timed as the
+     * {@code repair} stage.
+     */
+    protected static FounderShareRepairProcessor.RepairedTables repair(PipelineContext context, FounderTable<LegalEntity> legalEntityTable,
+                                                                      FounderTable<NaturalEntity> naturalEntityTable) {
+        try (RunMetrics.Stage ignored = context.metrics().stage("repair")) {
+            FounderShareRepairProcessor founderShareRepairProcessor = new FounderShareRepairProcessor();
+            FounderShareRepairProcessor.RepairedTables repairedTables = founderShareRepairProcessor.apply(legalEntityTable, naturalEntityTable);
+            context.metrics().counter(RunMetrics.EDGES_REPAIRED).add(founderShareRepairProcessor.getRepairedEdgeCount());
+            return repairedTables;
+        }
+    }
+
+    /**
+     * Appends the ownership matrix of a repaired shared graph if the run writes one.
+     */
+    protected static void writeOwnershipMatrix(PipelineContext context, SharedGraphManager sharedGraphManager)
+            throws ExecutionException, InterruptedException {
+        if (context.ownershipMatrix() != null) {
+            context.ownershipMatrix().write(context, sharedGraphManager);
+        }
+    }
+
+    /**
+     * Computes the beneficiaries of the head companies of a shared graph, through the result cache if the run
+     * has one.
+     */
+    protected static void computeCompanies(PipelineContext context, SharedGraphManager sharedGraphManager,
+                                           FounderTable<Company> companyTable, FounderTable<LegalEntity> legalEntityTable,
+                                           FounderTable<NaturalEntity> naturalEntityTable, long firstSequence)
+            throws ExecutionException, InterruptedException {
+        long[] companyIds = new long[companyTable.size()];
+        Arrays.setAll(companyIds, companyTable::id);
+        LongFunction<BenefeciarRegistry> computation = companyId -> context.measureCompany(() -> sharedGraphManager.getBeneficiaries(
+                companyTable, companyTable.row(companyId), context.ownershipEngine(), context.beneficiaryThreshold()));
+        LongToIntFunction upstreamCost = upstreamCost(sharedGraphManager);
+        if (context.resultCache() == null) {
+            context.computeCompanies(companyIds, computation, upstreamCost, firstSequence);
+        } else {
+            context.resultCache().computeCompanies(context, sharedGraphManager, companyIds, companyTable, legalEntityTable,
+                    naturalEntityTable, computation, upstreamCost, firstSequence);
+        }
+    }
+
+    /**
+     * Estimates the cost of computing a head company of the shared graph by its {@link UpstreamCost}; a company
+     * without a vertex costs nothing.
+     */
+    protected static LongToIntFunction upstreamCost(SharedGraphManager sharedGraphManager) {
+        OwnershipGraph graph = sharedGraphManager.getGraph();
+        int[] costs = UpstreamCost.estimate(graph);
+        return companyId -> {
+            int vertex = graph.vertex(VertexType.LEGAL, companyId);
+            return vertex < 0 ? 0 : costs[vertex];
+        };
+    }
+}
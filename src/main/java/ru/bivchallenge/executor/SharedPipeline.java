@@ -0,0 +1,62 @@
+package ru.bivchallenge.executor;
+
+import ru.bivchallenge.data.FounderTable;
+import ru.bivchallenge.data.SharedGraphManager;
+import ru.bivchallenge.dto.Company;
+import ru.bivchallenge.dto.LegalEntity;
+import ru.bivchallenge.dto.NaturalEntity;
+import ru.bivchallenge.metrics.ProgressReporter;
+import ru.bivchallenge.metrics.RunMetrics;
+import ru.bivchallenge.persistence.FounderDataProvider;
+import ru.bivchallenge.persistence.TableDataProvider;
+import ru.bivchallenge.processor.FounderShareRepairProcessor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Computes the beneficiaries on one {@link SharedGraphManager} graph of the whole registry. The tables are loaded
+ * in their columnar form, and the graph is built from the blocks of founder rows as they are parsed (see
+ * {@link SharedGraphManager.Builder}), so that loading and building overlap and only freezing the graph is left for
+ * the {@code build} stage. The graph takes its weights from the tables repaired in between.
+ */
+final class SharedPipeline extends SharedGraphPipeline {
+
+    SharedPipeline(FounderDataProvider<LegalEntity> legalEntityDataProvider,
+                   FounderDataProvider<NaturalEntity> naturalEntityDataProvider,
+                   TableDataProvider<Company> companyDataProvider) {
+        super(legalEntityDataProvider, naturalEntityDataProvider, companyDataProvider);
+    }
+
+    @Override
+    public void run(PipelineContext context) throws ExecutionException, InterruptedException {
+        CompletableFuture<FounderTable<Company>> companyTableFuture = CompletableFuture.supplyAsync(companyDataProvider::getTable, context.pool());
+        SharedGraphManager.Builder graphBuilder = new SharedGraphManager.Builder();
+        CompletableFuture<FounderTable<LegalEntity>> legalEntityTableFuture = CompletableFuture.supplyAsync(() -> {
+            FounderTable<LegalEntity> table = legalEntityDataProvider.getTable(graphBuilder::addLegalEntities);
+            graphBuilder.completeLegalEntities();
+            return table;
+        }, context.pool());
+        CompletableFuture<FounderTable<NaturalEntity>> naturalEntityTableFuture = CompletableFuture.supplyAsync(
+                () -> naturalEntityDataProvider.getTable(graphBuilder::addNaturalEntities), context.pool());
+
+        FounderTable<Company> companyTable;
+        FounderTable<LegalEntity> legalEntityTable;
+        FounderTable<NaturalEntity> naturalEntityTable;
+        try (RunMetrics.Stage ignored = context.metrics().stage("load"); ProgressReporter ignoredProgress = context.loadProgress()) {
+            companyTable = companyTableFuture.get();
+            legalEntityTable = legalEntityTableFuture.get();
+            naturalEntityTable = naturalEntityTableFuture.get();
+        }
+        FounderShareRepairProcessor.RepairedTables repairedTables = repair(context, legalEntityTable, naturalEntityTable);
+        SharedGraphManager sharedGraphManager;
+        try (RunMetrics.Stage ignored = context.metrics().stage("build")) {
+            sharedGraphManager = graphBuilder.build(repairedTables.legalEntityTable(), repairedTables.naturalEntityTable());
+        }
+        writeOwnershipMatrix(context, sharedGraphManager);
+
+        try (RunMetrics.Stage ignored = context.metrics().stage("compute"); ProgressReporter ignoredProgress = context.computeProgress(companyTable.size())) {
+            computeCompanies(context, sharedGraphManager, companyTable, legalEntityTable, naturalEntityTable, 0);
+        }
+    }
+}
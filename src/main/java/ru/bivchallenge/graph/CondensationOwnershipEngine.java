@@ -0,0 +1,173 @@
+package ru.bivchallenge.graph;
+
+/**
+ * The {@code CondensationOwnershipEngine} class computes effective ownership on graphs with cross-holdings.
+ *
+ * <p>The upstream subgraph of the head is condensed into {@link StronglyConnectedComponents}, which are emitted
+ * in reverse topological order of the condensation: a component is solved once every company it owns shares of
+ * has been solved.</p>
+ *
+ * <ul>
+ *     <li>A trivial component (one vertex) gets the weighted sum of the shares of its targets.</li>
+ *     <li>A cyclic component solves {@code x = W x + b}, where {@code W} holds the edges inside the component and
+ *     {@code b} the contribution of the already solved targets, with Gauss-Seidel iteration until no share moves
+ *     by more than the tolerance. Unlike path enumeration, the share circulating inside the cycle is counted.</li>
+ * </ul>
+ *
+ * <p>If a component does not converge within the iteration limit (for example two companies owning 100% of each
+ * other), the head falls back to {@link PathEnumerationOwnershipEngine}. Every solved component is recorded in
+ * the {@link CycleReport}.</p>
+ *
+ * <p>Like {@link PropagationOwnershipEngine}, the engine sums the share of a person with no cross-holding on its
+ * paths again in the order of path enumeration, so on acyclic structures its shares are bit-identical to the
+ * reference.</p>
+ *
+ * <p>With {@link SearchBounds} the upstream only holds the vertices whose best path to the head carries at least
+ * the search epsilon, and the fallback skips the persons that cannot exceed the threshold.</p>
+ */
+public class CondensationOwnershipEngine implements OwnershipEngine {
+    private final double tolerance;
+    private final int maxIterations;
+    private final CycleReport report;
+    private final SearchBounds bounds;
+    private final PathEnumerationOwnershipEngine enumeration = new PathEnumerationOwnershipEngine();
+
+    private final UpstreamSet upstream = new UpstreamSet();
+    private final StronglyConnectedComponents components = new StronglyConnectedComponents();
+    private boolean[] aboveCycle = new boolean[0];
+    private double[] share = new double[0];
+    private double[] base = new double[0];
+
+    /**
+     * Constructs an engine with the given convergence settings.
+     *
+     * @param tolerance     the maximum change of a share between two iterations at which a component is solved
+     * @param maxIterations the maximum number of iterations spent on a single cyclic component
+     * @param report        the report receiving statistics about cyclic components
+     */
+    public CondensationOwnershipEngine(double tolerance, int maxIterations, CycleReport report) {
+        this(tolerance, maxIterations, report, SearchBounds.EXACT);
+    }
+
+    /**
+     * Constructs an engine with the given convergence settings that prunes its search with the given bounds.
+     *
+     * @param tolerance     the maximum change of a share between two iterations at which a component is solved
+     * @param maxIterations the maximum number of iterations spent on a single cyclic component
+     * @param report        the report receiving statistics about cyclic components
+     * @param bounds        the bounds of the search
+     */
+    public CondensationOwnershipEngine(double tolerance, int maxIterations, CycleReport report, SearchBounds bounds) {
+        this.tolerance = tolerance;
+        this.maxIterations = maxIterations;
+        this.report = report;
+        this.bounds = bounds;
+    }
+
+    @Override
+    public void compute(OwnershipGraph graph, int headVertex, ShareConsumer consumer) {
+        compute(graph, headVertex, Double.NEGATIVE_INFINITY, consumer);
+    }
+
+    @Override
+    public void compute(OwnershipGraph graph, int headVertex, double threshold, ShareConsumer consumer) {
+        ensureCapacity(graph.vertexCount());
+        int upstreamCount = upstream.collect(graph, headVertex, bounds.epsilon());
+        upstream.indexEdges(graph, headVertex);
+        int componentCount = components.condense(graph, upstream::get, upstreamCount, headVertex);
+
+        for (int c = 0; c < componentCount; c++) {
+            int from = components.start(c);
+            int to = components.end(c);
+            if (to - from == 1) {
+                int vertex = components.vertex(from);
+                share[vertex] = vertex == headVertex ? 1.0 : weightedShare(vertex);
+                aboveCycle[vertex] = vertex != headVertex && ownsAboveCycle(vertex);
+            } else if (!solveComponent(c, from, to)) {
+                enumeration.emit(graph, headVertex, upstream, upstreamCount, bounds, consumer);
+                return;
+            }
+        }
+
+        for (int i = 0; i < upstreamCount; i++) {
+            int vertex = upstream.get(i);
+            if (graph.type(vertex) == VertexType.NATURAL
+                    && share[vertex] + PathEnumerationOwnershipEngine.REFERENCE_SLACK > threshold) {
+                double value = aboveCycle[vertex]
+                        ? Double.NaN : enumeration.ownership(graph, upstream, vertex, headVertex);
+                if (Double.isNaN(value)) {
+                    value = share[vertex];
+                }
+                if (value != 0.0) {
+                    consumer.accept(vertex, value);
+                }
+            }
+        }
+    }
+
+    private boolean solveComponent(int c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int vertex = components.vertex(i);
+            double external = 0.0;
+            for (int edge = upstream.edgeStart(vertex); edge < upstream.edgeEnd(vertex); edge++) {
+                int target = upstream.edgeTarget(edge);
+                if (!components.isInComponent(target, c)) {
+                    external += upstream.edgeWeight(edge) * share[target];
+                }
+            }
+            base[vertex] = external;
+            share[vertex] = external;
+            aboveCycle[vertex] = true;
+        }
+
+        int iteration = 0;
+        boolean converged = false;
+        while (!converged && iteration < maxIterations) {
+            iteration++;
+            double maxDelta = 0.0;
+            for (int i = from; i < to; i++) {
+                int vertex = components.vertex(i);
+                double value = base[vertex];
+                for (int edge = upstream.edgeStart(vertex); edge < upstream.edgeEnd(vertex); edge++) {
+                    int target = upstream.edgeTarget(edge);
+                    if (components.isInComponent(target, c)) {
+                        value += upstream.edgeWeight(edge) * share[target];
+                    }
+                }
+                maxDelta = Math.max(maxDelta, Math.abs(value - share[vertex]));
+                share[vertex] = value;
+            }
+            if (!Double.isFinite(maxDelta)) {
+                break;
+            }
+            converged = maxDelta <= tolerance;
+        }
+        report.record(to - from, iteration, converged);
+        return converged;
+    }
+
+    private boolean ownsAboveCycle(int vertex) {
+        for (int edge = upstream.edgeStart(vertex); edge < upstream.edgeEnd(vertex); edge++) {
+            if (aboveCycle[upstream.edgeTarget(edge)]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private double weightedShare(int vertex) {
+        double total = 0.0;
+        for (int edge = upstream.edgeStart(vertex); edge < upstream.edgeEnd(vertex); edge++) {
+            total += upstream.edgeWeight(edge) * share[upstream.edgeTarget(edge)];
+        }
+        return total;
+    }
+
+    private void ensureCapacity(int vertexCount) {
+        if (share.length < vertexCount) {
+            aboveCycle = new boolean[vertexCount];
+            share = new double[vertexCount];
+            base = new double[vertexCount];
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package ru.bivchallenge.graph;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code CycleReport} class collects statistics about the cyclic strongly connected components (cross-holdings)
+ * met while computing ownership.
+ *
+ * <p>It is thread-safe, so a single report can be shared by all workers of a run. Every component is counted each
+ * time it is solved, i.e. once per head company whose upstream contains it. Components whose paths are enumerated
+ * rather than iterated are recorded with no iterations.</p>
+ *
+ * @see CondensationOwnershipEngine
+ * @see PropagationOwnershipEngine
+ */
+public class CycleReport {
+    private final Map<Integer, LongAdder> componentSizes = new ConcurrentHashMap<>();
+    private final LongAdder components = new LongAdder();
+    private final LongAdder iterations = new LongAdder();
+    private final LongAdder unconverged = new LongAdder();
+
+    /**
+     * Records a solved cyclic component.
+     *
+     * @param size       the number of vertices in the component
+     * @param iterations the number of iterations spent solving it
+     * @param converged  whether the iteration reached the configured tolerance
+     */
+    public void record(int size, int iterations, boolean converged) {
+        components.increment();
+        this.iterations.add(iterations);
+        componentSizes.computeIfAbsent(size, key -> new LongAdder()).increment();
+        if (!converged) {
+            unconverged.increment();
+        }
+    }
+
+    /**
+     * Returns the number of cyclic components found.
+     *
+     * @return the component count
+     */
+    public long getComponentCount() {
+        return components.sum();
+    }
+
+    /**
+     * Returns the number of cyclic components whose iteration did not converge.
+     *
+     * @return the count of components that fell back to path enumeration
+     */
+    public long getUnconvergedCount() {
+        return unconverged.sum();
+    }
+
+    /**
+     * Returns how many cyclic components of every size were found.
+     *
+     * @return a map from component size (in vertices) to the number of components of that size, sorted by size
+     */
+    public Map<Integer, Long> getComponentSizes() {
+        Map<Integer, Long> sizes = new TreeMap<>();
+        componentSizes.forEach((size, count) -> sizes.put(size, count.sum()));
+        return sizes;
+    }
+
+    /**
+     * Returns a one-line human readable summary of the report.
+     *
+     * @return the summary
+     */
+    public String summary() {
+        Map<Integer, Long> sizes = getComponentSizes();
+        StringBuilder summary = new StringBuilder()
+                .append("Cyclic ownership components: ").append(getComponentCount())
+                .append(", iterations: ").append(iterations.sum())
+                .append(", unconverged: ").append(getUnconvergedCount());
+        if (!sizes.isEmpty()) {
+            summary.append(", sizes (vertices=count):");
+            sizes.forEach((size, count) -> summary.append(' ').append(size).append('=').append(count));
+        }
+        return summary.toString();
+    }
+}
@@ -0,0 +1,54 @@
+package ru.bivchallenge.graph;
+
+/**
+ * The {@code OwnershipEngine} interface defines how the effective ownership of a head company is computed
+ * for the natural persons of an {@link OwnershipGraph}.
+ *
+ * <p>The effective share of a person is the sum, over every ownership path from the person to the head,
+ * of the product of the edge weights along the path. Shares are reported as computed, without rounding, and
+ * callers compare them with the threshold as they are. Implementations sum the paths of a person again in the
+ * order of {@link PathEnumerationOwnershipEngine} when they are few enough to walk, so every engine yields the
+ * same value for the same acyclic structure; given the threshold, they only do so for the persons that may
+ * exceed it.
+ * Engines keep reusable scratch buffers and are therefore not thread-safe: every worker thread should use
+ * its own instance.</p>
+ *
+ * @see OwnershipGraph
+ */
+public interface OwnershipEngine {
+    /**
+     * The default effective share a natural person must exceed to be a beneficiary.
+     */
+    double BENEFICIARY_THRESHOLD = 0.25;
+
+    /**
+     * Computes the effective share of the head company owned by every natural person that can reach it.
+     *
+     * @param graph      the ownership graph
+     * @param headVertex the vertex of the company whose owners are calculated
+     * @param consumer   receives every natural person vertex together with its effective share
+     */
+    void compute(OwnershipGraph graph, int headVertex, ShareConsumer consumer);
+
+    /**
+     * Computes the effective share of the head company owned by the natural persons that may exceed a threshold.
+     * Persons whose share is clearly below it may be left out, which spares engines evaluating their share in
+     * the reference order; callers still compare the reported shares with the threshold.
+     *
+     * @param graph      the ownership graph
+     * @param headVertex the vertex of the company whose owners are calculated
+     * @param threshold  the share a natural person must exceed to be a beneficiary
+     * @param consumer   receives the natural person vertices together with their effective shares
+     */
+    default void compute(OwnershipGraph graph, int headVertex, double threshold, ShareConsumer consumer) {
+        compute(graph, headVertex, consumer);
+    }
+
+    /**
+     * Receives the effective share computed for a natural person vertex.
+     */
+    @FunctionalInterface
+    interface ShareConsumer {
+        void accept(int naturalVertex, double share);
+    }
+}
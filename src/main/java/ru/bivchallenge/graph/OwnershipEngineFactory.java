@@ -0,0 +1,46 @@
+package ru.bivchallenge.graph;
+
+import ru.bivchallenge.config.OwnershipConfig;
+
+import java.util.function.Supplier;
+
+/**
+ * The {@code OwnershipEngineFactory} class creates {@link OwnershipEngine} instances according to the
+ * {@link OwnershipConfig}. Since engines are not thread-safe, the factory is meant to be used with
+ * {@link ThreadLocal#withInitial(Supplier)} or called once per worker.
+ *
+ * @see OwnershipConfig.CycleMode
+ * @see OwnershipConfig.SearchMode
+ */
+public class OwnershipEngineFactory implements Supplier<OwnershipEngine> {
+    private final OwnershipConfig ownershipConfig;
+    private final CycleReport cycleReport;
+
+    /**
+     * Constructs a factory for the given configuration.
+     *
+     * @param ownershipConfig the ownership configuration
+     * @param cycleReport     the report of the cyclic components, shared by every created engine
+     */
+    public OwnershipEngineFactory(OwnershipConfig ownershipConfig, CycleReport cycleReport) {
+        this.ownershipConfig = ownershipConfig;
+        this.cycleReport = cycleReport;
+    }
+
+    @Override
+    public OwnershipEngine get() {
+        SearchBounds bounds = switch (ownershipConfig.getSearchMode()) {
+            case EXACT -> SearchBounds.EXACT;
+            case BOUNDED -> new SearchBounds(ownershipConfig.getBeneficiaryThreshold(), ownershipConfig.getSearchEpsilon());
+        };
+        return switch (ownershipConfig.getCycleMode()) {
+            case ENUMERATE -> new PropagationOwnershipEngine(bounds, cycleReport);
+            case SOLVE -> new CondensationOwnershipEngine(
+                    ownershipConfig.getCycleTolerance(),
+                    ownershipConfig.getCycleMaxIterations(),
+                    cycleReport,
+                    bounds
+            );
+        };
+    }
+}
@@ -0,0 +1,258 @@
+package ru.bivchallenge.graph;
+
+import ru.bivchallenge.util.LongIntHashMap;
+
+/**
+ * The {@code OwnershipGraph} class is a frozen, compressed sparse row (CSR) representation of an ownership
+ * structure. Vertices are dense {@code int} ids tagged with a {@link VertexType}, and every edge points from
+ * an owner to the company it owns a share of.
+ *
+ * <p>Edges are stored twice:</p>
+ * <ul>
+ *     <li>the incoming adjacency ({@code inOffsets}, {@code inSources}, {@code weights}) is grouped by target
+ *     vertex, and the position of an edge in it is the edge id;</li>
+ *     <li>the outgoing adjacency ({@code outOffsets}, {@code outTargets}, {@code outEdges}) is grouped by source
+ *     vertex and refers back to the edge ids, so both directions share a single weight array.</li>
+ * </ul>
+ *
+ * <p>Within a vertex, edges keep the order in which they were added to the {@link OwnershipGraphBuilder}.
+ * The topology is immutable once built; only the weights may be updated, which is what share repair does.</p>
+ *
+ * <p>Typical traversal:</p>
+ * <pre>{@code
+ * for (int e = graph.inStart(vertex); e < graph.inEnd(vertex); e++) {
+ *     int owner = graph.source(e);
+ *     double weight = graph.weight(e);
+ * }
+ * }</pre>
+ *
+ * @see OwnershipGraphBuilder
+ * @see VertexType
+ */
+public final class OwnershipGraph {
+    private final byte[] types;
+    private final long[] ids;
+    private final LongIntHashMap[] index;
+
+    private final int[] inOffsets;
+    private final int[] inSources;
+    private final double[] weights;
+
+    private final int[] outOffsets;
+    private final int[] outTargets;
+    private final int[] outEdges;
+
+    OwnershipGraph(byte[] types, long[] ids, LongIntHashMap[] index,
+                   int[] inOffsets, int[] inSources, double[] weights,
+                   int[] outOffsets, int[] outTargets, int[] outEdges) {
+        this.types = types;
+        this.ids = ids;
+        this.index = index;
+        this.inOffsets = inOffsets;
+        this.inSources = inSources;
+        this.weights = weights;
+        this.outOffsets = outOffsets;
+        this.outTargets = outTargets;
+        this.outEdges = outEdges;
+    }
+
+    /**
+     * Returns the number of vertices in the graph.
+     *
+     * @return the vertex count
+     */
+    public int vertexCount() {
+        return ids.length;
+    }
+
+    /**
+     * Returns the number of edges in the graph.
+     *
+     * @return the edge count
+     */
+    public int edgeCount() {
+        return inSources.length;
+    }
+
+    /**
+     * Returns the type of the vertex.
+     *
+     * @param vertex the vertex id
+     * @return the type tag of the vertex
+     */
+    public VertexType type(int vertex) {
+        return VertexType.ofTag(types[vertex]);
+    }
+
+    /**
+     * Returns the entity id the vertex was created for.
+     *
+     * @param vertex the vertex id
+     * @return the entity id
+     */
+    public long id(int vertex) {
+        return ids[vertex];
+    }
+
+    /**
+     * Resolves the vertex created for the given entity.
+     *
+     * @param type the type of the entity
+     * @param id   the entity id
+     * @return the vertex id, or {@code -1} if the graph has no such vertex
+     */
+    public int vertex(VertexType type, long id) {
+        return index[type.ordinal()].get(id);
+    }
+
+    /**
+     * Checks whether the graph contains a vertex for the given entity.
+     *
+     * @param type the type of the entity
+     * @param id   the entity id
+     * @return {@code true} if the vertex exists
+     */
+    public boolean containsVertex(VertexType type, long id) {
+        return vertex(type, id) >= 0;
+    }
+
+    /**
+     * Returns the first incoming edge id of the vertex.
+     *
+     * @param vertex the vertex id
+     * @return the first incoming edge id (inclusive)
+     */
+    public int inStart(int vertex) {
+        return inOffsets[vertex];
+    }
+
+    /**
+     * Returns the end of the incoming edge range of the vertex.
+     *
+     * @param vertex the vertex id
+     * @return the last incoming edge id (exclusive)
+     */
+    public int inEnd(int vertex) {
+        return inOffsets[vertex + 1];
+    }
+
+    /**
+     * Returns the number of incoming edges of the vertex.
+     *
+     * @param vertex the vertex id
+     * @return the in-degree
+     */
+    public int inDegree(int vertex) {
+        return inOffsets[vertex + 1] - inOffsets[vertex];
+    }
+
+    /**
+     * Returns the owner (source vertex) of the edge.
+     *
+     * @param edge the edge id
+     * @return the source vertex id
+     */
+    public int source(int edge) {
+        return inSources[edge];
+    }
+
+    /**
+     * Returns the share weight of the edge.
+     *
+     * @param edge the edge id
+     * @return the weight of the edge
+     */
+    public double weight(int edge) {
+        return weights[edge];
+    }
+
+    /**
+     * Updates the share weight of the edge.
+     *
+     * @param edge   the edge id
+     * @param weight the new weight
+     */
+    public void setWeight(int edge, double weight) {
+        weights[edge] = weight;
+    }
+
+    /**
+     * Returns the first outgoing adjacency slot of the vertex.
+     *
+     * @param vertex the vertex id
+     * @return the first outgoing slot (inclusive)
+     */
+    public int outStart(int vertex) {
+        return outOffsets[vertex];
+    }
+
+    /**
+     * Returns the end of the outgoing adjacency range of the vertex.
+     *
+     * @param vertex the vertex id
+     * @return the last outgoing slot (exclusive)
+     */
+    public int outEnd(int vertex) {
+        return outOffsets[vertex + 1];
+    }
+
+    /**
+     * Returns the number of outgoing edges of the vertex.
+     *
+     * @param vertex the vertex id
+     * @return the out-degree
+     */
+    public int outDegree(int vertex) {
+        return outOffsets[vertex + 1] - outOffsets[vertex];
+    }
+
+    /**
+     * Returns the owned company (target vertex) stored in the outgoing slot.
+     *
+     * @param slot the outgoing slot
+     * @return the target vertex id
+     */
+    public int outTarget(int slot) {
+        return outTargets[slot];
+    }
+
+    /**
+     * Returns the edge id stored in the outgoing slot.
+     *
+     * @param slot the outgoing slot
+     * @return the edge id, usable with {@link #weight(int)} and {@link #source(int)}
+     */
+    public int outEdge(int slot) {
+        return outEdges[slot];
+    }
+
+    /**
+     * Finds the edge between two vertices.
+     *
+     * @param source the owner vertex id
+     * @param target the owned vertex id
+     * @return the edge id, or {@code -1} if the vertices are not connected
+     */
+    public int edge(int source, int target) {
+        if (source < 0 || target < 0) {
+            return -1;
+        }
+        for (int e = inOffsets[target]; e < inOffsets[target + 1]; e++) {
+            if (inSources[e] == source) {
+                return e;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks whether an edge connects the two vertices.
+     *
+     * @param source the owner vertex id
+     * @param target the owned vertex id
+     * @return {@code true} if the edge exists
+     */
+    public boolean containsEdge(int source, int target) {
+        return edge(source, target) >= 0;
+    }
+}
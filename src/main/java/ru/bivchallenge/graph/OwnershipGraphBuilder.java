@@ -0,0 +1,258 @@
+package ru.bivchallenge.graph;
+
+import ru.bivchallenge.util.LongIntHashMap;
+
+import java.util.Arrays;
+
+/**
+ * The {@code OwnershipGraphBuilder} class accumulates vertices and edges in growable primitive arrays and
+ * freezes them into an {@link OwnershipGraph}.
+ *
+ * <p>The builder mirrors the semantics of a simple directed graph:</p>
+ * <ul>
+ *     <li>adding a vertex that already exists returns the existing vertex id;</li>
+ *     <li>self-loops are ignored;</li>
+ *     <li>when the same pair of vertices is connected more than once, the first edge wins.</li>
+ * </ul>
+ *
+ * <p>A builder is not thread-safe and can be built only once.</p>
+ *
+ * @see OwnershipGraph
+ */
+public final class OwnershipGraphBuilder {
+    private final LongIntHashMap[] index;
+
+    private byte[] types;
+    private long[] ids;
+    private int vertexCount;
+
+    private int[] edgeSources;
+    private int[] edgeTargets;
+    private double[] edgeWeights;
+    private int edgeCount;
+
+    private boolean built;
+    private int[] builtEdgeIds;
+
+    /**
+     * Constructs a builder sized for the expected number of vertices and edges.
+     *
+     * @param expectedVertices the expected number of vertices
+     * @param expectedEdges    the expected number of edges
+     */
+    public OwnershipGraphBuilder(int expectedVertices, int expectedEdges) {
+        int vertexCapacity = Math.max(expectedVertices, 4);
+        int edgeCapacity = Math.max(expectedEdges, 4);
+        this.index = new LongIntHashMap[VertexType.values().length];
+        for (int i = 0; i < index.length; i++) {
+            index[i] = new LongIntHashMap(i == VertexType.HEAD.ordinal() ? 1 : vertexCapacity);
+        }
+        this.types = new byte[vertexCapacity];
+        this.ids = new long[vertexCapacity];
+        this.edgeSources = new int[edgeCapacity];
+        this.edgeTargets = new int[edgeCapacity];
+        this.edgeWeights = new double[edgeCapacity];
+    }
+
+    /**
+     * Constructs a builder with a small default capacity.
+     */
+    public OwnershipGraphBuilder() {
+        this(16, 16);
+    }
+
+    /**
+     * Adds a vertex for the given entity unless it already exists.
+     *
+     * @param type the type of the entity
+     * @param id   the entity id
+     * @return the id of the new or existing vertex
+     */
+    public int addVertex(VertexType type, long id) {
+        ensureNotBuilt();
+        LongIntHashMap typeIndex = index[type.ordinal()];
+        int existing = typeIndex.get(id);
+        if (existing != LongIntHashMap.MISSING) {
+            return existing;
+        }
+        if (vertexCount == ids.length) {
+            int capacity = vertexCount << 1;
+            types = Arrays.copyOf(types, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+        }
+        int vertex = vertexCount++;
+        types[vertex] = type.tag();
+        ids[vertex] = id;
+        typeIndex.put(id, vertex);
+        return vertex;
+    }
+
+    /**
+     * Resolves the vertex created for the given entity.
+     *
+     * @param type the type of the entity
+     * @param id   the entity id
+     * @return the vertex id, or {@code -1} if there is no such vertex
+     */
+    public int vertex(VertexType type, long id) {
+        return index[type.ordinal()].get(id);
+    }
+
+    /**
+     * Checks whether a vertex exists for the given entity.
+     *
+     * @param type the type of the entity
+     * @param id   the entity id
+     * @return {@code true} if the vertex exists
+     */
+    public boolean containsVertex(VertexType type, long id) {
+        return vertex(type, id) >= 0;
+    }
+
+    /**
+     * Returns the number of vertices added so far.
+     *
+     * @return the vertex count
+     */
+    public int vertexCount() {
+        return vertexCount;
+    }
+
+    /**
+     * Adds an ownership edge from the owner to the owned company.
+     * Self-loops are ignored; duplicate edges are discarded when the graph is built.
+     *
+     * @param source the owner vertex id
+     * @param target the owned vertex id
+     * @param weight the share of the target owned by the source
+     * @return the index of the added edge, to be resolved with {@link #builtEdge(int)}, or {@code -1} for
+     * a self-loop
+     */
+    public int addEdge(int source, int target, double weight) {
+        ensureNotBuilt();
+        if (source == target) {
+            return -1;
+        }
+        if (edgeCount == edgeSources.length) {
+            int capacity = edgeCount << 1;
+            edgeSources = Arrays.copyOf(edgeSources, capacity);
+            edgeTargets = Arrays.copyOf(edgeTargets, capacity);
+            edgeWeights = Arrays.copyOf(edgeWeights, capacity);
+        }
+        edgeSources[edgeCount] = source;
+        edgeTargets[edgeCount] = target;
+        edgeWeights[edgeCount] = weight;
+        return edgeCount++;
+    }
+
+    /**
+     * Freezes the accumulated vertices and edges into an {@link OwnershipGraph}.
+     * The builder cannot be used afterwards.
+     *
+     * @return the frozen graph
+     */
+    public OwnershipGraph build() {
+        ensureNotBuilt();
+        built = true;
+
+        int n = vertexCount;
+        int[] inOffsets = new int[n + 1];
+        for (int i = 0; i < edgeCount; i++) {
+            inOffsets[edgeTargets[i] + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            inOffsets[v + 1] += inOffsets[v];
+        }
+        int[] order = sortedByTarget(inOffsets);
+
+        // Incoming adjacency: duplicates of an already placed (source, target) pair are dropped.
+        int[] compactOffsets = new int[n + 1];
+        int[] inSources = new int[edgeCount];
+        double[] weights = new double[edgeCount];
+        int[] edgeIds = new int[edgeCount];
+        int[] lastTarget = new int[n];
+        Arrays.fill(lastTarget, -1);
+        int edges = 0;
+        int k = 0;
+        for (int v = 0; v < n; v++) {
+            compactOffsets[v] = edges;
+            for (; k < inOffsets[v + 1]; k++) {
+                int i = order[k];
+                int source = edgeSources[i];
+                if (lastTarget[source] == v) {
+                    edgeIds[i] = -1;
+                    continue;
+                }
+                lastTarget[source] = v;
+                inSources[edges] = source;
+                weights[edges] = edgeWeights[i];
+                edgeIds[i] = edges++;
+            }
+        }
+        compactOffsets[n] = edges;
+
+        // Outgoing adjacency keeps the insertion order of the edges.
+        int[] outOffsets = new int[n + 1];
+        for (int i = 0; i < edgeCount; i++) {
+            if (edgeIds[i] >= 0) {
+                outOffsets[edgeSources[i] + 1]++;
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            outOffsets[v + 1] += outOffsets[v];
+        }
+        int[] outCursor = Arrays.copyOf(outOffsets, n);
+        int[] outTargets = new int[edges];
+        int[] outEdges = new int[edges];
+        for (int i = 0; i < edgeCount; i++) {
+            if (edgeIds[i] < 0) {
+                continue;
+            }
+            int slot = outCursor[edgeSources[i]]++;
+            outTargets[slot] = edgeTargets[i];
+            outEdges[slot] = edgeIds[i];
+        }
+
+        OwnershipGraph graph = new OwnershipGraph(
+                Arrays.copyOf(types, n), Arrays.copyOf(ids, n), index,
+                compactOffsets, Arrays.copyOf(inSources, edges), Arrays.copyOf(weights, edges),
+                outOffsets, outTargets, outEdges
+        );
+        types = null;
+        ids = null;
+        edgeSources = null;
+        edgeTargets = null;
+        edgeWeights = null;
+        builtEdgeIds = edgeIds;
+        return graph;
+    }
+
+    /**
+     * Returns the id in the built graph of an added edge.
+     *
+     * @param addedEdge the index returned by {@link #addEdge(int, int, double)}
+     * @return the edge id, or {@code -1} if the edge duplicated an earlier one and was discarded
+     * @throws IllegalStateException if the graph has not been built yet
+     */
+    public int builtEdge(int addedEdge) {
+        if (builtEdgeIds == null) {
+            throw new IllegalStateException("Ownership graph has not been built yet");
+        }
+        return builtEdgeIds[addedEdge];
+    }
+
+    private int[] sortedByTarget(int[] inOffsets) {
+        int[] cursor = Arrays.copyOf(inOffsets, vertexCount);
+        int[] order = new int[edgeCount];
+        for (int i = 0; i < edgeCount; i++) {
+            order[cursor[edgeTargets[i]]++] = i;
+        }
+        return order;
+    }
+
+    private void ensureNotBuilt() {
+        if (built) {
+            throw new IllegalStateException("Ownership graph has already been built");
+        }
+    }
+}
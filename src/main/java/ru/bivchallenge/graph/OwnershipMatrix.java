@@ -0,0 +1,355 @@
+package ru.bivchallenge.graph;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
+
+/**
+ * The {@code OwnershipMatrix} class holds the effective ownership of every company by every natural person of an
+ * {@link OwnershipGraph} as a sparse matrix in compressed sparse row form: one row per person, one column per
+ * company the person owns a share of.
+ *
+ * <p>The direct ownership of the graph is the sparse matrix {@code A} of its edge weights, read from the outgoing
+ * adjacency, which is already grouped by owner. The row of a person with direct holdings {@code n} is the Neumann
+ * series {@code n + nA + nA² + ...}, that is {@code n(I - A)⁻¹}, the Leontief inverse {@code L} applied to the
+ * row. It is evaluated by repeated sparse vector-matrix products: the share that reached the companies in one step
+ * is multiplied with their own holdings to reach the next ones. On an acyclic structure the series ends after as
+ * many steps as the longest ownership chain; a step stops at the shares below the tolerance.</p>
+ *
+ * <p>Inside a cycle the share circulating through it is counted, but, as in {@link CondensationOwnershipEngine},
+ * a company is owned by the paths that reach it, not by those that pass through it and come back. The series
+ * counts both, so every column {@code j} of a company on a cycle is divided by {@code L[j][j]}, the share of the
+ * company that returns to it, computed by the same iteration restricted to its strongly connected component. A row
+ * or a diagonal that has not converged within the iteration limit, such as one reaching two companies owning 100%
+ * of each other, is cut off there and counted.</p>
+ *
+ * <p>Rows are computed in parallel in blocks of consecutive persons, each worker multiplying with its own sparse
+ * accumulators, which take a few dense arrays the size of the graph. Shares below the cutoff are dropped to keep
+ * the matrix sparse. The rows and the columns of every row are in the order of the vertices.</p>
+ */
+public final class OwnershipMatrix {
+    private static final int ROWS_PER_BLOCK = 1024;
+
+    private final OwnershipGraph graph;
+    private final int[] rowVertices;
+    private final long[] rowOffsets;
+    private final int[] columns;
+    private final double[] shares;
+    private final int unconvergedRowCount;
+
+    private OwnershipMatrix(OwnershipGraph graph, int[] rowVertices, long[] rowOffsets, int[] columns, double[] shares,
+                            int unconvergedRowCount) {
+        this.graph = graph;
+        this.rowVertices = rowVertices;
+        this.rowOffsets = rowOffsets;
+        this.columns = columns;
+        this.shares = shares;
+        this.unconvergedRowCount = unconvergedRowCount;
+    }
+
+    /**
+     * Computes the effective ownership matrix of a graph whose weights are repaired. The rows are computed with
+     * the common pool, or the pool of the task calling this method.
+     *
+     * @param graph         the ownership graph
+     * @param cutoff        the smallest effective share kept in the matrix
+     * @param tolerance     the smallest share propagated by one more step
+     * @param maxIterations the maximum number of steps per row
+     * @return the matrix
+     */
+    public static OwnershipMatrix compute(OwnershipGraph graph, double cutoff, double tolerance, int maxIterations) {
+        int[] rowVertices = IntStream.range(0, graph.vertexCount())
+                .filter(vertex -> graph.type(vertex) == VertexType.NATURAL)
+                .toArray();
+        Queue<Accumulators> idle = new ConcurrentLinkedQueue<>();
+        int[] cycles = cyclicComponents(graph);
+        int[] cyclicVertices = IntStream.range(0, graph.vertexCount()).filter(vertex -> cycles[vertex] >= 0).toArray();
+        double[] diagonal = new double[graph.vertexCount()];
+        Arrays.fill(diagonal, 1.0);
+        int unconvergedDiagonalCount = (int) IntStream.range(0, cyclicVertices.length).parallel()
+                .filter(i -> {
+                    Accumulators accumulators = idle.poll();
+                    if (accumulators == null) {
+                        accumulators = new Accumulators(graph.vertexCount());
+                    }
+                    boolean converged = accumulators.diagonal(graph, cyclicVertices[i], cycles, diagonal,
+                            tolerance, maxIterations);
+                    idle.add(accumulators);
+                    return !converged;
+                })
+                .count();
+        Block[] blocks = IntStream.range(0, (rowVertices.length + ROWS_PER_BLOCK - 1) / ROWS_PER_BLOCK).parallel()
+                .mapToObj(block -> {
+                    Accumulators accumulators = idle.poll();
+                    if (accumulators == null) {
+                        accumulators = new Accumulators(graph.vertexCount());
+                    }
+                    Block rows = accumulators.multiply(graph, rowVertices, block * ROWS_PER_BLOCK,
+                            Math.min(rowVertices.length, (block + 1) * ROWS_PER_BLOCK), diagonal, cutoff, tolerance,
+                            maxIterations);
+                    idle.add(accumulators);
+                    return rows;
+                })
+                .toArray(Block[]::new);
+
+        long[] rowOffsets = new long[rowVertices.length + 1];
+        long entryCount = 0;
+        int unconvergedRowCount = unconvergedDiagonalCount;
+        int row = 0;
+        for (Block block : blocks) {
+            for (int length : block.rowLengths) {
+                entryCount += length;
+                rowOffsets[++row] = entryCount;
+            }
+            unconvergedRowCount += block.unconvergedRowCount;
+        }
+        if (entryCount > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Too many effective shares above the cutoff: " + entryCount);
+        }
+        int[] columns = new int[(int) entryCount];
+        double[] shares = new double[(int) entryCount];
+        int offset = 0;
+        for (Block block : blocks) {
+            System.arraycopy(block.columns, 0, columns, offset, block.size);
+            System.arraycopy(block.shares, 0, shares, offset, block.size);
+            offset += block.size;
+        }
+        return new OwnershipMatrix(graph, rowVertices, rowOffsets, columns, shares, unconvergedRowCount);
+    }
+
+    /**
+     * Condenses the whole graph into {@link StronglyConnectedComponents} and numbers the strongly connected
+     * components that hold a cycle: those of more than one vertex and the companies holding a share of themselves.
+     *
+     * @return the cyclic component of every vertex, or {@code -1} for the vertices on no cycle
+     */
+    private static int[] cyclicComponents(OwnershipGraph graph) {
+        StronglyConnectedComponents condensation = new StronglyConnectedComponents();
+        int componentCount = condensation.condense(graph, vertex -> vertex, graph.vertexCount(), -1);
+        int[] components = new int[graph.vertexCount()];
+        Arrays.fill(components, -1);
+        int cyclicCount = 0;
+        for (int c = 0; c < componentCount; c++) {
+            int from = condensation.start(c);
+            int to = condensation.end(c);
+            if (to - from > 1 || ownsItself(graph, condensation.vertex(from))) {
+                for (int i = from; i < to; i++) {
+                    components[condensation.vertex(i)] = cyclicCount;
+                }
+                cyclicCount++;
+            }
+        }
+        return components;
+    }
+
+    private static boolean ownsItself(OwnershipGraph graph, int vertex) {
+        for (int slot = graph.outStart(vertex); slot < graph.outEnd(vertex); slot++) {
+            if (graph.outTarget(slot) == vertex) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of rows, one per natural person of the graph.
+     *
+     * @return the row count
+     */
+    public int rowCount() {
+        return rowVertices.length;
+    }
+
+    /**
+     * Returns the number of effective shares kept in the matrix.
+     *
+     * @return the entry count
+     */
+    public long entryCount() {
+        return rowOffsets[rowVertices.length];
+    }
+
+    /**
+     * Returns the number of rows and diagonal entries that did not converge within the iteration limit.
+     *
+     * @return the count of unconverged rows
+     */
+    public int unconvergedRowCount() {
+        return unconvergedRowCount;
+    }
+
+    /**
+     * Passes every effective share to the consumer, row by row.
+     *
+     * @param consumer receives the person id, the company id and the effective share
+     */
+    public void forEach(TripletConsumer consumer) {
+        for (int row = 0; row < rowVertices.length; row++) {
+            long personId = graph.id(rowVertices[row]);
+            for (long entry = rowOffsets[row]; entry < rowOffsets[row + 1]; entry++) {
+                consumer.accept(personId, graph.id(columns[(int) entry]), shares[(int) entry]);
+            }
+        }
+    }
+
+    /**
+     * Receives one effective share of the matrix.
+     */
+    @FunctionalInterface
+    public interface TripletConsumer {
+        void accept(long personId, long companyId, double share);
+    }
+
+    /**
+     * The rows of one block of persons.
+     */
+    private record Block(int[] rowLengths, int[] columns, double[] shares, int size, int unconvergedRowCount) {
+    }
+
+    /**
+     * The sparse accumulators of one worker: the total share of the row and the shares reached in the current and
+     * in the next step.
+     */
+    private static final class Accumulators {
+        private SparseVector total;
+        private SparseVector step;
+        private SparseVector nextStep;
+
+        private Accumulators(int vertexCount) {
+            total = new SparseVector(vertexCount);
+            step = new SparseVector(vertexCount);
+            nextStep = new SparseVector(vertexCount);
+        }
+
+        /**
+         * Computes the share of a company on a cycle that returns to it, {@code L[j][j]}, following the holdings
+         * inside its strongly connected component only; the walks that leave the component cannot come back.
+         */
+        private boolean diagonal(OwnershipGraph graph, int company, int[] cycles, double[] diagonal,
+                                 double tolerance, int maxIterations) {
+            double returned = 1.0;
+            step.clear();
+            step.addRow(graph, company, 1.0, tolerance, cycles);
+            int iterations = 0;
+            while (step.size > 0 && iterations++ < maxIterations) {
+                nextStep.clear();
+                for (int i = 0; i < step.size; i++) {
+                    int reached = step.indices[i];
+                    double share = step.values[reached];
+                    if (reached == company) {
+                        returned += share;
+                    }
+                    nextStep.addRow(graph, reached, share, tolerance, cycles);
+                }
+                swapSteps();
+            }
+            diagonal[company] = returned;
+            return step.size == 0;
+        }
+
+        private Block multiply(OwnershipGraph graph, int[] rowVertices, int firstRow, int endRow, double[] diagonal,
+                               double cutoff, double tolerance, int maxIterations) {
+            int[] rowLengths = new int[endRow - firstRow];
+            int[] columns = new int[16];
+            double[] shares = new double[16];
+            int size = 0;
+            int unconvergedRowCount = 0;
+            for (int row = firstRow; row < endRow; row++) {
+                total.clear();
+                step.clear();
+                step.addRow(graph, rowVertices[row], 1.0, tolerance, null);
+                int iterations = 0;
+                while (step.size > 0 && iterations++ < maxIterations) {
+                    nextStep.clear();
+                    for (int i = 0; i < step.size; i++) {
+                        int company = step.indices[i];
+                        double share = step.values[company];
+                        total.add(company, share);
+                        nextStep.addRow(graph, company, share, tolerance, null);
+                    }
+                    swapSteps();
+                }
+                if (step.size > 0) {
+                    unconvergedRowCount++;
+                }
+
+                Arrays.sort(total.indices, 0, total.size);
+                int length = 0;
+                for (int i = 0; i < total.size; i++) {
+                    int company = total.indices[i];
+                    double share = total.values[company] / diagonal[company];
+                    if (share >= cutoff) {
+                        if (size == columns.length) {
+                            columns = Arrays.copyOf(columns, size << 1);
+                            shares = Arrays.copyOf(shares, size << 1);
+                        }
+                        columns[size] = company;
+                        shares[size++] = share;
+                        length++;
+                    }
+                }
+                rowLengths[row - firstRow] = length;
+            }
+            return new Block(rowLengths, columns, shares, size, unconvergedRowCount);
+        }
+
+        private void swapSteps() {
+            SparseVector reached = step;
+            step = nextStep;
+            nextStep = reached;
+        }
+    }
+
+    /**
+     * A sparse vector over the vertices kept in a dense array, with the indices of its non-zero entries listed in
+     * the order they were first added. Entries are tracked with an epoch stamp, so clearing it costs nothing.
+     */
+    private static final class SparseVector {
+        private final double[] values;
+        private final int[] marks;
+        private int epoch = 1;
+        private int[] indices = new int[16];
+        private int size;
+
+        private SparseVector(int dimension) {
+            values = new double[dimension];
+            marks = new int[dimension];
+        }
+
+        private void clear() {
+            size = 0;
+            if (++epoch == 0) {
+                Arrays.fill(marks, 0);
+                epoch = 1;
+            }
+        }
+
+        private void add(int index, double value) {
+            if (marks[index] != epoch) {
+                marks[index] = epoch;
+                values[index] = 0;
+                if (size == indices.length) {
+                    indices = Arrays.copyOf(indices, size << 1);
+                }
+                indices[size++] = index;
+            }
+            values[index] += value;
+        }
+
+        /**
+         * Adds a row of the direct ownership matrix, the holdings of one owner, scaled by a share; a product below
+         * the tolerance in magnitude is not followed. With the cyclic components given, only the holdings inside
+         * the component of the owner are added.
+         */
+        private void addRow(OwnershipGraph graph, int owner, double share, double tolerance, int[] cycles) {
+            for (int slot = graph.outStart(owner); slot < graph.outEnd(owner); slot++) {
+                int target = graph.outTarget(slot);
+                double product = share * graph.weight(graph.outEdge(slot));
+                if (Math.abs(product) > tolerance && (cycles == null || cycles[target] == cycles[owner])) {
+                    add(target, product);
+                }
+            }
+        }
+    }
+}
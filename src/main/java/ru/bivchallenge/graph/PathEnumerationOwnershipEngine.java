@@ -0,0 +1,287 @@
+package ru.bivchallenge.graph;
+
+import java.util.Arrays;
+
+/**
+ * The {@code PathEnumerationOwnershipEngine} class computes effective ownership by enumerating every simple path
+ * from each natural person to the head company with a backtracking depth-first search.
+ *
+ * <p>This is the reference implementation: it is exact on acyclic graphs and cuts any path that revisits a vertex
+ * on cyclic ones, but its cost grows with the number of paths, which is exponential on structures with many
+ * diamonds. It is kept as the fallback for graphs the faster engines do not handle, where it can drop the path
+ * prefixes and skip the persons ruled out by the {@link SearchBounds} of a bounded search.</p>
+ */
+public class PathEnumerationOwnershipEngine implements OwnershipEngine {
+    /**
+     * The largest number of edges the faster engines follow to re-evaluate the share of a person in the order of
+     * this engine; see {@link #ownership(OwnershipGraph, UpstreamSet, int, int)}.
+     */
+    static final int REFERENCE_STEP_LIMIT = 4096;
+
+    /**
+     * The margin below the threshold within which the faster engines still re-evaluate a share, covering the
+     * difference their own order of operations makes.
+     */
+    static final double REFERENCE_SLACK = 1e-9;
+
+    private boolean[] visited = new boolean[0];
+    private int steps;
+
+    @Override
+    public void compute(OwnershipGraph graph, int headVertex, ShareConsumer consumer) {
+        for (int vertex = 0; vertex < graph.vertexCount(); vertex++) {
+            if (graph.type(vertex) != VertexType.NATURAL) {
+                continue;
+            }
+            double share = ownership(graph, vertex, headVertex);
+            if (share != 0.0) {
+                consumer.accept(vertex, share);
+            }
+        }
+    }
+
+    /**
+     * Computes the effective share of the head owned by a single vertex.
+     *
+     * @param graph      the ownership graph
+     * @param vertex     the owner vertex
+     * @param headVertex the head vertex
+     * @return the sum of the weight products of every simple path from the vertex to the head
+     */
+    double ownership(OwnershipGraph graph, int vertex, int headVertex) {
+        return ownership(graph, vertex, headVertex, 0.0);
+    }
+
+    /**
+     * Computes the effective share of the head owned by a single vertex, dropping every path prefix whose weight
+     * product is below the given epsilon in absolute value.
+     *
+     * @param graph      the ownership graph
+     * @param vertex     the owner vertex
+     * @param headVertex the head vertex
+     * @param epsilon    the smallest weight product of a path prefix that is still extended
+     * @return the sum of the weight products of every followed simple path from the vertex to the head
+     */
+    double ownership(OwnershipGraph graph, int vertex, int headVertex, double epsilon) {
+        if (visited.length < graph.vertexCount()) {
+            visited = new boolean[graph.vertexCount()];
+        }
+        return calculateOwnership(graph, vertex, headVertex, 1.0, epsilon);
+    }
+
+    /**
+     * Computes the effective share of the head owned by a vertex of the upstream, following only its
+     * {@linkplain UpstreamSet#indexEdges indexed edges}. The other edges cannot reach the head and add nothing, so
+     * the share is bit-identical to the one of {@link #ownership(OwnershipGraph, int, int)}, at the cost of the
+     * paths to the head only.
+     *
+     * @param graph      the ownership graph
+     * @param upstream   the collected upstream of the head, with its edges indexed
+     * @param vertex     the owner vertex
+     * @param headVertex the head vertex
+     * @return the sum of the weight products of every simple path from the vertex to the head within the upstream,
+     * or {@code NaN} if it takes more than {@link #REFERENCE_STEP_LIMIT} edges to find them
+     */
+    double ownership(OwnershipGraph graph, UpstreamSet upstream, int vertex, int headVertex) {
+        if (visited.length < graph.vertexCount()) {
+            visited = new boolean[graph.vertexCount()];
+        }
+        steps = REFERENCE_STEP_LIMIT;
+        return upstreamOwnership(upstream, vertex, headVertex, 1.0);
+    }
+
+    /**
+     * Reports the share of every natural person of an upstream subgraph, for the engines that cannot handle
+     * its cycles. Persons whose upper-bound share cannot exceed the threshold of the bounds are skipped, unless
+     * some company of the upstream is owned by more than 100% and the upper bounds do not hold.
+     *
+     * @param graph         the ownership graph
+     * @param headVertex    the head vertex
+     * @param upstream      the collected upstream of the head
+     * @param upstreamCount the number of collected vertices
+     * @param bounds        the bounds of the search
+     * @param consumer      receives every natural person vertex together with its effective share
+     */
+    void emit(OwnershipGraph graph, int headVertex, UpstreamSet upstream, int upstreamCount, SearchBounds bounds,
+              ShareConsumer consumer) {
+        boolean pruning = !bounds.isExact() && isNotOverOwned(graph, upstream, upstreamCount);
+        for (int i = 0; i < upstreamCount; i++) {
+            int vertex = upstream.get(i);
+            if (graph.type(vertex) != VertexType.NATURAL
+                    || pruning && !bounds.canExceed(upperBound(graph, vertex, upstream))) {
+                continue;
+            }
+            double value = ownership(graph, vertex, headVertex, bounds.epsilon());
+            if (value != 0.0) {
+                consumer.accept(vertex, value);
+            }
+        }
+    }
+
+    /**
+     * Checks that the owners of every company of the upstream hold at most 100% of it, up to rounding noise.
+     */
+    private static boolean isNotOverOwned(OwnershipGraph graph, UpstreamSet upstream, int upstreamCount) {
+        for (int i = 0; i < upstreamCount; i++) {
+            int vertex = upstream.get(i);
+            double owned = 0.0;
+            for (int edge = graph.inStart(vertex); edge < graph.inEnd(vertex); edge++) {
+                if (upstream.contains(graph.source(edge))) {
+                    owned += graph.weight(edge);
+                }
+            }
+            if (owned > 1.0 + 1e-9) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sums the weights of the edges from a vertex into the upstream: no path can carry more than its first edge
+     * while no company is owned by more than 100%.
+     */
+    private static double upperBound(OwnershipGraph graph, int vertex, UpstreamSet upstream) {
+        double bound = 0.0;
+        for (int slot = graph.outStart(vertex); slot < graph.outEnd(vertex); slot++) {
+            if (upstream.contains(graph.outTarget(slot))) {
+                bound += graph.weight(graph.outEdge(slot));
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * Reports the simple paths from a vertex to the head, in depth-first order, until the limit is reached. Unlike
+     * the share computations this method keeps no scratch state, so it can be called from any number of threads.
+     *
+     * @param graph      the ownership graph
+     * @param vertex     the owner vertex
+     * @param headVertex the head vertex
+     * @param limit      the maximum number of reported paths
+     * @param consumer   receives every path together with the product of its weights
+     * @return the number of reported paths
+     */
+    public static int enumeratePaths(OwnershipGraph graph, int vertex, int headVertex, int limit, PathConsumer consumer) {
+        if (limit <= 0) {
+            return 0;
+        }
+        int[] path = new int[16];
+        int[] slots = new int[16];
+        double[] products = new double[16];
+        path[0] = vertex;
+        slots[0] = graph.outStart(vertex);
+        products[0] = 1.0;
+        int depth = 0;
+        int reported = 0;
+        while (depth >= 0 && reported < limit) {
+            int current = path[depth];
+            if (current == headVertex) {
+                consumer.accept(path, depth + 1, products[depth]);
+                reported++;
+                depth--;
+                continue;
+            }
+            if (slots[depth] == graph.outEnd(current)) {
+                depth--;
+                continue;
+            }
+            int slot = slots[depth]++;
+            int next = graph.outTarget(slot);
+            if (onPath(path, depth, next)) {
+                continue;
+            }
+            if (++depth == path.length) {
+                path = Arrays.copyOf(path, depth * 2);
+                slots = Arrays.copyOf(slots, depth * 2);
+                products = Arrays.copyOf(products, depth * 2);
+            }
+            path[depth] = next;
+            slots[depth] = graph.outStart(next);
+            products[depth] = products[depth - 1] * graph.weight(graph.outEdge(slot));
+        }
+        return reported;
+    }
+
+    private static boolean onPath(int[] path, int depth, int vertex) {
+        for (int i = 0; i <= depth; i++) {
+            if (path[i] == vertex) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private double calculateOwnership(OwnershipGraph graph, int currentVertex, int targetVertex, double currentOwnership,
+                                      double epsilon) {
+        if (currentVertex == targetVertex) {
+            return currentOwnership;
+        }
+
+        if (Math.abs(currentOwnership) < epsilon) {
+            return 0.0;
+        }
+
+        if (visited[currentVertex]) {
+            return 0.0;
+        }
+        visited[currentVertex] = true;
+
+        double totalOwnership = 0.0;
+
+        for (int slot = graph.outStart(currentVertex); slot < graph.outEnd(currentVertex); slot++) {
+            int nextVertex = graph.outTarget(slot);
+            double weight = graph.weight(graph.outEdge(slot));
+
+            totalOwnership += calculateOwnership(graph, nextVertex, targetVertex, currentOwnership * weight, epsilon);
+        }
+
+        visited[currentVertex] = false;
+
+        return totalOwnership;
+    }
+
+    /**
+     * Sums the paths like {@link #calculateOwnership}, in the same order and with the same operations, over the
+     * indexed edges of an upstream. Once the step budget is spent every call yields {@code NaN}, and so does the sum.
+     */
+    private double upstreamOwnership(UpstreamSet upstream, int currentVertex, int targetVertex, double currentOwnership) {
+        if (currentVertex == targetVertex) {
+            return currentOwnership;
+        }
+
+        if (visited[currentVertex]) {
+            return 0.0;
+        }
+        if (--steps < 0) {
+            return Double.NaN;
+        }
+        visited[currentVertex] = true;
+
+        double totalOwnership = 0.0;
+
+        for (int edge = upstream.edgeStart(currentVertex); edge < upstream.edgeEnd(currentVertex); edge++) {
+            totalOwnership += upstreamOwnership(upstream, upstream.edgeTarget(edge), targetVertex,
+                    currentOwnership * upstream.edgeWeight(edge));
+        }
+
+        visited[currentVertex] = false;
+
+        return totalOwnership;
+    }
+
+    /**
+     * Receives an ownership path found by {@link #enumeratePaths}.
+     */
+    @FunctionalInterface
+    public interface PathConsumer {
+        /**
+         * Accepts a path.
+         *
+         * @param path   the vertices of the path from the owner to the head; only valid during the call
+         * @param length the number of vertices of the path
+         * @param share  the product of the weights along the path
+         */
+        void accept(int[] path, int length, double share);
+    }
+}
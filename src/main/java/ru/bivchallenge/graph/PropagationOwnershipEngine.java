@@ -0,0 +1,227 @@
+package ru.bivchallenge.graph;
+
+import java.util.Arrays;
+
+/**
+ * The {@code PropagationOwnershipEngine} class computes the effective ownership of every natural person in a single
+ * pass over the part of the graph that can reach the head company.
+ *
+ * <p>The engine first collects the upstream subgraph of the head by walking incoming edges. It then processes this
+ * subgraph in reverse topological order starting from the head (Kahn's algorithm over outgoing edges): a vertex is
+ * finalized once all of its upstream-reachable targets are, and its share is the weighted sum of their shares.
+ * The cost is linear in the number of upstream edges, and every shared holding is evaluated once instead of once
+ * per path.</p>
+ *
+ * <p>On acyclic graphs the result equals the sum over all paths. When the upstream subgraph contains an ownership
+ * cycle, the vertices on or above it never become ready. Only those are condensed into
+ * {@link StronglyConnectedComponents}, in the order their shares become known: a vertex on no cycle gets the
+ * weighted sum of its targets as before, and the share of a vertex of a cross-holding is the sum over the simple
+ * paths inside its component of their weight product times the share leaving the component at their end. As a
+ * simple path crosses every component at most once, this is the result of {@link PathEnumerationOwnershipEngine},
+ * whose cost is now exponential in the size of a cross-holding instead of in the size of the whole upstream.
+ * Every cross-holding met is recorded in the {@link CycleReport}, with no iterations.</p>
+ *
+ * <p>A propagated share multiplies the weights of a path in another order than path enumeration, which can change
+ * its last bits. The share of every person is therefore summed again path by path over the upstream, in the order
+ * of {@link PathEnumerationOwnershipEngine}, so it is bit-identical to the reference whichever side of the
+ * threshold it falls on. Given a threshold, only the persons whose propagated share comes near it are summed
+ * again and the others are left out, and a person whose paths take more than
+ * {@link PathEnumerationOwnershipEngine#REFERENCE_STEP_LIMIT} edges to walk keeps the propagated sum.</p>
+ *
+ * <p>With {@link SearchBounds} the upstream only holds the vertices whose best path to the head carries at least
+ * the search epsilon.</p>
+ *
+ * <p>Scratch buffers are sized to the largest graph seen and reset through a touched list, so one instance can
+ * be reused for many heads of a large shared graph.</p>
+ */
+public class PropagationOwnershipEngine implements OwnershipEngine {
+    private final SearchBounds bounds;
+    private final CycleReport report;
+    private final PathEnumerationOwnershipEngine enumeration = new PathEnumerationOwnershipEngine();
+    private final UpstreamSet upstream = new UpstreamSet();
+    private final StronglyConnectedComponents components = new StronglyConnectedComponents();
+    private int[] pending = new int[0];
+    private double[] share = new double[0];
+    private int[] queue = new int[0];
+    private double[] leaving = new double[0];
+    private boolean[] onPath = new boolean[0];
+    private int[] path = new int[16];
+    private int[] slots = new int[16];
+    private double[] products = new double[16];
+
+    /**
+     * Constructs an exact engine.
+     */
+    public PropagationOwnershipEngine() {
+        this(SearchBounds.EXACT);
+    }
+
+    /**
+     * Constructs an engine that prunes its search with the given bounds.
+     *
+     * @param bounds the bounds of the search
+     */
+    public PropagationOwnershipEngine(SearchBounds bounds) {
+        this(bounds, new CycleReport());
+    }
+
+    /**
+     * Constructs an engine that prunes its search with the given bounds and reports the cross-holdings it meets.
+     *
+     * @param bounds the bounds of the search
+     * @param report the report receiving statistics about cyclic components
+     */
+    public PropagationOwnershipEngine(SearchBounds bounds, CycleReport report) {
+        this.bounds = bounds;
+        this.report = report;
+    }
+
+    @Override
+    public void compute(OwnershipGraph graph, int headVertex, ShareConsumer consumer) {
+        compute(graph, headVertex, Double.NEGATIVE_INFINITY, consumer);
+    }
+
+    @Override
+    public void compute(OwnershipGraph graph, int headVertex, double threshold, ShareConsumer consumer) {
+        ensureCapacity(graph.vertexCount());
+        int upstreamCount = upstream.collect(graph, headVertex, bounds.epsilon());
+        // The head is a sink: paths stop as soon as they reach it, so it has no indexed edges.
+        upstream.indexEdges(graph, headVertex);
+
+        for (int i = 0; i < upstreamCount; i++) {
+            int vertex = upstream.get(i);
+            pending[vertex] = upstream.edgeEnd(vertex) - upstream.edgeStart(vertex);
+            share[vertex] = 0.0;
+        }
+        share[headVertex] = 1.0;
+
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = headVertex;
+        while (head < tail) {
+            int vertex = queue[head++];
+            if (vertex != headVertex) {
+                share[vertex] = weightedShare(vertex);
+            }
+            for (int edge = graph.inStart(vertex); edge < graph.inEnd(vertex); edge++) {
+                int source = graph.source(edge);
+                // In the bounded mode sources outside the upstream keep stale counters from earlier heads.
+                if (source != headVertex && upstream.contains(source) && --pending[source] == 0) {
+                    queue[tail++] = source;
+                }
+            }
+        }
+
+        if (tail < upstreamCount) {
+            propagateCycles(graph, tail, upstreamCount);
+        }
+        for (int i = 0; i < upstreamCount; i++) {
+            int vertex = queue[i];
+            if (graph.type(vertex) == VertexType.NATURAL
+                    && share[vertex] + PathEnumerationOwnershipEngine.REFERENCE_SLACK > threshold) {
+                double value = enumeration.ownership(graph, upstream, vertex, headVertex);
+                if (Double.isNaN(value)) {
+                    value = share[vertex];
+                }
+                if (value != 0.0) {
+                    consumer.accept(vertex, value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the shares of the upstream vertices left over by Kahn's algorithm, which are appended to the queue
+     * after the ready ones.
+     */
+    private void propagateCycles(OwnershipGraph graph, int ready, int upstreamCount) {
+        int tail = ready;
+        for (int i = 0; i < upstreamCount; i++) {
+            int vertex = upstream.get(i);
+            if (pending[vertex] > 0) {
+                queue[tail++] = vertex;
+            }
+        }
+        int componentCount = components.condense(graph, index -> queue[ready + index], tail - ready, -1);
+        for (int c = 0; c < componentCount; c++) {
+            int from = components.start(c);
+            int to = components.end(c);
+            if (to - from == 1) {
+                int vertex = components.vertex(from);
+                share[vertex] = weightedShare(vertex);
+            } else {
+                enumerateComponent(c, from, to);
+                report.record(to - from, 0, true);
+            }
+        }
+    }
+
+    /**
+     * Sums, for every vertex of a cyclic component, the simple paths inside the component weighted by the share
+     * that leaves the component at their last vertex.
+     */
+    private void enumerateComponent(int c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int vertex = components.vertex(i);
+            double total = 0.0;
+            for (int edge = upstream.edgeStart(vertex); edge < upstream.edgeEnd(vertex); edge++) {
+                int target = upstream.edgeTarget(edge);
+                if (!components.isInComponent(target, c)) {
+                    total += upstream.edgeWeight(edge) * share[target];
+                }
+            }
+            leaving[vertex] = total;
+        }
+        for (int i = from; i < to; i++) {
+            int vertex = components.vertex(i);
+            double total = leaving[vertex];
+            int depth = 0;
+            path[0] = vertex;
+            slots[0] = upstream.edgeStart(vertex);
+            products[0] = 1.0;
+            onPath[vertex] = true;
+            while (depth >= 0) {
+                int current = path[depth];
+                if (slots[depth] == upstream.edgeEnd(current)) {
+                    onPath[current] = false;
+                    depth--;
+                    continue;
+                }
+                int edge = slots[depth]++;
+                int next = upstream.edgeTarget(edge);
+                if (!components.isInComponent(next, c) || onPath[next]) {
+                    continue;
+                }
+                if (++depth == path.length) {
+                    path = Arrays.copyOf(path, depth * 2);
+                    slots = Arrays.copyOf(slots, depth * 2);
+                    products = Arrays.copyOf(products, depth * 2);
+                }
+                path[depth] = next;
+                slots[depth] = upstream.edgeStart(next);
+                products[depth] = products[depth - 1] * upstream.edgeWeight(edge);
+                onPath[next] = true;
+                total += products[depth] * leaving[next];
+            }
+            share[vertex] = total;
+        }
+    }
+
+    private double weightedShare(int vertex) {
+        double total = 0.0;
+        for (int edge = upstream.edgeStart(vertex); edge < upstream.edgeEnd(vertex); edge++) {
+            total += upstream.edgeWeight(edge) * share[upstream.edgeTarget(edge)];
+        }
+        return total;
+    }
+
+    private void ensureCapacity(int vertexCount) {
+        if (share.length < vertexCount) {
+            pending = new int[vertexCount];
+            share = new double[vertexCount];
+            queue = new int[vertexCount];
+            leaving = new double[vertexCount];
+            onPath = new boolean[vertexCount];
+        }
+    }
+}
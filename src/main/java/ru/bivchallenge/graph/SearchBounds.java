@@ -0,0 +1,50 @@
+package ru.bivchallenge.graph;
+
+/**
+ * The {@code SearchBounds} record holds the bounds of a branch-and-bound owner search.
+ *
+ * <p>Paths whose share product falls below {@code epsilon} are not followed, and persons whose upper-bound share
+ * cannot exceed {@code threshold} are not evaluated. An upper bound is the sum of the weights of the edges from a
+ * person into the upstream of the head: as long as no company is owned by more than 100%, no path can carry more
+ * than the weight of its first edge, so the cut is only applied to heads whose upstream has no over-owned company.
+ * {@link #EXACT} disables both cuts.</p>
+ *
+ * @param threshold the share a person must exceed to be reported
+ * @param epsilon   the smallest share product along a path that is still followed
+ */
+public record SearchBounds(double threshold, double epsilon) {
+    /**
+     * The bounds of an exact search, which follows every path and evaluates every person.
+     */
+    public static final SearchBounds EXACT = new SearchBounds(0.0, 0.0);
+
+    /**
+     * Relative slack applied to upper bounds, so that rounding noise never skips a person at the threshold.
+     */
+    private static final double BOUND_SLACK = 1e-9;
+
+    public SearchBounds {
+        if (!(threshold >= 0.0) || !(epsilon >= 0.0)) {
+            throw new IllegalArgumentException("Search bounds must not be negative: " + threshold + ", " + epsilon);
+        }
+    }
+
+    /**
+     * Checks whether the bounds cut anything.
+     *
+     * @return {@code true} if every path is followed and every person evaluated
+     */
+    public boolean isExact() {
+        return threshold == 0.0 && epsilon == 0.0;
+    }
+
+    /**
+     * Checks whether a person with the given upper-bound share may still exceed the threshold.
+     *
+     * @param upperBound the upper bound of the share of the person
+     * @return {@code false} if the person cannot be a beneficiary
+     */
+    public boolean canExceed(double upperBound) {
+        return isExact() || upperBound * (1.0 + BOUND_SLACK) > threshold;
+    }
+}
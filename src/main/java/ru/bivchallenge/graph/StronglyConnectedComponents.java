@@ -0,0 +1,172 @@
+package ru.bivchallenge.graph;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The {@code StronglyConnectedComponents} class condenses a set of vertices of an {@link OwnershipGraph} into
+ * strongly connected components with an iterative Tarjan search over the outgoing edges.
+ *
+ * <p>Only the edges between vertices of the set are followed. Tarjan emits components in reverse topological
+ * order of the condensation, which is exactly the order in which shares become known: a component is emitted
+ * once every component it owns shares of has been.</p>
+ *
+ * <p>Membership is tracked with an epoch stamp and the scratch buffers are sized to the largest graph seen, so
+ * the cost of a search is proportional to the size of the set and one instance can be reused for many heads of a
+ * large shared graph. Instances are not thread-safe.</p>
+ */
+final class StronglyConnectedComponents {
+    private static final int UNVISITED = -1;
+
+    private int[] mark = new int[0];
+    private int epoch;
+    private int[] visitIndex = new int[0];
+    private int[] lowLink = new int[0];
+    private boolean[] onStack = new boolean[0];
+    private int[] tarjanStack = new int[0];
+    private int[] callVertex = new int[0];
+    private int[] callSlot = new int[0];
+    private int[] component = new int[0];
+    private int[] componentVertices = new int[0];
+    private int[] componentOffsets = new int[1];
+
+    /**
+     * Condenses a set of vertices.
+     *
+     * @param graph      the ownership graph
+     * @param vertices   returns the vertex at an index of the set
+     * @param count      the number of vertices of the set
+     * @param sinkVertex a vertex of the set whose outgoing edges are not followed, so it always forms its own
+     *                   component, or {@code -1}
+     * @return the number of components
+     */
+    int condense(OwnershipGraph graph, IntUnaryOperator vertices, int count, int sinkVertex) {
+        ensureCapacity(graph.vertexCount());
+        if (++epoch == Integer.MAX_VALUE) {
+            Arrays.fill(mark, 0);
+            epoch = 1;
+        }
+        for (int i = 0; i < count; i++) {
+            int vertex = vertices.applyAsInt(i);
+            mark[vertex] = epoch;
+            visitIndex[vertex] = UNVISITED;
+            onStack[vertex] = false;
+        }
+        int counter = 0;
+        int stackTop = 0;
+        int componentCount = 0;
+        int emitted = 0;
+
+        for (int i = 0; i < count; i++) {
+            int root = vertices.applyAsInt(i);
+            if (visitIndex[root] != UNVISITED) {
+                continue;
+            }
+            int depth = 0;
+            callVertex[depth] = root;
+            callSlot[depth] = graph.outStart(root);
+            visitIndex[root] = lowLink[root] = counter++;
+            tarjanStack[stackTop++] = root;
+            onStack[root] = true;
+
+            while (depth >= 0) {
+                int vertex = callVertex[depth];
+                int slot = callSlot[depth];
+                if (vertex != sinkVertex && slot < graph.outEnd(vertex)) {
+                    callSlot[depth]++;
+                    int target = graph.outTarget(slot);
+                    if (mark[target] != epoch) {
+                        continue;
+                    }
+                    if (visitIndex[target] == UNVISITED) {
+                        depth++;
+                        callVertex[depth] = target;
+                        callSlot[depth] = graph.outStart(target);
+                        visitIndex[target] = lowLink[target] = counter++;
+                        tarjanStack[stackTop++] = target;
+                        onStack[target] = true;
+                    } else if (onStack[target]) {
+                        lowLink[vertex] = Math.min(lowLink[vertex], visitIndex[target]);
+                    }
+                    continue;
+                }
+
+                depth--;
+                if (lowLink[vertex] == visitIndex[vertex]) {
+                    componentOffsets[componentCount] = emitted;
+                    int member;
+                    do {
+                        member = tarjanStack[--stackTop];
+                        onStack[member] = false;
+                        component[member] = componentCount;
+                        componentVertices[emitted++] = member;
+                    } while (member != vertex);
+                    componentCount++;
+                }
+                if (depth >= 0) {
+                    int parent = callVertex[depth];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[vertex]);
+                }
+            }
+        }
+        componentOffsets[componentCount] = emitted;
+        return componentCount;
+    }
+
+    /**
+     * Checks whether a vertex belongs to a component of the last search.
+     *
+     * @param vertex the vertex
+     * @param c      the component
+     * @return {@code true} if the vertex was in the condensed set and belongs to the component
+     */
+    boolean isInComponent(int vertex, int c) {
+        return mark[vertex] == epoch && component[vertex] == c;
+    }
+
+    /**
+     * Returns the index of the first vertex of a component; see {@link #vertex(int)}.
+     *
+     * @param c the component
+     * @return the index of its first vertex
+     */
+    int start(int c) {
+        return componentOffsets[c];
+    }
+
+    /**
+     * Returns the index past the last vertex of a component; see {@link #vertex(int)}.
+     *
+     * @param c the component
+     * @return the index past its last vertex
+     */
+    int end(int c) {
+        return componentOffsets[c + 1];
+    }
+
+    /**
+     * Returns a vertex in the order the components were emitted.
+     *
+     * @param index the index, between the {@link #start(int)} and the {@link #end(int)} of its component
+     * @return the vertex
+     */
+    int vertex(int index) {
+        return componentVertices[index];
+    }
+
+    private void ensureCapacity(int vertexCount) {
+        if (mark.length < vertexCount) {
+            mark = new int[vertexCount];
+            epoch = 0;
+            visitIndex = new int[vertexCount];
+            lowLink = new int[vertexCount];
+            onStack = new boolean[vertexCount];
+            tarjanStack = new int[vertexCount];
+            callVertex = new int[vertexCount];
+            callSlot = new int[vertexCount];
+            component = new int[vertexCount];
+            componentVertices = new int[vertexCount];
+            componentOffsets = new int[vertexCount + 1];
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package ru.bivchallenge.graph;
+
+import java.util.Arrays;
+
+/**
+ * The {@code UpstreamCost} class estimates how much work computing the beneficiaries of every vertex of an
+ * ownership graph takes, so that the most expensive heads can be scheduled first.
+ *
+ * <p>The estimate of a vertex is the smaller of two upper bounds of the part of the graph an engine walks for it:
+ * the number of edge paths that end at the vertex, counted in one memoized pass over the incoming edges, and the
+ * number of vertices and edges of its weakly connected component (see {@link WeakComponents}). Path counts grow
+ * with the depth of the upstream and with shared owners; a vertex with a cycle upstream has unbounded paths, so
+ * only its component bounds it. Estimates saturate at {@link Integer#MAX_VALUE}. Both bounds take time linear in
+ * the size of the graph.</p>
+ */
+public final class UpstreamCost {
+    private static final byte UNVISITED = 0;
+    private static final byte ON_STACK = 1;
+    private static final byte DONE = 2;
+
+    private UpstreamCost() {
+    }
+
+    /**
+     * Estimates the cost of computing the beneficiaries of every vertex.
+     *
+     * @param graph the ownership graph
+     * @return the estimate of every vertex, indexed by vertex
+     */
+    public static int[] estimate(OwnershipGraph graph) {
+        int vertexCount = graph.vertexCount();
+        int[] components = WeakComponents.of(graph);
+        long[] componentSizes = new long[vertexCount];
+        for (int vertex = 0; vertex < vertexCount; vertex++) {
+            componentSizes[components[vertex]] += 1 + graph.inDegree(vertex);
+        }
+
+        int[] costs = countPaths(graph);
+        for (int vertex = 0; vertex < vertexCount; vertex++) {
+            costs[vertex] = (int) Math.min(costs[vertex], componentSizes[components[vertex]]);
+        }
+        return costs;
+    }
+
+    /**
+     * Counts the edge paths that end at every vertex with a depth-first search over the incoming edges, keeping
+     * its stack in arrays so that deep ownership chains cannot overflow the thread stack. An edge back to a vertex
+     * on the stack closes a cycle and saturates the count of every vertex downstream of it.
+     */
+    private static int[] countPaths(OwnershipGraph graph) {
+        int vertexCount = graph.vertexCount();
+        int[] paths = new int[vertexCount];
+        byte[] states = new byte[vertexCount];
+        int[] stack = new int[16];
+        int[] edges = new int[16];
+        for (int root = 0; root < vertexCount; root++) {
+            if (states[root] != UNVISITED) {
+                continue;
+            }
+            int depth = 0;
+            stack[0] = root;
+            edges[0] = graph.inStart(root);
+            states[root] = ON_STACK;
+            while (depth >= 0) {
+                int vertex = stack[depth];
+                if (edges[depth] == graph.inEnd(vertex)) {
+                    states[vertex] = DONE;
+                    if (--depth >= 0) {
+                        paths[stack[depth]] = add(paths[stack[depth]], add(1, paths[vertex]));
+                    }
+                    continue;
+                }
+                int source = graph.source(edges[depth]++);
+                if (states[source] == UNVISITED) {
+                    if (++depth == stack.length) {
+                        stack = Arrays.copyOf(stack, depth << 1);
+                        edges = Arrays.copyOf(edges, depth << 1);
+                    }
+                    stack[depth] = source;
+                    edges[depth] = graph.inStart(source);
+                    states[source] = ON_STACK;
+                } else {
+                    paths[vertex] = states[source] == ON_STACK
+                            ? Integer.MAX_VALUE
+                            : add(paths[vertex], add(1, paths[source]));
+                }
+            }
+        }
+        return paths;
+    }
+
+    private static int add(int first, int second) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) first + second);
+    }
+}
@@ -0,0 +1,268 @@
+package ru.bivchallenge.graph;
+
+import java.util.Arrays;
+
+/**
+ * The {@code UpstreamSet} class collects the vertices that can reach a head vertex by following incoming edges.
+ *
+ * <p>Membership is tracked with an epoch stamp, so collecting the upstream of the next head does not need to
+ * clear anything; the cost of a collection is proportional to the size of the upstream subgraph, not to the
+ * size of the whole graph. Instances are not thread-safe.</p>
+ *
+ * <p>A bounded collection only keeps the vertices whose best path to the head carries at least a given share.
+ * It walks the incoming edges best-first, like Dijkstra's algorithm with the product of the weights in place of
+ * the sum, so a vertex is collected with the largest product of any of its paths and is never expanded when even
+ * that product is below the bound.</p>
+ *
+ * <p>The outgoing edges between collected vertices can be indexed after a collection, so the engines walk the
+ * upstream subgraph without scanning the edges of its companies that lead elsewhere.</p>
+ */
+final class UpstreamSet {
+    private int[] mark = new int[0];
+    private int epoch;
+    private int[] vertices = new int[0];
+    private int size;
+    private int[] seen = new int[0];
+    private double[] best = new double[0];
+    private int[] heapVertices = new int[0];
+    private double[] heapProducts = new double[0];
+    private int[] edgeStart = new int[0];
+    private int[] edgeEnd = new int[0];
+    private int[] edgeTargets = new int[16];
+    private double[] edgeWeights = new double[16];
+
+    /**
+     * Collects the head and every vertex that has a path to it.
+     *
+     * @param graph      the ownership graph
+     * @param headVertex the head vertex
+     * @return the number of collected vertices
+     */
+    int collect(OwnershipGraph graph, int headVertex) {
+        reset(graph);
+        mark[headVertex] = epoch;
+        vertices[size++] = headVertex;
+        for (int i = 0; i < size; i++) {
+            int vertex = vertices[i];
+            for (int edge = graph.inStart(vertex); edge < graph.inEnd(vertex); edge++) {
+                int source = graph.source(edge);
+                if (mark[source] != epoch) {
+                    mark[source] = epoch;
+                    vertices[size++] = source;
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Collects the head and every vertex whose best path to it carries at least the given share.
+     *
+     * @param graph      the ownership graph
+     * @param headVertex the head vertex
+     * @param epsilon    the smallest product of weights along a path that is followed, {@code 0} to collect every
+     *                   vertex that has a path to the head
+     * @return the number of collected vertices
+     */
+    int collect(OwnershipGraph graph, int headVertex, double epsilon) {
+        if (epsilon <= 0.0) {
+            return collect(graph, headVertex);
+        }
+        reset(graph);
+        int heapSize = push(0, headVertex, 1.0);
+        while (heapSize > 0) {
+            int vertex = heapVertices[0];
+            double product = heapProducts[0];
+            heapSize = pop(heapSize);
+            if (mark[vertex] == epoch) {
+                continue;
+            }
+            mark[vertex] = epoch;
+            vertices[size++] = vertex;
+            for (int edge = graph.inStart(vertex); edge < graph.inEnd(vertex); edge++) {
+                int source = graph.source(edge);
+                double sourceProduct = product * graph.weight(edge);
+                if (mark[source] != epoch && sourceProduct >= epsilon
+                        && (seen[source] != epoch || sourceProduct > best[source])) {
+                    seen[source] = epoch;
+                    best[source] = sourceProduct;
+                    heapSize = push(heapSize, source, sourceProduct);
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Indexes the outgoing edges from every collected vertex into the upstream, in the order of the graph. The
+     * head is a sink: its edges are left out.
+     *
+     * @param graph      the ownership graph of the last collection
+     * @param headVertex the head vertex of the last collection
+     */
+    void indexEdges(OwnershipGraph graph, int headVertex) {
+        if (edgeStart.length < graph.vertexCount()) {
+            edgeStart = new int[graph.vertexCount()];
+            edgeEnd = new int[graph.vertexCount()];
+        }
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            int vertex = vertices[i];
+            edgeStart[vertex] = count;
+            if (vertex != headVertex) {
+                for (int slot = graph.outStart(vertex); slot < graph.outEnd(vertex); slot++) {
+                    int target = graph.outTarget(slot);
+                    if (mark[target] != epoch) {
+                        continue;
+                    }
+                    if (count == edgeTargets.length) {
+                        edgeTargets = Arrays.copyOf(edgeTargets, count * 2);
+                        edgeWeights = Arrays.copyOf(edgeWeights, count * 2);
+                    }
+                    edgeTargets[count] = target;
+                    edgeWeights[count] = graph.weight(graph.outEdge(slot));
+                    count++;
+                }
+            }
+            edgeEnd[vertex] = count;
+        }
+    }
+
+    /**
+     * Returns the index of the first indexed edge of a collected vertex.
+     *
+     * @param vertex the vertex id
+     * @return the index of its first edge into the upstream
+     */
+    int edgeStart(int vertex) {
+        return edgeStart[vertex];
+    }
+
+    /**
+     * Returns the index past the last indexed edge of a collected vertex.
+     *
+     * @param vertex the vertex id
+     * @return the index past its last edge into the upstream
+     */
+    int edgeEnd(int vertex) {
+        return edgeEnd[vertex];
+    }
+
+    /**
+     * Returns the target of an indexed edge.
+     *
+     * @param index the edge index
+     * @return the target vertex id
+     */
+    int edgeTarget(int index) {
+        return edgeTargets[index];
+    }
+
+    /**
+     * Returns the weight of an indexed edge.
+     *
+     * @param index the edge index
+     * @return the share of the target owned by the source
+     */
+    double edgeWeight(int index) {
+        return edgeWeights[index];
+    }
+
+    /**
+     * Checks whether the vertex belongs to the last collected upstream.
+     *
+     * @param vertex the vertex id
+     * @return {@code true} if the vertex can reach the head
+     */
+    boolean contains(int vertex) {
+        return mark[vertex] == epoch;
+    }
+
+    /**
+     * Returns the collected vertex at the given position, starting with the head, in breadth-first order or, for
+     * a bounded collection, in the order of decreasing best path product.
+     *
+     * @param index the position, less than the size returned by the last collection
+     * @return the vertex id
+     */
+    int get(int index) {
+        return vertices[index];
+    }
+
+    /**
+     * Returns the number of vertices collected by the last collection.
+     *
+     * @return the upstream size
+     */
+    int size() {
+        return size;
+    }
+
+    private void reset(OwnershipGraph graph) {
+        if (mark.length < graph.vertexCount()) {
+            mark = new int[graph.vertexCount()];
+            seen = new int[graph.vertexCount()];
+            best = new double[graph.vertexCount()];
+            vertices = new int[graph.vertexCount()];
+            epoch = 0;
+        }
+        if (++epoch == Integer.MAX_VALUE) {
+            Arrays.fill(mark, 0);
+            Arrays.fill(seen, 0);
+            epoch = 1;
+        }
+        size = 0;
+    }
+
+    /**
+     * Adds a vertex to the binary max-heap of path products. A vertex may be in the heap more than once; only its
+     * first, largest entry is collected.
+     */
+    private int push(int heapSize, int vertex, double product) {
+        if (heapSize == heapVertices.length) {
+            heapVertices = Arrays.copyOf(heapVertices, Math.max(16, heapSize * 2));
+            heapProducts = Arrays.copyOf(heapProducts, heapVertices.length);
+        }
+        int index = heapSize;
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heapProducts[parent] >= product) {
+                break;
+            }
+            heapVertices[index] = heapVertices[parent];
+            heapProducts[index] = heapProducts[parent];
+            index = parent;
+        }
+        heapVertices[index] = vertex;
+        heapProducts[index] = product;
+        return heapSize + 1;
+    }
+
+    /**
+     * Removes the largest entry of the heap.
+     */
+    private int pop(int heapSize) {
+        int last = --heapSize;
+        int vertex = heapVertices[last];
+        double product = heapProducts[last];
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && heapProducts[child + 1] > heapProducts[child]) {
+                child++;
+            }
+            if (heapProducts[child] <= product) {
+                break;
+            }
+            heapVertices[index] = heapVertices[child];
+            heapProducts[index] = heapProducts[child];
+            index = child;
+        }
+        heapVertices[index] = vertex;
+        heapProducts[index] = product;
+        return heapSize;
+    }
+}
@@ -0,0 +1,41 @@
+package ru.bivchallenge.graph;
+
+/**
+ * The {@code VertexType} enum tags every vertex of an {@link OwnershipGraph} with the kind of entity
+ * it stands for.
+ *
+ * <ul>
+ *     <li>{@link #HEAD} - the company whose beneficiaries are being calculated.</li>
+ *     <li>{@link #LEGAL} - a legal entity (company) owning a share of another company.</li>
+ *     <li>{@link #NATURAL} - a natural person owning a share of a company.</li>
+ * </ul>
+ *
+ * <p>Vertices of different types live in separate id spaces, so {@code (LEGAL, 1)} and {@code (HEAD, 1)}
+ * are distinct vertices.</p>
+ */
+public enum VertexType {
+    HEAD,
+    LEGAL,
+    NATURAL;
+
+    private static final VertexType[] VALUES = values();
+
+    /**
+     * Returns the compact tag stored for this type in the graph arrays.
+     *
+     * @return the tag of this type
+     */
+    public byte tag() {
+        return (byte) ordinal();
+    }
+
+    /**
+     * Resolves a type from its compact tag.
+     *
+     * @param tag the tag produced by {@link #tag()}
+     * @return the corresponding vertex type
+     */
+    public static VertexType ofTag(byte tag) {
+        return VALUES[tag];
+    }
+}
@@ -0,0 +1,38 @@
+package ru.bivchallenge.graph;
+
+import ru.bivchallenge.util.UnionFind;
+
+/**
+ * The {@code WeakComponents} class finds the weakly connected components of an ownership graph: the sets of
+ * vertices connected by edges followed in either direction. Beneficiaries of a head only depend on its component,
+ * so a component is the unit of work that can be estimated, partitioned or reused as a whole.
+ */
+public final class WeakComponents {
+
+    private WeakComponents() {
+    }
+
+    /**
+     * Labels every vertex with its component in one pass over the edges.
+     *
+     * @param graph the ownership graph
+     * @return the representative vertex of the component of every vertex, indexed by vertex
+     */
+    public static int[] of(OwnershipGraph graph) {
+        int vertexCount = graph.vertexCount();
+        UnionFind components = new UnionFind(vertexCount);
+        for (int vertex = 0; vertex < vertexCount; vertex++) {
+            components.add();
+        }
+        for (int vertex = 0; vertex < vertexCount; vertex++) {
+            for (int edge = graph.inStart(vertex); edge < graph.inEnd(vertex); edge++) {
+                components.union(graph.source(edge), vertex);
+            }
+        }
+        int[] representatives = new int[vertexCount];
+        for (int vertex = 0; vertex < vertexCount; vertex++) {
+            representatives[vertex] = components.find(vertex);
+        }
+        return representatives;
+    }
+}
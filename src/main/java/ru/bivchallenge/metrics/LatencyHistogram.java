@@ -0,0 +1,97 @@
+package ru.bivchallenge.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent histogram of latencies with power-of-two microsecond buckets.
+ *
+ * <p>Bucket {@code i} counts the latencies of at most {@code 2^i} microseconds that do not fit a smaller bucket;
+ * the last bucket counts everything longer. Recording is one atomic increment, so the histogram can be shared by
+ * all workers of a stage. Quantiles are reported as the upper bound of the bucket they fall into.</p>
+ */
+public final class LatencyHistogram {
+    /**
+     * The number of buckets; the last one is unbounded.
+     */
+    static final int BUCKET_COUNT = 32;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalNanos = new LongAdder();
+
+    /**
+     * Records one latency.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos) / 1000;
+        int bucket = micros <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(micros - 1);
+        buckets.incrementAndGet(Math.min(bucket, BUCKET_COUNT - 1));
+        totalNanos.add(nanos);
+    }
+
+    /**
+     * Returns the number of recorded latencies.
+     *
+     * @return the count
+     */
+    public long count() {
+        long count = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            count += buckets.get(bucket);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the sum of the recorded latencies.
+     *
+     * @return the sum in nanoseconds
+     */
+    public long totalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * Returns the number of latencies recorded in a bucket.
+     *
+     * @param bucket the bucket index
+     * @return the count of the bucket
+     */
+    public long bucketCount(int bucket) {
+        return buckets.get(bucket);
+    }
+
+    /**
+     * Returns the upper bound of a bucket.
+     *
+     * @param bucket the bucket index
+     * @return the upper bound in microseconds, or {@link Long#MAX_VALUE} for the last bucket
+     */
+    public static long bucketUpperBoundMicros(int bucket) {
+        return bucket == BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    /**
+     * Returns the upper bound of the bucket holding the given quantile.
+     *
+     * @param quantile the quantile between 0 and 1
+     * @return the upper bound in microseconds, or 0 if nothing was recorded
+     */
+    public long quantileMicros(double quantile) {
+        long count = count();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += buckets.get(bucket);
+            if (seen >= rank) {
+                return bucketUpperBoundMicros(bucket);
+            }
+        }
+        return bucketUpperBoundMicros(BUCKET_COUNT - 1);
+    }
+}
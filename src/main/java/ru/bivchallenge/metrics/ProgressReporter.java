@@ -0,0 +1,91 @@
+package ru.bivchallenge.metrics;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * The {@code ProgressReporter} class logs a progress line for a running stage at a fixed interval: the number of
+ * items done, the average rate since the stage started and, when the total is known, the percentage and the
+ * estimated time left.
+ *
+ * <p>The lines are logged from a daemon thread, which reads the progress through the given supplier (usually
+ * the sum of a {@link RunMetrics} counter) and is stopped by {@link #close()}. A zero interval reports nothing.</p>
+ */
+public final class ProgressReporter implements AutoCloseable {
+    private static final System.Logger LOGGER = System.getLogger(ProgressReporter.class.getName());
+
+    private final String stage;
+    private final String unit;
+    private final LongSupplier done;
+    private final long total;
+    private final long start;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Starts reporting the progress of a stage.
+     *
+     * @param stage    the stage name
+     * @param unit     the name of the items counted, e.g. {@code rows}
+     * @param done     returns the number of items done so far
+     * @param total    the number of items of the stage, or a negative number if it is unknown
+     * @param interval the interval between two progress lines
+     */
+    public ProgressReporter(String stage, String unit, LongSupplier done, long total, Duration interval) {
+        this.stage = stage;
+        this.unit = unit;
+        this.done = done;
+        this.total = total;
+        this.start = System.nanoTime();
+        if (interval.isZero() || interval.isNegative()) {
+            scheduler = null;
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "progress-" + stage);
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> LOGGER.log(System.Logger.Level.INFO, line(System.nanoTime() - start)),
+                interval.toNanos(), interval.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Formats the progress line after the given time.
+     *
+     * @param elapsedNanos the time since the stage started
+     * @return the progress line
+     */
+    String line(long elapsedNanos) {
+        long count = done.getAsLong();
+        double seconds = Math.max(elapsedNanos, 1) / 1e9;
+        long rate = (long) (count / seconds);
+        StringBuilder line = new StringBuilder(stage).append(": ").append(count);
+        if (total >= 0) {
+            line.append('/').append(total);
+            if (total > 0) {
+                line.append(" (").append(count * 100 / total).append("%)");
+            }
+        }
+        line.append(' ').append(unit).append(", ").append(rate).append(' ').append(unit).append("/s");
+        if (total >= 0 && rate > 0) {
+            line.append(", ETA ").append(format(Math.max(0, total - count) / rate));
+        }
+        return line.toString();
+    }
+
+    private static String format(long seconds) {
+        return seconds >= 3600
+                ? String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60)
+                : String.format("%d:%02d", seconds / 60, seconds % 60);
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package ru.bivchallenge.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code RunMetrics} class collects the metrics of one run of the pipeline: the wall time of every stage,
+ * counters of the rows and edges processed, and the latency histogram of the per-company computation.
+ *
+ * <p>Counters are named like Prometheus metrics, optionally with labels ({@code counter("castle_rows_parsed_total",
+ * "table", "company.tsv")}), and are {@link LongAdder}s, so workers can update them without contention. A stage is
+ * timed by a {@link Stage} opened in a try-with-resources block, which also emits a {@link StageEvent} to JFR.
+ * At the end of a run the metrics are written in the Prometheus text format with {@link #writeTo(Path)}.</p>
+ */
+public final class RunMetrics {
+    private static final System.Logger LOGGER = System.getLogger(RunMetrics.class.getName());
+
+    /**
+     * The counter of rows parsed into an entity or a table row, labelled by table.
+     */
+    public static final String ROWS_PARSED = "castle_rows_parsed_total";
+    /**
+     * The counter of records merged into the previous row as a continuation, labelled by table.
+     */
+    public static final String ROWS_REPAIRED = "castle_rows_repaired_total";
+    /**
+     * The counter of records that could neither be parsed nor repaired, labelled by table.
+     */
+    public static final String ROWS_REJECTED = "castle_rows_rejected_total";
+    /**
+     * The counter of edge weights restored by the repair processors.
+     */
+    public static final String EDGES_REPAIRED = "castle_edges_repaired_total";
+    /**
+     * The counter of head companies whose beneficiaries were computed or carried over.
+     */
+    public static final String COMPANIES_PROCESSED = "castle_companies_processed_total";
+    /**
+     * The counter of beneficiary rows emitted.
+     */
+    public static final String BENEFICIARIES_EMITTED = "castle_beneficiaries_emitted_total";
+    /**
+     * The counter of components whose beneficiaries were found in the result cache.
+     */
+    public static final String RESULT_CACHE_HITS = "castle_result_cache_hits_total";
+    /**
+     * The counter of components whose beneficiaries were not in the result cache and were computed.
+     */
+    public static final String RESULT_CACHE_MISSES = "castle_result_cache_misses_total";
+
+    private static final String STAGE_DURATION = "castle_stage_duration_seconds";
+    private static final String STAGE_GC = "castle_stage_gc_seconds";
+    private static final String COMPANY_LATENCY = "castle_company_latency_seconds";
+
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, Long> stageNanos = new ConcurrentHashMap<>();
+    private final Map<String, Long> stageGcMillis = new ConcurrentHashMap<>();
+    private final Map<String, Long> stageOrder = new ConcurrentHashMap<>();
+    private final LatencyHistogram companyLatency = new LatencyHistogram();
+
+    /**
+     * Returns the counter with the given name and labels, creating it on first use.
+     *
+     * @param name   the metric name
+     * @param labels alternating label names and values
+     * @return the counter
+     */
+    public LongAdder counter(String name, String... labels) {
+        return counters.computeIfAbsent(key(name, labels), key -> new LongAdder());
+    }
+
+    /**
+     * Returns the sum of all counters with the given name, whatever their labels.
+     *
+     * @param name the metric name
+     * @return the total count
+     */
+    public long total(String name) {
+        long total = 0;
+        for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+            if (baseName(counter.getKey()).equals(name)) {
+                total += counter.getValue().sum();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Returns the histogram of the time spent computing the beneficiaries of one head company.
+     *
+     * @return the latency histogram
+     */
+    public LatencyHistogram companyLatency() {
+        return companyLatency;
+    }
+
+    /**
+     * Starts timing a stage. The stage ends when the returned object is closed.
+     *
+     * @param name the stage name
+     * @return the running stage
+     */
+    public Stage stage(String name) {
+        return new Stage(name);
+    }
+
+    /**
+     * Returns the wall time of all finished runs of a stage.
+     *
+     * @param name the stage name
+     * @return the wall time in nanoseconds, or 0 if the stage never finished
+     */
+    public long stageNanos(String name) {
+        return stageNanos.getOrDefault(name, 0L);
+    }
+
+    /**
+     * Returns the time the garbage collectors spent during all finished runs of a stage.
+     *
+     * @param name the stage name
+     * @return the collection time in milliseconds, or 0 if the stage never finished
+     */
+    public long stageGcMillis(String name) {
+        return stageGcMillis.getOrDefault(name, 0L);
+    }
+
+    /**
+     * Writes the metrics to a file in the Prometheus text format. The file is written to a temporary file and
+     * moved into place; a failure is logged and otherwise ignored.
+     *
+     * @param path the metrics file
+     */
+    public void writeTo(Path path) {
+        Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            try (Writer writer = Files.newBufferedWriter(temporaryPath, StandardCharsets.UTF_8)) {
+                writePrometheus(writer);
+            }
+            Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOGGER.log(System.Logger.Level.INFO, "Metrics written to " + path);
+        } catch (IOException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Failed to write metrics to " + path, e);
+        }
+    }
+
+    /**
+     * Writes the metrics in the Prometheus text format.
+     *
+     * @param out the destination
+     * @throws IOException if writing fails
+     */
+    public void writePrometheus(Appendable out) throws IOException {
+        out.append("# TYPE ").append(STAGE_DURATION).append(" gauge\n");
+        Map<String, Long> stages = new LinkedHashMap<>();
+        stageOrder.entrySet().stream()
+                .sorted(Map.Entry.comparingByValue())
+                .forEach(stage -> stages.put(stage.getKey(), stageNanos(stage.getKey())));
+        for (Map.Entry<String, Long> stage : stages.entrySet()) {
+            out.append(key(STAGE_DURATION, "stage", stage.getKey())).append(' ')
+                    .append(seconds(stage.getValue())).append('\n');
+        }
+        out.append("# TYPE ").append(STAGE_GC).append(" gauge\n");
+        for (String stage : stages.keySet()) {
+            out.append(key(STAGE_GC, "stage", stage)).append(' ')
+                    .append(seconds(stageGcMillis(stage) * 1_000_000)).append('\n');
+        }
+
+        String previousName = null;
+        for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+            String name = baseName(counter.getKey());
+            if (!name.equals(previousName)) {
+                out.append("# TYPE ").append(name).append(" counter\n");
+                previousName = name;
+            }
+            out.append(counter.getKey()).append(' ').append(Long.toString(counter.getValue().sum())).append('\n');
+        }
+
+        out.append("# TYPE ").append(COMPANY_LATENCY).append(" histogram\n");
+        long cumulative = 0;
+        for (int bucket = 0; bucket < LatencyHistogram.BUCKET_COUNT; bucket++) {
+            cumulative += companyLatency.bucketCount(bucket);
+            long upperBound = LatencyHistogram.bucketUpperBoundMicros(bucket);
+            String le = upperBound == Long.MAX_VALUE ? "+Inf" : seconds(upperBound * 1000);
+            out.append(key(COMPANY_LATENCY + "_bucket", "le", le)).append(' ').append(Long.toString(cumulative)).append('\n');
+        }
+        out.append(COMPANY_LATENCY).append("_sum ").append(seconds(companyLatency.totalNanos())).append('\n');
+        out.append(COMPANY_LATENCY).append("_count ").append(Long.toString(cumulative)).append('\n');
+    }
+
+    /**
+     * Returns a one-line summary of the stage times and the company latency quantiles for the log.
+     *
+     * @return the summary
+     */
+    public String summary() {
+        StringBuilder summary = new StringBuilder("Stages:");
+        stageOrder.entrySet().stream()
+                .sorted(Map.Entry.comparingByValue())
+                .forEach(stage -> summary.append(' ').append(stage.getKey()).append('=')
+                        .append(stageNanos(stage.getKey()) / 1_000_000).append("ms"));
+        summary.append("; companies: ").append(total(COMPANIES_PROCESSED))
+                .append(", beneficiaries: ").append(total(BENEFICIARIES_EMITTED))
+                .append(", edges repaired: ").append(total(EDGES_REPAIRED))
+                .append("; company latency p50<=").append(companyLatency.quantileMicros(0.5))
+                .append("us p99<=").append(companyLatency.quantileMicros(0.99))
+                .append("us");
+        return summary.toString();
+    }
+
+    private static String key(String name, String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name-value pairs: " + String.join(",", labels));
+        }
+        if (labels.length == 0) {
+            return name;
+        }
+        StringBuilder key = new StringBuilder(name).append('{');
+        for (int label = 0; label < labels.length; label += 2) {
+            if (label > 0) {
+                key.append(',');
+            }
+            key.append(labels[label]).append("=\"")
+                    .append(labels[label + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                    .append('"');
+        }
+        return key.append('}').toString();
+    }
+
+    private static String baseName(String key) {
+        int labels = key.indexOf('{');
+        return labels < 0 ? key : key.substring(0, labels);
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, bean.getCollectionTime());
+        }
+        return millis;
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    /**
+     * A running stage, timed from its creation until {@link #close()}. Closing a stage adds its wall time and the
+     * garbage collection time that fell into it to the stage metrics, commits its {@link StageEvent} and logs the time.
+     */
+    public final class Stage implements AutoCloseable {
+        private final String name;
+        private final StageEvent event = new StageEvent();
+        private final long start;
+        private final long startGcMillis;
+
+        private Stage(String name) {
+            this.name = name;
+            stageOrder.putIfAbsent(name, (long) stageOrder.size());
+            event.stage = name;
+            event.begin();
+            startGcMillis = gcMillis();
+            start = System.nanoTime();
+        }
+
+        @Override
+        public void close() {
+            long nanos = System.nanoTime() - start;
+            event.commit();
+            stageNanos.merge(name, nanos, Long::sum);
+            stageGcMillis.merge(name, gcMillis() - startGcMillis, Long::sum);
+            LOGGER.log(System.Logger.Level.INFO, "Stage " + name + " finished in " + nanos / 1_000_000 + " ms");
+        }
+    }
+}
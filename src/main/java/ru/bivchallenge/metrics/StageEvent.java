@@ -0,0 +1,23 @@
+package ru.bivchallenge.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The JFR event of one pipeline stage, started and committed by {@link RunMetrics.Stage}.
+ *
+ * <p>In a recording of a run ({@code -XX:StartFlightRecording}) the stages appear as {@code ru.bivchallenge.Stage}
+ * events spanning their work, so allocation, GC and lock events can be attributed to the stage they fell into.</p>
+ */
+@Name("ru.bivchallenge.Stage")
+@Label("Pipeline Stage")
+@Category("Castle")
+@Description("A stage of ProcessDataExecutor: load, build, repair, compute or dispatch")
+class StageEvent extends Event {
+
+    @Label("Stage")
+    String stage;
+}
@@ -2,7 +2,6 @@ package ru.bivchallenge.module;
 
 import dagger.Binds;
 import dagger.Module;
-import ru.bivchallenge.data.BenefeciarRegistry;
 import ru.bivchallenge.dto.Company;
 import ru.bivchallenge.dto.LegalEntity;
 import ru.bivchallenge.dto.NaturalEntity;
@@ -14,17 +13,17 @@ import javax.inject.Singleton;
 public abstract class BindingModule {
     @Binds
     @Singleton
-    abstract DataProvider<LegalEntity> bindLegalEntityLocalProvider(LegalEntityLocalProvider legalEntityLocalProvider);
+    abstract FounderDataProvider<LegalEntity> bindLegalEntityLocalProvider(LegalEntityLocalProvider legalEntityLocalProvider);
 
     @Binds
     @Singleton
-    abstract DataProvider<NaturalEntity> bindNaturalEntityLocalProvider(NaturalEntityLocalProvider naturalEntityLocalProvider);
+    abstract FounderDataProvider<NaturalEntity> bindNaturalEntityLocalProvider(NaturalEntityLocalProvider naturalEntityLocalProvider);
 
     @Binds
     @Singleton
-    abstract DataProvider<Company> bindCompanyLocalProvider(CompanyLocalProvider companyLocalProvider);
+    abstract TableDataProvider<Company> bindCompanyLocalProvider(CompanyLocalProvider companyLocalProvider);
 
     @Binds
     @Singleton
-    abstract DataDispatcher<BenefeciarRegistry> bindBenefeciarLocalDataDispatcher(BenefeciarLocalDataDispatcher benefeciarLocalDataDispatcher);
+    abstract DataDispatcher<Company> bindChangedCompanyLocalDataDispatcher(ChangedCompanyLocalDataDispatcher changedCompanyLocalDataDispatcher);
 }
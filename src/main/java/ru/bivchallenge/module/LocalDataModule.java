@@ -6,8 +6,15 @@ import de.siegmar.fastcsv.reader.CsvReader;
 import de.siegmar.fastcsv.writer.CsvWriter;
 import de.siegmar.fastcsv.writer.LineDelimiter;
 import ru.bivchallenge.config.CastleConfig;
+import ru.bivchallenge.config.DispatchConfig;
 import ru.bivchallenge.config.PropertiesConfig;
+import ru.bivchallenge.data.BenefeciarRegistry;
+import ru.bivchallenge.metrics.RunMetrics;
+import ru.bivchallenge.persistence.BenefeciarLocalDataDispatcher;
+import ru.bivchallenge.persistence.DataDispatcher;
+import ru.bivchallenge.persistence.ParallelBenefeciarDataDispatcher;
 
+import javax.inject.Provider;
 import javax.inject.Singleton;
 
 @Module
@@ -42,4 +49,22 @@ public class LocalDataModule {
     CastleConfig provideCastleConfig() {
         return new PropertiesConfig(args);
     }
+
+    @Provides
+    @Singleton
+    RunMetrics provideRunMetrics() {
+        return new RunMetrics();
+    }
+
+    @Provides
+    @Singleton
+    DataDispatcher<BenefeciarRegistry> provideBenefeciarDataDispatcher(
+            CastleConfig castleConfig,
+            Provider<BenefeciarLocalDataDispatcher> benefeciarLocalDataDispatcher,
+            Provider<ParallelBenefeciarDataDispatcher> parallelBenefeciarDataDispatcher
+    ) {
+        return castleConfig.getDispatchConfig().getWriterMode() == DispatchConfig.WriterMode.PARALLEL
+                ? parallelBenefeciarDataDispatcher.get()
+                : benefeciarLocalDataDispatcher.get();
+    }
 }
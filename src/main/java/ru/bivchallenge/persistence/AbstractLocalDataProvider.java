@@ -2,24 +2,73 @@ package ru.bivchallenge.persistence;
 
 import de.siegmar.fastcsv.reader.CsvReader;
 import de.siegmar.fastcsv.reader.CsvRecord;
+import ru.bivchallenge.config.TableConfig;
+import ru.bivchallenge.data.FounderTable;
+import ru.bivchallenge.data.FounderTableDelta;
 import ru.bivchallenge.dto.Entity;
+import ru.bivchallenge.metrics.RunMetrics;
 
+import java.io.CharArrayReader;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
  * Abstract class providing the base implementation for loading data from CSV files
  * and converting it into a map of entities.
+ * <p>
+ * A table is memory-mapped and split into line-aligned chunks (see {@link TableChunks}) that are parsed in
+ * parallel with the configured {@link CsvReader.CsvReaderBuilder}; the per-chunk results are merged in file order.
+ * The header line is skipped in the first chunk and a UTF-8 byte order mark is stripped before it. Tables starting
+ * with the byte order mark of another encoding are read sequentially. A gzip-compressed table is detected by its
+ * magic bytes and inflated on a thread of its own into line-aligned blocks that are parsed like the chunks of
+ * a plain table while the rest of the file is inflated (see {@link GzipBlocks}). A columnar table can also be pushed to
+ * a {@link FounderTable.BlockConsumer} chunk by chunk, in file order, while later chunks are still being parsed.
+ * <p>
+ * A columnar table may also be loaded without decoding its text columns: the numeric fields are parsed straight
+ * from the mapped bytes and the rows refer to their text fields in the mapping, which is decoded only for the rows
+ * that are materialized (see {@link #getMappedTableFromCsvTable}).
+ * <p>
+ * The rows parsed, repaired and rejected are counted per table in the {@link RunMetrics} of the run.
  *
  * @param <T> the type of entity that extends {@link Entity}
  */
 public abstract class AbstractLocalDataProvider<T extends Entity> implements DataProvider<T> {
+    /**
+     * The default target size of a parsed chunk in bytes.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * The maximum target size of an inflated block of a gzip-compressed table in bytes.
+     */
+    private static final int GZIP_BLOCK_SIZE = 8 * 1024 * 1024;
 
     private final CsvReader.CsvReaderBuilder csvReaderBuilder;
+    private final int chunkSize;
+    private final Path snapshotDirectory;
+    private final RunMetrics runMetrics;
 
     /**
      * Constructor that initializes the CSV reader builder.
@@ -27,14 +76,124 @@ public abstract class AbstractLocalDataProvider<T extends Entity> implements Dat
      * @param csvReaderBuilder the builder for creating the CSV reader
      */
     protected AbstractLocalDataProvider(CsvReader.CsvReaderBuilder csvReaderBuilder) {
+        this(csvReaderBuilder, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructor that initializes the CSV reader builder and the size of the chunks parsed in parallel.
+     *
+     * @param csvReaderBuilder the builder for creating the CSV reader
+     * @param chunkSize        the target size of a chunk in bytes
+     */
+    protected AbstractLocalDataProvider(CsvReader.CsvReaderBuilder csvReaderBuilder, int chunkSize) {
+        this(csvReaderBuilder, chunkSize, null);
+    }
+
+    /**
+     * Constructor that initializes the CSV reader builder, the size of the chunks parsed in parallel and
+     * the directory parsed tables are cached in as binary snapshots.
+     *
+     * @param csvReaderBuilder  the builder for creating the CSV reader
+     * @param chunkSize         the target size of a chunk in bytes
+     * @param snapshotDirectory the directory {@link #getSnapshotOrTable} reads and writes snapshots in, or
+     *                          {@code null} to disable snapshots
+     */
+    protected AbstractLocalDataProvider(CsvReader.CsvReaderBuilder csvReaderBuilder, int chunkSize, Path snapshotDirectory) {
+        this(csvReaderBuilder, chunkSize, snapshotDirectory, new RunMetrics());
+    }
+
+    /**
+     * Constructor that initializes the CSV reader builder, the size of the chunks parsed in parallel,
+     * the directory parsed tables are cached in as binary snapshots and the metrics the parsed rows are counted in.
+     *
+     * @param csvReaderBuilder  the builder for creating the CSV reader
+     * @param chunkSize         the target size of a chunk in bytes
+     * @param snapshotDirectory the directory {@link #getSnapshotOrTable} reads and writes snapshots in, or
+     *                          {@code null} to disable snapshots
+     * @param runMetrics        the metrics of the run
+     */
+    protected AbstractLocalDataProvider(CsvReader.CsvReaderBuilder csvReaderBuilder, int chunkSize, Path snapshotDirectory,
+                                        RunMetrics runMetrics) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
         this.csvReaderBuilder = csvReaderBuilder;
+        this.chunkSize = chunkSize;
+        this.snapshotDirectory = snapshotDirectory;
+        this.runMetrics = runMetrics;
+    }
+
+    /**
+     * Checks whether parsed tables are cached in binary snapshots.
+     *
+     * @return {@code true} if snapshots are enabled
+     */
+    protected boolean isSnapshotEnabled() {
+        return snapshotDirectory != null;
+    }
+
+    /**
+     * Returns the snapshot directory of the table configuration if snapshots are enabled.
+     *
+     * @param tableConfig the table configuration
+     * @return the snapshot directory, or {@code null} if snapshots are disabled
+     */
+    protected static Path snapshotDirectory(TableConfig tableConfig) {
+        return tableConfig.isSnapshotEnabled() ? tableConfig.getSnapshotDirectory() : null;
+    }
+
+    /**
+     * Returns the table restored from its binary snapshot if snapshots are enabled and the snapshot matches the
+     * source table. Otherwise, loads the table with the given loader and, if snapshots are enabled, writes
+     * a new snapshot for later runs.
+     *
+     * @param tablePath the path to the CSV file
+     * @param rowMapper a function creating the entity object of a row on demand
+     * @param loader a function parsing (and repairing) the CSV file
+     * @return the table
+     * @see TableSnapshot
+     */
+    protected FounderTable<T> getSnapshotOrTable(Path tablePath, FounderTable.RowMapper<T> rowMapper,
+                                                 Supplier<FounderTable<T>> loader) {
+        return getSnapshotOrTable(tablePath, rowMapper, null, loader);
+    }
+
+    /**
+     * Returns the table restored from its binary snapshot like {@link #getSnapshotOrTable(Path, FounderTable.RowMapper, Supplier)},
+     * pushing a restored table to the block consumer as a single block. A table that is not restored is expected
+     * to be pushed by the loader.
+     *
+     * @param tablePath     the path to the CSV file
+     * @param rowMapper     a function creating the entity object of a row on demand
+     * @param blockConsumer the consumer of the blocks of rows, or {@code null}
+     * @param loader        a function parsing (and repairing) the CSV file
+     * @return the table
+     */
+    protected FounderTable<T> getSnapshotOrTable(Path tablePath, FounderTable.RowMapper<T> rowMapper,
+                                                 FounderTable.BlockConsumer<T> blockConsumer,
+                                                 Supplier<FounderTable<T>> loader) {
+        if (snapshotDirectory == null) {
+            return loader.get();
+        }
+        Optional<FounderTable<T>> snapshot = TableSnapshot.load(snapshotDirectory, tablePath, rowMapper);
+        if (snapshot.isPresent()) {
+            if (blockConsumer != null) {
+                blockConsumer.accept(snapshot.get(), 0);
+            }
+            return snapshot.get();
+        }
+        FounderTable<T> table = loader.get();
+        TableSnapshot.store(snapshotDirectory, tablePath, table);
+        return table;
     }
 
     /**
      * Loads data from the specified CSV table, parses each record into an entity,
      * and returns a map of entities identified by their unique IDs.
      * <p>
-     * This method also supports repairing entities based on a repair function if parsing fails.
+     * This method also supports repairing entities based on a repair function if parsing fails:
+     * a record that cannot be parsed is treated as the continuation of the previous entity, even when
+     * the two records were parsed in different chunks.
      *
      * @param tablePath the path to the CSV file
      * @param parseFunction a function to parse each {@link CsvRecord} into an entity
@@ -43,23 +202,20 @@ public abstract class AbstractLocalDataProvider<T extends Entity> implements Dat
      * @throws RuntimeException if there is an error reading or processing the CSV file
      */
     protected Map<Long, T> getDataFromCsvTable(Path tablePath, Function<CsvRecord, T> parseFunction, BiFunction<String, T, T> repairFunction) {
-        try (CsvReader<CsvRecord> csvReader = csvReaderBuilder.ofCsvRecord(tablePath)) {
-            csvReader.skipLines(1);
-            List<T> entities = new ArrayList<>();
-            final int[] prev = {-1};
-            csvReader.stream().forEach((csvRecord) -> {
-                T entity = parseFunction.apply(csvRecord);
-                if (entity == null) {
-                    T apply = repairFunction.apply(csvRecord.getField(0), entities.get(prev[0]));
-                    entities.set(prev[0], apply);
+        List<T> entities = new ArrayList<>();
+        for (ChunkResult<T> chunkResult : readChunks(tablePath, parseFunction, repairFunction)) {
+            for (String continuation : chunkResult.continuations()) {
+                if (!entities.isEmpty()) {
+                    int last = entities.size() - 1;
+                    entities.set(last, repairFunction.apply(continuation, entities.get(last)));
+                    runMetrics.counter(RunMetrics.ROWS_REPAIRED, "table", tableName(tablePath)).increment();
                 } else {
-                    entities.add(entity);
-                    prev[0]++;
+                    runMetrics.counter(RunMetrics.ROWS_REJECTED, "table", tableName(tablePath)).increment();
                 }
-            });
-            return entities.stream().collect(Collectors.toMap(Entity::id, Function.identity()));} catch (IOException e) {
-            throw new RuntimeException("Failed to load legal entities from CSV file", e);
+            }
+            entities.addAll(chunkResult.entities());
         }
+        return entities.stream().collect(Collectors.toMap(Entity::id, Function.identity()));
     }
 
     /**
@@ -72,14 +228,695 @@ public abstract class AbstractLocalDataProvider<T extends Entity> implements Dat
      * @throws RuntimeException if there is an error reading or processing the CSV file
      */
     protected Map<Long, T> getDataFromCsvTable(Path tablePath, Function<CsvRecord, T> parseFunction) {
-        try (CsvReader<CsvRecord> csvReader = csvReaderBuilder.ofCsvRecord(tablePath)) {
+        return readChunks(tablePath, parseFunction, null).stream()
+                .flatMap(chunkResult -> chunkResult.entities().stream())
+                .collect(Collectors.toMap(T::id, legalEntity -> legalEntity));
+    }
+
+    /**
+     * Loads the specified CSV table into a columnar {@link FounderTable} without creating an entity object per row.
+     *
+     * @param tablePath the path to the CSV file
+     * @param textFieldCount the number of text fields of every row
+     * @param rowParser a parser adding the row of a valid {@link CsvRecord} to the builder and ignoring invalid ones
+     * @param rowMapper a function creating the entity object of a row on demand
+     * @return the table with the rows in file order
+     * @throws RuntimeException if there is an error reading or processing the CSV file
+     */
+    protected FounderTable<T> getTableFromCsvTable(Path tablePath, int textFieldCount,
+                                                   FounderRowParser rowParser,
+                                                   FounderTable.RowMapper<T> rowMapper) {
+        return getTableFromCsvTable(tablePath, textFieldCount, rowParser, rowMapper, null);
+    }
+
+    /**
+     * Loads the specified CSV table into a columnar {@link FounderTable} like
+     * {@link #getTableFromCsvTable(Path, int, FounderRowParser, FounderTable.RowMapper)}, pushing the rows of every
+     * chunk to the block consumer as soon as the chunk and all chunks before it are parsed. The blocks are pushed
+     * in file order, one at a time, while later chunks are still being parsed.
+     *
+     * @param tablePath the path to the CSV file
+     * @param textFieldCount the number of text fields of every row
+     * @param rowParser a parser adding the row of a valid {@link CsvRecord} to the builder and ignoring invalid ones
+     * @param rowMapper a function creating the entity object of a row on demand
+     * @param blockConsumer the consumer of the blocks of rows, or {@code null}
+     * @return the table with the rows in file order
+     * @throws RuntimeException if there is an error reading or processing the CSV file
+     */
+    protected FounderTable<T> getTableFromCsvTable(Path tablePath, int textFieldCount,
+                                                   FounderRowParser rowParser,
+                                                   FounderTable.RowMapper<T> rowMapper,
+                                                   FounderTable.BlockConsumer<T> blockConsumer) {
+        FounderTable.Builder table = FounderTable.builder(textFieldCount);
+        for (TableChunk chunk : readChunks(tablePath,
+                (csvReader, firstChunk) -> parseRecords(tablePath, csvReader, firstChunk, FounderTable.builder(textFieldCount), rowParser, -1),
+                null, blockPusher(rowMapper, blockConsumer))) {
+            table.append(chunk.rows());
+        }
+        return table.build(rowMapper);
+    }
+
+    /**
+     * Streams the specified CSV table to the block consumer without keeping the table, so that a table larger than
+     * the heap can be read. The chunks are parsed on the current pool, at most one per thread of the pool ahead of
+     * the block being consumed, and the blocks are pushed in file order on the calling thread.
+     * <p>
+     * If {@code repairField} is not negative, a record that fails to parse is treated as the continuation of the
+     * previous row, like in {@link #getDataFromCsvTable(Path, Function, BiFunction)}. A block is then pushed only
+     * once the next block with rows is parsed, since its last row may still be repaired.
+     *
+     * @param tablePath      the path to the CSV file
+     * @param textFieldCount the number of text fields of every row
+     * @param rowParser      a parser adding the row of a valid {@link CsvRecord} to the builder and ignoring invalid ones
+     * @param repairField    the text field continuations are appended to, or {@code -1} to reject invalid rows
+     * @param rowMapper      a function creating the entity object of a row on demand
+     * @param blockConsumer  the consumer of the blocks of rows
+     * @throws RuntimeException if there is an error reading or processing the CSV file
+     */
+    protected void forEachBlockOfCsvTable(Path tablePath, int textFieldCount, FounderRowParser rowParser, int repairField,
+                                          FounderTable.RowMapper<T> rowMapper, FounderTable.BlockConsumer<T> blockConsumer) {
+        DelayedBlocks blocks = new DelayedBlocks(blockPusher(rowMapper, blockConsumer), repairField);
+        streamChunks(tablePath, (csvReader, firstChunk) -> parseRecords(tablePath, csvReader, firstChunk,
+                FounderTable.builder(textFieldCount), rowParser, repairField), blocks);
+        blocks.finish();
+        runMetrics.counter(RunMetrics.ROWS_REPAIRED, "table", tableName(tablePath)).add(blocks.repaired);
+        runMetrics.counter(RunMetrics.ROWS_REJECTED, "table", tableName(tablePath)).add(blocks.rejected);
+    }
+
+    /**
+     * Loads the specified tab-separated table into a columnar {@link FounderTable} whose rows keep their text fields
+     * in the memory-mapped file, so that loading copies and decodes no text. The mapped bytes of every row are
+     * split at tabs and its numeric fields are parsed by the row parser; the text fields are decoded on every
+     * {@link FounderTable#text} call. The file must not change while the table is in use.
+     * <p>
+     * A chunk holding a quoted field, or a carriage return that does not end a line, is parsed by the CSV reader and the
+     * fallback parser instead, and its rows copy their text as in {@link #getTableFromCsvTable}. So is a table
+     * that starts with the byte order mark of an encoding other than UTF-8.
+     * <p>
+     * If {@code repairField} is not negative, a record that fails to parse is treated as the continuation of the
+     * previous row, like in {@link #getDataFromCsvTable(Path, Function, BiFunction)}: its first field is appended to
+     * the given text field of that row, whose text fields are then copied. Such a table cannot be pushed in blocks.
+     *
+     * @param tablePath      the path to the CSV file
+     * @param textColumns    the column of the file holding every text field
+     * @param rowParser      a parser adding a valid row with {@link FounderTable.Builder#addSourceRow}
+     * @param fallbackParser a parser adding the row of a valid {@link CsvRecord} to the builder
+     * @param repairField    the text field continuations are appended to, or {@code -1} to reject invalid rows
+     * @param rowMapper      a function creating the entity object of a row on demand
+     * @param blockConsumer  the consumer of the blocks of rows, or {@code null}
+     * @return the table with the rows in file order
+     * @throws RuntimeException if there is an error reading or processing the CSV file
+     */
+    FounderTable<T> getMappedTableFromCsvTable(Path tablePath, int[] textColumns, MappedRowParser rowParser,
+                                               FounderRowParser fallbackParser, int repairField,
+                                               FounderTable.RowMapper<T> rowMapper,
+                                               FounderTable.BlockConsumer<T> blockConsumer) {
+        if (repairField >= 0 && blockConsumer != null) {
+            throw new IllegalArgumentException("A repaired table cannot be pushed in blocks");
+        }
+        int textFieldCount = textColumns.length;
+        FounderTable.Builder table = FounderTable.builder(textFieldCount);
+        FounderTable.Builder previous = null;
+        long repaired = 0;
+        long rejected = 0;
+        for (TableChunk chunk : readChunks(tablePath,
+                (csvReader, firstChunk) -> parseRecords(tablePath, csvReader, firstChunk, FounderTable.builder(textFieldCount), fallbackParser, repairField),
+                (bytes, fileOffset, firstChunk) -> parseMappedRecords(tablePath, bytes, firstChunk, FounderTable.builder(textFieldCount, bytes, fileOffset, textColumns), rowParser, repairField),
+                blockPusher(rowMapper, blockConsumer))) {
+            // The previous row may still be repaired, so the last non-empty chunk is appended only after the next one.
+            for (String continuation : chunk.continuations()) {
+                if (previous != null) {
+                    previous.appendToText(repairField, continuation);
+                    repaired++;
+                } else {
+                    rejected++;
+                }
+            }
+            if (chunk.rows().size() > 0) {
+                if (previous != null) {
+                    table.append(previous);
+                }
+                previous = chunk.rows();
+            }
+        }
+        if (previous != null) {
+            table.append(previous);
+        }
+        runMetrics.counter(RunMetrics.ROWS_REPAIRED, "table", tableName(tablePath)).add(repaired);
+        runMetrics.counter(RunMetrics.ROWS_REJECTED, "table", tableName(tablePath)).add(rejected);
+        return table.build(rowMapper);
+    }
+
+    /**
+     * Parses the numeric fields of a founder row with the given number of text fields: the id, the company id, the
+     * text fields, and the optional share and share percent, an empty share being zero. Invalid rows are skipped.
+     *
+     * @param row            the fields of the row
+     * @param textFieldCount the number of text fields between the company id and the share
+     * @param table          the table to add the row to
+     */
+    static void parseMappedFounder(MappedRow row, int textFieldCount, FounderTable.Builder table) {
+        int fieldCount = row.fieldCount();
+        if (fieldCount < textFieldCount + 2) {
+            return;
+        }
+        try {
+            long id = row.parseLong(0);
+            long companyId = row.parseLong(1);
+            double share = fieldCount >= textFieldCount + 3 ? row.parseDouble(textFieldCount + 2) : 0;
+            double sharePercent = fieldCount == textFieldCount + 4 ? row.parseDouble(textFieldCount + 3) : 0;
+            table.addSourceRow(id, companyId, share, sharePercent, row.offset());
+        } catch (NumberFormatException e) {
+            // invalid rows are skipped
+        }
+    }
+
+    /**
+     * Applies a delta file to a columnar table.
+     * <p>
+     * A delta file has a header line and one row per change. The first field of a row is the action, followed by
+     * the fields of a founder row exactly as in the founder table:
+     * <ul>
+     *     <li>{@code add} appends the row;</li>
+     *     <li>{@code remove} removes the rows with the same id and company id (only these two fields are read);</li>
+     *     <li>{@code change} replaces the rows with the same id and company id by the row.</li>
+     * </ul>
+     * Removed rows are dropped from their positions, and added rows are appended in delta order. Rows with an
+     * unknown action or invalid fields are skipped. A missing delta file is an empty delta.
+     *
+     * @param table     the table to apply the delta to
+     * @param deltaPath the path to the delta file
+     * @param rowParser the parser of the founder table, applied to the fields after the action
+     * @param rowMapper a function creating the entity object of a row on demand
+     * @return the updated table, the ids of the companies touched by the delta and the new rows of the old ones
+     * @throws RuntimeException if there is an error reading the delta file
+     */
+    protected FounderTableDelta<T> applyDeltaToTable(FounderTable<T> table, Path deltaPath,
+                                                     FounderRowParser rowParser, FounderTable.RowMapper<T> rowMapper) {
+        if (!Files.isRegularFile(deltaPath)) {
+            return FounderTableDelta.unchanged(table);
+        }
+        FounderTable.Builder added = FounderTable.builder(table.textFieldCount());
+        Map<Long, Set<Long>> removed = new HashMap<>();
+        Set<Long> changedCompanyIds = new LinkedHashSet<>();
+        try (CsvReader<CsvRecord> csvReader = csvReaderBuilder.ofCsvRecord(deltaPath)) {
             csvReader.skipLines(1);
-            return csvReader.stream()
-                    .map(parseFunction)
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toMap(T::id, legalEntity -> legalEntity));
+            for (CsvRecord csvRecord : csvReader) {
+                if (csvRecord.getFieldCount() < 3) {
+                    continue;
+                }
+                String action = csvRecord.getField(0).trim().toLowerCase();
+                if (!action.equals("add") && !action.equals("remove") && !action.equals("change")) {
+                    continue;
+                }
+                long id;
+                long companyId;
+                try {
+                    id = Long.parseLong(csvRecord.getField(1));
+                    companyId = Long.parseLong(csvRecord.getField(2));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (!action.equals("remove")) {
+                    int addedRows = added.size();
+                    rowParser.parse(field -> csvRecord.getField(field + 1), csvRecord.getFieldCount() - 1, added);
+                    if (added.size() == addedRows) {
+                        continue;
+                    }
+                }
+                if (!action.equals("add")) {
+                    removed.computeIfAbsent(id, key -> new HashSet<>()).add(companyId);
+                }
+                changedCompanyIds.add(companyId);
+            }
         } catch (IOException e) {
+            throw new RuntimeException("Failed to load delta from " + deltaPath, e);
+        }
+
+        FounderTable.Builder builder = FounderTable.builder(table.textFieldCount());
+        int[] rowMapping = new int[table.size()];
+        for (int row = 0; row < table.size(); row++) {
+            Set<Long> removedCompanyIds = removed.get(table.id(row));
+            if (removedCompanyIds == null || !removedCompanyIds.contains(table.companyId(row))) {
+                rowMapping[row] = builder.size();
+                builder.add(table, row);
+            } else {
+                rowMapping[row] = -1;
+            }
+        }
+        int firstAddedRow = builder.size();
+        builder.append(added);
+        return new FounderTableDelta<>(builder.build(rowMapper),
+                changedCompanyIds.stream().mapToLong(Long::longValue).toArray(), rowMapping, firstAddedRow);
+    }
+
+    private List<ChunkResult<T>> readChunks(Path tablePath, Function<CsvRecord, T> parseFunction, BiFunction<String, T, T> repairFunction) {
+        return readChunks(tablePath, (csvReader, firstChunk) -> parseChunk(tablePath, csvReader, firstChunk, parseFunction, repairFunction));
+    }
+
+    private static String tableName(Path tablePath) {
+        return String.valueOf(tablePath.getFileName());
+    }
+
+    private <R> List<R> readChunks(Path tablePath, BiFunction<CsvReader<CsvRecord>, Boolean, R> chunkParser) {
+        return readChunks(tablePath, chunkParser, null, null);
+    }
+
+    /**
+     * Parses every chunk of the table with the given chunk parser, which receives a reader over the chunk and
+     * whether it is the first chunk of the file (the one holding the header). If a mapped parser is given, it
+     * receives the mapped bytes of every chunk first, and the chunk parser only parses the chunks it returns
+     * {@code null} for. If a chunk consumer is given, it receives the result of every chunk in file order as soon
+     * as the chunk and all chunks before it are parsed.
+     */
+    private <R> List<R> readChunks(Path tablePath, BiFunction<CsvReader<CsvRecord>, Boolean, R> chunkParser,
+                                   MappedChunkParser<R> mappedParser, Consumer<R> chunkConsumer) {
+        try (FileChannel channel = FileChannel.open(tablePath, StandardOpenOption.READ)) {
+            if (GzipBlocks.isGzip(channel)) {
+                return readGzipChunks(tablePath, channel, chunkParser, mappedParser, chunkConsumer);
+            }
+            int bomLength = TableChunks.byteOrderMarkLength(channel);
+            if (bomLength < 0) {
+                try (CsvReader<CsvRecord> csvReader = csvReaderBuilder.ofCsvRecord(tablePath)) {
+                    R result = chunkParser.apply(csvReader, true);
+                    if (chunkConsumer != null) {
+                        chunkConsumer.accept(result);
+                    }
+                    return List.of(result);
+                }
+            }
+            List<TableChunks.Chunk> chunks = TableChunks.split(channel, bomLength, chunkSize);
+            ChunkSequencer<R> sequencer = chunkConsumer == null ? null : new ChunkSequencer<>(chunkConsumer);
+            return chunks.parallelStream()
+                    .map(chunk -> {
+                        R result = parseChunk(channel, chunk, chunkParser, mappedParser);
+                        if (sequencer != null) {
+                            sequencer.complete(chunk.index(), result);
+                        }
+                        return result;
+                    })
+                    .toList();
+        } catch (IOException | UncheckedIOException e) {
+            throw new RuntimeException("Failed to load legal entities from CSV file", e);
+        }
+    }
+
+    /**
+     * Parses every chunk of the table like {@link #readChunks} and hands the results to the consumer in file order
+     * on the calling thread, without keeping them. At most one chunk per thread of the current pool is parsed or
+     * waiting for the consumer at a time, so the memory held does not grow with the table.
+     */
+    private <R> void streamChunks(Path tablePath, BiFunction<CsvReader<CsvRecord>, Boolean, R> chunkParser,
+                                  Consumer<R> chunkConsumer) {
+        try (FileChannel channel = FileChannel.open(tablePath, StandardOpenOption.READ)) {
+            if (GzipBlocks.isGzip(channel)) {
+                ForkJoinPool pool = currentPool();
+                try (GzipBlocks blocks = GzipBlocks.start(channel, tableName(tablePath), Math.min(chunkSize, GZIP_BLOCK_SIZE),
+                        pool.getParallelism(), pool)) {
+                    streamChunks(tablePath, blocks::take, chunkParser, chunkConsumer);
+                }
+                return;
+            }
+            int bomLength = TableChunks.byteOrderMarkLength(channel);
+            if (bomLength < 0) {
+                try (CsvReader<CsvRecord> csvReader = csvReaderBuilder.ofCsvRecord(tablePath)) {
+                    chunkConsumer.accept(chunkParser.apply(csvReader, true));
+                }
+                return;
+            }
+            Iterator<TableChunks.Chunk> chunks = TableChunks.split(channel, bomLength, chunkSize).iterator();
+            streamChunks(tablePath, () -> {
+                if (!chunks.hasNext()) {
+                    return null;
+                }
+                TableChunks.Chunk chunk = chunks.next();
+                return channel.map(FileChannel.MapMode.READ_ONLY, chunk.start(), chunk.length());
+            }, chunkParser, chunkConsumer);
+        } catch (IOException | UncheckedIOException e) {
             throw new RuntimeException("Failed to load legal entities from CSV file", e);
         }
     }
+
+    private <R> void streamChunks(Path tablePath, ChunkSource chunks, BiFunction<CsvReader<CsvRecord>, Boolean, R> chunkParser,
+                                  Consumer<R> chunkConsumer) throws IOException {
+        ForkJoinPool pool = currentPool();
+        ArrayDeque<CompletableFuture<R>> parsing = new ArrayDeque<>();
+        try {
+            int index = 0;
+            for (ByteBuffer chunk = chunks.next(); chunk != null; chunk = chunks.next()) {
+                ByteBuffer bytes = chunk;
+                boolean firstChunk = index++ == 0;
+                parsing.add(CompletableFuture.supplyAsync(() -> parseBytes(bytes, -1, firstChunk, chunkParser, null), pool));
+                if (parsing.size() > pool.getParallelism()) {
+                    chunkConsumer.accept(parsing.poll().join());
+                }
+            }
+            while (!parsing.isEmpty()) {
+                chunkConsumer.accept(parsing.poll().join());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + tablePath, e);
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private static ForkJoinPool currentPool() {
+        return ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool() : ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Parses the blocks of a gzip-compressed table like the chunks of a plain one. The blocks are taken from the
+     * inflating thread as they are inflated and parsed on the current pool, at most as many at a time as the pool
+     * has threads, so that inflating and parsing overlap while the inflated bytes held in memory stay bounded.
+     */
+    private <R> List<R> readGzipChunks(Path tablePath, FileChannel channel, BiFunction<CsvReader<CsvRecord>, Boolean, R> chunkParser,
+                                       MappedChunkParser<R> mappedParser, Consumer<R> chunkConsumer)
+            throws IOException {
+        ForkJoinPool pool = currentPool();
+        ChunkSequencer<R> sequencer = chunkConsumer == null ? null : new ChunkSequencer<>(chunkConsumer);
+        Semaphore parsing = new Semaphore(pool.getParallelism());
+        List<CompletableFuture<R>> results = new ArrayList<>();
+        try (GzipBlocks blocks = GzipBlocks.start(channel, tableName(tablePath), Math.min(chunkSize, GZIP_BLOCK_SIZE),
+                pool.getParallelism(), pool)) {
+            for (ByteBuffer block = blocks.take(); block != null; block = blocks.take()) {
+                acquire(parsing);
+                ByteBuffer bytes = block;
+                int index = results.size();
+                results.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        R result = parseBytes(bytes, -1, index == 0, chunkParser, mappedParser);
+                        if (sequencer != null) {
+                            sequencer.complete(index, result);
+                        }
+                        return result;
+                    } finally {
+                        parsing.release();
+                    }
+                }, pool));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while inflating " + tablePath, e);
+        }
+        try {
+            return results.stream().map(CompletableFuture::join).toList();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private static void acquire(Semaphore semaphore) throws InterruptedException {
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+            private boolean acquired;
+
+            @Override
+            public boolean block() throws InterruptedException {
+                if (!acquired) {
+                    semaphore.acquire();
+                    acquired = true;
+                }
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                return acquired || (acquired = semaphore.tryAcquire());
+            }
+        });
+    }
+
+    private <R> R parseChunk(FileChannel channel, TableChunks.Chunk chunk, BiFunction<CsvReader<CsvRecord>, Boolean, R> chunkParser,
+                             MappedChunkParser<R> mappedParser) {
+        try {
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, chunk.start(), chunk.length());
+            return parseBytes(bytes, chunk.start(), chunk.index() == 0, chunkParser, mappedParser);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private <R> R parseBytes(ByteBuffer bytes, long fileOffset, boolean firstChunk,
+                             BiFunction<CsvReader<CsvRecord>, Boolean, R> chunkParser, MappedChunkParser<R> mappedParser) {
+        if (mappedParser != null) {
+            R result = mappedParser.parse(bytes, fileOffset, firstChunk);
+            if (result != null) {
+                return result;
+            }
+        }
+        CharBuffer chars = StandardCharsets.UTF_8.decode(bytes.duplicate());
+        Reader reader = new CharArrayReader(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining());
+        try (CsvReader<CsvRecord> csvReader = csvReaderBuilder.ofCsvRecord(reader)) {
+            return chunkParser.apply(csvReader, firstChunk);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Consumer<TableChunk> blockPusher(FounderTable.RowMapper<T> rowMapper, FounderTable.BlockConsumer<T> blockConsumer) {
+        if (blockConsumer == null) {
+            return null;
+        }
+        int[] nextRow = new int[1];
+        return chunk -> {
+            FounderTable<T> block = chunk.rows().build(rowMapper);
+            blockConsumer.accept(block, nextRow[0]);
+            nextRow[0] += block.size();
+        };
+    }
+
+    /**
+     * Parses the records of one chunk into a columnar table with the given row parser. If {@code repairField} is
+     * not negative, records the parser ignores are appended to that text field of the previous row of the chunk,
+     * or kept as continuations of the previous chunk if the chunk has no row yet; otherwise they are rejected.
+     */
+    private TableChunk parseRecords(Path tablePath, CsvReader<CsvRecord> csvReader, boolean firstChunk,
+                                    FounderTable.Builder builder, FounderRowParser rowParser, int repairField) {
+        if (firstChunk) {
+            csvReader.skipLines(1);
+        }
+        List<String> continuations = new ArrayList<>();
+        long records = 0;
+        long repaired = 0;
+        for (CsvRecord csvRecord : csvReader) {
+            int rows = builder.size();
+            rowParser.parse(csvRecord::getField, csvRecord.getFieldCount(), builder);
+            records++;
+            if (builder.size() == rows && repairField >= 0) {
+                if (rows == 0) {
+                    continuations.add(csvRecord.getField(0));
+                } else {
+                    builder.appendToText(repairField, csvRecord.getField(0));
+                    repaired++;
+                }
+            }
+        }
+        return countChunk(tablePath, builder, continuations, records, repaired);
+    }
+
+    /**
+     * Parses the rows of one mapped chunk like {@link #parseRecords}, without decoding their text. Returns
+     * {@code null} if the chunk holds a field starting with a quote or a lone carriage return, which only the CSV
+     * reader handles; a quote inside an unquoted field is a plain character, as it is for the reader.
+     */
+    private TableChunk parseMappedRecords(Path tablePath, ByteBuffer bytes, boolean firstChunk,
+                                         FounderTable.Builder builder, MappedRowParser rowParser, int repairField) {
+        MappedRow row = new MappedRow(bytes);
+        List<String> continuations = new ArrayList<>();
+        long records = 0;
+        long repaired = 0;
+        int limit = bytes.limit();
+        int position = 0;
+        if (firstChunk) {
+            while (position < limit && bytes.get(position++) != '\n') {
+                // skip the header line
+            }
+        }
+        while (position < limit) {
+            int lineStart = position;
+            int fieldStart = position;
+            row.reset(lineStart);
+            for (; position < limit; position++) {
+                byte b = bytes.get(position);
+                if (b == '\n') {
+                    break;
+                } else if (b == '\t') {
+                    row.addField(fieldStart, position);
+                    fieldStart = position + 1;
+                } else if (b == '"' && position == fieldStart || b == '\r' && position + 1 < limit && bytes.get(position + 1) != '\n') {
+                    return null;
+                }
+            }
+            int lineEnd = position > lineStart && bytes.get(position - 1) == '\r' ? position - 1 : position;
+            position++;
+            if (lineEnd == lineStart) {
+                continue;
+            }
+            row.addField(fieldStart, lineEnd);
+
+            int rows = builder.size();
+            rowParser.parse(row, builder);
+            records++;
+            if (builder.size() == rows && repairField >= 0) {
+                if (rows == 0) {
+                    continuations.add(row.text(0));
+                } else {
+                    builder.appendToText(repairField, row.text(0));
+                    repaired++;
+                }
+            }
+        }
+        return countChunk(tablePath, builder, continuations, records, repaired);
+    }
+
+    private TableChunk countChunk(Path tablePath, FounderTable.Builder builder, List<String> continuations,
+                                  long records, long repaired) {
+        String table = tableName(tablePath);
+        runMetrics.counter(RunMetrics.ROWS_PARSED, "table", table).add(builder.size());
+        runMetrics.counter(RunMetrics.ROWS_REPAIRED, "table", table).add(repaired);
+        runMetrics.counter(RunMetrics.ROWS_REJECTED, "table", table).add(records - builder.size() - repaired - continuations.size());
+        return new TableChunk(continuations, builder);
+    }
+
+    /**
+     * Parses the records of one chunk. Records that fail to parse are applied to the previous entity of the chunk,
+     * or kept as continuations of the previous chunk if the chunk has no entity yet.
+     */
+    private ChunkResult<T> parseChunk(Path tablePath, CsvReader<CsvRecord> csvReader, boolean firstChunk,
+                                      Function<CsvRecord, T> parseFunction, BiFunction<String, T, T> repairFunction) {
+        if (firstChunk) {
+            csvReader.skipLines(1);
+        }
+        List<String> continuations = new ArrayList<>();
+        List<T> entities = new ArrayList<>();
+        long repaired = 0;
+        long rejected = 0;
+        for (CsvRecord csvRecord : csvReader) {
+            T entity = parseFunction.apply(csvRecord);
+            if (entity != null) {
+                entities.add(entity);
+            } else if (repairFunction == null) {
+                rejected++;
+            } else if (entities.isEmpty()) {
+                continuations.add(csvRecord.getField(0));
+            } else {
+                int last = entities.size() - 1;
+                entities.set(last, repairFunction.apply(csvRecord.getField(0), entities.get(last)));
+                repaired++;
+            }
+        }
+        String table = tableName(tablePath);
+        runMetrics.counter(RunMetrics.ROWS_PARSED, "table", table).add(entities.size());
+        runMetrics.counter(RunMetrics.ROWS_REPAIRED, "table", table).add(repaired);
+        runMetrics.counter(RunMetrics.ROWS_REJECTED, "table", table).add(rejected);
+        return new ChunkResult<>(continuations, entities);
+    }
+
+    /**
+     * The entities parsed from one chunk, together with the leading records that continue the last entity
+     * of the previous chunk.
+     */
+    private record ChunkResult<T>(List<String> continuations, List<T> entities) {
+    }
+
+    /**
+     * The rows of a columnar table parsed from one chunk, together with the leading records that continue the
+     * last row of the previous chunk.
+     */
+    private record TableChunk(List<String> continuations, FounderTable.Builder rows) {
+    }
+
+    /**
+     * Parses the bytes of one chunk without the CSV reader.
+     */
+    @FunctionalInterface
+    private interface MappedChunkParser<R> {
+        /**
+         * Parses a chunk, given the offset in the table file it was mapped from, or {@code -1} if it was inflated,
+         * and returns {@code null} if only the CSV reader can parse it.
+         */
+        R parse(ByteBuffer bytes, long fileOffset, boolean firstChunk);
+    }
+
+    /**
+     * Supplies the bytes of the chunks of a table one after another.
+     */
+    @FunctionalInterface
+    private interface ChunkSource {
+        /**
+         * Returns the next chunk, or {@code null} after the last one.
+         */
+        ByteBuffer next() throws IOException, InterruptedException;
+    }
+
+    /**
+     * Pushes the blocks of a streamed table one block behind, so that the continuations at the start of a block
+     * can still be appended to the last row of the previous block with rows.
+     */
+    private static final class DelayedBlocks implements Consumer<TableChunk> {
+        private final Consumer<TableChunk> pusher;
+        private final int repairField;
+        private FounderTable.Builder previous;
+        private long repaired;
+        private long rejected;
+
+        private DelayedBlocks(Consumer<TableChunk> pusher, int repairField) {
+            this.pusher = pusher;
+            this.repairField = repairField;
+        }
+
+        @Override
+        public void accept(TableChunk chunk) {
+            for (String continuation : chunk.continuations()) {
+                if (previous != null) {
+                    previous.appendToText(repairField, continuation);
+                    repaired++;
+                } else {
+                    rejected++;
+                }
+            }
+            if (chunk.rows().size() > 0) {
+                finish();
+                previous = chunk.rows();
+            }
+        }
+
+        private void finish() {
+            if (previous != null) {
+                pusher.accept(new TableChunk(List.of(), previous));
+                previous = null;
+            }
+        }
+    }
+
+    /**
+     * Hands the results of chunks parsed in any order to a consumer in chunk order. The thread completing the
+     * next chunk in order delivers it and every chunk after it that is already complete; a thread that finds
+     * another one delivering leaves its result to it, so parsing threads never wait for each other.
+     */
+    private static final class ChunkSequencer<R> {
+        private final Map<Integer, R> results = new ConcurrentHashMap<>();
+        private final Consumer<R> consumer;
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile int next;
+
+        private ChunkSequencer(Consumer<R> consumer) {
+            this.consumer = consumer;
+        }
+
+        private void complete(int index, R result) {
+            results.put(index, result);
+            while (results.containsKey(next) && lock.tryLock()) {
+                try {
+                    for (R ready = results.remove(next); ready != null; ready = results.remove(next)) {
+                        consumer.accept(ready);
+                        next++;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
 }
@@ -6,7 +6,10 @@ import ru.bivchallenge.config.CastleConfig;
 import ru.bivchallenge.dto.Benefeciar;
 import ru.bivchallenge.data.BenefeciarRegistry;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.Set;
 
 /**
@@ -15,6 +18,9 @@ import java.util.Set;
  *
  * <p>This class fetches the file path and CSV writer configuration from the provided {@link CastleConfig}.
  * The {@code dispatch} method writes company information followed by its associated beneficiaries into the CSV file.
+ * The sink returned by {@link #open()} writes every registry as soon as it is accepted, in the same format, to a
+ * temporary file next to the table that is moved into place when the sink is closed; an aborted sink deletes it,
+ * so readers never see a truncated table.
  *
  * @see BenefeciarRegistry
  * @see CsvWriter
@@ -36,20 +42,86 @@ public class BenefeciarLocalDataDispatcher implements DataDispatcher<BenefeciarR
 
     @Override
     public void dispatch(Set<BenefeciarRegistry> set) {
-        try (CsvWriter csvWriter = csvWriterBuilder.build(benefeciariesTablePath)) {
+        DataSink<BenefeciarRegistry> sink = open();
+        try {
+            for (BenefeciarRegistry benefeciarRegistry : set) {
+                sink.accept(benefeciarRegistry);
+            }
+            sink.close();
+        } finally {
+            sink.abort();
+        }
+    }
+
+    @Override
+    public DataSink<BenefeciarRegistry> open() {
+        Path temporaryPath = benefeciariesTablePath.resolveSibling(benefeciariesTablePath.getFileName() + ".tmp");
+        CsvWriter csvWriter;
+        try {
+            csvWriter = csvWriterBuilder.build(temporaryPath);
             csvWriter.writeRecord("company_id", "ogrn", "inn", "full_name");
             csvWriter.writeRecord("", "inn", "full_name", "percent");
-            for (BenefeciarRegistry benefeciarRegistry : set) {
-                if (!benefeciarRegistry.getBeneficiaries().isEmpty()) {
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to write data to " + benefeciariesTablePath, e);
+        }
+        return new DataSink<>() {
+            private boolean closed;
+
+            @Override
+            public void accept(BenefeciarRegistry benefeciarRegistry) {
+                if (benefeciarRegistry.getBeneficiaries().isEmpty()) {
+                    return;
+                }
+                try {
                     csvWriter.writeRecord(benefeciarRegistry.getCompany().separate());
-                    for (Benefeciar benefeciar: benefeciarRegistry.getBeneficiaries()) {
+                    for (Benefeciar benefeciar : benefeciarRegistry.getBeneficiaries()) {
                         csvWriter.writeRecord(benefeciar.separate());
                     }
+                } catch (Exception e) {
+                    throw new RuntimeException("Failed to write data to " + benefeciariesTablePath, e);
                 }
             }
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to write data to " + benefeciariesTablePath, e);
-        }
+
+            @Override
+            public void close() {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                try {
+                    csvWriter.close();
+                    Files.move(temporaryPath, benefeciariesTablePath, StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                } catch (Exception e) {
+                    deleteTemporary(e);
+                    throw new RuntimeException("Failed to write data to " + benefeciariesTablePath, e);
+                }
+            }
+
+            @Override
+            public void abort() {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                try {
+                    csvWriter.close();
+                } catch (Exception e) {
+                    // The output is discarded anyway.
+                }
+                deleteTemporary(null);
+            }
+
+            private void deleteTemporary(Exception failure) {
+                try {
+                    Files.deleteIfExists(temporaryPath);
+                } catch (IOException e) {
+                    if (failure != null) {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+        };
     }
 
 }
@@ -0,0 +1,171 @@
+package ru.bivchallenge.persistence;
+
+import ru.bivchallenge.util.MappedDataInput;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@code BeneficiaryIndex} class looks up every company a natural person beneficially owns in the inverted
+ * index written by {@link BeneficiaryIndexBuilder}, without loading the index or the tables it was built from.
+ *
+ * <p>The index file holds a header with the number of persons, entries and key bytes, followed by the offsets of
+ * the person keys (the UTF-8 bytes of their INN), the first entry of every person, the keys themselves and the
+ * company ids and percents of all entries. Persons are sorted by the unsigned bytes of their key and the entries
+ * of a person by company id. The file is mapped once when the index is opened; a lookup binary-searches the key
+ * offsets, compares the keys in place in the mapping and reads only the entries of the person it finds. A person
+ * listed under several founder rows of one company keeps one entry per row. Persons without an INN cannot be
+ * looked up and are left out of the index.</p>
+ *
+ * <p>Lookups only read the mapping at absolute offsets, so an open index can be shared by threads.</p>
+ */
+public final class BeneficiaryIndex implements AutoCloseable {
+    static final long MAGIC = 0x58444E4942454E42L;
+    static final int VERSION = 1;
+    private static final long HEADER_SIZE = Long.BYTES + Integer.BYTES + 3L * Long.BYTES;
+
+    private final FileChannel channel;
+    private final MappedDataInput input;
+    private final long personCount;
+    private final long entryCount;
+    private final long keyOffsetsStart;
+    private final long entryStartsStart;
+    private final long keysStart;
+    private final long companyIdsStart;
+    private final long percentsStart;
+
+    /**
+     * One company owned by a person.
+     *
+     * @param companyId the id of the company
+     * @param percent   the effective share of the person in the company
+     */
+    public record Entry(long companyId, double percent) {
+    }
+
+    private BeneficiaryIndex(FileChannel channel, Path indexPath) throws IOException {
+        this.channel = channel;
+        this.input = new MappedDataInput(channel);
+        if (input.readLong() != MAGIC || input.readInt() != VERSION) {
+            throw new IOException("Not a beneficiary index: " + indexPath);
+        }
+        personCount = input.readLong();
+        entryCount = input.readLong();
+        long keyBytes = input.readLong();
+        keyOffsetsStart = HEADER_SIZE;
+        entryStartsStart = keyOffsetsStart + (personCount + 1) * Long.BYTES;
+        keysStart = entryStartsStart + (personCount + 1) * Long.BYTES;
+        companyIdsStart = keysStart + keyBytes;
+        percentsStart = companyIdsStart + entryCount * Long.BYTES;
+        if (percentsStart + entryCount * Double.BYTES != channel.size()) {
+            throw new IOException("Truncated beneficiary index: " + indexPath);
+        }
+    }
+
+    /**
+     * Opens an index file.
+     *
+     * @param indexPath the path of the index
+     * @return the open index
+     * @throws IOException if the file cannot be read or is not a complete index
+     */
+    public static BeneficiaryIndex open(Path indexPath) throws IOException {
+        FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ);
+        try {
+            return new BeneficiaryIndex(channel, indexPath);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of persons in the index.
+     *
+     * @return the number of distinct INNs
+     */
+    public long personCount() {
+        return personCount;
+    }
+
+    /**
+     * Returns the number of entries in the index.
+     *
+     * @return the number of person and company pairs
+     */
+    public long entryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Looks up the companies a person beneficially owns.
+     *
+     * @param inn the INN of the person
+     * @return the companies of the person ordered by company id, or an empty list if the person owns none or
+     * the INN is blank
+     * @throws IOException if the index cannot be read
+     */
+    public List<Entry> lookup(String inn) throws IOException {
+        byte[] key = key(inn);
+        if (key.length == 0) {
+            return List.of();
+        }
+        long low = 0;
+        long high = personCount - 1;
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            int result = compareKey(middle, key);
+            if (result < 0) {
+                low = middle + 1;
+            } else if (result > 0) {
+                high = middle - 1;
+            } else {
+                return entriesAt(middle);
+            }
+        }
+        return List.of();
+    }
+
+    /**
+     * Compares the key of a person to the given key by their unsigned bytes, in place in the mapping.
+     */
+    private int compareKey(long person, byte[] key) throws IOException {
+        long offset = keyOffsetsStart + person * Long.BYTES;
+        long start = keysStart + input.getLong(offset);
+        int length = (int) (keysStart + input.getLong(offset + Long.BYTES) - start);
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int result = Byte.compareUnsigned(input.getByte(start + i), key[i]);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    private List<Entry> entriesAt(long person) throws IOException {
+        long offset = entryStartsStart + person * Long.BYTES;
+        long start = input.getLong(offset);
+        int count = (int) (input.getLong(offset + Long.BYTES) - start);
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(new Entry(input.getLong(companyIdsStart + (start + i) * Long.BYTES),
+                    input.getDouble(percentsStart + (start + i) * Double.BYTES)));
+        }
+        return entries;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    static byte[] key(String inn) {
+        return inn == null ? new byte[0] : inn.strip().getBytes(StandardCharsets.UTF_8);
+    }
+}
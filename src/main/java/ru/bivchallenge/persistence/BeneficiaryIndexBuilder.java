@@ -0,0 +1,228 @@
+package ru.bivchallenge.persistence;
+
+import ru.bivchallenge.data.BenefeciarRegistry;
+import ru.bivchallenge.dto.Benefeciar;
+import ru.bivchallenge.util.ChannelDataOutput;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
+
+/**
+ * The {@code BeneficiaryIndexBuilder} class collects the beneficiaries of every head company and writes them
+ * as a {@link BeneficiaryIndex} keyed by the INN of the natural person.
+ *
+ * <p>Registries may be accepted by any number of threads. Every thread appends its entries to its own run of
+ * primitive arrays, so accepting a registry takes no lock. {@link #write(Path)} sorts the runs in parallel and
+ * merges them pairwise, the merges of one round running in parallel, before the single sorted run is written.
+ * Both steps use the common pool, or the pool of the task calling {@code write}.</p>
+ */
+public final class BeneficiaryIndexBuilder {
+    private static final System.Logger LOGGER = System.getLogger(BeneficiaryIndexBuilder.class.getName());
+
+    private final Queue<Run> runs = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Run> threadRun = ThreadLocal.withInitial(() -> {
+        Run run = new Run(1024);
+        runs.add(run);
+        return run;
+    });
+
+    /**
+     * Adds the beneficiaries of one head company. Beneficiaries without an INN are skipped, since they would all
+     * share the empty key. May be called concurrently.
+     *
+     * @param registry the beneficiaries of the company
+     */
+    public void accept(BenefeciarRegistry registry) {
+        Run run = threadRun.get();
+        long companyId = registry.getCompany().id();
+        for (Benefeciar benefeciar : registry.getBeneficiaries()) {
+            byte[] key = BeneficiaryIndex.key(benefeciar.naturalEntity().getInn());
+            if (key.length > 0) {
+                run.add(key, companyId, benefeciar.percent());
+            }
+        }
+    }
+
+    /**
+     * Sorts and merges the collected entries and writes the index. The index is written to a temporary file and
+     * moved into place, so readers never see a truncated index. No registry may be accepted while writing.
+     *
+     * @param indexPath the path of the index file
+     * @throws IOException if the index cannot be written
+     */
+    public void write(Path indexPath) throws IOException {
+        Run merged = merge(new ArrayList<>(runs));
+        Path temporaryPath = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                merged.writeTo(new ChannelDataOutput(channel));
+            }
+            Files.move(temporaryPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporaryPath);
+            throw e;
+        }
+        LOGGER.log(System.Logger.Level.INFO, "Wrote beneficiary index " + indexPath + " with " + merged.size + " entries");
+    }
+
+    private static Run merge(List<Run> runs) {
+        if (runs.isEmpty()) {
+            return new Run(0);
+        }
+        runs.parallelStream().forEach(Run::sort);
+        List<Run> round = runs;
+        while (round.size() > 1) {
+            List<Run> previous = round;
+            round = IntStream.range(0, (previous.size() + 1) / 2).parallel()
+                    .mapToObj(i -> 2 * i + 1 < previous.size()
+                            ? Run.merge(previous.get(2 * i), previous.get(2 * i + 1))
+                            : previous.get(2 * i))
+                    .toList();
+        }
+        return round.getFirst();
+    }
+
+    /**
+     * The entries of one thread, in parallel arrays. Entries are ordered by key, then company id, then percent.
+     */
+    private static final class Run {
+        private byte[][] keys;
+        private long[] companyIds;
+        private double[] percents;
+        private int size;
+
+        private Run(int capacity) {
+            keys = new byte[capacity][];
+            companyIds = new long[capacity];
+            percents = new double[capacity];
+        }
+
+        private void add(byte[] key, long companyId, double percent) {
+            if (size == keys.length) {
+                int capacity = Math.max(16, size * 2);
+                keys = Arrays.copyOf(keys, capacity);
+                companyIds = Arrays.copyOf(companyIds, capacity);
+                percents = Arrays.copyOf(percents, capacity);
+            }
+            keys[size] = key;
+            companyIds[size] = companyId;
+            percents[size] = percent;
+            size++;
+        }
+
+        private int compare(int i, Run other, int j) {
+            int result = Arrays.compareUnsigned(keys[i], other.keys[j]);
+            if (result == 0) {
+                result = Long.compare(companyIds[i], other.companyIds[j]);
+            }
+            return result != 0 ? result : Double.compare(percents[i], other.percents[j]);
+        }
+
+        /**
+         * Sorts the entries with a bottom-up merge sort over their positions, then permutes the arrays once.
+         */
+        private void sort() {
+            int[] order = new int[size];
+            int[] buffer = new int[size];
+            Arrays.setAll(order, i -> i);
+            for (int width = 1; width < size; width *= 2) {
+                for (int start = 0; start < size; start += 2 * width) {
+                    int middle = Math.min(start + width, size);
+                    int end = Math.min(start + 2 * width, size);
+                    int left = start;
+                    int right = middle;
+                    for (int k = start; k < end; k++) {
+                        if (left < middle && (right == end || compare(order[left], this, order[right]) <= 0)) {
+                            buffer[k] = order[left++];
+                        } else {
+                            buffer[k] = order[right++];
+                        }
+                    }
+                }
+                int[] swap = order;
+                order = buffer;
+                buffer = swap;
+            }
+            byte[][] sortedKeys = new byte[size][];
+            long[] sortedCompanyIds = new long[size];
+            double[] sortedPercents = new double[size];
+            for (int i = 0; i < size; i++) {
+                sortedKeys[i] = keys[order[i]];
+                sortedCompanyIds[i] = companyIds[order[i]];
+                sortedPercents[i] = percents[order[i]];
+            }
+            keys = sortedKeys;
+            companyIds = sortedCompanyIds;
+            percents = sortedPercents;
+        }
+
+        private static Run merge(Run left, Run right) {
+            Run merged = new Run(left.size + right.size);
+            int i = 0;
+            int j = 0;
+            while (i < left.size || j < right.size) {
+                if (j == right.size || (i < left.size && left.compare(i, right, j) <= 0)) {
+                    merged.add(left.keys[i], left.companyIds[i], left.percents[i]);
+                    i++;
+                } else {
+                    merged.add(right.keys[j], right.companyIds[j], right.percents[j]);
+                    j++;
+                }
+            }
+            return merged;
+        }
+
+        /**
+         * Writes the sorted entries in the layout read by {@link BeneficiaryIndex}.
+         */
+        private void writeTo(ChannelDataOutput output) throws IOException {
+            long personCount = 0;
+            long keyBytes = 0;
+            for (int i = 0; i < size; i++) {
+                if (i == 0 || !Arrays.equals(keys[i - 1], keys[i])) {
+                    personCount++;
+                    keyBytes += keys[i].length;
+                }
+            }
+            output.writeLong(BeneficiaryIndex.MAGIC);
+            output.writeInt(BeneficiaryIndex.VERSION);
+            output.writeLong(personCount);
+            output.writeLong(size);
+            output.writeLong(keyBytes);
+
+            long keyOffset = 0;
+            for (int i = 0; i < size; i++) {
+                if (i == 0 || !Arrays.equals(keys[i - 1], keys[i])) {
+                    output.writeLong(keyOffset);
+                    keyOffset += keys[i].length;
+                }
+            }
+            output.writeLong(keyOffset);
+            for (int i = 0; i < size; i++) {
+                if (i == 0 || !Arrays.equals(keys[i - 1], keys[i])) {
+                    output.writeLong(i);
+                }
+            }
+            output.writeLong(size);
+            for (int i = 0; i < size; i++) {
+                if (i == 0 || !Arrays.equals(keys[i - 1], keys[i])) {
+                    output.writeBytes(keys[i], keys[i].length);
+                }
+            }
+            output.writeLongs(companyIds, size);
+            output.writeDoubles(percents, size);
+            output.flush();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package ru.bivchallenge.persistence;
+
+import de.siegmar.fastcsv.writer.CsvWriter;
+import jakarta.inject.Inject;
+import ru.bivchallenge.config.CastleConfig;
+import ru.bivchallenge.dto.Company;
+
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * The {@code ChangedCompanyLocalDataDispatcher} class writes the companies whose beneficiaries changed in an
+ * incremental run to a local CSV file, one company per row in the same columns as the company rows of the
+ * beneficiaries table. A company removed from the company table has only its id written.
+ *
+ * @see BenefeciarLocalDataDispatcher
+ * @see CastleConfig#getIncrementalConfig()
+ */
+public class ChangedCompanyLocalDataDispatcher implements DataDispatcher<Company> {
+    private final Path changedCompaniesTablePath;
+    private final CsvWriter.CsvWriterBuilder csvWriterBuilder;
+
+    @Inject
+    public ChangedCompanyLocalDataDispatcher(CastleConfig castleConfig, CsvWriter.CsvWriterBuilder csvWriterBuilder) {
+        this.changedCompaniesTablePath = castleConfig.getIncrementalConfig().getChangedCompaniesTablePath();
+        this.csvWriterBuilder = csvWriterBuilder;
+    }
+
+    @Override
+    public void dispatch(Set<Company> set) {
+        try (CsvWriter csvWriter = csvWriterBuilder.build(changedCompaniesTablePath)) {
+            csvWriter.writeRecord("company_id", "ogrn", "inn", "full_name");
+            for (Company company : set) {
+                csvWriter.writeRecord(company.separate());
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to write data to " + changedCompaniesTablePath, e);
+        }
+    }
+}
@@ -4,10 +4,13 @@ import de.siegmar.fastcsv.reader.CsvReader;
 import de.siegmar.fastcsv.reader.CsvRecord;
 import jakarta.inject.Inject;
 import ru.bivchallenge.config.CastleConfig;
+import ru.bivchallenge.data.FounderTable;
 import ru.bivchallenge.dto.Company;
+import ru.bivchallenge.metrics.RunMetrics;
 
 import java.nio.file.Path;
 import java.util.Map;
+import java.util.function.IntFunction;
 
 /**
  * The {@code CompanyLocalProvider} class is responsible for providing {@link Company} data
@@ -16,20 +19,36 @@ import java.util.Map;
  *
  * <p>This class uses a {@link CsvReader} to read and parse company data from the file specified
  * in the {@link CastleConfig}. It also provides mechanisms to repair data if necessary.
+ * When snapshots are enabled, the repaired companies are cached in a binary snapshot next to the table.
+ * The companies are also available as a columnar {@link FounderTable}, which keeps the ids in a primitive array
+ * and the text fields as bytes; a continuation line may repair the last company of a chunk, so the companies
+ * are pushed to a block consumer as a single block.
+ * When lazy text is enabled, the table keeps the text fields of the companies in the memory-mapped file, and
+ * its rows are in file order instead of the order of the parsed map.
  *
  * @see AbstractLocalDataProvider
+ * @see TableDataProvider
  * @see CsvReader
  * @see Company
  */
-public class CompanyLocalProvider extends AbstractLocalDataProvider<Company> {
+public class CompanyLocalProvider extends AbstractLocalDataProvider<Company> implements TableDataProvider<Company> {
+    private static final int[] TEXT_COLUMNS = {1, 2, 3};
+
     private final Path companiesTablePath;
+    private final boolean lazyText;
 
     private Map<Long, Company> companyMap;
+    private FounderTable<Company> companyTable;
 
-    @Inject
     public CompanyLocalProvider(CastleConfig castleConfig, CsvReader.CsvReaderBuilder csvReaderBuilder) {
-        super(csvReaderBuilder);
+        this(castleConfig, csvReaderBuilder, new RunMetrics());
+    }
+
+    @Inject
+    public CompanyLocalProvider(CastleConfig castleConfig, CsvReader.CsvReaderBuilder csvReaderBuilder, RunMetrics runMetrics) {
+        super(csvReaderBuilder, DEFAULT_CHUNK_SIZE, snapshotDirectory(castleConfig.getTableConfig()), runMetrics);
         this.companiesTablePath = castleConfig.getTableConfig().getCompanyTablePath();
+        this.lazyText = castleConfig.getTableConfig().isLazyTextEnabled();
     }
 
     @Override
@@ -37,10 +56,53 @@ public class CompanyLocalProvider extends AbstractLocalDataProvider<Company> {
         if (companyMap != null) {
             return companyMap;
         }
-        companyMap = getDataFromCsvTable(companiesTablePath, this::parseCompany, this::repairCompany);
+        if (companyTable != null || isSnapshotEnabled() || lazyText) {
+            companyMap = getTable().toMap(Company::id);
+        } else {
+            companyMap = getDataFromCsvTable(companiesTablePath, this::parseCompany, this::repairCompany);
+        }
         return companyMap;
     }
 
+    /**
+     * Retrieves the companies as a columnar table that creates a {@link Company} object only for the rows that are
+     * read. The map of parsed companies is not kept, unless it was already loaded by {@link #get()}.
+     *
+     * @return a {@link FounderTable} of the companies
+     */
+    @Override
+    public FounderTable<Company> getTable() {
+        if (companyTable == null && companyMap != null) {
+            companyTable = toTable(companyMap);
+        } else if (companyTable == null) {
+            companyTable = getSnapshotOrTable(companiesTablePath, CompanyLocalProvider::toCompany, lazyText
+                    ? () -> getMappedTableFromCsvTable(companiesTablePath, TEXT_COLUMNS, CompanyLocalProvider::parseMappedCompany,
+                            this::parseCompanyRow, 2, CompanyLocalProvider::toCompany, null)
+                    : () -> toTable(getDataFromCsvTable(companiesTablePath, this::parseCompany, this::repairCompany)));
+        }
+        return companyTable;
+    }
+
+    /**
+     * Pushes the companies to the consumer in blocks in file order without keeping them, unless the table is already
+     * loaded. A block is pushed once the next one is parsed, since a continuation line may repair its last company.
+     *
+     * @param blockConsumer the consumer of the blocks of rows
+     */
+    @Override
+    public void forEachBlock(FounderTable.BlockConsumer<Company> blockConsumer) {
+        if (companyTable != null) {
+            blockConsumer.accept(companyTable, 0);
+        } else {
+            forEachBlockOfCsvTable(companiesTablePath, 3, this::parseCompanyRow, 2, CompanyLocalProvider::toCompany, blockConsumer);
+        }
+    }
+
+    @Override
+    public FounderTable.RowMapper<Company> getRowMapper() {
+        return CompanyLocalProvider::toCompany;
+    }
+
     private Company parseCompany(CsvRecord csvRecord) {
         if (csvRecord.getFieldCount() != 4) {
            return null;
@@ -57,6 +119,29 @@ public class CompanyLocalProvider extends AbstractLocalDataProvider<Company> {
         }
     }
 
+    private void parseCompanyRow(IntFunction<String> field, int fieldCount, FounderTable.Builder table) {
+        if (fieldCount != 4) {
+            return;
+        }
+        try {
+            table.add(Long.parseLong(validate(field.apply(0))), 0L, 0.0, 0.0,
+                    validate(field.apply(1)), validate(field.apply(2)), validate(field.apply(3)));
+        } catch (Exception e) {
+            // invalid rows are repaired or skipped by the caller
+        }
+    }
+
+    private static void parseMappedCompany(MappedRow row, FounderTable.Builder table) {
+        if (row.fieldCount() != 4 || row.isBlank(0) || row.isBlank(1) || row.isBlank(2) || row.isBlank(3)) {
+            return;
+        }
+        try {
+            table.addSourceRow(row.parseLong(0), 0L, 0.0, 0.0, row.offset());
+        } catch (NumberFormatException e) {
+            // invalid rows are repaired or skipped by the caller
+        }
+    }
+
     private String validate(String value) {
         if (value == null || value.isBlank()) {
             throw new IllegalArgumentException();
@@ -72,4 +157,16 @@ public class CompanyLocalProvider extends AbstractLocalDataProvider<Company> {
                 company.fullName() + lastPart
         );
     }
+
+    private static FounderTable<Company> toTable(Map<Long, Company> companies) {
+        FounderTable.Builder table = FounderTable.builder(3);
+        for (Company company : companies.values()) {
+            table.add(company.id(), 0L, 0.0, 0.0, company.ogrn(), company.inn(), company.fullName());
+        }
+        return table.build(CompanyLocalProvider::toCompany);
+    }
+
+    private static Company toCompany(FounderTable<Company> table, int row) {
+        return new Company(table.id(row), table.text(row, 0), table.text(row, 1), table.text(row, 2));
+    }
 }
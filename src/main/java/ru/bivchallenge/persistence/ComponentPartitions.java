@@ -0,0 +1,419 @@
+package ru.bivchallenge.persistence;
+
+import ru.bivchallenge.data.FounderTable;
+import ru.bivchallenge.dto.Company;
+import ru.bivchallenge.dto.LegalEntity;
+import ru.bivchallenge.dto.NaturalEntity;
+import ru.bivchallenge.util.ChannelDataOutput;
+import ru.bivchallenge.util.LongIntHashMap;
+import ru.bivchallenge.util.MappedDataInput;
+import ru.bivchallenge.util.UnionFind;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The {@code ComponentPartitions} class spills the company and founder tables to disk in partitions of whole weakly
+ * connected components of the ownership relation, so that the beneficiaries of a registry larger than the heap can
+ * be computed one partition at a time.
+ *
+ * <p>The tables are streamed block by block (see {@link TableDataProvider#forEachBlock}) and every block is written
+ * to a spill file as it arrives. While the founder blocks pass, a {@link UnionFind} joins every founder with the
+ * company it owns a share of; the ids are mapped to dense elements by {@link LongIntHashMap}s, legal and natural ids
+ * apart. The components are then packed, in the order they were first seen, into partitions estimated at no more
+ * than the memory budget, at {@value #ROW_FOOTPRINT} bytes per founder row; a component larger than the budget gets
+ * a partition of its own. Finally the spilled blocks are read back once and every row is written to the frames of
+ * the partition of its company.</p>
+ *
+ * <p>A head company can only be reached by founders of its own component, so a shared graph of its partition gives
+ * it the same beneficiaries as the graph of the whole registry. Rows keep their file order within a partition.
+ * Companies without founder rows have no beneficiaries and are left out. While the partitions are written, only the
+ * union-find, the blocks being parsed and the rows buffered for the partition frames are held in memory.</p>
+ *
+ * <p>The spill files are removed when the partitions are closed.</p>
+ */
+public final class ComponentPartitions implements AutoCloseable {
+    /**
+     * The estimated heap taken by one founder row once its partition is loaded and its graph is built.
+     */
+    static final long ROW_FOOTPRINT = 256;
+
+    private static final System.Logger LOGGER = System.getLogger(ComponentPartitions.class.getName());
+
+    private final SpillFile<Company> companies;
+    private final SpillFile<LegalEntity> legalEntities;
+    private final SpillFile<NaturalEntity> naturalEntities;
+    private final int partitionCount;
+    private final long companyCount;
+
+    private ComponentPartitions(SpillFile<Company> companies, SpillFile<LegalEntity> legalEntities,
+                                SpillFile<NaturalEntity> naturalEntities, int partitionCount, long companyCount) {
+        this.companies = companies;
+        this.legalEntities = legalEntities;
+        this.naturalEntities = naturalEntities;
+        this.partitionCount = partitionCount;
+        this.companyCount = companyCount;
+    }
+
+    /**
+     * Streams the tables of the providers into partitions of whole components in the given directory.
+     *
+     * @param companyDataProvider       the provider of the head companies
+     * @param legalEntityDataProvider   the provider of the legal founders
+     * @param naturalEntityDataProvider the provider of the natural founders
+     * @param directory                 the directory of the spill files, created if missing
+     * @param memoryBudget              the estimated heap a loaded partition may take, in bytes
+     * @return the partitions
+     * @throws IOException if a spill file cannot be written or read
+     */
+    public static ComponentPartitions write(TableDataProvider<Company> companyDataProvider,
+                                            FounderDataProvider<LegalEntity> legalEntityDataProvider,
+                                            FounderDataProvider<NaturalEntity> naturalEntityDataProvider,
+                                            Path directory, long memoryBudget) throws IOException {
+        Files.createDirectories(directory);
+        long partitionRows = Math.max(1, memoryBudget / ROW_FOOTPRINT);
+        Components components = new Components();
+        SpillFile<Company> companies = null;
+        SpillFile<LegalEntity> legalEntities = null;
+        SpillFile<NaturalEntity> naturalEntities = null;
+        try (SpillFile<Company> companyBlocks = SpillFile.create(directory.resolve("company.blocks"), companyDataProvider.getRowMapper());
+             SpillFile<LegalEntity> legalBlocks = SpillFile.create(directory.resolve("founder_legal.blocks"), legalEntityDataProvider.getRowMapper());
+             SpillFile<NaturalEntity> naturalBlocks = SpillFile.create(directory.resolve("founder_natural.blocks"), naturalEntityDataProvider.getRowMapper())) {
+            try {
+                companyDataProvider.forEachBlock((block, firstRow) -> companyBlocks.writeUnchecked(block, 0));
+                legalEntityDataProvider.forEachBlock((block, firstRow) -> {
+                    components.addLegalEntities(block);
+                    legalBlocks.writeUnchecked(block, 0);
+                });
+                naturalEntityDataProvider.forEachBlock((block, firstRow) -> {
+                    components.addNaturalEntities(block);
+                    naturalBlocks.writeUnchecked(block, 0);
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            companyBlocks.finish();
+            legalBlocks.finish();
+            naturalBlocks.finish();
+
+            int partitionCount = components.partition(partitionRows);
+            companies = SpillFile.create(directory.resolve("company.partitions"), companyDataProvider.getRowMapper());
+            legalEntities = SpillFile.create(directory.resolve("founder_legal.partitions"), legalEntityDataProvider.getRowMapper());
+            naturalEntities = SpillFile.create(directory.resolve("founder_natural.partitions"), naturalEntityDataProvider.getRowMapper());
+            long companyCount = route(companyBlocks, companies, components, true, partitionCount, partitionRows);
+            route(legalBlocks, legalEntities, components, false, partitionCount, partitionRows);
+            route(naturalBlocks, naturalEntities, components, false, partitionCount, partitionRows);
+            return new ComponentPartitions(companies, legalEntities, naturalEntities, partitionCount, companyCount);
+        } catch (IOException | RuntimeException e) {
+            closeAll(companies, legalEntities, naturalEntities);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of partitions.
+     *
+     * @return the partition count
+     */
+    public int partitionCount() {
+        return partitionCount;
+    }
+
+    /**
+     * Returns the number of head companies in all partitions, i.e. of the companies with founder rows.
+     *
+     * @return the company count
+     */
+    public long companyCount() {
+        return companyCount;
+    }
+
+    /**
+     * Reads the rows of a partition back into columnar tables.
+     *
+     * @param partition the index of the partition
+     * @return the rows of the partition
+     * @throws IOException if a spill file cannot be read
+     */
+    public Partition load(int partition) throws IOException {
+        return new Partition(companies.load(partition), legalEntities.load(partition), naturalEntities.load(partition));
+    }
+
+    /**
+     * Removes the spill files.
+     */
+    @Override
+    public void close() {
+        closeAll(companies, legalEntities, naturalEntities);
+    }
+
+    /**
+     * Writes every row of the spilled blocks to the frames of the partition of its company, buffering at most
+     * {@code bufferedRows} rows over all partitions, and removes the spilled blocks.
+     *
+     * @param companyRows whether the rows are companies, keyed by their id, rather than founders of a company
+     * @return the number of rows written
+     */
+    private static <T> long route(SpillFile<T> blocks, SpillFile<T> partitions, Components components, boolean companyRows,
+                                  int partitionCount, long bufferedRows) throws IOException {
+        FounderTable.Builder[] frames = new FounderTable.Builder[partitionCount];
+        long routed = 0;
+        long buffered = 0;
+        MappedDataInput input = new MappedDataInput(blocks.channel);
+        for (int frame = 0; frame < blocks.frameCount; frame++) {
+            FounderTable<T> block = blocks.readFrame(input, frame);
+            for (int row = 0; row < block.size(); row++) {
+                int partition = components.partitionOf(companyRows ? block.id(row) : block.companyId(row));
+                if (partition < 0) {
+                    continue;
+                }
+                if (frames[partition] == null) {
+                    frames[partition] = FounderTable.builder(block.textFieldCount());
+                }
+                frames[partition].add(block, row);
+                routed++;
+                if (++buffered >= bufferedRows) {
+                    flush(frames, partitions);
+                    buffered = 0;
+                }
+            }
+        }
+        flush(frames, partitions);
+        partitions.finish();
+        // The blocks are not read again, so their disk space is freed before the next table is routed.
+        blocks.close();
+        return routed;
+    }
+
+    private static <T> void flush(FounderTable.Builder[] frames, SpillFile<T> partitions) throws IOException {
+        for (int partition = 0; partition < frames.length; partition++) {
+            if (frames[partition] != null) {
+                partitions.write(frames[partition].build(partitions.rowMapper), partition);
+                frames[partition] = null;
+            }
+        }
+    }
+
+    private static void closeAll(SpillFile<?>... spillFiles) {
+        for (SpillFile<?> spillFile : spillFiles) {
+            if (spillFile != null) {
+                spillFile.close();
+            }
+        }
+    }
+
+    /**
+     * The rows of one partition.
+     *
+     * @param companies       the head companies of the partition
+     * @param legalEntities   the legal founders of the partition
+     * @param naturalEntities the natural founders of the partition
+     */
+    public record Partition(FounderTable<Company> companies, FounderTable<LegalEntity> legalEntities,
+                            FounderTable<NaturalEntity> naturalEntities) {
+    }
+
+    /**
+     * The weakly connected components of the founder rows seen so far, and after {@link #partition} the partition
+     * of every component.
+     */
+    private static final class Components {
+        private final UnionFind unionFind = new UnionFind();
+        private final LongIntHashMap legalElements = new LongIntHashMap();
+        private final LongIntHashMap naturalElements = new LongIntHashMap();
+        private int[] rowCounts = new int[16];
+        private int[] partitions;
+
+        private void addLegalEntities(FounderTable<?> block) {
+            for (int row = 0; row < block.size(); row++) {
+                int company = element(legalElements, block.companyId(row));
+                unionFind.union(element(legalElements, block.id(row)), company);
+                rowCounts[company]++;
+            }
+        }
+
+        private void addNaturalEntities(FounderTable<?> block) {
+            for (int row = 0; row < block.size(); row++) {
+                int company = element(legalElements, block.companyId(row));
+                unionFind.union(element(naturalElements, block.id(row)), company);
+                rowCounts[company]++;
+            }
+        }
+
+        /**
+         * Packs the components into partitions of at most the given number of founder rows, unless a single
+         * component is larger.
+         *
+         * @return the number of partitions
+         */
+        private int partition(long partitionRows) {
+            int elementCount = unionFind.size();
+            long[] componentRows = new long[elementCount];
+            for (int element = 0; element < elementCount; element++) {
+                componentRows[unionFind.find(element)] += rowCounts[element];
+            }
+            rowCounts = null;
+            partitions = new int[elementCount];
+            Arrays.fill(partitions, -1);
+            int partitionCount = 0;
+            int componentCount = 0;
+            long rows = 0;
+            long largestComponent = 0;
+            long filled = 0;
+            for (int element = 0; element < elementCount; element++) {
+                int root = unionFind.find(element);
+                if (partitions[root] < 0) {
+                    if (partitionCount == 0 || filled > 0 && filled + componentRows[root] > partitionRows) {
+                        partitionCount++;
+                        filled = 0;
+                    }
+                    partitions[root] = partitionCount - 1;
+                    filled += componentRows[root];
+                    rows += componentRows[root];
+                    largestComponent = Math.max(largestComponent, componentRows[root]);
+                    componentCount++;
+                }
+                partitions[element] = partitions[root];
+            }
+            LOGGER.log(System.Logger.Level.INFO, "Partitioned " + rows + " founder rows in " + componentCount
+                    + " components into " + partitionCount + " partitions of up to " + partitionRows
+                    + " rows; the largest component has " + largestComponent + " rows");
+            return partitionCount;
+        }
+
+        /**
+         * Returns the partition of the founders of a company.
+         *
+         * @param companyId the id of the company
+         * @return the partition, or {@code -1} if the company has no founder rows
+         */
+        private int partitionOf(long companyId) {
+            int element = legalElements.get(companyId);
+            return element == LongIntHashMap.MISSING ? -1 : partitions[element];
+        }
+
+        private int element(LongIntHashMap elements, long id) {
+            int element = elements.get(id);
+            if (element == LongIntHashMap.MISSING) {
+                element = unionFind.add();
+                elements.put(id, element);
+                if (element == rowCounts.length) {
+                    rowCounts = Arrays.copyOf(rowCounts, element << 1);
+                }
+            }
+            return element;
+        }
+    }
+
+    /**
+     * A file of {@link FounderTable} frames, each tagged with the partition it belongs to, written in one pass and
+     * then read back partition by partition.
+     */
+    private static final class SpillFile<T> implements AutoCloseable {
+        private final Path path;
+        private final FileChannel channel;
+        private final ChannelDataOutput output;
+        private final FounderTable.RowMapper<T> rowMapper;
+        private int[] framePartitions = new int[16];
+        private long[] frameOffsets = new long[16];
+        private int frameCount;
+        private int textFieldCount;
+
+        private SpillFile(Path path, FileChannel channel, FounderTable.RowMapper<T> rowMapper) {
+            this.path = path;
+            this.channel = channel;
+            this.output = new ChannelDataOutput(channel);
+            this.rowMapper = rowMapper;
+        }
+
+        private static <T> SpillFile<T> create(Path path, FounderTable.RowMapper<T> rowMapper) throws IOException {
+            return new SpillFile<>(path, FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE), rowMapper);
+        }
+
+        private void write(FounderTable<?> frame, int partition) throws IOException {
+            if (frame.size() == 0) {
+                return;
+            }
+            if (frameCount == frameOffsets.length) {
+                framePartitions = Arrays.copyOf(framePartitions, frameCount << 1);
+                frameOffsets = Arrays.copyOf(frameOffsets, frameCount << 1);
+            }
+            framePartitions[frameCount] = partition;
+            frameOffsets[frameCount] = output.position();
+            frameCount++;
+            textFieldCount = frame.textFieldCount();
+            frame.writeTo(output);
+        }
+
+        private void writeUnchecked(FounderTable<?> frame, int partition) {
+            try {
+                write(frame, partition);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void finish() throws IOException {
+            output.flush();
+        }
+
+        private FounderTable<T> readFrame(MappedDataInput input, int frame) throws IOException {
+            input.seek(frameOffsets[frame]);
+            return FounderTable.readFrom(input, rowMapper);
+        }
+
+        /**
+         * Reads the frames of a partition into one table, copying the rows only if there is more than one frame.
+         */
+        private FounderTable<T> load(int partition) throws IOException {
+            MappedDataInput input = new MappedDataInput(channel);
+            FounderTable<T> loaded = null;
+            FounderTable.Builder builder = null;
+            for (int frame = 0; frame < frameCount; frame++) {
+                if (framePartitions[frame] != partition) {
+                    continue;
+                }
+                FounderTable<T> table = readFrame(input, frame);
+                if (loaded == null && builder == null) {
+                    loaded = table;
+                    continue;
+                }
+                if (builder == null) {
+                    builder = FounderTable.builder(textFieldCount);
+                    addRows(builder, loaded);
+                    loaded = null;
+                }
+                addRows(builder, table);
+            }
+            if (builder != null) {
+                return builder.build(rowMapper);
+            }
+            return loaded != null ? loaded : FounderTable.builder(textFieldCount).build(rowMapper);
+        }
+
+        private static void addRows(FounderTable.Builder builder, FounderTable<?> table) {
+            for (int row = 0; row < table.size(); row++) {
+                builder.add(table, row);
+            }
+        }
+
+        /**
+         * Closes and removes the file.
+         */
+        @Override
+        public void close() {
+            try {
+                channel.close();
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                LOGGER.log(System.Logger.Level.WARNING, "Failed to remove spill file " + path, e);
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package ru.bivchallenge.persistence;
 
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
@@ -7,6 +8,10 @@ import java.util.Set;
  * <p>
  * This interface defines the method to send or distribute a set of data items, where
  * {@link T} represents the type of data to be dispatched.
+ * <p>
+ * Data can also be dispatched item by item through the {@link DataSink} returned by {@link #open()}, so that
+ * items are written while later ones are still being computed. Dispatchers that cannot write incrementally
+ * collect the items and dispatch them as a set when the sink is closed.
  *
  * @param <T> the type of data to be dispatched or distributed
  */
@@ -19,4 +24,36 @@ public interface DataDispatcher<T> {
      *            Each object in the set represents an individual data item to be processed.
      */
     void dispatch(Set<T> set);
+
+    /**
+     * Opens a sink dispatching the items written to it. The default sink collects the items in arrival order
+     * and dispatches them as a set when it is first closed; an aborted sink dispatches nothing.
+     *
+     * @return a sink for the items to be dispatched
+     */
+    default DataSink<T> open() {
+        Set<T> items = new LinkedHashSet<>();
+        return new DataSink<>() {
+            private boolean closed;
+
+            @Override
+            public void accept(T item) {
+                items.add(item);
+            }
+
+            @Override
+            public void close() {
+                if (!closed) {
+                    closed = true;
+                    dispatch(items);
+                }
+            }
+
+            @Override
+            public void abort() {
+                closed = true;
+                items.clear();
+            }
+        };
+    }
 }
@@ -0,0 +1,44 @@
+package ru.bivchallenge.persistence;
+
+/**
+ * A destination receiving data items of type {@link T} one at a time, opened by {@link DataDispatcher#open()}.
+ * <p>
+ * A sink is written from a single thread unless it is {@linkplain #isThreadSafe() thread-safe};
+ * {@link StreamingDataSink} makes any sink available to concurrent producers. Closing the sink completes the output;
+ * aborting it instead discards what was written, so that a failed run leaves no output that looks complete.
+ *
+ * @param <T> the type of data received
+ */
+public interface DataSink<T> extends AutoCloseable {
+
+    /**
+     * Writes one data item.
+     *
+     * @param item the item to write
+     */
+    void accept(T item);
+
+    /**
+     * Checks whether concurrent threads may accept items without synchronization.
+     *
+     * @return {@code true} if the sink is thread-safe
+     */
+    default boolean isThreadSafe() {
+        return false;
+    }
+
+    /**
+     * Completes the output and releases its resources. Closing a sink again has no effect.
+     */
+    @Override
+    void close();
+
+    /**
+     * Discards the output instead of completing it and releases its resources. Aborting a sink that is already
+     * closed or aborted has no effect. Sinks that cannot discard what they have written complete it, which is
+     * the default.
+     */
+    default void abort() {
+        close();
+    }
+}
@@ -0,0 +1,27 @@
+package ru.bivchallenge.persistence;
+
+import ru.bivchallenge.data.FounderTable;
+import ru.bivchallenge.data.FounderTableDelta;
+import ru.bivchallenge.dto.OwnerEntity;
+
+import java.nio.file.Path;
+
+/**
+ * Provides the rows of a founder table, either as entity objects or as a columnar {@link FounderTable}.
+ * <p>
+ * The columnar form keeps the numeric columns in primitive arrays and creates entity objects only on demand,
+ * so graph stages that read shares and company ids can work on the whole registry without one object per row.
+ *
+ * @param <T> the type of founder entity that this data provider handles
+ */
+public interface FounderDataProvider<T extends OwnerEntity> extends TableDataProvider<T> {
+
+    /**
+     * Applies a delta file of added, removed and changed founder rows to a table.
+     *
+     * @param table     the table to apply the delta to, e.g. the state of a previous run
+     * @param deltaPath the path to the delta file; a missing file is an empty delta
+     * @return the updated table and the ids of the companies touched by the delta
+     */
+    FounderTableDelta<T> applyDelta(FounderTable<T> table, Path deltaPath);
+}
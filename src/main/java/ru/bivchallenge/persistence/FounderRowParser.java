@@ -0,0 +1,24 @@
+package ru.bivchallenge.persistence;
+
+import ru.bivchallenge.data.FounderTable;
+
+import java.util.function.IntFunction;
+
+/**
+ * Parses the fields of one founder row into a {@link FounderTable.Builder}.
+ * <p>
+ * The fields are passed as an accessor rather than a CSV record, so that the same parser reads both the founder
+ * tables and their delta files, whose rows carry an additional leading action column.
+ */
+@FunctionalInterface
+public interface FounderRowParser {
+
+    /**
+     * Adds the row to the table if its fields are valid and ignores it otherwise.
+     *
+     * @param field      returns the field at the given index
+     * @param fieldCount the number of fields of the row
+     * @param table      the table to add the row to
+     */
+    void parse(IntFunction<String> field, int fieldCount, FounderTable.Builder table);
+}
@@ -0,0 +1,455 @@
+package ru.bivchallenge.persistence;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongSupplier;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Inflates a gzip-compressed table on a thread of its own into line-aligned blocks of UTF-8 bytes, which the
+ * parsing threads take from a bounded queue while later blocks are still being inflated.
+ *
+ * <p>A file of several gzip members, as written by {@code pigz}, {@code bgzip} or by concatenating compressed
+ * files, is split into segments at member headers found every {@value #SEGMENT_SIZE} compressed bytes. The
+ * inflating thread starts on the first segment at once, reading past its first {@code SEGMENT_SIZE} bytes only
+ * once the executor has found where it ends. The end of every later segment is looked for on the executor only
+ * when the segment before it is known, a few segments ahead of the blocks being taken, and the segments are
+ * inflated there in parallel, so the file is never scanned ahead of its inflation. A segment whose next header is
+ * not found within another {@code SEGMENT_SIZE} bytes runs to the end of the file, which is how a single-member
+ * file is inflated sequentially by the inflating thread. A header is only recognized by its first bytes, so a
+ * segment that does not end exactly at the end of a member proves the split wrong; the rest of the file is then
+ * inflated sequentially from the start of that segment.</p>
+ *
+ * <p>A UTF-8 byte order mark at the beginning of the inflated table is stripped; compressed tables in other
+ * encodings are rejected.</p>
+ */
+final class GzipBlocks implements AutoCloseable {
+    /**
+     * The compressed bytes after which the next member header starts a new segment.
+     */
+    static final long SEGMENT_SIZE = 4L << 20;
+
+    private static final int PIECE_SIZE = 1 << 20;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int QUEUE_CAPACITY = 4;
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+    private static final System.Logger LOGGER = System.getLogger(GzipBlocks.class.getName());
+
+    private final FileChannel channel;
+    private final String name;
+    private final int blockSize;
+    private final int segmentsAhead;
+    private final Executor executor;
+    private final BlockingQueue<ByteBuffer> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread thread;
+    private volatile Throwable failure;
+    private boolean ended;
+
+    private GzipBlocks(FileChannel channel, String name, int blockSize, int segmentsAhead, Executor executor) {
+        this.channel = channel;
+        this.name = name;
+        this.blockSize = blockSize;
+        this.segmentsAhead = segmentsAhead;
+        this.executor = executor;
+        this.thread = new Thread(this::run, "gunzip-" + name);
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Checks whether a file starts with the gzip magic bytes.
+     *
+     * @param channel the channel of the file
+     * @return {@code true} if the file is gzip-compressed
+     * @throws IOException if the file cannot be read
+     */
+    static boolean isGzip(FileChannel channel) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(2);
+        while (head.hasRemaining() && channel.read(head, head.position()) > 0) {
+            // read up to two bytes
+        }
+        return head.position() == 2 && head.get(0) == (byte) 0x1F && head.get(1) == (byte) 0x8B;
+    }
+
+    /**
+     * Starts inflating a file.
+     *
+     * @param channel       the channel of the file, which must stay open until the blocks are taken
+     * @param name          the name of the table, used for the inflating thread
+     * @param blockSize     the target size of a block in bytes
+     * @param segmentsAhead the number of segments of a multi-member file inflated in parallel
+     * @param executor      the executor inflating the segments
+     * @return the blocks, to be closed once taken
+     */
+    static GzipBlocks start(FileChannel channel, String name, int blockSize, int segmentsAhead, Executor executor) {
+        GzipBlocks blocks = new GzipBlocks(channel, name, blockSize, Math.max(1, segmentsAhead), executor);
+        blocks.thread.start();
+        return blocks;
+    }
+
+    /**
+     * Takes the next block in file order, waiting for it to be inflated.
+     *
+     * @return the bytes of the block, ending after a line feed unless it is the last one, or {@code null} after
+     * the last block
+     * @throws IOException          if the file cannot be read or is not a valid gzip file
+     * @throws InterruptedException if interrupted while waiting
+     */
+    ByteBuffer take() throws IOException, InterruptedException {
+        if (ended) {
+            return null;
+        }
+        ByteBuffer[] taken = new ByteBuffer[1];
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+            @Override
+            public boolean block() throws InterruptedException {
+                taken[0] = queue.take();
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                return taken[0] != null || (taken[0] = queue.poll()) != null;
+            }
+        });
+        ByteBuffer block = taken[0];
+        if (block != END) {
+            return block;
+        }
+        ended = true;
+        if (failure instanceof IOException e) {
+            throw e;
+        } else if (failure != null) {
+            throw new IOException("Failed to inflate " + name, failure);
+        }
+        return null;
+    }
+
+    /**
+     * Stops the inflating thread if the blocks were not all taken.
+     */
+    @Override
+    public void close() {
+        thread.interrupt();
+    }
+
+    private void run() {
+        try {
+            LineBlocks blocks = new LineBlocks();
+            inflateSegments(blocks);
+            blocks.finish();
+        } catch (InterruptedException e) {
+            return;
+        } catch (Throwable e) {
+            failure = e;
+        }
+        try {
+            queue.put(END);
+        } catch (InterruptedException e) {
+            // the blocks are no longer taken
+        }
+    }
+
+    /**
+     * Inflates the first segment on this thread as soon as the file is opened, while the end of every segment is
+     * found on the executor a segment ahead of its inflation and the next segments are inflated in parallel.
+     * Falls back to sequential inflation from the first segment that does not inflate on its own.
+     */
+    private void inflateSegments(LineBlocks blocks) throws IOException, InterruptedException {
+        long size = channel.size();
+        CompletableFuture<Segment> first = CompletableFuture.supplyAsync(() -> segment(0, size), executor);
+        List<CompletableFuture<Segment>> segments = new ArrayList<>();
+        List<CompletableFuture<List<byte[]>>> inflated = new ArrayList<>();
+        segments.add(first);
+        inflated.add(null);
+        try {
+            scheduleSegments(segments, inflated, 1, size);
+            try (InputStream in = new GZIPInputStream(new RangeInputStream(channel, 0,
+                    Math.min(size, SEGMENT_SIZE), () -> first.join().end()), READ_BUFFER_SIZE)) {
+                byte[] buffer = new byte[READ_BUFFER_SIZE];
+                for (int read; (read = in.read(buffer)) > 0; ) {
+                    blocks.write(buffer, 0, read);
+                }
+            } catch (IOException e) {
+                if (join(first).end() == size) {
+                    throw e;
+                }
+                LOGGER.log(System.Logger.Level.DEBUG, "Inflating " + name + " sequentially from offset 0: " + e);
+                inflate(0, blocks.written, blocks);
+                return;
+            }
+
+            for (int segment = 1; join(segments.get(segment)).start() < size; segment++) {
+                scheduleSegments(segments, inflated, segment + 1, size);
+                List<byte[]> pieces;
+                try {
+                    pieces = inflated.get(segment).join();
+                } catch (CompletionException e) {
+                    long start = join(segments.get(segment)).start();
+                    LOGGER.log(System.Logger.Level.DEBUG, "Inflating " + name + " sequentially from offset "
+                            + start + ": " + e.getCause());
+                    inflate(start, 0, blocks);
+                    return;
+                }
+                inflated.set(segment, null);
+                for (byte[] piece : pieces) {
+                    blocks.write(piece, 0, piece.length);
+                }
+            }
+        } finally {
+            segments.forEach(future -> future.cancel(false));
+            inflated.stream().filter(future -> future != null).forEach(future -> future.cancel(false));
+        }
+    }
+
+    /**
+     * Chains the search for the end of the next segments and their inflation on the executor, until the
+     * {@code segmentsAhead} segments from the given one are scheduled. Nothing waits for a result.
+     */
+    private void scheduleSegments(List<CompletableFuture<Segment>> segments,
+                                  List<CompletableFuture<List<byte[]>>> inflated, int from, long size) {
+        while (segments.size() < from + segmentsAhead) {
+            CompletableFuture<Segment> segment = segments.getLast().thenApplyAsync(
+                    previous -> previous.end() < size ? segment(previous.end(), size) : new Segment(size, size),
+                    executor);
+            segments.add(segment);
+            inflated.add(segment.thenApplyAsync(
+                    current -> current.start() < size ? inflateSegment(current.start(), current.end()) : List.of(),
+                    executor));
+        }
+    }
+
+    /**
+     * Finds the segment starting at an offset: it ends at the first member header at least {@link #SEGMENT_SIZE}
+     * bytes further, looked for over at most another {@code SEGMENT_SIZE} bytes, or at the end of the file.
+     */
+    private Segment segment(long start, long size) {
+        try {
+            long from = start + SEGMENT_SIZE;
+            long header = from < size ? nextHeader(ByteBuffer.allocate(READ_BUFFER_SIZE), from,
+                    Math.min(size, from + SEGMENT_SIZE)) : -1;
+            return new Segment(start, header >= 0 ? header : size);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private List<byte[]> inflateSegment(long start, long end) {
+        List<byte[]> pieces = new ArrayList<>();
+        try (InputStream in = new GZIPInputStream(new RangeInputStream(channel, start, end, () -> end), READ_BUFFER_SIZE)) {
+            byte[] piece = new byte[PIECE_SIZE];
+            int length = 0;
+            for (int read; (read = in.read(piece, length, piece.length - length)) > 0; ) {
+                length += read;
+                if (length == piece.length) {
+                    pieces.add(piece);
+                    piece = new byte[PIECE_SIZE];
+                    length = 0;
+                }
+            }
+            if (length > 0) {
+                pieces.add(Arrays.copyOf(piece, length));
+            }
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+        return pieces;
+    }
+
+    /**
+     * Inflates the rest of the file sequentially from a member header, dropping the first {@code skip} inflated
+     * bytes, which were already written.
+     */
+    private void inflate(long start, long skip, LineBlocks blocks) throws IOException, InterruptedException {
+        long end = channel.size();
+        try (InputStream in = new GZIPInputStream(new RangeInputStream(channel, start, end, () -> end), READ_BUFFER_SIZE)) {
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            for (int read; (read = in.read(buffer)) > 0; ) {
+                int skipped = (int) Math.min(skip, read);
+                skip -= skipped;
+                blocks.write(buffer, skipped, read - skipped);
+            }
+        }
+    }
+
+    /**
+     * Finds the first position in the range where the bytes look like a gzip member header: the magic bytes,
+     * the deflate method, no reserved flags, a known compression level and a known operating system.
+     */
+    private long nextHeader(ByteBuffer window, long from, long to) throws IOException {
+        for (long position = from; position < to; position += window.capacity() - 9) {
+            window.clear();
+            int read = 0;
+            while (window.hasRemaining()) {
+                int n = channel.read(window, position + read);
+                if (n <= 0) {
+                    break;
+                }
+                read += n;
+            }
+            for (int i = 0; i + 9 < read && position + i < to; i++) {
+                if (window.get(i) == (byte) 0x1F && window.get(i + 1) == (byte) 0x8B && window.get(i + 2) == 8
+                        && (window.get(i + 3) & 0xE0) == 0
+                        && (window.get(i + 8) == 0 || window.get(i + 8) == 2 || window.get(i + 8) == 4)
+                        && ((window.get(i + 9) & 0xFF) <= 13 || window.get(i + 9) == (byte) 0xFF)) {
+                    return position + i;
+                }
+            }
+            if (read < window.capacity()) {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Collects the inflated bytes into blocks that end after a line feed and hands full blocks to the queue.
+     */
+    private final class LineBlocks {
+        private byte[] block = new byte[blockSize];
+        private int length;
+        private long written;
+        private boolean first = true;
+
+        private void write(byte[] bytes, int offset, int count) throws IOException, InterruptedException {
+            written += count;
+            while (count > 0) {
+                if (length == block.length) {
+                    emitLines();
+                }
+                int n = Math.min(count, block.length - length);
+                System.arraycopy(bytes, offset, block, length, n);
+                length += n;
+                offset += n;
+                count -= n;
+            }
+        }
+
+        private void finish() throws IOException, InterruptedException {
+            if (length > 0) {
+                emit(block, length);
+            }
+        }
+
+        private void emitLines() throws IOException, InterruptedException {
+            int lineEnd = length;
+            while (lineEnd > 0 && block[lineEnd - 1] != '\n') {
+                lineEnd--;
+            }
+            if (lineEnd == 0) {
+                // A line longer than a block: grow the block until it ends.
+                block = Arrays.copyOf(block, block.length << 1);
+                return;
+            }
+            byte[] full = block;
+            int tail = length - lineEnd;
+            block = new byte[Math.max(blockSize, tail << 1)];
+            System.arraycopy(full, lineEnd, block, 0, tail);
+            length = tail;
+            emit(full, lineEnd);
+        }
+
+        private void emit(byte[] bytes, int count) throws IOException, InterruptedException {
+            int start = 0;
+            if (first) {
+                first = false;
+                if (count >= 3 && bytes[0] == (byte) 0xEF && bytes[1] == (byte) 0xBB && bytes[2] == (byte) 0xBF) {
+                    start = 3;
+                } else if (count >= 2 && (bytes[0] == (byte) 0xFE && bytes[1] == (byte) 0xFF
+                        || bytes[0] == (byte) 0xFF && bytes[1] == (byte) 0xFE)) {
+                    throw new IOException("Compressed tables must be UTF-8 encoded: " + name);
+                }
+            }
+            queue.put(ByteBuffer.wrap(bytes, start, count - start).slice());
+        }
+    }
+
+    /**
+     * The compressed bytes of one or more whole gzip members.
+     *
+     * @param start the offset of the first member header
+     * @param end   the offset past the last member
+     */
+    private record Segment(long start, long end) {
+    }
+
+    /**
+     * Reads a range of a file with positional reads, so that several ranges can be read at once. The end of the
+     * range is only asked for once the bytes up to a known minimum have been read.
+     */
+    private static final class RangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private final LongSupplier endSupplier;
+        private long end;
+        private boolean endKnown;
+        private long position;
+
+        private RangeInputStream(FileChannel channel, long start, long minimumEnd, LongSupplier endSupplier) {
+            this.channel = channel;
+            this.position = start;
+            this.end = minimumEnd;
+            this.endSupplier = endSupplier;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            resolveEnd();
+            if (position >= end) {
+                return -1;
+            }
+            int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            resolveEnd();
+            return (int) Math.min(Integer.MAX_VALUE, end - position);
+        }
+
+        private void resolveEnd() throws IOException {
+            if (position < end || endKnown) {
+                return;
+            }
+            try {
+                end = endSupplier.getAsLong();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof IOException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+            endKnown = true;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package ru.bivchallenge.persistence;
+
+import jakarta.inject.Inject;
+import ru.bivchallenge.config.CastleConfig;
+import ru.bivchallenge.data.CompanyDependencyIndex;
+import ru.bivchallenge.data.FounderTable;
+import ru.bivchallenge.data.IncrementalState;
+import ru.bivchallenge.dto.LegalEntity;
+import ru.bivchallenge.dto.NaturalEntity;
+import ru.bivchallenge.util.ChannelDataOutput;
+import ru.bivchallenge.util.MappedDataInput;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The {@code IncrementalStateStore} class reads and writes the {@link IncrementalState} of the incremental mode
+ * in a single binary file.
+ *
+ * <p>The file holds both founder tables in the form written by {@link FounderTable#writeTo} and their
+ * {@link CompanyDependencyIndex}, followed by the beneficiaries of every head company. It is written to a temporary file and moved into place, so a crash during
+ * a run leaves the state of the previous run intact and the same deltas can be applied again.</p>
+ *
+ * @see IncrementalState
+ */
+public class IncrementalStateStore {
+    private static final System.Logger LOGGER = System.getLogger(IncrementalStateStore.class.getName());
+
+    private static final long MAGIC = 0x45544154534C4E49L;
+    private static final int VERSION = 2;
+
+    private final Path statePath;
+    private final FounderTable.RowMapper<LegalEntity> legalEntityRowMapper;
+    private final FounderTable.RowMapper<NaturalEntity> naturalEntityRowMapper;
+
+    @Inject
+    public IncrementalStateStore(CastleConfig castleConfig,
+                                 FounderDataProvider<LegalEntity> legalEntityDataProvider,
+                                 FounderDataProvider<NaturalEntity> naturalEntityDataProvider) {
+        this(castleConfig.getIncrementalConfig().getStatePath(),
+                legalEntityDataProvider.getRowMapper(), naturalEntityDataProvider.getRowMapper());
+    }
+
+    public IncrementalStateStore(Path statePath,
+                                 FounderTable.RowMapper<LegalEntity> legalEntityRowMapper,
+                                 FounderTable.RowMapper<NaturalEntity> naturalEntityRowMapper) {
+        this.statePath = statePath;
+        this.legalEntityRowMapper = legalEntityRowMapper;
+        this.naturalEntityRowMapper = naturalEntityRowMapper;
+    }
+
+    /**
+     * Reads the state of the previous run.
+     *
+     * @return the state, or an empty optional if there is no state file or it cannot be read
+     */
+    public Optional<IncrementalState> load() {
+        if (!Files.isRegularFile(statePath)) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(statePath, StandardOpenOption.READ)) {
+            MappedDataInput input = new MappedDataInput(channel);
+            if (input.readLong() != MAGIC || input.readInt() != VERSION) {
+                LOGGER.log(System.Logger.Level.WARNING, "Ignoring state " + statePath + " of an unknown format");
+                return Optional.empty();
+            }
+            FounderTable<LegalEntity> legalEntityTable = FounderTable.readFrom(input, legalEntityRowMapper);
+            FounderTable<NaturalEntity> naturalEntityTable = FounderTable.readFrom(input, naturalEntityRowMapper);
+            CompanyDependencyIndex dependencyIndex = CompanyDependencyIndex.readFrom(input);
+            int companyCount = input.readInt();
+            Map<Long, IncrementalState.Beneficiaries> beneficiaries = HashMap.newHashMap(companyCount);
+            for (int i = 0; i < companyCount; i++) {
+                long companyId = input.readLong();
+                int count = input.readInt();
+                beneficiaries.put(companyId, new IncrementalState.Beneficiaries(input.readLongs(count), input.readDoubles(count)));
+            }
+            return Optional.of(new IncrementalState(legalEntityTable, naturalEntityTable, dependencyIndex, beneficiaries));
+        } catch (IOException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Failed to read state " + statePath, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Replaces the stored state.
+     *
+     * @param state the state after the current run
+     * @throws RuntimeException if the state cannot be written
+     */
+    public void store(IncrementalState state) {
+        Path temporaryPath = statePath.resolveSibling(statePath.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ChannelDataOutput output = new ChannelDataOutput(channel);
+            output.writeLong(MAGIC);
+            output.writeInt(VERSION);
+            state.legalEntityTable().writeTo(output);
+            state.naturalEntityTable().writeTo(output);
+            state.dependencyIndex().writeTo(output);
+            output.writeInt(state.beneficiaries().size());
+            for (Map.Entry<Long, IncrementalState.Beneficiaries> entry : state.beneficiaries().entrySet()) {
+                IncrementalState.Beneficiaries beneficiaries = entry.getValue();
+                output.writeLong(entry.getKey());
+                output.writeInt(beneficiaries.naturalEntityIds().length);
+                output.writeLongs(beneficiaries.naturalEntityIds(), beneficiaries.naturalEntityIds().length);
+                output.writeDoubles(beneficiaries.percents(), beneficiaries.percents().length);
+            }
+            output.flush();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write state to " + statePath, e);
+        }
+        try {
+            Files.move(temporaryPath, statePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write state to " + statePath, e);
+        }
+    }
+}
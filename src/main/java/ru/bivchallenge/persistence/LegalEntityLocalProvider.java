@@ -1,13 +1,16 @@
 package ru.bivchallenge.persistence;
 
 import de.siegmar.fastcsv.reader.CsvReader;
-import de.siegmar.fastcsv.reader.CsvRecord;
 import jakarta.inject.Inject;
 import ru.bivchallenge.config.CastleConfig;
+import ru.bivchallenge.data.FounderTable;
+import ru.bivchallenge.data.FounderTableDelta;
 import ru.bivchallenge.dto.LegalEntity;
+import ru.bivchallenge.metrics.RunMetrics;
 
 import java.nio.file.Path;
 import java.util.Map;
+import java.util.function.IntFunction;
 
 /**
  * The {@code LegalEntityLocalProvider} class is responsible for loading {@link LegalEntity} data
@@ -15,19 +18,35 @@ import java.util.Map;
  * <p>
  * This class reads legal entity information from a file specified in the {@link CastleConfig} and
  * parses it into a map where the keys are legal entity IDs and the values are {@link LegalEntity} objects.
+ * <p>
+ * The rows are parsed into a columnar {@link FounderTable}; the map of entity objects is created from it only
+ * when {@link #get()} is called, and its blocks can be pushed to a consumer while it is parsed. When snapshots
+ * are enabled, an unchanged table is restored from its binary snapshot instead of being parsed. When lazy text
+ * is enabled, only the numeric columns are parsed and the rows keep their text fields in the memory-mapped file.
  *
  * @see AbstractLocalDataProvider
+ * @see FounderDataProvider
  * @see CsvReader
  * @see LegalEntity
  */
-public class LegalEntityLocalProvider extends AbstractLocalDataProvider<LegalEntity> {
+public class LegalEntityLocalProvider extends AbstractLocalDataProvider<LegalEntity>
+        implements FounderDataProvider<LegalEntity> {
+    private static final int[] TEXT_COLUMNS = {2, 3, 4};
+
     private final Path legalEntityTablePath;
+    private final boolean lazyText;
 
     private Map<Long, LegalEntity> legalEntityMap;
+    private FounderTable<LegalEntity> table;
 
-    @Inject
     public LegalEntityLocalProvider(CastleConfig castleConfig, CsvReader.CsvReaderBuilder csvReaderBuilder) {
-        super(csvReaderBuilder);
+        this(castleConfig, csvReaderBuilder, new RunMetrics());
+    }
+
+    @Inject
+    public LegalEntityLocalProvider(CastleConfig castleConfig, CsvReader.CsvReaderBuilder csvReaderBuilder, RunMetrics runMetrics) {
+        super(csvReaderBuilder, DEFAULT_CHUNK_SIZE, snapshotDirectory(castleConfig.getTableConfig()), runMetrics);
+        this.lazyText = castleConfig.getTableConfig().isLazyTextEnabled();
         this.legalEntityTablePath = castleConfig.getTableConfig().getFounderLegalTablePath();
     }
 
@@ -37,31 +56,91 @@ public class LegalEntityLocalProvider extends AbstractLocalDataProvider<LegalEnt
         if (legalEntityMap != null) {
             return legalEntityMap;
         }
-        legalEntityMap = getDataFromCsvTable(legalEntityTablePath, this::parseLegalEntity);
+        legalEntityMap = (table != null ? table : loadTable()).toMap(LegalEntity::id);
         return legalEntityMap;
     }
 
-    private LegalEntity parseLegalEntity(CsvRecord csvRecord) {
-        if (csvRecord.getFieldCount() < 5) {
-            return null;
+    @Override
+    public FounderTable<LegalEntity> getTable() {
+        if (table == null) {
+            table = loadTable();
+        }
+        return table;
+    }
+
+    @Override
+    public FounderTable<LegalEntity> getTable(FounderTable.BlockConsumer<LegalEntity> blockConsumer) {
+        if (table == null) {
+            table = loadTable(blockConsumer);
+        } else {
+            blockConsumer.accept(table, 0);
+        }
+        return table;
+    }
+
+    @Override
+    public void forEachBlock(FounderTable.BlockConsumer<LegalEntity> blockConsumer) {
+        if (table != null) {
+            blockConsumer.accept(table, 0);
+        } else {
+            forEachBlockOfCsvTable(legalEntityTablePath, 3, this::parseLegalEntity, -1, LegalEntityLocalProvider::toLegalEntity, blockConsumer);
+        }
+    }
+
+    @Override
+    public FounderTable.RowMapper<LegalEntity> getRowMapper() {
+        return LegalEntityLocalProvider::toLegalEntity;
+    }
+
+    @Override
+    public FounderTableDelta<LegalEntity> applyDelta(FounderTable<LegalEntity> table, Path deltaPath) {
+        return applyDeltaToTable(table, deltaPath, this::parseLegalEntity, LegalEntityLocalProvider::toLegalEntity);
+    }
+
+    private FounderTable<LegalEntity> loadTable() {
+        return loadTable(null);
+    }
+
+    private FounderTable<LegalEntity> loadTable(FounderTable.BlockConsumer<LegalEntity> blockConsumer) {
+        return getSnapshotOrTable(legalEntityTablePath, LegalEntityLocalProvider::toLegalEntity, blockConsumer,
+                () -> lazyText
+                        ? getMappedTableFromCsvTable(legalEntityTablePath, TEXT_COLUMNS, (row, table) -> parseMappedFounder(row, 3, table),
+                                this::parseLegalEntity, -1, LegalEntityLocalProvider::toLegalEntity, blockConsumer)
+                        : getTableFromCsvTable(legalEntityTablePath, 3, this::parseLegalEntity, LegalEntityLocalProvider::toLegalEntity, blockConsumer));
+    }
+
+    private void parseLegalEntity(IntFunction<String> field, int fieldCount, FounderTable.Builder table) {
+        if (fieldCount < 5) {
+            return;
         }
         try {
-            LegalEntity legalEntity = new LegalEntity(
-                    Long.parseLong(csvRecord.getField(0)),
-                    Long.parseLong(csvRecord.getField(1)),
-                    csvRecord.getField(2),
-                    csvRecord.getField(3),
-                    csvRecord.getField(4)
-            );
-            if (csvRecord.getFieldCount() >= 6) {
-                legalEntity.setShare(Double.parseDouble(csvRecord.getField(5).isEmpty() ? "0" : csvRecord.getField(5)));
+            long id = Long.parseLong(field.apply(0));
+            long companyId = Long.parseLong(field.apply(1));
+            double share = 0;
+            double sharePercent = 0;
+            if (fieldCount >= 6) {
+                share = Double.parseDouble(field.apply(5).isEmpty() ? "0" : field.apply(5));
             }
-            if (csvRecord.getFieldCount() == 7) {
-                legalEntity.setSharePercent(Double.parseDouble(csvRecord.getField(6).isEmpty() ? "0" : csvRecord.getField(6)));
+            if (fieldCount == 7) {
+                sharePercent = Double.parseDouble(field.apply(6).isEmpty() ? "0" : field.apply(6));
             }
-            return legalEntity;
+            table.add(id, companyId, share, sharePercent,
+                    field.apply(2), field.apply(3), field.apply(4));
         } catch (Exception e) {
-            return null;
+            // invalid rows are skipped
         }
     }
+
+    private static LegalEntity toLegalEntity(FounderTable<LegalEntity> table, int row) {
+        LegalEntity legalEntity = new LegalEntity(
+                table.id(row),
+                table.companyId(row),
+                table.text(row, 0),
+                table.text(row, 1),
+                table.text(row, 2)
+        );
+        legalEntity.setShare(table.share(row));
+        legalEntity.setSharePercent(table.sharePercent(row));
+        return legalEntity;
+    }
 }
@@ -0,0 +1,163 @@
+package ru.bivchallenge.persistence;
+
+import ru.bivchallenge.util.TabSeparatedBytes;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A view of one row without quoted fields of a tab-separated table in a buffer of UTF-8 bytes, such as
+ * a memory-mapped chunk.
+ *
+ * <p>The numeric fields are parsed straight from the bytes; a field is decoded to a {@link String} only when
+ * {@link #text} is called or a number does not take the fast path. The parsed values are the same as those of
+ * {@link Long#parseLong} and {@link Double#parseDouble} applied to the decoded field. A view is reused for every
+ * row of a chunk and is not thread-safe.</p>
+ */
+final class MappedRow {
+    private static final int MAX_LONG_DIGITS = 18;
+    private static final int MAX_EXACT_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final ByteBuffer buffer;
+    private int offset;
+    private int fieldCount;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+
+    MappedRow(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Starts a new row.
+     *
+     * @param offset the offset of the first byte of the row
+     */
+    void reset(int offset) {
+        this.offset = offset;
+        this.fieldCount = 0;
+    }
+
+    /**
+     * Adds the next field of the row.
+     *
+     * @param start the offset of the first byte of the field
+     * @param end   the offset after the last byte of the field
+     */
+    void addField(int start, int end) {
+        if (fieldCount == starts.length) {
+            starts = Arrays.copyOf(starts, fieldCount << 1);
+            ends = Arrays.copyOf(ends, fieldCount << 1);
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        fieldCount++;
+    }
+
+    /**
+     * Returns the offset of the first byte of the row in the buffer.
+     *
+     * @return the row offset
+     */
+    int offset() {
+        return offset;
+    }
+
+    int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Checks whether a field is empty or consists of white space only, like {@link String#isBlank()}.
+     *
+     * @param field the index of the field
+     * @return {@code true} if the field is blank
+     */
+    boolean isBlank(int field) {
+        for (int i = starts[field]; i < ends[field]; i++) {
+            byte b = buffer.get(i);
+            if (b < 0) {
+                return text(field).isBlank();
+            }
+            if (!Character.isWhitespace(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    String text(int field) {
+        return TabSeparatedBytes.decode(buffer, starts[field], ends[field]);
+    }
+
+    /**
+     * Parses a field as a {@code long}.
+     *
+     * @param field the index of the field
+     * @return the value
+     * @throws NumberFormatException if the field is not a number
+     */
+    long parseLong(int field) {
+        int start = starts[field];
+        int end = ends[field];
+        boolean negative = start < end && buffer.get(start) == '-';
+        int position = start < end && (negative || buffer.get(start) == '+') ? start + 1 : start;
+        if (position == end || end - position > MAX_LONG_DIGITS) {
+            return Long.parseLong(text(field));
+        }
+        long value = 0;
+        for (; position < end; position++) {
+            int digit = buffer.get(position) - '0';
+            if (digit < 0 || digit > 9) {
+                return Long.parseLong(text(field));
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a field as a {@code double}, an empty field being zero. A decimal with at most
+     * {@value #MAX_EXACT_DIGITS} digits is computed as the quotient of two exact doubles, which is correctly
+     * rounded; any other form is left to {@link Double#parseDouble}.
+     *
+     * @param field the index of the field
+     * @return the value
+     * @throws NumberFormatException if the field is not a number
+     */
+    double parseDouble(int field) {
+        int start = starts[field];
+        int end = ends[field];
+        if (start == end) {
+            return 0;
+        }
+        boolean negative = buffer.get(start) == '-';
+        int position = negative || buffer.get(start) == '+' ? start + 1 : start;
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; position < end; position++) {
+            byte b = buffer.get(position);
+            if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else if (b >= '0' && b <= '9' && digits < MAX_EXACT_DIGITS) {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else {
+                return Double.parseDouble(text(field));
+            }
+        }
+        if (digits == 0) {
+            return Double.parseDouble(text(field));
+        }
+        double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+        return negative ? -value : value;
+    }
+}
@@ -0,0 +1,22 @@
+package ru.bivchallenge.persistence;
+
+import ru.bivchallenge.data.FounderTable;
+
+/**
+ * Parses the numeric fields of one row of a memory-mapped table into a {@link FounderTable.Builder}, leaving its
+ * text fields in the mapped bytes.
+ *
+ * @see FounderRowParser
+ */
+@FunctionalInterface
+interface MappedRowParser {
+
+    /**
+     * Adds the row to the table with {@link FounderTable.Builder#addSourceRow} if its fields are valid and
+     * ignores it otherwise.
+     *
+     * @param row   the fields of the row
+     * @param table the table to add the row to
+     */
+    void parse(MappedRow row, FounderTable.Builder table);
+}
@@ -1,13 +1,16 @@
 package ru.bivchallenge.persistence;
 
 import de.siegmar.fastcsv.reader.CsvReader;
-import de.siegmar.fastcsv.reader.CsvRecord;
 import jakarta.inject.Inject;
 import ru.bivchallenge.config.CastleConfig;
+import ru.bivchallenge.data.FounderTable;
+import ru.bivchallenge.data.FounderTableDelta;
 import ru.bivchallenge.dto.NaturalEntity;
+import ru.bivchallenge.metrics.RunMetrics;
 
 import java.nio.file.Path;
 import java.util.Map;
+import java.util.function.IntFunction;
 
 /**
  * The {@code NaturalEntityLocalProvider} class is responsible for loading {@link NaturalEntity} data
@@ -15,19 +18,35 @@ import java.util.Map;
  * <p>
  * This class reads natural entity information from a file specified in the {@link CastleConfig}
  * and parses it into a map where the keys are natural entity IDs and the values are {@link NaturalEntity} objects.
+ * <p>
+ * The rows are parsed into a columnar {@link FounderTable}; the map of entity objects is created from it only
+ * when {@link #get()} is called, and its blocks can be pushed to a consumer while it is parsed. When snapshots
+ * are enabled, an unchanged table is restored from its binary snapshot instead of being parsed. When lazy text
+ * is enabled, only the numeric columns are parsed and the rows keep their text fields in the memory-mapped file.
  *
  * @see AbstractLocalDataProvider
+ * @see FounderDataProvider
  * @see CsvReader
  * @see NaturalEntity
  */
-public class NaturalEntityLocalProvider extends AbstractLocalDataProvider<NaturalEntity> {
+public class NaturalEntityLocalProvider extends AbstractLocalDataProvider<NaturalEntity>
+        implements FounderDataProvider<NaturalEntity> {
+    private static final int[] TEXT_COLUMNS = {2, 3, 4, 5};
+
     private final Path legalEntityTablePath;
+    private final boolean lazyText;
 
     private Map<Long, NaturalEntity> naturalEntityMap;
+    private FounderTable<NaturalEntity> table;
 
-    @Inject
     public NaturalEntityLocalProvider(CastleConfig castleConfig, CsvReader.CsvReaderBuilder csvReaderBuilder) {
-        super(csvReaderBuilder);
+        this(castleConfig, csvReaderBuilder, new RunMetrics());
+    }
+
+    @Inject
+    public NaturalEntityLocalProvider(CastleConfig castleConfig, CsvReader.CsvReaderBuilder csvReaderBuilder, RunMetrics runMetrics) {
+        super(csvReaderBuilder, DEFAULT_CHUNK_SIZE, snapshotDirectory(castleConfig.getTableConfig()), runMetrics);
+        this.lazyText = castleConfig.getTableConfig().isLazyTextEnabled();
         this.legalEntityTablePath = castleConfig.getTableConfig().getFounderNaturalTablePath();
     }
 
@@ -36,32 +55,92 @@ public class NaturalEntityLocalProvider extends AbstractLocalDataProvider<Natura
         if (naturalEntityMap != null) {
             return naturalEntityMap;
         }
-        naturalEntityMap = getDataFromCsvTable(legalEntityTablePath, this::parseLegalEntity);
+        naturalEntityMap = (table != null ? table : loadTable()).toMap(NaturalEntity::id);
         return naturalEntityMap;
     }
 
-    private NaturalEntity parseLegalEntity(CsvRecord csvRecord) {
-        if (csvRecord.getFieldCount() < 6) {
-            return null;
+    @Override
+    public FounderTable<NaturalEntity> getTable() {
+        if (table == null) {
+            table = loadTable();
+        }
+        return table;
+    }
+
+    @Override
+    public FounderTable<NaturalEntity> getTable(FounderTable.BlockConsumer<NaturalEntity> blockConsumer) {
+        if (table == null) {
+            table = loadTable(blockConsumer);
+        } else {
+            blockConsumer.accept(table, 0);
+        }
+        return table;
+    }
+
+    @Override
+    public void forEachBlock(FounderTable.BlockConsumer<NaturalEntity> blockConsumer) {
+        if (table != null) {
+            blockConsumer.accept(table, 0);
+        } else {
+            forEachBlockOfCsvTable(legalEntityTablePath, 4, this::parseNaturalEntity, -1, NaturalEntityLocalProvider::toNaturalEntity, blockConsumer);
+        }
+    }
+
+    @Override
+    public FounderTable.RowMapper<NaturalEntity> getRowMapper() {
+        return NaturalEntityLocalProvider::toNaturalEntity;
+    }
+
+    @Override
+    public FounderTableDelta<NaturalEntity> applyDelta(FounderTable<NaturalEntity> table, Path deltaPath) {
+        return applyDeltaToTable(table, deltaPath, this::parseNaturalEntity, NaturalEntityLocalProvider::toNaturalEntity);
+    }
+
+    private FounderTable<NaturalEntity> loadTable() {
+        return loadTable(null);
+    }
+
+    private FounderTable<NaturalEntity> loadTable(FounderTable.BlockConsumer<NaturalEntity> blockConsumer) {
+        return getSnapshotOrTable(legalEntityTablePath, NaturalEntityLocalProvider::toNaturalEntity, blockConsumer,
+                () -> lazyText
+                        ? getMappedTableFromCsvTable(legalEntityTablePath, TEXT_COLUMNS, (row, table) -> parseMappedFounder(row, 4, table),
+                                this::parseNaturalEntity, -1, NaturalEntityLocalProvider::toNaturalEntity, blockConsumer)
+                        : getTableFromCsvTable(legalEntityTablePath, 4, this::parseNaturalEntity, NaturalEntityLocalProvider::toNaturalEntity, blockConsumer));
+    }
+
+    private void parseNaturalEntity(IntFunction<String> field, int fieldCount, FounderTable.Builder table) {
+        if (fieldCount < 6) {
+            return;
         }
         try {
-            NaturalEntity naturalEntity = new NaturalEntity(
-                    Long.parseLong(csvRecord.getField(0)),
-                    Long.parseLong(csvRecord.getField(1)),
-                    csvRecord.getField(2),
-                    csvRecord.getField(3),
-                    csvRecord.getField(4),
-                    csvRecord.getField(5)
-            );
-            if (csvRecord.getFieldCount() >= 7) {
-                naturalEntity.setShare(Double.parseDouble(csvRecord.getField(6).isEmpty() ? "0" : csvRecord.getField(6)));
+            long id = Long.parseLong(field.apply(0));
+            long companyId = Long.parseLong(field.apply(1));
+            double share = 0;
+            double sharePercent = 0;
+            if (fieldCount >= 7) {
+                share = Double.parseDouble(field.apply(6).isEmpty() ? "0" : field.apply(6));
             }
-            if (csvRecord.getFieldCount() == 8) {
-                naturalEntity.setSharePercent(Double.parseDouble(csvRecord.getField(7).isEmpty() ? "0" : csvRecord.getField(7)));
+            if (fieldCount == 8) {
+                sharePercent = Double.parseDouble(field.apply(7).isEmpty() ? "0" : field.apply(7));
             }
-            return naturalEntity;
+            table.add(id, companyId, share, sharePercent,
+                    field.apply(2), field.apply(3), field.apply(4), field.apply(5));
         } catch (NumberFormatException e) {
-            return null;
+            // invalid rows are skipped
         }
     }
+
+    private static NaturalEntity toNaturalEntity(FounderTable<NaturalEntity> table, int row) {
+        NaturalEntity naturalEntity = new NaturalEntity(
+                table.id(row),
+                table.companyId(row),
+                table.text(row, 0),
+                table.text(row, 1),
+                table.text(row, 2),
+                table.text(row, 3)
+        );
+        naturalEntity.setShare(table.share(row));
+        naturalEntity.setSharePercent(table.sharePercent(row));
+        return naturalEntity;
+    }
 }
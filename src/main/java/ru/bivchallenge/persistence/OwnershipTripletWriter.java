@@ -0,0 +1,124 @@
+package ru.bivchallenge.persistence;
+
+import ru.bivchallenge.graph.OwnershipMatrix;
+import ru.bivchallenge.util.ChannelDataOutput;
+import ru.bivchallenge.util.MappedDataInput;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The {@code OwnershipTripletWriter} class writes {@link OwnershipMatrix} effective ownership matrices to one
+ * binary file of triplets.
+ *
+ * <p>The file starts with a magic number and a format version, followed by one fixed-size little-endian record
+ * per effective share: the natural entity id, the company id and the share, a fraction of the company. The number
+ * of triplets follows from the size of the file, so matrices may be appended one by one, such as those of the
+ * partitions of the registry, without holding them all. The triplets are written to a temporary file that
+ * {@link #commit()} moves into place, so readers never see a truncated file; a writer closed without being
+ * committed deletes it.</p>
+ */
+public final class OwnershipTripletWriter implements AutoCloseable {
+    private static final System.Logger LOGGER = System.getLogger(OwnershipTripletWriter.class.getName());
+
+    private static final long MAGIC = 0x5350495254574E4FL;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8 + 4;
+    private static final int TRIPLET_SIZE = 8 + 8 + 8;
+
+    private final Path matrixPath;
+    private final Path temporaryPath;
+    private final FileChannel channel;
+    private final ChannelDataOutput output;
+    private long tripletCount;
+    private boolean committed;
+
+    /**
+     * Opens a writer replacing the given file once committed.
+     *
+     * @param matrixPath the path of the triplet file
+     * @throws IOException if the temporary file cannot be created
+     */
+    public OwnershipTripletWriter(Path matrixPath) throws IOException {
+        this.matrixPath = matrixPath;
+        this.temporaryPath = matrixPath.resolveSibling(matrixPath.getFileName() + ".tmp");
+        this.channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        this.output = new ChannelDataOutput(channel);
+        output.writeLong(MAGIC);
+        output.writeInt(VERSION);
+    }
+
+    /**
+     * Appends the effective shares of a matrix.
+     *
+     * @param matrix the matrix
+     * @throws IOException if the triplets cannot be written
+     */
+    public void write(OwnershipMatrix matrix) throws IOException {
+        try {
+            matrix.forEach((personId, companyId, share) -> {
+                try {
+                    output.writeLong(personId);
+                    output.writeLong(companyId);
+                    output.writeLong(Double.doubleToRawLongBits(share));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        tripletCount += matrix.entryCount();
+    }
+
+    /**
+     * Finishes the file and moves it into place.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public void commit() throws IOException {
+        output.flush();
+        channel.close();
+        Files.move(temporaryPath, matrixPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        committed = true;
+        LOGGER.log(System.Logger.Level.INFO, "Wrote ownership matrix " + matrixPath + " with " + tripletCount + " triplets");
+    }
+
+    public long getTripletCount() {
+        return tripletCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!committed) {
+            channel.close();
+            Files.deleteIfExists(temporaryPath);
+        }
+    }
+
+    /**
+     * Reads every triplet of a file written by this class.
+     *
+     * @param matrixPath the path of the triplet file
+     * @param consumer   receives the person id, the company id and the share of every triplet
+     * @throws IOException if the file cannot be read or is of an unknown format
+     */
+    public static void read(Path matrixPath, OwnershipMatrix.TripletConsumer consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(matrixPath, StandardOpenOption.READ)) {
+            MappedDataInput input = new MappedDataInput(channel);
+            if (input.readLong() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Unknown ownership matrix format in " + matrixPath);
+            }
+            long count = (channel.size() - HEADER_SIZE) / TRIPLET_SIZE;
+            for (long triplet = 0; triplet < count; triplet++) {
+                consumer.accept(input.readLong(), input.readLong(), Double.longBitsToDouble(input.readLong()));
+            }
+        }
+    }
+}
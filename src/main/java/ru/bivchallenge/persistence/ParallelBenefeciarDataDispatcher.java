@@ -0,0 +1,352 @@
+package ru.bivchallenge.persistence;
+
+import jakarta.inject.Inject;
+import ru.bivchallenge.config.CastleConfig;
+import ru.bivchallenge.data.BenefeciarRegistry;
+import ru.bivchallenge.dto.Benefeciar;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code ParallelBenefeciarDataDispatcher} class writes {@link BenefeciarRegistry} data from many threads at
+ * once, in the same format as {@link BenefeciarLocalDataDispatcher}.
+ *
+ * <p>The sink returned by {@link #open()} is thread-safe: every thread encodes the registries it accepts into
+ * a private byte buffer (see {@link RecordEncoder}), and a full buffer is committed with a single positional
+ * {@link FileChannel} write at an offset reserved by advancing the end of the file atomically. Threads never wait
+ * for each other, and no thread formats another thread's rows.</p>
+ *
+ * <p>With one shard the output is the configured beneficiaries table, byte for byte what
+ * {@link BenefeciarLocalDataDispatcher} writes for the same registries in the same order; the order of the
+ * companies is the order in which the buffers are committed. With {@code N} shards the buffers are committed
+ * round-robin into {@code N} tables named after the configured one ({@code beneficiaries.00000.tsv}, ...), each
+ * with the header lines, so that they can be loaded in parallel. A manifest ({@code beneficiaries.manifest.tsv})
+ * lists every shard with its number of companies, records and bytes.</p>
+ *
+ * <p>Every file is written to a temporary file next to it. Closing the sink moves the shards into place and then
+ * the manifest, so a manifest always describes complete shards; aborting it deletes the temporary files, so a
+ * failed run leaves neither a truncated table nor a manifest.</p>
+ *
+ * @see BenefeciarLocalDataDispatcher
+ * @see CastleConfig#getDispatchConfig()
+ */
+public class ParallelBenefeciarDataDispatcher implements DataDispatcher<BenefeciarRegistry> {
+    /**
+     * The size at which a thread commits its buffer.
+     */
+    static final int FLUSH_SIZE = 1024 * 1024;
+
+    private final Path benefeciariesTablePath;
+    private final int shardCount;
+
+    @Inject
+    public ParallelBenefeciarDataDispatcher(CastleConfig castleConfig) {
+        this(castleConfig.getTableConfig().getBeneficiariesTablePath(), castleConfig.getDispatchConfig().getShardCount());
+    }
+
+    /**
+     * Creates a dispatcher writing the given table in the given number of shards.
+     *
+     * @param benefeciariesTablePath the path to the beneficiaries table
+     * @param shardCount             the number of shards
+     */
+    public ParallelBenefeciarDataDispatcher(Path benefeciariesTablePath, int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+        }
+        this.benefeciariesTablePath = benefeciariesTablePath;
+        this.shardCount = shardCount;
+    }
+
+    /**
+     * Returns the path of a shard of the beneficiaries table.
+     *
+     * @param tablePath  the path to the beneficiaries table
+     * @param shard      the shard index
+     * @param shardCount the number of shards
+     * @return the table itself for a single shard, otherwise the numbered shard next to it
+     */
+    public static Path shardPath(Path tablePath, int shard, int shardCount) {
+        return shardCount == 1 ? tablePath : tablePath.resolveSibling(String.format("%s.%05d%s",
+                baseName(tablePath), shard, extension(tablePath)));
+    }
+
+    /**
+     * Returns the path of the manifest of a sharded beneficiaries table.
+     *
+     * @param tablePath the path to the beneficiaries table
+     * @return the manifest next to the table
+     */
+    public static Path manifestPath(Path tablePath) {
+        return tablePath.resolveSibling(baseName(tablePath) + ".manifest" + extension(tablePath));
+    }
+
+    @Override
+    public void dispatch(Set<BenefeciarRegistry> set) {
+        DataSink<BenefeciarRegistry> sink = open();
+        try {
+            set.parallelStream().forEach(sink::accept);
+            sink.close();
+        } finally {
+            sink.abort();
+        }
+    }
+
+    @Override
+    public DataSink<BenefeciarRegistry> open() {
+        try {
+            return new ParallelSink();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write data to " + benefeciariesTablePath, e);
+        }
+    }
+
+    private static String baseName(Path tablePath) {
+        String fileName = tablePath.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        return dot <= 0 ? fileName : fileName.substring(0, dot);
+    }
+
+    private static String extension(Path tablePath) {
+        String fileName = tablePath.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        return dot <= 0 ? "" : fileName.substring(dot);
+    }
+
+    /**
+     * A thread-safe sink committing the private buffers of the accepting threads into the shards.
+     */
+    private final class ParallelSink implements DataSink<BenefeciarRegistry> {
+        private final Shard[] shards = new Shard[shardCount];
+        private final AtomicInteger nextShard = new AtomicInteger();
+        private final Queue<WorkerBuffer> buffers = new ConcurrentLinkedQueue<>();
+        private boolean closed;
+        private final ThreadLocal<WorkerBuffer> buffer = ThreadLocal.withInitial(() -> {
+            WorkerBuffer workerBuffer = new WorkerBuffer();
+            buffers.add(workerBuffer);
+            return workerBuffer;
+        });
+
+        private ParallelSink() throws IOException {
+            RecordEncoder header = new RecordEncoder(64);
+            header.writeRecord("company_id", "ogrn", "inn", "full_name");
+            header.writeRecord("", "inn", "full_name", "percent");
+            try {
+                for (int shard = 0; shard < shardCount; shard++) {
+                    shards[shard] = new Shard(shardPath(benefeciariesTablePath, shard, shardCount));
+                    shards[shard].write(header.buffer());
+                }
+            } catch (IOException e) {
+                try {
+                    closeShards();
+                } catch (IOException closeFailure) {
+                    e.addSuppressed(closeFailure);
+                }
+                deleteShards(e);
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
+
+        @Override
+        public void accept(BenefeciarRegistry benefeciarRegistry) {
+            if (benefeciarRegistry.getBeneficiaries().isEmpty()) {
+                return;
+            }
+            WorkerBuffer workerBuffer = buffer.get();
+            workerBuffer.encoder.writeRecord(benefeciarRegistry.getCompany().separate());
+            for (Benefeciar benefeciar : benefeciarRegistry.getBeneficiaries()) {
+                workerBuffer.encoder.writeRecord(benefeciar.separate());
+            }
+            workerBuffer.companies++;
+            workerBuffer.records += 1 + benefeciarRegistry.getBeneficiaries().size();
+            if (workerBuffer.encoder.size() >= FLUSH_SIZE) {
+                commit(workerBuffer);
+            }
+        }
+
+        /**
+         * Commits the remaining buffers, closes the shards, moves them into place and writes the manifest of
+         * a sharded table. Must not be called while other threads are still accepting registries.
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                for (WorkerBuffer workerBuffer : buffers) {
+                    commit(workerBuffer);
+                    workerBuffer.encoder = null;
+                }
+                buffers.clear();
+                closeShards();
+                for (Shard shard : shards) {
+                    moveIntoPlace(shard.temporaryPath, shard.path);
+                }
+                if (shardCount > 1) {
+                    writeManifest();
+                }
+            } catch (IOException | UncheckedIOException e) {
+                deleteShards(e);
+                throw new RuntimeException("Failed to write data to " + benefeciariesTablePath, e);
+            }
+        }
+
+        /**
+         * Closes the shards and deletes them without writing a manifest. Must not be called while other threads
+         * are still accepting registries.
+         */
+        @Override
+        public void abort() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            buffers.clear();
+            try {
+                closeShards();
+            } catch (IOException e) {
+                // The shards are discarded anyway.
+            }
+            deleteShards(null);
+        }
+
+        private void commit(WorkerBuffer workerBuffer) {
+            if (workerBuffer.encoder.size() == 0) {
+                return;
+            }
+            Shard shard = shards[shardCount == 1 ? 0 : Math.floorMod(nextShard.getAndIncrement(), shardCount)];
+            try {
+                shard.write(workerBuffer.encoder.buffer());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            shard.companies.add(workerBuffer.companies);
+            shard.records.add(workerBuffer.records);
+            workerBuffer.encoder.reset();
+            workerBuffer.companies = 0;
+            workerBuffer.records = 0;
+        }
+
+        private void closeShards() throws IOException {
+            IOException failure = null;
+            for (Shard shard : shards) {
+                if (shard == null) {
+                    continue;
+                }
+                try {
+                    shard.channel.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        /**
+         * Deletes the temporary files of the shards that were not moved into place yet, adding any failure to
+         * delete them to the given failure, if any.
+         */
+        private void deleteShards(Exception failure) {
+            for (Shard shard : shards) {
+                if (shard == null) {
+                    continue;
+                }
+                try {
+                    Files.deleteIfExists(shard.temporaryPath);
+                } catch (IOException e) {
+                    if (failure != null) {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+        }
+
+        private void writeManifest() throws IOException {
+            List<String> lines = new ArrayList<>(shardCount + 1);
+            lines.add("file\tcompanies\trecords\tbytes");
+            for (Shard shard : shards) {
+                lines.add(shard.path.getFileName() + "\t" + shard.companies.sum() + "\t" + shard.records.sum()
+                        + "\t" + shard.position.get());
+            }
+            Path manifestPath = manifestPath(benefeciariesTablePath);
+            Path temporaryPath = temporaryPath(manifestPath);
+            try {
+                Files.write(temporaryPath, lines);
+                moveIntoPlace(temporaryPath, manifestPath);
+            } finally {
+                Files.deleteIfExists(temporaryPath);
+            }
+        }
+    }
+
+    private static Path temporaryPath(Path path) {
+        return path.resolveSibling(path.getFileName() + ".tmp");
+    }
+
+    private static void moveIntoPlace(Path temporaryPath, Path path) throws IOException {
+        Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * One output file, written to a temporary file until the sink is closed, and the atomically advanced offset of
+     * its end.
+     */
+    private static final class Shard {
+        private final Path path;
+        private final Path temporaryPath;
+        private final FileChannel channel;
+        private final AtomicLong position = new AtomicLong();
+        private final LongAdder companies = new LongAdder();
+        private final LongAdder records = new LongAdder();
+
+        private Shard(Path path) throws IOException {
+            this.path = path;
+            this.temporaryPath = temporaryPath(path);
+            this.channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+        }
+
+        /**
+         * Reserves the next {@code bytes.remaining()} bytes of the file and writes them there.
+         */
+        private void write(ByteBuffer bytes) throws IOException {
+            long offset = position.getAndAdd(bytes.remaining());
+            while (bytes.hasRemaining()) {
+                offset += channel.write(bytes, offset);
+            }
+        }
+    }
+
+    /**
+     * The private buffer of one accepting thread and the counts of what it holds.
+     */
+    private static final class WorkerBuffer {
+        private RecordEncoder encoder = new RecordEncoder(FLUSH_SIZE + FLUSH_SIZE / 4);
+        private long companies;
+        private long records;
+    }
+}
@@ -0,0 +1,120 @@
+package ru.bivchallenge.persistence;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Encodes records into a growable UTF-8 byte buffer in exactly the format the {@code CsvWriter} configured in
+ * {@code LocalDataModule} writes: tab-separated fields and LF line endings. A field containing a tab, a double
+ * quote, CR or LF is enclosed in double quotes, with every double quote doubled. An unpaired surrogate is
+ * encoded as {@code ?}, like the replacement of the writer's encoder.
+ */
+public final class RecordEncoder {
+    private static final byte SEPARATOR = '\t';
+    private static final byte QUOTE = '"';
+    private static final byte LINE_DELIMITER = '\n';
+
+    private byte[] bytes;
+    private int size;
+
+    /**
+     * Creates an encoder with the given initial buffer size.
+     *
+     * @param initialCapacity the initial size of the buffer in bytes
+     */
+    public RecordEncoder(int initialCapacity) {
+        bytes = new byte[Math.max(16, initialCapacity)];
+    }
+
+    /**
+     * Appends one record.
+     *
+     * @param fields the fields of the record
+     */
+    public void writeRecord(String... fields) {
+        for (int field = 0; field < fields.length; field++) {
+            if (field > 0) {
+                put(SEPARATOR);
+            }
+            writeField(fields[field] == null ? "" : fields[field]);
+        }
+        put(LINE_DELIMITER);
+    }
+
+    /**
+     * Returns the number of encoded bytes.
+     *
+     * @return the size of the buffer
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the encoded bytes as a buffer backed by this encoder, valid until the next write or reset.
+     *
+     * @return the encoded bytes
+     */
+    public ByteBuffer buffer() {
+        return ByteBuffer.wrap(bytes, 0, size);
+    }
+
+    /**
+     * Discards the encoded bytes and keeps the allocated buffer.
+     */
+    public void reset() {
+        size = 0;
+    }
+
+    private void writeField(String value) {
+        boolean quoted = false;
+        for (int i = 0; i < value.length() && !quoted; i++) {
+            char c = value.charAt(i);
+            quoted = c == SEPARATOR || c == QUOTE || c == '\r' || c == LINE_DELIMITER;
+        }
+        if (quoted) {
+            put(QUOTE);
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c == QUOTE && quoted) {
+                    put(QUOTE);
+                }
+                put((byte) c);
+            } else if (c < 0x800) {
+                ensureCapacity(2);
+                bytes[size++] = (byte) (0xC0 | c >> 6);
+                bytes[size++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                ensureCapacity(4);
+                bytes[size++] = (byte) (0xF0 | codePoint >> 18);
+                bytes[size++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                bytes[size++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                bytes[size++] = (byte) (0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                put((byte) '?');
+            } else {
+                ensureCapacity(3);
+                bytes[size++] = (byte) (0xE0 | c >> 12);
+                bytes[size++] = (byte) (0x80 | c >> 6 & 0x3F);
+                bytes[size++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        if (quoted) {
+            put(QUOTE);
+        }
+    }
+
+    private void put(byte b) {
+        ensureCapacity(1);
+        bytes[size++] = b;
+    }
+
+    private void ensureCapacity(int additional) {
+        if (size + additional > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + additional));
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package ru.bivchallenge.persistence;
+
+import ru.bivchallenge.data.ComponentFingerprints;
+import ru.bivchallenge.data.IncrementalState;
+import ru.bivchallenge.util.ChannelDataOutput;
+import ru.bivchallenge.util.MappedDataInput;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code ResultCache} class keeps the beneficiaries of the head companies of every weakly connected component
+ * across runs in a single binary file, keyed by the {@link ComponentFingerprints fingerprint} of the component.
+ *
+ * <p>Unlike the {@link IncrementalStateStore}, the cache needs no delta files: a component whose founder rows are
+ * unchanged in a new extract has the same fingerprint, and its beneficiaries are reused instead of computed. Every
+ * component looked up counts as one hit or one miss. The settings that affect beneficiaries, such as the threshold
+ * and the cycle mode, are stored with the cache, and a cache written with other settings is discarded.</p>
+ *
+ * <p>Every entry remembers the last run that used it. When the cache is stored, the entries least recently used
+ * are evicted until the file fits its size limit. The file is written to a temporary file and moved into place,
+ * like the incremental state. A cache is not thread-safe.</p>
+ */
+public final class ResultCache {
+    private static final System.Logger LOGGER = System.getLogger(ResultCache.class.getName());
+
+    private static final long MAGIC = 0x4548434143544C53L;
+    private static final int VERSION = 1;
+    private static final long HEADER_SIZE = 8 + 4 + 4 + 8 + 4;
+
+    private final Path cachePath;
+    private final String settings;
+    private final long run;
+    private final Map<ComponentFingerprints.Key, Entry> entries;
+    private long hitCount;
+    private long missCount;
+
+    private ResultCache(Path cachePath, String settings, long run, Map<ComponentFingerprints.Key, Entry> entries) {
+        this.cachePath = cachePath;
+        this.settings = settings;
+        this.run = run;
+        this.entries = entries;
+    }
+
+    /**
+     * Reads the cache written by a previous run.
+     *
+     * @param cachePath the cache file
+     * @param settings  the settings the beneficiaries are computed with
+     * @return the cache, empty if there is no cache file, it cannot be read or it was written with other settings
+     */
+    public static ResultCache load(Path cachePath, String settings) {
+        if (!Files.isRegularFile(cachePath)) {
+            return new ResultCache(cachePath, settings, 1, new HashMap<>());
+        }
+        try (FileChannel channel = FileChannel.open(cachePath, StandardOpenOption.READ)) {
+            MappedDataInput input = new MappedDataInput(channel);
+            if (input.readLong() != MAGIC || input.readInt() != VERSION) {
+                LOGGER.log(System.Logger.Level.WARNING, "Ignoring result cache " + cachePath + " of an unknown format");
+                return new ResultCache(cachePath, settings, 1, new HashMap<>());
+            }
+            String cachedSettings = new String(input.readBytes(input.readInt()), StandardCharsets.UTF_8);
+            long previousRun = input.readLong();
+            if (!cachedSettings.equals(settings)) {
+                LOGGER.log(System.Logger.Level.INFO, "Ignoring result cache " + cachePath + " computed with " + cachedSettings);
+                return new ResultCache(cachePath, settings, previousRun + 1, new HashMap<>());
+            }
+            int entryCount = input.readInt();
+            Map<ComponentFingerprints.Key, Entry> entries = HashMap.newHashMap(entryCount);
+            for (int i = 0; i < entryCount; i++) {
+                ComponentFingerprints.Key key = new ComponentFingerprints.Key(input.readLong(), input.readLong());
+                long lastRun = input.readLong();
+                int companyCount = input.readInt();
+                long[] companyIds = input.readLongs(companyCount);
+                IncrementalState.Beneficiaries[] beneficiaries = new IncrementalState.Beneficiaries[companyCount];
+                for (int company = 0; company < companyCount; company++) {
+                    int count = input.readInt();
+                    beneficiaries[company] = new IncrementalState.Beneficiaries(input.readLongs(count), input.readDoubles(count));
+                }
+                Entry entry = new Entry(companyIds, beneficiaries);
+                entry.lastRun = lastRun;
+                entries.put(key, entry);
+            }
+            return new ResultCache(cachePath, settings, previousRun + 1, entries);
+        } catch (IOException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Failed to read result cache " + cachePath, e);
+            return new ResultCache(cachePath, settings, 1, new HashMap<>());
+        }
+    }
+
+    /**
+     * Looks up the beneficiaries of a component, counting a hit or a miss, and marks a hit as used by this run.
+     *
+     * @param key the fingerprint of the component
+     * @return the entry, or {@code null} if the component has to be computed
+     */
+    public Entry get(ComponentFingerprints.Key key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            missCount++;
+            return null;
+        }
+        entry.lastRun = run;
+        hitCount++;
+        return entry;
+    }
+
+    /**
+     * Adds the beneficiaries computed for a component in this run.
+     *
+     * @param key   the fingerprint of the component
+     * @param entry the beneficiaries of its head companies
+     */
+    public void put(ComponentFingerprints.Key key, Entry entry) {
+        entry.lastRun = run;
+        entries.put(key, entry);
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Evicts the entries least recently used until the cache fits the size limit and replaces the cache file.
+     *
+     * @param maxSize the size limit of the cache file in bytes
+     * @throws RuntimeException if the cache cannot be written
+     */
+    public void store(long maxSize) {
+        byte[] settingsBytes = settings.getBytes(StandardCharsets.UTF_8);
+        List<Map.Entry<ComponentFingerprints.Key, Entry>> kept = new ArrayList<>(entries.entrySet());
+        kept.sort(Comparator.comparingLong((Map.Entry<ComponentFingerprints.Key, Entry> entry) -> entry.getValue().lastRun).reversed());
+        long size = HEADER_SIZE + settingsBytes.length;
+        int keptCount = 0;
+        while (keptCount < kept.size() && size + kept.get(keptCount).getValue().size() <= maxSize) {
+            size += kept.get(keptCount++).getValue().size();
+        }
+        int evictedCount = kept.size() - keptCount;
+        kept = kept.subList(0, keptCount);
+
+        Path temporaryPath = cachePath.resolveSibling(cachePath.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ChannelDataOutput output = new ChannelDataOutput(channel);
+            output.writeLong(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(settingsBytes.length);
+            output.writeBytes(settingsBytes, settingsBytes.length);
+            output.writeLong(run);
+            output.writeInt(kept.size());
+            for (Map.Entry<ComponentFingerprints.Key, Entry> cached : kept) {
+                Entry entry = cached.getValue();
+                output.writeLong(cached.getKey().high());
+                output.writeLong(cached.getKey().low());
+                output.writeLong(entry.lastRun);
+                output.writeInt(entry.companyIds.length);
+                output.writeLongs(entry.companyIds, entry.companyIds.length);
+                for (IncrementalState.Beneficiaries beneficiaries : entry.beneficiaries) {
+                    output.writeInt(beneficiaries.naturalEntityIds().length);
+                    output.writeLongs(beneficiaries.naturalEntityIds(), beneficiaries.naturalEntityIds().length);
+                    output.writeDoubles(beneficiaries.percents(), beneficiaries.percents().length);
+                }
+            }
+            output.flush();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write result cache to " + cachePath, e);
+        }
+        try {
+            Files.move(temporaryPath, cachePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write result cache to " + cachePath, e);
+        }
+        long lookups = hitCount + missCount;
+        LOGGER.log(System.Logger.Level.INFO, "Result cache hit " + hitCount + " of " + lookups + " components ("
+                + (lookups == 0 ? 0 : hitCount * 100 / lookups) + "%); stored " + keptCount + " components in "
+                + size + " bytes, evicted " + evictedCount);
+    }
+
+    /**
+     * The beneficiaries of the head companies of one component, sorted by company id.
+     */
+    public static final class Entry {
+        private final long[] companyIds;
+        private final IncrementalState.Beneficiaries[] beneficiaries;
+        private long lastRun;
+
+        /**
+         * Creates an entry.
+         *
+         * @param companyIds    the ids of the head companies, in ascending order
+         * @param beneficiaries the beneficiaries of every head company, in the order of the ids
+         */
+        public Entry(long[] companyIds, IncrementalState.Beneficiaries[] beneficiaries) {
+            this.companyIds = companyIds;
+            this.beneficiaries = beneficiaries;
+        }
+
+        /**
+         * Returns the beneficiaries of a head company.
+         *
+         * @param companyId the id of the company
+         * @return the beneficiaries, or {@code null} if the company is not a head of the component
+         */
+        public IncrementalState.Beneficiaries get(long companyId) {
+            int index = Arrays.binarySearch(companyIds, companyId);
+            return index < 0 ? null : beneficiaries[index];
+        }
+
+        private long size() {
+            long size = 8 + 8 + 8 + 4 + 8L * companyIds.length;
+            for (IncrementalState.Beneficiaries company : beneficiaries) {
+                size += 4 + 16L * company.naturalEntityIds().length;
+            }
+            return size;
+        }
+    }
+}
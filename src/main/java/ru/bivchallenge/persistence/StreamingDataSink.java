@@ -0,0 +1,263 @@
+package ru.bivchallenge.persistence;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The {@code StreamingDataSink} class lets concurrent producers write to a single-threaded {@link DataSink}.
+ * <p>
+ * Producers put their items into a bounded queue, and a dedicated writer thread takes them out and writes them to
+ * the wrapped sink as they arrive, so that writing overlaps with computing. When the writer falls behind, the queue
+ * fills up and producers block until it catches up, which bounds the memory held by finished items.
+ * <p>
+ * In the ordered mode every item carries a sequence number, and items are written in sequence order regardless
+ * of the order they arrive in. Items that arrive early wait in a reorder buffer of the same capacity as the queue;
+ * a producer whose item is more than the capacity ahead of the next item to write blocks until the writer gets
+ * there. Every sequence number from {@code 0} must be accepted exactly once, with a {@code null} item for a number
+ * that produces no output. The writer never waits for a producer that is blocked itself, as long as producers
+ * claim their sequence numbers in increasing order (the lowest unfinished number then belongs to a running
+ * producer).
+ * <p>
+ * A failure of the writer thread is rethrown to the producers and by {@link #close()}, which waits for the writer
+ * to write the remaining items and closes the wrapped sink. If the writer fails, or the sink is aborted with
+ * {@link #abort()}, the wrapped sink is aborted instead, so a failed run never completes a partial output.
+ *
+ * @param <T> the type of data written
+ */
+public final class StreamingDataSink<T> implements DataSink<T> {
+    private static final Object END = new Object();
+    private static final Object SKIP = new Object();
+    private static final long POLL_MILLIS = 100;
+
+    private final DataSink<T> sink;
+    private final boolean ordered;
+    private final int capacity;
+    private final BlockingQueue<Object> queue;
+    private final Object[] reorderBuffer;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition advanced = lock.newCondition();
+    private final Thread writer;
+
+    private volatile Throwable failure;
+    private volatile boolean aborted;
+    private volatile long nextSequence;
+    private boolean closed;
+
+    /**
+     * Starts the writer thread of a sink.
+     *
+     * @param sink     the sink written by the writer thread
+     * @param capacity the number of items that may wait in the queue, and in the reorder buffer in the ordered mode
+     * @param ordered  whether items are written in the order of their sequence numbers
+     */
+    public StreamingDataSink(DataSink<T> sink, int capacity, boolean ordered) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.sink = sink;
+        this.ordered = ordered;
+        this.capacity = capacity;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.reorderBuffer = ordered ? new Object[capacity] : null;
+        this.writer = new Thread(this::write, "dispatch-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Checks whether items are written in the order of their sequence numbers.
+     *
+     * @return {@code true} in the ordered mode
+     */
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    /**
+     * Queues an item for writing, blocking while the queue is full. Only available in the unordered mode.
+     *
+     * @param item the item to write
+     */
+    @Override
+    public void accept(T item) {
+        if (ordered) {
+            throw new IllegalStateException("An ordered sink requires a sequence number");
+        }
+        put(item);
+    }
+
+    /**
+     * Queues the item with the given sequence number for writing, blocking while it is too far ahead of the next
+     * item to write. Only available in the ordered mode.
+     *
+     * @param sequence the sequence number of the item
+     * @param item     the item to write, or {@code null} if the sequence number produces no output
+     */
+    public void accept(long sequence, T item) {
+        if (!ordered) {
+            throw new IllegalStateException("An unordered sink does not take sequence numbers");
+        }
+        lock.lock();
+        try {
+            while (sequence >= nextSequence + capacity) {
+                checkFailure();
+                advanced.await(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while dispatching", e);
+        } finally {
+            lock.unlock();
+        }
+        put(new Sequenced(sequence, item == null ? SKIP : item));
+    }
+
+    /**
+     * Waits until the writer has written every queued item, then closes the wrapped sink. Closing the sink again
+     * has no effect.
+     *
+     * @throws RuntimeException if the writer failed
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        put(END);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while dispatching", e);
+        }
+        checkFailure();
+    }
+
+    /**
+     * Stops the writer without writing the queued items and aborts the wrapped sink. Producers still blocked on
+     * the sink fail. Aborting a closed or aborted sink has no effect.
+     */
+    @Override
+    public void abort() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        aborted = true;
+        writer.interrupt();
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void put(Object element) {
+        checkFailure();
+        try {
+            while (!queue.offer(element, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while dispatching", e);
+        }
+    }
+
+    private void checkFailure() {
+        if (aborted) {
+            throw new IllegalStateException("Dispatch aborted");
+        }
+        Throwable writerFailure = failure;
+        if (writerFailure instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        if (writerFailure != null) {
+            throw new IllegalStateException("Dispatch failed", writerFailure);
+        }
+    }
+
+    private void write() {
+        try {
+            for (Object element = queue.take(); element != END; element = queue.take()) {
+                if (ordered) {
+                    Sequenced sequenced = (Sequenced) element;
+                    reorderBuffer[(int) (sequenced.sequence() % capacity)] = sequenced.item();
+                    writeReordered();
+                } else {
+                    writeItem(element);
+                }
+            }
+            if (ordered) {
+                flushReordered();
+            }
+            sink.close();
+            return;
+        } catch (InterruptedException e) {
+            // Aborted.
+        } catch (Throwable e) {
+            failure = aborted ? null : e;
+        }
+        try {
+            sink.abort();
+        } catch (Throwable e) {
+            if (failure != null) {
+                failure.addSuppressed(e);
+            }
+        }
+    }
+
+    /**
+     * Writes the items at the head of the reorder buffer that are next in sequence.
+     */
+    private void writeReordered() {
+        long next = nextSequence;
+        for (int slot = (int) (next % capacity); reorderBuffer[slot] != null; slot = (int) (next % capacity)) {
+            writeItem(reorderBuffer[slot]);
+            reorderBuffer[slot] = null;
+            next++;
+        }
+        advance(next);
+    }
+
+    /**
+     * Writes the items left in the reorder buffer after a gap in the sequence, in sequence order.
+     */
+    private void flushReordered() {
+        long next = nextSequence;
+        for (long sequence = next; sequence < next + capacity; sequence++) {
+            int slot = (int) (sequence % capacity);
+            if (reorderBuffer[slot] != null) {
+                writeItem(reorderBuffer[slot]);
+                reorderBuffer[slot] = null;
+            }
+        }
+    }
+
+    private void advance(long next) {
+        if (next == nextSequence) {
+            return;
+        }
+        lock.lock();
+        try {
+            nextSequence = next;
+            advanced.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeItem(Object item) {
+        if (item != SKIP) {
+            sink.accept((T) item);
+        }
+    }
+
+    private record Sequenced(long sequence, Object item) {
+    }
+}
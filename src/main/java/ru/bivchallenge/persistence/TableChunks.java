@@ -0,0 +1,114 @@
+package ru.bivchallenge.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a table file into byte ranges that start and end on line boundaries, so that every range can be
+ * parsed on its own.
+ *
+ * <p>A range starts right after a line feed and ends right after one (or at the end of the file). Ranges are
+ * aligned to line feeds only: a quoted field spanning several lines may be cut at a range boundary, which is
+ * acceptable for the tab-separated registry tables that never quote line breaks.</p>
+ */
+final class TableChunks {
+    private static final int SCAN_BUFFER_SIZE = 8 * 1024;
+
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    private TableChunks() {
+    }
+
+    /**
+     * A range of bytes of the file, from {@code start} inclusive to {@code end} exclusive.
+     *
+     * @param index the position of the chunk in the file
+     * @param start the offset of the first byte
+     * @param end   the offset after the last byte
+     */
+    record Chunk(int index, long start, long end) {
+        long length() {
+            return end - start;
+        }
+    }
+
+    /**
+     * Splits the file into line-aligned chunks of roughly {@code chunkSize} bytes.
+     *
+     * @param channel   the channel of the file
+     * @param from      the offset of the first byte to split
+     * @param chunkSize the target size of a chunk in bytes
+     * @return the chunks in file order
+     * @throws IOException if the file cannot be read
+     */
+    static List<Chunk> split(FileChannel channel, long from, long chunkSize) throws IOException {
+        long size = channel.size();
+        List<Chunk> chunks = new ArrayList<>();
+        long start = from;
+        while (start < size) {
+            long end = start + chunkSize >= size ? size : nextLineStart(channel, start + chunkSize, size);
+            chunks.add(new Chunk(chunks.size(), start, end));
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * Returns the length of the byte order mark at the beginning of the file.
+     *
+     * @param channel the channel of the file
+     * @return {@code 3} for a UTF-8 byte order mark, {@code 0} if there is none, or {@code -1} for the byte order
+     * mark of a UTF-16 or UTF-32 encoding, which cannot be split into chunks at line feed bytes
+     * @throws IOException if the file cannot be read
+     */
+    static int byteOrderMarkLength(FileChannel channel) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(4);
+        while (head.hasRemaining() && channel.read(head, head.position()) > 0) {
+            // read up to four bytes
+        }
+        head.flip();
+        if (startsWith(head, UTF8_BOM)) {
+            return UTF8_BOM.length;
+        }
+        if (startsWith(head, new byte[]{(byte) 0xFE, (byte) 0xFF})
+                || startsWith(head, new byte[]{(byte) 0xFF, (byte) 0xFE})
+                || startsWith(head, new byte[]{0, 0, (byte) 0xFE, (byte) 0xFF})) {
+            return -1;
+        }
+        return 0;
+    }
+
+    private static boolean startsWith(ByteBuffer buffer, byte[] prefix) {
+        if (buffer.remaining() < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long offset = position - 1;
+        while (offset < size) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,56 @@
+package ru.bivchallenge.persistence;
+
+import ru.bivchallenge.data.FounderTable;
+import ru.bivchallenge.dto.Entity;
+
+/**
+ * Provides the rows of a table as a columnar {@link FounderTable} in addition to the map of entity objects,
+ * and can push the rows block by block while the table is still being loaded.
+ * <p>
+ * A consumer of the blocks can start working on the first rows of a large table while the rest of it is parsed,
+ * e.g. to build a graph, instead of waiting for the whole table.
+ *
+ * @param <T> the type of entity that this data provider handles
+ */
+public interface TableDataProvider<T extends Entity> extends DataProvider<T> {
+
+    /**
+     * Retrieves the rows as a columnar table.
+     *
+     * @return a {@link FounderTable} with the rows in file order
+     */
+    FounderTable<T> getTable();
+
+    /**
+     * Retrieves the rows as a columnar table, pushing them to the consumer in blocks while they are loaded.
+     * The blocks arrive in file order and one at a time, possibly on different threads. The default
+     * implementation loads the whole table and pushes it as a single block.
+     *
+     * @param blockConsumer the consumer of the blocks of rows
+     * @return a {@link FounderTable} with the rows in file order
+     */
+    default FounderTable<T> getTable(FounderTable.BlockConsumer<T> blockConsumer) {
+        FounderTable<T> table = getTable();
+        blockConsumer.accept(table, 0);
+        return table;
+    }
+
+    /**
+     * Pushes the rows to the consumer in blocks without keeping the table, so that a table larger than the heap
+     * can be read, e.g. to spill it to disk. The blocks arrive in file order and one at a time. The default
+     * implementation loads the whole table and pushes it as a single block.
+     *
+     * @param blockConsumer the consumer of the blocks of rows
+     */
+    default void forEachBlock(FounderTable.BlockConsumer<T> blockConsumer) {
+        getTable(blockConsumer);
+    }
+
+    /**
+     * Retrieves the function creating the entity object of a row, needed to restore a table written with
+     * {@link FounderTable#writeTo}.
+     *
+     * @return the row mapper of the tables of this provider
+     */
+    FounderTable.RowMapper<T> getRowMapper();
+}
@@ -0,0 +1,176 @@
+package ru.bivchallenge.persistence;
+
+import ru.bivchallenge.data.FounderTable;
+import ru.bivchallenge.util.ChannelDataOutput;
+import ru.bivchallenge.util.MappedDataInput;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.stream.LongStream;
+import java.util.zip.CRC32C;
+
+/**
+ * The {@code TableSnapshot} class stores a parsed table in a binary snapshot file in a snapshot directory and
+ * restores it on later runs, so that an unchanged table is not parsed again.
+ *
+ * <p>A snapshot of {@code company.tsv} is written to {@code company.tsv.snapshot} in the snapshot directory, which
+ * is created if needed, so the directory of the source tables may be read-only. Its header records the size,
+ * the modification time and a content hash of the source file; a snapshot is used only if all three still match.
+ * The hash is a CRC32C over fixed-size blocks of the source, computed in parallel over a memory mapping and
+ * folded into one value, so validating a snapshot costs one read of the source at disk speed instead of a parse.</p>
+ *
+ * <p>The rows of a table that left their text fields in the memory-mapped source table are stored by their offsets
+ * in it (see {@link FounderTable#writeReferencesTo}), so the snapshot of such a table holds only its numeric
+ * columns. Restoring it maps the source table again, which is why the snapshot is only used while the source is
+ * unchanged; like the table it was loaded from, the restored table needs the source to stay unchanged.</p>
+ *
+ * <p>Snapshots are written to a temporary file and moved into place, so a crash never leaves a truncated
+ * snapshot behind. Failing to write a snapshot is logged and otherwise ignored.</p>
+ */
+final class TableSnapshot {
+    private static final System.Logger LOGGER = System.getLogger(TableSnapshot.class.getName());
+
+    private static final long MAGIC = 0x50414E534C545343L;
+    private static final int VERSION = 2;
+    private static final int HASH_BLOCK_SIZE = 64 * 1024 * 1024;
+    private static final String SUFFIX = ".snapshot";
+
+    private TableSnapshot() {
+    }
+
+    /**
+     * Returns the path of the snapshot of a table.
+     *
+     * @param snapshotDirectory the directory of the snapshots
+     * @param tablePath         the path of the source table
+     * @return the path of its snapshot
+     */
+    static Path snapshotPath(Path snapshotDirectory, Path tablePath) {
+        return snapshotDirectory.resolve(tablePath.getFileName() + SUFFIX);
+    }
+
+    /**
+     * Restores the table from its snapshot if the snapshot exists and matches the source table.
+     *
+     * @param snapshotDirectory the directory of the snapshots
+     * @param tablePath         the path of the source table
+     * @param rowMapper         the function creating the entity object of a row
+     * @param <T>               the type of the entity
+     * @return the restored table, or an empty optional if there is no valid snapshot
+     */
+    static <T> Optional<FounderTable<T>> load(Path snapshotDirectory, Path tablePath, FounderTable.RowMapper<T> rowMapper) {
+        Path snapshotPath = snapshotPath(snapshotDirectory, tablePath);
+        if (!Files.isRegularFile(snapshotPath)) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            MappedDataInput input = new MappedDataInput(channel);
+            if (input.readLong() != MAGIC || input.readInt() != VERSION) {
+                return Optional.empty();
+            }
+            long size = input.readLong();
+            long modifiedTime = input.readLong();
+            long hash = input.readLong();
+            if (size != Files.size(tablePath)
+                    || modifiedTime != Files.getLastModifiedTime(tablePath).toMillis()
+                    || hash != contentHash(tablePath)) {
+                LOGGER.log(System.Logger.Level.INFO, "Snapshot " + snapshotPath + " is stale");
+                return Optional.empty();
+            }
+            FounderTable<T> table;
+            try (FileChannel source = FileChannel.open(tablePath, StandardOpenOption.READ)) {
+                table = FounderTable.readFrom(input, rowMapper,
+                        (offset, length) -> source.map(FileChannel.MapMode.READ_ONLY, offset, length));
+            }
+            LOGGER.log(System.Logger.Level.INFO, "Loaded " + table.size() + " rows from snapshot " + snapshotPath);
+            return Optional.of(table);
+        } catch (IOException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Failed to read snapshot " + snapshotPath, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Writes the snapshot of a table parsed from the given source table.
+     *
+     * @param snapshotDirectory the directory of the snapshots
+     * @param tablePath         the path of the source table
+     * @param table             the parsed table
+     */
+    static void store(Path snapshotDirectory, Path tablePath, FounderTable<?> table) {
+        Path snapshotPath = snapshotPath(snapshotDirectory, tablePath);
+        Path temporaryPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(snapshotDirectory);
+            long size = Files.size(tablePath);
+            long modifiedTime = Files.getLastModifiedTime(tablePath).toMillis();
+            long hash = contentHash(tablePath);
+            try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ChannelDataOutput output = new ChannelDataOutput(channel);
+                output.writeLong(MAGIC);
+                output.writeInt(VERSION);
+                output.writeLong(size);
+                output.writeLong(modifiedTime);
+                output.writeLong(hash);
+                table.writeReferencesTo(output);
+                output.flush();
+            }
+            Files.move(temporaryPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Failed to write snapshot " + snapshotPath, e);
+            try {
+                Files.deleteIfExists(temporaryPath);
+            } catch (IOException ignored) {
+                // nothing left to clean up
+            }
+        }
+    }
+
+    /**
+     * Computes the content hash of a file: the CRC32C of the CRC32C values of its blocks.
+     *
+     * @param path the file to hash
+     * @return the content hash
+     * @throws IOException if the file cannot be read
+     */
+    static long contentHash(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long blocks = (size + HASH_BLOCK_SIZE - 1) / HASH_BLOCK_SIZE;
+            long[] blockHashes = LongStream.range(0, blocks).parallel()
+                    .map(block -> blockHash(channel, block * HASH_BLOCK_SIZE, Math.min(HASH_BLOCK_SIZE, size - block * HASH_BLOCK_SIZE)))
+                    .toArray();
+            ByteBuffer folded = ByteBuffer.allocate(Long.BYTES * (blockHashes.length + 1)).order(ByteOrder.LITTLE_ENDIAN);
+            folded.putLong(size);
+            for (long blockHash : blockHashes) {
+                folded.putLong(blockHash);
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(folded.flip());
+            return crc.getValue();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static long blockHash(FileChannel channel, long start, long length) {
+        try {
+            MappedByteBuffer block = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            CRC32C crc = new CRC32C();
+            crc.update(block);
+            return crc.getValue();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package ru.bivchallenge.processor;
+
+import ru.bivchallenge.data.FounderTable;
+import ru.bivchallenge.dto.LegalEntity;
+import ru.bivchallenge.dto.NaturalEntity;
+import ru.bivchallenge.dto.OwnerEntity;
+import ru.bivchallenge.util.KeyGroups;
+import ru.bivchallenge.util.LongIntHashMap;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * The {@code FounderShareRepairProcessor} class repairs the share percents of the founder rows once, before
+ * any graph is built from them: the {@link ru.bivchallenge.data.CompanyGraphManager} graphs from the entity maps,
+ * the {@link ru.bivchallenge.data.SharedGraphManager} graph from the columnar tables.
+ *
+ * <p>The rows are grouped by the company they own a share of with {@link KeyGroups}, legal founders before
+ * natural ones in the order of the maps or the tables. Every group is repaired by the rules of
+ * {@link GraphRepairProcessor} on primitive arrays of weights and owner shares, and the restored weights are
+ * written back. The cost is linear in the number of rows, however many head companies there are, so the graphs
+ * need no repair of their own, and every mode repairs the same rows the same way.</p>
+ *
+ * @see GraphRepairProcessor
+ */
+public class FounderShareRepairProcessor {
+    private static final int MIN_BLOCK_SIZE = 1 << 12;
+
+    private final LongAdder repairedEdges = new LongAdder();
+
+    /**
+     * Returns the number of share percents restored by this processor so far.
+     *
+     * @return the number of repaired edges
+     */
+    public long getRepairedEdgeCount() {
+        return repairedEdges.sum();
+    }
+
+    /**
+     * Repairs the share percents of all founder rows in place.
+     *
+     * @param legalEntityMap   the legal founders by id
+     * @param naturalEntityMap the natural founders by id
+     */
+    public void apply(Map<Long, LegalEntity> legalEntityMap, Map<Long, NaturalEntity> naturalEntityMap) {
+        OwnerEntity[] rows = new OwnerEntity[legalEntityMap.size() + naturalEntityMap.size()];
+        int rowCount = 0;
+        for (LegalEntity legalEntity : legalEntityMap.values()) {
+            rows[rowCount++] = legalEntity;
+        }
+        for (NaturalEntity naturalEntity : naturalEntityMap.values()) {
+            rows[rowCount++] = naturalEntity;
+        }
+
+        long[] companyIds = new long[rows.length];
+        double[] weights = new double[rows.length];
+        double[] shares = new double[rows.length];
+        IntStream.range(0, rows.length).parallel().forEach(row -> {
+            companyIds[row] = rows[row].getCompanyId();
+            weights[row] = rows[row].getSharePercent();
+            shares[row] = rows[row].getShare();
+        });
+        repair(companyIds, weights, shares);
+
+        IntStream.range(0, rows.length).parallel().forEach(row -> {
+            if (rows[row].getSharePercent() != weights[row]) {
+                rows[row].setSharePercent(weights[row]);
+            }
+        });
+    }
+
+    /**
+     * Repairs the share percents of all founder rows of the columnar tables. The tables are left as they are, so
+     * that they can still be stored or compared as read.
+     *
+     * @param legalEntityTable   the rows of the legal founders
+     * @param naturalEntityTable the rows of the natural founders
+     * @return the tables with the repaired share percents, sharing every other column with the given ones
+     */
+    public RepairedTables apply(FounderTable<LegalEntity> legalEntityTable, FounderTable<NaturalEntity> naturalEntityTable) {
+        int legalRowCount = legalEntityTable.size();
+        int rowCount = legalRowCount + naturalEntityTable.size();
+        long[] companyIds = new long[rowCount];
+        double[] weights = new double[rowCount];
+        double[] shares = new double[rowCount];
+        IntStream.range(0, rowCount).parallel().forEach(row -> {
+            FounderTable<?> table = row < legalRowCount ? legalEntityTable : naturalEntityTable;
+            int tableRow = row < legalRowCount ? row : row - legalRowCount;
+            companyIds[row] = table.companyId(tableRow);
+            weights[row] = table.sharePercent(tableRow);
+            shares[row] = table.share(tableRow);
+        });
+        repair(companyIds, weights, shares);
+
+        return new RepairedTables(
+                legalEntityTable.withSharePercents(Arrays.copyOf(weights, legalRowCount)),
+                naturalEntityTable.withSharePercents(Arrays.copyOfRange(weights, legalRowCount, rowCount)));
+    }
+
+    /**
+     * Repairs the weights of the rows in place, grouped by the companies they own a share of.
+     */
+    private void repair(long[] companyIds, double[] weights, double[] shares) {
+        LongIntHashMap companyIndex = new LongIntHashMap(companyIds.length);
+        int[] companyKeys = new int[companyIds.length];
+        for (int row = 0; row < companyIds.length; row++) {
+            int key = companyIndex.get(companyIds[row]);
+            if (key == LongIntHashMap.MISSING) {
+                key = companyIndex.size();
+                companyIndex.put(companyIds[row], key);
+            }
+            companyKeys[row] = key;
+        }
+        KeyGroups groups = KeyGroups.of(companyKeys, companyIndex.size());
+
+        double[] slotWeights = new double[companyIds.length];
+        double[] slotShares = new double[companyIds.length];
+        IntStream.range(0, companyIds.length).parallel().forEach(slot -> {
+            slotWeights[slot] = weights[groups.position(slot)];
+            slotShares[slot] = shares[groups.position(slot)];
+        });
+        IncomingSlots edges = new IncomingSlots(slotWeights, slotShares);
+
+        int companyCount = groups.keyCount();
+        int blockCount = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() * 4, companyCount / MIN_BLOCK_SIZE));
+        int blockSize = (companyCount + blockCount - 1) / blockCount;
+        IntStream.range(0, blockCount).parallel().forEach(block -> {
+            int[] brokenSlots = new int[16];
+            int repaired = 0;
+            for (int company = block * blockSize, end = Math.min(companyCount, company + blockSize); company < end; company++) {
+                int size = groups.end(company) - groups.start(company);
+                if (brokenSlots.length < size) {
+                    brokenSlots = new int[size];
+                }
+                repaired += GraphRepairProcessor.repairIncoming(edges, groups.start(company), groups.end(company), brokenSlots);
+            }
+            repairedEdges.add(repaired);
+        });
+
+        IntStream.range(0, companyIds.length).parallel().forEach(slot -> weights[groups.position(slot)] = slotWeights[slot]);
+    }
+
+    /**
+     * The founder tables with repaired share percents.
+     *
+     * @param legalEntityTable   the rows of the legal founders
+     * @param naturalEntityTable the rows of the natural founders
+     */
+    public record RepairedTables(FounderTable<LegalEntity> legalEntityTable, FounderTable<NaturalEntity> naturalEntityTable) {
+    }
+
+    /**
+     * The founder rows grouped by company, a slot being a position in the grouped order.
+     */
+    private record IncomingSlots(double[] weights, double[] shares) implements GraphRepairProcessor.IncomingEdges {
+        @Override
+        public double weight(int slot) {
+            return weights[slot];
+        }
+
+        @Override
+        public void setWeight(int slot, double weight) {
+            weights[slot] = weight;
+        }
+
+        @Override
+        public double ownerShare(int slot) {
+            return shares[slot];
+        }
+    }
+}
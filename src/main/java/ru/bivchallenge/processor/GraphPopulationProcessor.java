@@ -0,0 +1,93 @@
+package ru.bivchallenge.processor;
+
+import ru.bivchallenge.data.CompanyGraphManager;
+import ru.bivchallenge.dto.LegalEntity;
+import ru.bivchallenge.dto.NaturalEntity;
+import ru.bivchallenge.dto.OwnerEntity;
+import ru.bivchallenge.util.KeyGroups;
+import ru.bivchallenge.util.LongIntHashMap;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * The {@code GraphPopulationProcessor} class adds the founders of every company to its {@link CompanyGraphManager}.
+ *
+ * <p>Founders are first grouped by the company they own a share of with a parallel, stable sort
+ * ({@link KeyGroups}). Each graph is then populated by exactly one worker, so the graph builders are never shared
+ * between threads and no locks are taken. The grouping is stable, so every graph receives its founders in the
+ * same order on every run.</p>
+ *
+ * <p>A graph receives the founders of its head company and, breadth-first, the founders of every legal founder
+ * it reaches, legal founders before natural ones, so it holds the whole upstream of the head like the graph of
+ * {@link ru.bivchallenge.data.SharedGraphManager} and both modes report the same beneficiaries. Every company is
+ * expanded once per graph, so cross-holdings are followed only as far as they lead to new companies. Founders of
+ * companies outside the upstream of every head are ignored.</p>
+ *
+ * @see GraphInitializerProcessor
+ * @see KeyGroups
+ */
+public class GraphPopulationProcessor implements UnaryProcessor<Map<Long, CompanyGraphManager>> {
+    private final Map<Long, LegalEntity> legalEntityMap;
+    private final Map<Long, NaturalEntity> naturalEntityMap;
+
+    public GraphPopulationProcessor(Map<Long, LegalEntity> legalEntityMap, Map<Long, NaturalEntity> naturalEntityMap) {
+        this.legalEntityMap = legalEntityMap;
+        this.naturalEntityMap = naturalEntityMap;
+    }
+
+    @Override
+    public Map<Long, CompanyGraphManager> apply(Map<Long, CompanyGraphManager> companyGraphMap) {
+        CompanyGraphManager[] managers = companyGraphMap.values().toArray(new CompanyGraphManager[0]);
+        LegalEntity[] legalEntities = legalEntityMap.values().toArray(new LegalEntity[0]);
+        NaturalEntity[] naturalEntities = naturalEntityMap.values().toArray(new NaturalEntity[0]);
+
+        // Only the head companies and the legal founders can be reached, so only they need a group.
+        LongIntHashMap companyIndex = new LongIntHashMap(managers.length + legalEntities.length);
+        int companyCount = 0;
+        for (CompanyGraphManager manager : managers) {
+            if (companyIndex.putIfAbsent(manager.getHeadCompany().id(), companyCount) == LongIntHashMap.MISSING) {
+                companyCount++;
+            }
+        }
+        for (LegalEntity legalEntity : legalEntities) {
+            if (companyIndex.putIfAbsent(legalEntity.id(), companyCount) == LongIntHashMap.MISSING) {
+                companyCount++;
+            }
+        }
+
+        KeyGroups legalGroups = KeyGroups.of(companyKeys(legalEntities, companyIndex), companyCount);
+        KeyGroups naturalGroups = KeyGroups.of(companyKeys(naturalEntities, companyIndex), companyCount);
+
+        IntStream.range(0, managers.length).parallel().forEach(head -> {
+            CompanyGraphManager manager = managers[head];
+            int[] queue = {companyIndex.get(manager.getHeadCompany().id())};
+            int tail = 1;
+            for (int next = 0; next < tail; next++) {
+                int company = queue[next];
+                for (int i = legalGroups.start(company); i < legalGroups.end(company); i++) {
+                    LegalEntity legalEntity = legalEntities[legalGroups.position(i)];
+                    boolean reached = manager.containsLegalEntity(legalEntity.id());
+                    manager.addEntity(legalEntity);
+                    if (!reached) {
+                        if (tail == queue.length) {
+                            queue = Arrays.copyOf(queue, tail * 2);
+                        }
+                        queue[tail++] = companyIndex.get(legalEntity.id());
+                    }
+                }
+                for (int i = naturalGroups.start(company); i < naturalGroups.end(company); i++) {
+                    manager.addEntity(naturalEntities[naturalGroups.position(i)]);
+                }
+            }
+        });
+        return companyGraphMap;
+    }
+
+    private static int[] companyKeys(OwnerEntity[] entities, LongIntHashMap companyIndex) {
+        return IntStream.range(0, entities.length).parallel()
+                .map(i -> companyIndex.get(entities[i].getCompanyId()))
+                .toArray();
+    }
+}
@@ -1,130 +1,197 @@
 package ru.bivchallenge.processor;
 
-import org.jgrapht.Graph;
 import ru.bivchallenge.data.CompanyGraphManager;
 import ru.bivchallenge.dto.*;
+import ru.bivchallenge.graph.OwnershipGraph;
 
-import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntToDoubleFunction;
 
 /**
  * The {@code GraphRepairProcessor} class is responsible for repairing a graph by ensuring that
  * all weights on incoming edges are correctly calculated or validated.
  *
- * <p>This optimized version includes caching, reduced string operations, and iterative graph traversal.</p>
+ * <p>The traversal works directly on the primitive adjacency of the {@link OwnershipGraph}: vertices and
+ * edges are plain {@code int} ids, and the visited set and the stack are primitive arrays.</p>
+ *
+ * <p>A processor can be shared by concurrent workers; it counts the edge weights it restored across all graphs.</p>
  */
 public class GraphRepairProcessor implements UnaryProcessor<CompanyGraphManager> {
+    private final LongAdder repairedEdges = new LongAdder();
+
+    /**
+     * Returns the number of edge weights restored by this processor so far.
+     *
+     * @return the number of repaired edges
+     */
+    public long getRepairedEdgeCount() {
+        return repairedEdges.sum();
+    }
 
     @Override
     public CompanyGraphManager apply(CompanyGraphManager companyGraphManager) {
         // Start repairing the graph from the root vertex (head company)
-        Company company = companyGraphManager.getHeadCompany();
-        String rootVertex = createVertexId(company.id());
-        repairVertex(companyGraphManager, rootVertex);
+        repairVertex(companyGraphManager, companyGraphManager.getHeadVertex());
         return companyGraphManager;
     }
 
-    private void repairVertex(CompanyGraphManager companyGraphManager, String startVertex) {
-        Graph<String, WeightedEdge> graph = companyGraphManager.getGraph();
-        Set<String> visited = new HashSet<>();
-        Deque<String> stack = new ArrayDeque<>();
-        stack.push(startVertex);
-
-        while (!stack.isEmpty()) {
-            String vertex = stack.pop();
-            if (!visited.add(vertex)) continue;
-
-            Set<WeightedEdge> incomingEdges = graph.incomingEdgesOf(vertex);
-            if (incomingEdges.isEmpty()) continue;
-
-            if (incomingEdges.size() == 1) {
-                WeightedEdge edge = incomingEdges.iterator().next();
-                if (edge.getWeight() == 0) {
-                    edge.setWeight(1.0);
-                }
-            } else {
-                // Cache owner entities for this vertex
-                Map<String, OwnerEntity> ownerCache = new HashMap<>();
-                for (WeightedEdge edge : incomingEdges) {
-                    String sourceVertex = graph.getEdgeSource(edge);
-                    ownerCache.computeIfAbsent(sourceVertex, v -> getOwnerEntity(companyGraphManager, v));
+    private void repairVertex(CompanyGraphManager companyGraphManager, int startVertex) {
+        OwnershipGraph graph = companyGraphManager.getGraph();
+        boolean[] visited = new boolean[graph.vertexCount()];
+        int[] stack = new int[graph.edgeCount() + 1];
+        OwnerEntity[] owners = new OwnerEntity[graph.vertexCount()];
+        int[] brokenEdges = new int[graph.edgeCount()];
+        int top = 0;
+        int repaired = 0;
+        stack[top++] = startVertex;
+
+        while (top > 0) {
+            int vertex = stack[--top];
+            if (visited[vertex]) continue;
+            visited[vertex] = true;
+
+            repaired += repairIncomingEdges(graph, vertex, brokenEdges, edge -> {
+                // Cache owner entities for the sources of this vertex
+                int sourceVertex = graph.source(edge);
+                if (owners[sourceVertex] == null) {
+                    owners[sourceVertex] = getOwnerEntity(companyGraphManager, graph, sourceVertex);
                 }
+                return owners[sourceVertex].getShare();
+            });
 
-                restoreOrValidateWeights(companyGraphManager, vertex, incomingEdges, ownerCache);
+            // Add source vertices of incoming edges to the stack
+            for (int edge = graph.inStart(vertex); edge < graph.inEnd(vertex); edge++) {
+                stack[top++] = graph.source(edge);
             }
+        }
+        repairedEdges.add(repaired);
+    }
 
-            // Add source vertices of incoming edges to the stack
-            for (WeightedEdge edge : incomingEdges) {
-                stack.push(graph.getEdgeSource(edge));
+    /**
+     * Repairs the incoming edges of a single vertex. The rules only look at the edges entering the vertex,
+     * so the result does not depend on the order in which vertices are repaired.
+     *
+     * @param graph       the graph being repaired
+     * @param vertex      the vertex whose incoming edges are repaired
+     * @param brokenEdges a scratch buffer of at least the in-degree of the vertex
+     * @param ownerShare  returns the nominal share of the owner behind an edge
+     * @return the number of edges whose weight was restored
+     */
+    private static int repairIncomingEdges(OwnershipGraph graph, int vertex, int[] brokenEdges, IntToDoubleFunction ownerShare) {
+        return repairIncoming(new GraphEdges(graph, ownerShare), graph.inStart(vertex), graph.inEnd(vertex), brokenEdges);
+    }
+
+    /**
+     * Repairs the weights of the edges entering one company, addressed by the slots {@code [start, end)}:
+     * a lone edge without a weight gets the whole company, several edges without weights are restored from
+     * the nominal shares of their owners, and a single edge without a weight and without a share gets what the
+     * other edges leave.
+     *
+     * @param edges       the weights and owner shares of the edges
+     * @param start       the first slot
+     * @param end         the slot after the last one
+     * @param brokenSlots a scratch buffer of at least {@code end - start} slots
+     * @return the number of edges whose weight was restored
+     */
+    static int repairIncoming(IncomingEdges edges, int start, int end, int[] brokenSlots) {
+        if (start == end) return 0;
+
+        if (end - start == 1) {
+            if (edges.weight(start) == 0) {
+                edges.setWeight(start, 1.0);
+                return 1;
             }
+            return 0;
         }
+
+        return restoreOrValidateWeights(edges, start, end, brokenSlots);
     }
 
-    private void restoreOrValidateWeights(CompanyGraphManager companyGraphManager, String vertex,
-                                          Set<WeightedEdge> edges, Map<String, OwnerEntity> ownerCache) {
-        Graph<String, WeightedEdge> graph = companyGraphManager.getGraph();
-        Map<String, BrokenEntity> brokenEdges = new HashMap<>();
+    private static int restoreOrValidateWeights(IncomingEdges edges, int start, int end, int[] brokenSlots) {
+        int brokenCount = 0;
         double totalWeight = 0.0;
         double totalShare = 0.0;
         boolean hasMissingShares = false;
 
-        for (WeightedEdge edge : edges) {
-            String sourceVertex = graph.getEdgeSource(edge);
-            OwnerEntity ownerEntity = ownerCache.get(sourceVertex);
+        for (int slot = start; slot < end; slot++) {
+            double share = edges.ownerShare(slot);
 
-            if (edge.getWeight() == 0) {
-                brokenEdges.put(sourceVertex, new BrokenEntity(ownerEntity, edge));
-                hasMissingShares |= (ownerEntity.getShare() == 0);
+            if (edges.weight(slot) == 0) {
+                brokenSlots[brokenCount++] = slot;
+                hasMissingShares |= (share == 0);
             } else {
-                totalWeight += edge.getWeight();
+                totalWeight += edges.weight(slot);
             }
 
-            if (ownerEntity.getShare() > 0) {
-                totalShare += ownerEntity.getShare();
+            if (share > 0) {
+                totalShare += share;
             }
         }
 
-        if (!brokenEdges.isEmpty()) {
+        if (brokenCount > 0) {
             if (!hasMissingShares) {
-                repairUsingShares(graph, brokenEdges, totalShare);
-            } else if (brokenEdges.size() == 1) {
-                repairSingleEdge(graph, brokenEdges, totalWeight);
+                repairUsingShares(edges, brokenSlots, brokenCount, totalShare);
+                return brokenCount;
+            } else if (brokenCount == 1) {
+                repairSingleEdge(edges, brokenSlots[0], totalWeight);
+                return 1;
             }
         }
+        return 0;
     }
 
-    private void repairUsingShares(Graph<String, WeightedEdge> graph, Map<String, BrokenEntity> brokenEdges, double totalShare) {
-        for (BrokenEntity brokenEntity : brokenEdges.values()) {
-            double share = brokenEntity.ownerEntity.getShare();
+    private static void repairUsingShares(IncomingEdges edges, int[] brokenSlots, int brokenCount, double totalShare) {
+        for (int i = 0; i < brokenCount; i++) {
+            int slot = brokenSlots[i];
+            double share = edges.ownerShare(slot);
             double newWeight = share / totalShare;
-            brokenEntity.weightedEdge.setWeight(newWeight);
+            edges.setWeight(slot, newWeight);
         }
     }
 
-    private void repairSingleEdge(Graph<String, WeightedEdge> graph, Map<String, BrokenEntity> brokenEdges, double totalWeight) {
-        BrokenEntity brokenEntity = brokenEdges.values().iterator().next();
+    private static void repairSingleEdge(IncomingEdges edges, int brokenSlot, double totalWeight) {
         double newWeight = 1.0 - totalWeight;
-        brokenEntity.weightedEdge.setWeight(newWeight);
+        edges.setWeight(brokenSlot, newWeight);
     }
 
-    private OwnerEntity getOwnerEntity(CompanyGraphManager companyGraphManager, String vertexId) {
-        if (vertexId.startsWith("L:")) {
-            return companyGraphManager.getLegalEntity(parseVertexId(vertexId));
-        } else if (vertexId.startsWith("N:")) {
-            return companyGraphManager.getNaturalEntity(parseVertexId(vertexId));
-        } else {
-            throw new IllegalArgumentException("Unknown vertex type: " + vertexId);
-        }
-    }
+    /**
+     * The edges entering one company as seen by the repair rules: a weight and the nominal share of its owner
+     * per slot.
+     */
+    interface IncomingEdges {
+        double weight(int slot);
+
+        void setWeight(int slot, double weight);
 
-    private String createVertexId(long id) {
-        return "H" + ":" + id;
+        double ownerShare(int slot);
     }
 
-    private long parseVertexId(String vertexId) {
-        int colonIndex = vertexId.indexOf(':');
-        return Long.parseLong(vertexId.substring(colonIndex + 1));
+    /**
+     * The incoming edges of a graph, a slot being an edge id.
+     */
+    private record GraphEdges(OwnershipGraph graph, IntToDoubleFunction edgeShare) implements IncomingEdges {
+        @Override
+        public double weight(int edge) {
+            return graph.weight(edge);
+        }
+
+        @Override
+        public void setWeight(int edge, double weight) {
+            graph.setWeight(edge, weight);
+        }
+
+        @Override
+        public double ownerShare(int edge) {
+            return edgeShare.applyAsDouble(edge);
+        }
     }
 
-    // Helper class to store information about broken edges
-    record BrokenEntity(OwnerEntity ownerEntity, WeightedEdge weightedEdge) {}
+    private OwnerEntity getOwnerEntity(CompanyGraphManager companyGraphManager, OwnershipGraph graph, int vertex) {
+        return switch (graph.type(vertex)) {
+            // The head company is the source of an edge when it holds a share of one of its owners
+            case LEGAL, HEAD -> companyGraphManager.getLegalEntity(graph.id(vertex));
+            case NATURAL -> companyGraphManager.getNaturalEntity(graph.id(vertex));
+            default -> throw new IllegalArgumentException("Unknown vertex type: " + graph.type(vertex) + ":" + graph.id(vertex));
+        };
+    }
 }
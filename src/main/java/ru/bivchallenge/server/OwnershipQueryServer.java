@@ -0,0 +1,338 @@
+package ru.bivchallenge.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.inject.Inject;
+import ru.bivchallenge.config.CastleConfig;
+import ru.bivchallenge.config.ServerConfig;
+import ru.bivchallenge.data.BenefeciarRegistry;
+import ru.bivchallenge.data.OwnershipChain;
+import ru.bivchallenge.dto.Benefeciar;
+import ru.bivchallenge.dto.Company;
+import ru.bivchallenge.executor.Executor;
+import ru.bivchallenge.graph.CycleReport;
+import ru.bivchallenge.graph.OwnershipEngine;
+import ru.bivchallenge.graph.OwnershipEngineFactory;
+import ru.bivchallenge.persistence.RecordEncoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code OwnershipQueryServer} class keeps the repaired shared ownership graph of the registry in memory and
+ * answers point queries over a local HTTP endpoint, instead of computing every company in a batch run.
+ *
+ * <p>Endpoints, all answering with tab-separated text in the format of the beneficiaries table:</p>
+ * <ul>
+ *     <li>{@code GET /beneficiaries?company=<id>} – the company row followed by the rows of its beneficiaries.</li>
+ *     <li>{@code GET /chains?company=<id>&person=<id>} – the ownership paths from a natural founder to the company,
+ *     one {@code percent, companies} row per path in the order of decreasing share, where {@code companies} lists
+ *     the company ids along the path up to the head. At most {@link ServerConfig#getChainLimit()} paths are
+ *     searched.</li>
+ *     <li>{@code GET /health} – the version, load time and size of the current dataset.</li>
+ *     <li>{@code POST /refresh} – reloads the tables in the background.</li>
+ * </ul>
+ *
+ * <p>Every request is handled on its own virtual thread. A request reads the current {@link QueryDataset} once
+ * and answers from it, taking an {@link OwnershipEngine} from a pool, since engines are not thread-safe.
+ * Beneficiaries are computed per request by a traversal of the upstream of the company only, which takes
+ * milliseconds even on the graph of the whole registry.</p>
+ *
+ * <p>A single background thread reloads the dataset when the tables change, checked every
+ * {@link ServerConfig#getRefreshInterval()}, or when a refresh is requested. Requests keep being answered from the
+ * previous dataset while the next one loads, and the new dataset replaces it with a single volatile write, so no
+ * request ever sees a partially loaded registry. Both datasets are in memory while the next one loads. A failed
+ * reload is logged and the previous dataset stays in place.</p>
+ *
+ * @see QueryDatasetLoader
+ */
+public class OwnershipQueryServer implements Executor, AutoCloseable {
+    private static final System.Logger LOGGER = System.getLogger(OwnershipQueryServer.class.getName());
+    private static final String CONTENT_TYPE = "text/tab-separated-values; charset=utf-8";
+    /**
+     * Disables Nagle's algorithm on the connections of the JDK server; otherwise every answer on a kept-alive
+     * connection waits for the delayed acknowledgement of the client, about 40 ms.
+     */
+    private static final String NODELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    private final CastleConfig castleConfig;
+    private final QueryDatasetLoader loader;
+    private final OwnershipEngineFactory engineFactory;
+    private final Queue<OwnershipEngine> engines = new ConcurrentLinkedQueue<>();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    private volatile QueryDataset dataset;
+    private HttpServer server;
+    private ExecutorService requestExecutor;
+    private ScheduledExecutorService refreshExecutor;
+
+    @Inject
+    public OwnershipQueryServer(CastleConfig castleConfig, QueryDatasetLoader loader) {
+        this.castleConfig = castleConfig;
+        this.loader = loader;
+        this.engineFactory = new OwnershipEngineFactory(castleConfig.getOwnershipConfig(), new CycleReport());
+    }
+
+    /**
+     * Starts the server and serves queries until the JVM shuts down.
+     */
+    @Override
+    public void execute() throws Exception {
+        start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "server-shutdown"));
+        stopped.await();
+    }
+
+    /**
+     * Loads the first dataset, starts listening and schedules the refresh checks.
+     *
+     * @throws IOException if the server cannot listen on the configured address
+     */
+    public void start() throws IOException {
+        ServerConfig serverConfig = castleConfig.getServerConfig();
+        dataset = load();
+
+        if (System.getProperty(NODELAY_PROPERTY) == null) {
+            System.setProperty(NODELAY_PROPERTY, "true");
+        }
+        server = HttpServer.create(new InetSocketAddress(serverConfig.getHost(), serverConfig.getPort()), 0);
+        server.createContext("/beneficiaries", exchange -> handle(exchange, "GET", this::beneficiaries));
+        server.createContext("/chains", exchange -> handle(exchange, "GET", this::chains));
+        server.createContext("/health", exchange -> handle(exchange, "GET", this::health));
+        server.createContext("/refresh", exchange -> handle(exchange, "POST", this::requestRefresh));
+        requestExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(requestExecutor);
+
+        refreshExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dataset-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Duration interval = serverConfig.getRefreshInterval();
+        if (!interval.isZero() && !interval.isNegative()) {
+            refreshExecutor.scheduleWithFixedDelay(() -> refresh(false), interval.toNanos(), interval.toNanos(),
+                    TimeUnit.NANOSECONDS);
+        }
+        server.start();
+        LOGGER.log(System.Logger.Level.INFO, "Serving queries on " + getAddress());
+    }
+
+    /**
+     * Returns the address the server listens on.
+     *
+     * @return the bound address, with the actual port if the configured port is {@code 0}
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Returns the dataset queries are currently answered from.
+     *
+     * @return the current dataset
+     */
+    public QueryDataset getDataset() {
+        return dataset;
+    }
+
+    /**
+     * Reloads the dataset on the refresh thread.
+     *
+     * @param force whether to reload even if the tables did not change
+     * @return a future completed once the reload is over
+     */
+    public Future<?> requestRefresh(boolean force) {
+        return refreshExecutor.submit(() -> refresh(force));
+    }
+
+    /**
+     * Stops listening, waiting up to a second for running requests, and stops the refresh thread. Closing the server
+     * again has no effect.
+     */
+    @Override
+    public void close() {
+        if (server != null && stopped.getCount() > 0) {
+            server.stop(1);
+            requestExecutor.close();
+            refreshExecutor.shutdownNow();
+        }
+        stopped.countDown();
+    }
+
+    private void refresh(boolean force) {
+        try {
+            if (!force && loader.stampTables().equals(dataset.tableStamps())) {
+                return;
+            }
+            dataset = load();
+        } catch (RuntimeException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Failed to refresh the dataset, keeping version " + dataset.version(), e);
+        }
+    }
+
+    private QueryDataset load() {
+        long start = System.nanoTime();
+        QueryDataset loaded = loader.load();
+        LOGGER.log(System.Logger.Level.INFO, "Loaded dataset version " + loaded.version() + " with "
+                + loaded.companyTable().size() + " companies in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return loaded;
+    }
+
+    private void beneficiaries(QueryDataset current, Map<String, String> parameters, RecordEncoder response) {
+        Company company = company(current, parameters);
+        OwnershipEngine engine = engines.poll();
+        if (engine == null) {
+            engine = engineFactory.get();
+        }
+        BenefeciarRegistry registry;
+        try {
+            registry = current.graphManager().getBeneficiaries(company, engine,
+                    castleConfig.getOwnershipConfig().getBeneficiaryThreshold());
+        } finally {
+            engines.offer(engine);
+        }
+        response.writeRecord(company.separate());
+        for (Benefeciar benefeciar : registry.getBeneficiaries()) {
+            response.writeRecord(benefeciar.separate());
+        }
+    }
+
+    private void chains(QueryDataset current, Map<String, String> parameters, RecordEncoder response) {
+        Company company = company(current, parameters);
+        long naturalEntityId = longParameter(parameters, "person");
+        List<OwnershipChain> chains = current.graphManager().getOwnershipChains(company.id(), naturalEntityId,
+                castleConfig.getServerConfig().getChainLimit());
+        response.writeRecord("percent", "companies");
+        for (OwnershipChain chain : chains) {
+            StringJoiner companyIds = new StringJoiner(" ");
+            for (long companyId : chain.companyIds()) {
+                companyIds.add(String.valueOf(companyId));
+            }
+            response.writeRecord(String.valueOf(chain.share()), companyIds.toString());
+        }
+    }
+
+    private void health(QueryDataset current, Map<String, String> parameters, RecordEncoder response) {
+        response.writeRecord("version", "loaded_at", "companies", "vertices", "edges");
+        response.writeRecord(
+                String.valueOf(current.version()),
+                current.loadedAt().toString(),
+                String.valueOf(current.companyTable().size()),
+                String.valueOf(current.graphManager().getGraph().vertexCount()),
+                String.valueOf(current.graphManager().getGraph().edgeCount())
+        );
+    }
+
+    private void requestRefresh(QueryDataset current, Map<String, String> parameters, RecordEncoder response) {
+        requestRefresh(true);
+        response.writeRecord("refreshing", String.valueOf(current.version()));
+    }
+
+    private static Company company(QueryDataset current, Map<String, String> parameters) {
+        long companyId = longParameter(parameters, "company");
+        Company company = current.company(companyId);
+        if (company == null) {
+            throw new NotFoundException("Unknown company: " + companyId);
+        }
+        return company;
+    }
+
+    private void handle(HttpExchange exchange, String method, Query query) throws IOException {
+        try (exchange) {
+            if (!method.equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", method);
+                respond(exchange, 405, "Method not allowed: " + exchange.getRequestMethod());
+                return;
+            }
+            RecordEncoder response = new RecordEncoder(1024);
+            try {
+                query.answer(dataset, parameters(exchange.getRequestURI().getRawQuery()), response);
+            } catch (NotFoundException e) {
+                respond(exchange, 404, e.getMessage());
+                return;
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, e.getMessage());
+                return;
+            } catch (RuntimeException e) {
+                LOGGER.log(System.Logger.Level.WARNING, "Failed to answer " + exchange.getRequestURI(), e);
+                respond(exchange, 500, "Internal error");
+                return;
+            }
+            ByteBuffer body = response.buffer();
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.remaining());
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body.array(), body.arrayOffset() + body.position(), body.remaining());
+            }
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    private static Map<String, String> parameters(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int separator = pair.indexOf('=');
+            String name = separator < 0 ? pair : pair.substring(0, separator);
+            String value = separator < 0 ? "" : pair.substring(separator + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static long longParameter(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing parameter: " + name);
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+
+    /**
+     * Answers a query from a dataset.
+     */
+    @FunctionalInterface
+    private interface Query {
+        void answer(QueryDataset dataset, Map<String, String> parameters, RecordEncoder response);
+    }
+
+    /**
+     * Thrown when a query refers to an entity that is not in the dataset.
+     */
+    private static final class NotFoundException extends RuntimeException {
+        private NotFoundException(String message) {
+            super(message);
+        }
+    }
+}
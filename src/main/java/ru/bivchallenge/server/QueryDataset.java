@@ -0,0 +1,48 @@
+package ru.bivchallenge.server;
+
+import ru.bivchallenge.data.FounderTable;
+import ru.bivchallenge.data.SharedGraphManager;
+import ru.bivchallenge.dto.Company;
+
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * A loaded registry that the {@link OwnershipQueryServer} answers queries from: the companies and the repaired
+ * shared ownership graph. A dataset is never modified after it is loaded, so any number of requests can read it
+ * while the next version is being loaded.
+ *
+ * @param version      the number of the load, starting with {@code 1}
+ * @param loadedAt     the time the load finished
+ * @param tableStamps  the size and modification time of every table when the load started
+ * @param companyTable the companies
+ * @param graphManager the repaired shared graph of the founders
+ */
+public record QueryDataset(
+        long version,
+        Instant loadedAt,
+        List<TableStamp> tableStamps,
+        FounderTable<Company> companyTable,
+        SharedGraphManager graphManager
+) {
+    /**
+     * Finds a company by its id.
+     *
+     * @param companyId the company id
+     * @return the company, or {@code null} if it is not in the registry
+     */
+    public Company company(long companyId) {
+        int row = companyTable.row(companyId);
+        return row < 0 ? null : companyTable.entity(row);
+    }
+
+    /**
+     * The size and modification time of a table file, which change when the table is replaced.
+     *
+     * @param size         the size of the file in bytes
+     * @param lastModified the modification time of the file
+     */
+    public record TableStamp(long size, FileTime lastModified) {
+    }
+}
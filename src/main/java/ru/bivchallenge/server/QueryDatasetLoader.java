@@ -0,0 +1,99 @@
+package ru.bivchallenge.server;
+
+import de.siegmar.fastcsv.reader.CsvReader;
+import jakarta.inject.Inject;
+import ru.bivchallenge.config.CastleConfig;
+import ru.bivchallenge.config.TableConfig;
+import ru.bivchallenge.data.FounderTable;
+import ru.bivchallenge.data.SharedGraphManager;
+import ru.bivchallenge.dto.Company;
+import ru.bivchallenge.dto.LegalEntity;
+import ru.bivchallenge.dto.NaturalEntity;
+import ru.bivchallenge.persistence.CompanyLocalProvider;
+import ru.bivchallenge.persistence.LegalEntityLocalProvider;
+import ru.bivchallenge.persistence.NaturalEntityLocalProvider;
+import ru.bivchallenge.processor.FounderShareRepairProcessor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@code QueryDatasetLoader} class loads the configured tables into a {@link QueryDataset}.
+ *
+ * <p>Every load reads the tables with new providers, since the providers cache what they have read. As in the
+ * shared graph mode of the batch run, the three tables are loaded concurrently and the shared graph is built from
+ * the blocks of founder rows as they are parsed; the graph is frozen with the weights of the repaired tables. The
+ * row index of the companies is built before the dataset is returned, so that the first query does not pay for
+ * it.</p>
+ */
+public class QueryDatasetLoader {
+    private final CastleConfig castleConfig;
+    private final CsvReader.CsvReaderBuilder csvReaderBuilder;
+    private final AtomicLong versions = new AtomicLong();
+
+    @Inject
+    public QueryDatasetLoader(CastleConfig castleConfig, CsvReader.CsvReaderBuilder csvReaderBuilder) {
+        this.castleConfig = castleConfig;
+        this.csvReaderBuilder = csvReaderBuilder;
+    }
+
+    /**
+     * Reads the size and modification time of every table.
+     *
+     * @return the stamps of the company, legal founder and natural founder tables
+     * @throws UncheckedIOException if a table cannot be read
+     */
+    public List<QueryDataset.TableStamp> stampTables() {
+        TableConfig tableConfig = castleConfig.getTableConfig();
+        return List.of(
+                stamp(tableConfig.getCompanyTablePath()),
+                stamp(tableConfig.getFounderLegalTablePath()),
+                stamp(tableConfig.getFounderNaturalTablePath())
+        );
+    }
+
+    /**
+     * Loads the tables and builds the repaired shared graph.
+     *
+     * @return the next version of the dataset
+     */
+    public QueryDataset load() {
+        List<QueryDataset.TableStamp> tableStamps = stampTables();
+        CompanyLocalProvider companyProvider = new CompanyLocalProvider(castleConfig, csvReaderBuilder);
+        LegalEntityLocalProvider legalEntityProvider = new LegalEntityLocalProvider(castleConfig, csvReaderBuilder);
+        NaturalEntityLocalProvider naturalEntityProvider = new NaturalEntityLocalProvider(castleConfig, csvReaderBuilder);
+
+        SharedGraphManager.Builder graphBuilder = new SharedGraphManager.Builder();
+        CompletableFuture<FounderTable<Company>> companyTableFuture = CompletableFuture.supplyAsync(companyProvider::getTable);
+        CompletableFuture<FounderTable<LegalEntity>> legalEntityTableFuture = CompletableFuture.supplyAsync(() -> {
+            FounderTable<LegalEntity> table = legalEntityProvider.getTable(graphBuilder::addLegalEntities);
+            graphBuilder.completeLegalEntities();
+            return table;
+        });
+        CompletableFuture<FounderTable<NaturalEntity>> naturalEntityTableFuture = CompletableFuture.supplyAsync(
+                () -> naturalEntityProvider.getTable(graphBuilder::addNaturalEntities));
+
+        FounderTable<Company> companyTable = companyTableFuture.join();
+        FounderShareRepairProcessor.RepairedTables repairedTables = new FounderShareRepairProcessor()
+                .apply(legalEntityTableFuture.join(), naturalEntityTableFuture.join());
+        SharedGraphManager graphManager = graphBuilder.build(repairedTables.legalEntityTable(), repairedTables.naturalEntityTable());
+        if (companyTable.size() > 0) {
+            companyTable.row(companyTable.id(0));
+        }
+        return new QueryDataset(versions.incrementAndGet(), Instant.now(), tableStamps, companyTable, graphManager);
+    }
+
+    private static QueryDataset.TableStamp stamp(Path path) {
+        try {
+            return new QueryDataset.TableStamp(Files.size(path), Files.getLastModifiedTime(path));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + path, e);
+        }
+    }
+}
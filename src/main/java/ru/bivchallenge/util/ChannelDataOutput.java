@@ -0,0 +1,99 @@
+package ru.bivchallenge.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The {@code ChannelDataOutput} class writes primitive values and arrays to a channel through one reusable
+ * direct buffer, in little-endian byte order.
+ *
+ * <p>It is the writing counterpart of {@link MappedDataInput}. Arrays larger than the buffer are written in
+ * several passes, so arrays of any size can be stored without an intermediate copy of the whole array.</p>
+ */
+public final class ChannelDataOutput {
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private long position;
+
+    /**
+     * Constructs an output writing to the given channel.
+     *
+     * @param channel the channel to write to
+     */
+    public ChannelDataOutput(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    public void writeInt(int value) throws IOException {
+        ensureRemaining(Integer.BYTES);
+        buffer.putInt(value);
+    }
+
+    public void writeLong(long value) throws IOException {
+        ensureRemaining(Long.BYTES);
+        buffer.putLong(value);
+    }
+
+    public void writeInts(int[] values, int length) throws IOException {
+        for (int i = 0; i < length; i++) {
+            ensureRemaining(Integer.BYTES);
+            buffer.putInt(values[i]);
+        }
+    }
+
+    public void writeLongs(long[] values, int length) throws IOException {
+        for (int i = 0; i < length; i++) {
+            ensureRemaining(Long.BYTES);
+            buffer.putLong(values[i]);
+        }
+    }
+
+    public void writeDoubles(double[] values, int length) throws IOException {
+        for (int i = 0; i < length; i++) {
+            ensureRemaining(Double.BYTES);
+            buffer.putDouble(values[i]);
+        }
+    }
+
+    public void writeBytes(byte[] values, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            ensureRemaining(1);
+            int count = Math.min(buffer.remaining(), length - offset);
+            buffer.put(values, offset, count);
+            offset += count;
+        }
+    }
+
+    /**
+     * Returns the number of bytes written so far, including the ones still buffered.
+     *
+     * @return the position of the next byte
+     */
+    public long position() {
+        return position + buffer.position();
+    }
+
+    /**
+     * Writes the buffered bytes to the channel.
+     *
+     * @throws IOException if the channel cannot be written
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void ensureRemaining(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+}
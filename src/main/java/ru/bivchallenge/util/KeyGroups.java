@@ -0,0 +1,95 @@
+package ru.bivchallenge.util;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The {@code KeyGroups} class groups the positions of an array of dense integer keys by key with a parallel,
+ * stable sort.
+ *
+ * <p>Every position is packed with its key into one {@code long}, the key in the upper half and the position in
+ * the lower half, and the packed values are sorted with {@link Arrays#parallelSort(long[])}. Positions with the
+ * same key therefore keep their input order, so the grouping is the same on every run regardless of the number of
+ * threads. The start of every group is cut from the sorted run in parallel, where the key changes. The memory
+ * taken is one {@code long} per position and one {@code int} per key, whatever the number of threads.</p>
+ *
+ * <p>Negative keys are left out of all groups.</p>
+ */
+public final class KeyGroups {
+    private final int[] offsets;
+    private final int[] positions;
+
+    private KeyGroups(int[] offsets, int[] positions) {
+        this.offsets = offsets;
+        this.positions = positions;
+    }
+
+    /**
+     * Groups the positions of the given keys.
+     *
+     * @param keys     the key of every position, in {@code [0, keyCount)} or negative to skip the position
+     * @param keyCount the number of distinct keys
+     * @return the groups
+     */
+    public static KeyGroups of(int[] keys, int keyCount) {
+        long[] packed = IntStream.range(0, keys.length).parallel()
+                .filter(i -> keys[i] >= 0)
+                .mapToLong(i -> (long) keys[i] << 32 | i)
+                .toArray();
+        Arrays.parallelSort(packed);
+
+        int total = packed.length;
+        int[] positions = new int[total];
+        int[] offsets = new int[keyCount + 1];
+        IntStream.range(0, total).parallel().forEach(index -> {
+            positions[index] = (int) packed[index];
+            int key = (int) (packed[index] >>> 32);
+            int previousKey = index == 0 ? -1 : (int) (packed[index - 1] >>> 32);
+            for (int skipped = previousKey + 1; skipped <= key; skipped++) {
+                offsets[skipped] = index;
+            }
+        });
+        int lastKey = total == 0 ? -1 : (int) (packed[total - 1] >>> 32);
+        Arrays.fill(offsets, lastKey + 1, keyCount + 1, total);
+        return new KeyGroups(offsets, positions);
+    }
+
+    /**
+     * Returns the number of keys.
+     *
+     * @return the key count
+     */
+    public int keyCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Returns the index of the first grouped position of a key.
+     *
+     * @param key the key
+     * @return the inclusive start index
+     */
+    public int start(int key) {
+        return offsets[key];
+    }
+
+    /**
+     * Returns the index after the last grouped position of a key.
+     *
+     * @param key the key
+     * @return the exclusive end index
+     */
+    public int end(int key) {
+        return offsets[key + 1];
+    }
+
+    /**
+     * Returns a grouped position.
+     *
+     * @param index an index between {@link #start} and {@link #end} of a key
+     * @return the position in the key array
+     */
+    public int position(int index) {
+        return positions[index];
+    }
+}
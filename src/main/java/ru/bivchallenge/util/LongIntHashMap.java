@@ -0,0 +1,152 @@
+package ru.bivchallenge.util;
+
+import java.util.Arrays;
+
+/**
+ * The {@code LongIntHashMap} class is a compact open-addressing hash map from primitive {@code long} keys
+ * to non-negative primitive {@code int} values.
+ *
+ * <p>It is used wherever entity identifiers have to be translated into dense array indexes without
+ * boxing every key into a {@link Long}. Negative values are reserved: {@link #get(long)} returns
+ * {@link #MISSING} for absent keys.</p>
+ */
+public final class LongIntHashMap {
+    /**
+     * The value returned by {@link #get(long)} when the key is not present.
+     */
+    public static final int MISSING = -1;
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+    private int resizeThreshold;
+
+    /**
+     * Constructs an empty map sized for the given number of keys.
+     *
+     * @param expectedSize the number of keys expected to be stored
+     */
+    public LongIntHashMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * Constructs an empty map with a small default capacity.
+     */
+    public LongIntHashMap() {
+        this(16);
+    }
+
+    /**
+     * Returns the value associated with the key.
+     *
+     * @param key the key to look up
+     * @return the associated value, or {@link #MISSING} if the key is absent
+     */
+    public int get(long key) {
+        int slot = slot(key);
+        while (values[slot] != MISSING) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    /**
+     * Checks whether the key is present in the map.
+     *
+     * @param key the key to look up
+     * @return {@code true} if the key is present
+     */
+    public boolean containsKey(long key) {
+        return get(key) != MISSING;
+    }
+
+    /**
+     * Associates the value with the key, replacing any previous value.
+     *
+     * @param key   the key
+     * @param value the non-negative value
+     * @return the previous value, or {@link #MISSING} if the key was absent
+     */
+    public int put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative values are reserved: " + value);
+        }
+        int slot = slot(key);
+        while (values[slot] != MISSING) {
+            if (keys[slot] == key) {
+                int previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+        return MISSING;
+    }
+
+    /**
+     * Associates the value with the key only if the key is absent.
+     *
+     * @param key   the key
+     * @param value the non-negative value
+     * @return the existing value, or {@link #MISSING} if the value was inserted
+     */
+    public int putIfAbsent(long key, int value) {
+        int existing = get(key);
+        if (existing != MISSING) {
+            return existing;
+        }
+        put(key, value);
+        return MISSING;
+    }
+
+    /**
+     * Returns the number of keys stored in the map.
+     *
+     * @return the number of keys
+     */
+    public int size() {
+        return size;
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != MISSING) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        return Math.max(capacity, 4);
+    }
+}
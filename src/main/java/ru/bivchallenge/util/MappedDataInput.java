@@ -0,0 +1,199 @@
+package ru.bivchallenge.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The {@code MappedDataInput} class reads primitive values and arrays written by {@link ChannelDataOutput}
+ * from a memory-mapped file.
+ *
+ * <p>The whole file is mapped once, in segments of {@value #SEGMENT_SIZE} bytes, so files and arrays larger than
+ * the 2 GiB limit of a single mapping can be read and seeking never remaps. Every segment also maps the first
+ * {@value #SEGMENT_OVERLAP} bytes of the next one, so a primitive value is always read from a single segment.
+ * Arrays are copied out of the mapping with bulk transfers; values can also be read at any offset without moving
+ * the position.</p>
+ */
+public final class MappedDataInput {
+    private static final int SEGMENT_SHIFT = 30;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_OVERLAP = Long.BYTES - 1;
+
+    private final long size;
+    private final MappedByteBuffer[] segments;
+    private long position;
+
+    /**
+     * Constructs an input reading the given channel from its beginning.
+     *
+     * @param channel the channel of the file to read
+     * @throws IOException if the file cannot be mapped
+     */
+    public MappedDataInput(FileChannel channel) throws IOException {
+        this.size = channel.size();
+        this.segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT)];
+        for (int i = 0; i < segments.length; i++) {
+            long start = (long) i << SEGMENT_SHIFT;
+            long length = Math.min((long) SEGMENT_SIZE + SEGMENT_OVERLAP, size - start);
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            segments[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    public int readInt() throws IOException {
+        int value = getInt(position);
+        position += Integer.BYTES;
+        return value;
+    }
+
+    public long readLong() throws IOException {
+        long value = getLong(position);
+        position += Long.BYTES;
+        return value;
+    }
+
+    public int[] readInts(int length) throws IOException {
+        checkAvailable(position, (long) length * Integer.BYTES);
+        int[] values = new int[length];
+        int offset = 0;
+        while (offset < length) {
+            MappedByteBuffer segment = segments[segment(position)];
+            int index = index(position);
+            int count = Math.min(length - offset, (segment.limit() - index) / Integer.BYTES);
+            segment.slice(index, count * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer()
+                    .get(values, offset, count);
+            offset += count;
+            position += (long) count * Integer.BYTES;
+        }
+        return values;
+    }
+
+    public long[] readLongs(int length) throws IOException {
+        checkAvailable(position, (long) length * Long.BYTES);
+        long[] values = new long[length];
+        int offset = 0;
+        while (offset < length) {
+            MappedByteBuffer segment = segments[segment(position)];
+            int index = index(position);
+            int count = Math.min(length - offset, (segment.limit() - index) / Long.BYTES);
+            segment.slice(index, count * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer()
+                    .get(values, offset, count);
+            offset += count;
+            position += (long) count * Long.BYTES;
+        }
+        return values;
+    }
+
+    public double[] readDoubles(int length) throws IOException {
+        checkAvailable(position, (long) length * Double.BYTES);
+        double[] values = new double[length];
+        int offset = 0;
+        while (offset < length) {
+            MappedByteBuffer segment = segments[segment(position)];
+            int index = index(position);
+            int count = Math.min(length - offset, (segment.limit() - index) / Double.BYTES);
+            segment.slice(index, count * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer()
+                    .get(values, offset, count);
+            offset += count;
+            position += (long) count * Double.BYTES;
+        }
+        return values;
+    }
+
+    public byte[] readBytes(int length) throws IOException {
+        checkAvailable(position, length);
+        byte[] values = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            MappedByteBuffer segment = segments[segment(position)];
+            int index = index(position);
+            int count = Math.min(length - offset, segment.limit() - index);
+            segment.get(index, values, offset, count);
+            offset += count;
+            position += count;
+        }
+        return values;
+    }
+
+    /**
+     * Reads a byte at the given offset without moving the position.
+     *
+     * @param offset the offset of the byte
+     * @return the byte
+     * @throws IOException if the offset is past the end of the file
+     */
+    public byte getByte(long offset) throws IOException {
+        checkAvailable(offset, 1);
+        return segments[segment(offset)].get(index(offset));
+    }
+
+    /**
+     * Reads an int at the given offset without moving the position.
+     *
+     * @param offset the offset of the value
+     * @return the value
+     * @throws IOException if the value ends past the end of the file
+     */
+    public int getInt(long offset) throws IOException {
+        checkAvailable(offset, Integer.BYTES);
+        return segments[segment(offset)].getInt(index(offset));
+    }
+
+    /**
+     * Reads a long at the given offset without moving the position.
+     *
+     * @param offset the offset of the value
+     * @return the value
+     * @throws IOException if the value ends past the end of the file
+     */
+    public long getLong(long offset) throws IOException {
+        checkAvailable(offset, Long.BYTES);
+        return segments[segment(offset)].getLong(index(offset));
+    }
+
+    /**
+     * Reads a double at the given offset without moving the position.
+     *
+     * @param offset the offset of the value
+     * @return the value
+     * @throws IOException if the value ends past the end of the file
+     */
+    public double getDouble(long offset) throws IOException {
+        checkAvailable(offset, Double.BYTES);
+        return segments[segment(offset)].getDouble(index(offset));
+    }
+
+    /**
+     * Returns the offset of the next byte to read.
+     *
+     * @return the current position
+     */
+    public long position() {
+        return position;
+    }
+
+    /**
+     * Moves to the given offset, so that the file can be read out of order.
+     *
+     * @param position the offset of the next byte to read
+     */
+    public void seek(long position) {
+        this.position = position;
+    }
+
+    private static int segment(long offset) {
+        return (int) (offset >>> SEGMENT_SHIFT);
+    }
+
+    private static int index(long offset) {
+        return (int) (offset & (SEGMENT_SIZE - 1));
+    }
+
+    private void checkAvailable(long offset, long bytes) throws EOFException {
+        if (offset < 0 || offset + bytes > size) {
+            throw new EOFException("Unexpected end of file at " + offset);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package ru.bivchallenge.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The {@code TabSeparatedBytes} class locates and decodes the fields of an unquoted tab-separated row in a buffer
+ * of UTF-8 bytes, such as a memory-mapped table, without decoding the rest of the row.
+ *
+ * <p>A field ends at a tab, a CR, an LF or the end of the buffer. Quoted fields are not handled here.</p>
+ */
+public final class TabSeparatedBytes {
+    private static final byte SEPARATOR = '\t';
+
+    private TabSeparatedBytes() {
+    }
+
+    /**
+     * Returns the offset of a field of the row starting at the given offset.
+     *
+     * @param buffer   the bytes
+     * @param rowStart the offset of the first byte of the row
+     * @param column   the index of the field in the row
+     * @return the offset of the first byte of the field, or {@code -1} if the row has fewer fields
+     */
+    public static int fieldStart(ByteBuffer buffer, int rowStart, int column) {
+        int position = rowStart;
+        for (int field = 0; field < column; field++) {
+            position = fieldEnd(buffer, position);
+            if (position == buffer.limit() || buffer.get(position) != SEPARATOR) {
+                return -1;
+            }
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Returns the offset after the last byte of the field starting at the given offset.
+     *
+     * @param buffer the bytes
+     * @param start  the offset of the first byte of the field
+     * @return the offset of the tab, CR or LF ending the field, or the limit of the buffer
+     */
+    public static int fieldEnd(ByteBuffer buffer, int start) {
+        int limit = buffer.limit();
+        int position = start;
+        while (position < limit) {
+            byte b = buffer.get(position);
+            if (b == SEPARATOR || b == '\n' || b == '\r') {
+                break;
+            }
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Decodes the UTF-8 bytes in the given range.
+     *
+     * @param buffer the bytes
+     * @param start  the offset of the first byte
+     * @param end    the offset after the last byte
+     * @return the decoded text
+     */
+    public static String decode(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
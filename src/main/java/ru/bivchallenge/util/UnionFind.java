@@ -0,0 +1,95 @@
+package ru.bivchallenge.util;
+
+import java.util.Arrays;
+
+/**
+ * The {@code UnionFind} class is a disjoint-set forest over dense {@code int} elements, kept in primitive arrays.
+ *
+ * <p>Elements are numbered in the order they are added. Sets are merged by size and paths are halved on every
+ * {@link #find}, so a sequence of operations costs amortized almost constant time per operation. It is used to
+ * find the weakly connected components of a relation too large for an object per element.</p>
+ */
+public final class UnionFind {
+    private int[] parents;
+    private int[] sizes;
+    private int size;
+
+    /**
+     * Constructs an empty forest sized for the given number of elements.
+     *
+     * @param expectedSize the number of elements expected to be added
+     */
+    public UnionFind(int expectedSize) {
+        parents = new int[Math.max(16, expectedSize)];
+        sizes = new int[parents.length];
+    }
+
+    /**
+     * Constructs an empty forest with a small default capacity.
+     */
+    public UnionFind() {
+        this(16);
+    }
+
+    /**
+     * Adds an element in a set of its own.
+     *
+     * @return the new element
+     */
+    public int add() {
+        if (size == parents.length) {
+            parents = Arrays.copyOf(parents, size << 1);
+            sizes = Arrays.copyOf(sizes, size << 1);
+        }
+        parents[size] = size;
+        sizes[size] = 1;
+        return size++;
+    }
+
+    /**
+     * Returns the representative of the set of an element, which is the same for all elements of the set until
+     * the set is merged with another one.
+     *
+     * @param element the element
+     * @return the representative element of its set
+     */
+    public int find(int element) {
+        while (parents[element] != element) {
+            parents[element] = parents[parents[element]];
+            element = parents[element];
+        }
+        return element;
+    }
+
+    /**
+     * Merges the sets of two elements.
+     *
+     * @param first  an element
+     * @param second another element
+     * @return the representative of the merged set
+     */
+    public int union(int first, int second) {
+        int firstRoot = find(first);
+        int secondRoot = find(second);
+        if (firstRoot == secondRoot) {
+            return firstRoot;
+        }
+        if (sizes[firstRoot] < sizes[secondRoot]) {
+            int root = firstRoot;
+            firstRoot = secondRoot;
+            secondRoot = root;
+        }
+        parents[secondRoot] = firstRoot;
+        sizes[firstRoot] += sizes[secondRoot];
+        return firstRoot;
+    }
+
+    /**
+     * Returns the number of elements.
+     *
+     * @return the element count
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,115 @@
+package ru.bivchallenge.data
+
+import ru.bivchallenge.dto.Company
+import ru.bivchallenge.dto.LegalEntity
+import ru.bivchallenge.graph.PropagationOwnershipEngine
+import ru.bivchallenge.processor.FounderShareRepairProcessor
+import spock.lang.Specification
+
+import static ru.bivchallenge.data.FounderFixtures.*
+
+class CompanyDependencyIndexSpec extends Specification {
+
+    def "should find the companies downstream of changed founder rows"() {
+        given:
+        /*
+            L:3 owns head 1 and L:4, L:4 owns head 2, L:5 owns head 6.
+         */
+        def legalTable = legalTable(legalRows([[3L, 1L], [3L, 4L], [4L, 2L], [5L, 6L]]))
+        def index = CompanyDependencyIndex.of(legalTable, naturalTable(naturalRows([[101L, 3L]])))
+
+        expect:
+        index.downstreamCompanies([3L] as long[], legalTable) == [3L, 1L, 4L, 2L] as Set
+        index.downstreamCompanies([4L, 6L] as long[], legalTable) == [4L, 2L, 6L] as Set
+        index.downstreamCompanies([42L] as long[], legalTable) == [42L] as Set
+    }
+
+    def "should collect the founder rows upstream of companies"() {
+        given:
+        def legalTable = legalTable(legalRows([[3L, 1L], [3L, 4L], [4L, 2L], [5L, 6L], [2L, 4L]]))
+        def index = CompanyDependencyIndex.of(legalTable, naturalTable(naturalRows([[101L, 3L], [102L, 6L], [103L, 2L]])))
+
+        when:
+        def upstream = index.upstreamRows([2L] as long[], legalTable)
+
+        then:
+        upstream.legalRows() == [1, 2, 4] as int[]
+        upstream.naturalRows() == [0, 2] as int[]
+
+        and:
+        index.upstreamRows([42L] as long[], legalTable).legalRows().length == 0
+    }
+
+    def "should update the index through a delta like an index of the updated tables"() {
+        given:
+        def random = new Random(11)
+        def legalPairs = (1..300).collect { [20L + random.nextInt(80), 1L + random.nextInt(100)] }
+        def naturalPairs = (1..300).collect { [1000L + it, 1L + random.nextInt(100)] }
+        def legalTable = legalTable(legalRows(legalPairs))
+        def naturalTable = naturalTable(naturalRows(naturalPairs))
+        def index = CompanyDependencyIndex.of(legalTable, naturalTable)
+
+        and:
+        def legalDelta = delta(legalPairs, { FounderFixtures.legalTable(legalRows(it)) }, random, 120L)
+        def naturalDelta = delta(naturalPairs, { FounderFixtures.naturalTable(naturalRows(it)) }, random, 2000L)
+
+        when:
+        def updated = index.update(legalDelta, naturalDelta)
+        def rebuilt = CompanyDependencyIndex.of(legalDelta.table(), naturalDelta.table())
+
+        then:
+        (1L..130L).findAll { !sameDependencies(updated, rebuilt, it, legalDelta.table()) }.isEmpty()
+    }
+
+    def "should build a graph of the upstream rows with the beneficiaries of the whole graph"() {
+        given:
+        def random = new Random(5)
+        def legalTable = legalTable(legalRows((1..200).collect { [20L + random.nextInt(80), 1L + random.nextInt(100)] }, random))
+        def naturalTable = naturalTable(naturalRows((1..300).collect { [1000L + it, 1L + random.nextInt(100)] }, random))
+        def index = CompanyDependencyIndex.of(legalTable, naturalTable)
+        def heads = [1L, 7L, 25L, 60L] as long[]
+
+        when:
+        def tables = new FounderShareRepairProcessor().apply(legalTable, naturalTable)
+        def whole = new SharedGraphManager(tables.legalEntityTable(), tables.naturalEntityTable())
+        def upstream = new SharedGraphManager(tables.legalEntityTable(), tables.naturalEntityTable(), index.upstreamRows(heads, legalTable))
+
+        then:
+        upstream.getGraph().edgeCount() < whole.getGraph().edgeCount()
+        heads.every { shares(upstream, it) == shares(whole, it) }
+    }
+
+    private static boolean sameDependencies(CompanyDependencyIndex first, CompanyDependencyIndex second, long companyId,
+                                            FounderTable<LegalEntity> legalTable) {
+        def firstUpstream = first.upstreamRows([companyId] as long[], legalTable)
+        def secondUpstream = second.upstreamRows([companyId] as long[], legalTable)
+        return first.downstreamCompanies([companyId] as long[], legalTable) == second.downstreamCompanies([companyId] as long[], legalTable) &&
+                firstUpstream.legalRows() == secondUpstream.legalRows() &&
+                firstUpstream.naturalRows() == secondUpstream.naturalRows()
+    }
+
+    private static Map<Long, Double> shares(SharedGraphManager manager, long companyId) {
+        def company = new Company(companyId, "$companyId", "$companyId", "Company $companyId")
+        return manager.getBeneficiaries(company, new PropagationOwnershipEngine(), 0.01).getBeneficiaries()
+                .collectEntries { [it.naturalEntity().id(), it.percent()] }
+    }
+
+    /**
+     * Removes a third of the rows, keeping the others in order, and appends as many rows with new ids.
+     */
+    private static FounderTableDelta delta(List<List<Long>> rows, Closure<FounderTable> table, Random random, long firstId) {
+        def rowMapping = new int[rows.size()]
+        def updatedRows = []
+        rows.eachWithIndex { row, i ->
+            if (random.nextInt(3) == 0) {
+                rowMapping[i] = -1
+            } else {
+                rowMapping[i] = updatedRows.size()
+                updatedRows << row
+            }
+        }
+        def firstAddedRow = updatedRows.size()
+        (0..<rows.size() - firstAddedRow).each { updatedRows << [firstId + it, 1L + random.nextInt(130)] }
+        return new FounderTableDelta(table(updatedRows), [] as long[], rowMapping, firstAddedRow)
+    }
+}
@@ -4,8 +4,16 @@ import ru.bivchallenge.dto.Benefeciar
 import ru.bivchallenge.dto.Company
 import ru.bivchallenge.dto.LegalEntity
 import ru.bivchallenge.dto.NaturalEntity
+import ru.bivchallenge.graph.OwnershipGraph
+import ru.bivchallenge.graph.PathEnumerationOwnershipEngine
+import ru.bivchallenge.graph.PropagationOwnershipEngine
+import ru.bivchallenge.graph.VertexType
 import spock.lang.Specification
 
+import static ru.bivchallenge.graph.VertexType.HEAD
+import static ru.bivchallenge.graph.VertexType.LEGAL
+import static ru.bivchallenge.graph.VertexType.NATURAL
+
 class CompanyGraphManagerSpec extends Specification {
 
     Company headCompany = new Company(1L, "321", "123", "Head Company")
@@ -18,7 +26,7 @@ class CompanyGraphManagerSpec extends Specification {
         def manager = new CompanyGraphManager(headCompany, legalEntityRegistry)
 
         then:
-        manager.getGraph().vertexSet().contains("H:1")
+        manager.getGraph().containsVertex(HEAD, 1L)
     }
 
     def "Adding a natural entity should add a vertex and connect to its company"() {
@@ -31,8 +39,8 @@ class CompanyGraphManagerSpec extends Specification {
         manager.addEntity(naturalEntity)
 
         then:
-        manager.getGraph().vertexSet().contains("N:101")
-        manager.getGraph().containsEdge("N:101", "H:1")
+        manager.getGraph().containsVertex(NATURAL, 101L)
+        containsEdge(manager.getGraph(), NATURAL, 101L, HEAD, 1L)
     }
 
     def "Adding a legal entity should add a vertex and connect to its parent"() {
@@ -45,8 +53,8 @@ class CompanyGraphManagerSpec extends Specification {
         manager.addEntity(legalEntity)
 
         then:
-        manager.getGraph().vertexSet().contains("L:201")
-        manager.getGraph().containsEdge("L:201", "H:1")
+        manager.getGraph().containsVertex(LEGAL, 201L)
+        containsEdge(manager.getGraph(), LEGAL, 201L, HEAD, 1L)
     }
 
     def "Adding multiple entities should create the correct graph structure"() {
@@ -69,9 +77,11 @@ class CompanyGraphManagerSpec extends Specification {
         manager.addEntity(childEntity)
 
         then:
-        manager.getGraph().vertexSet().containsAll(["L:201", "L:202", "H:1"])
-        manager.getGraph().containsEdge("L:202", "L:201")
-        manager.getGraph().containsEdge("L:201", "H:1")
+        manager.getGraph().containsVertex(LEGAL, 201L)
+        manager.getGraph().containsVertex(LEGAL, 202L)
+        manager.getGraph().containsVertex(HEAD, 1L)
+        containsEdge(manager.getGraph(), LEGAL, 202L, LEGAL, 201L)
+        containsEdge(manager.getGraph(), LEGAL, 201L, HEAD, 1L)
     }
 
     def "getBeneficiaries should return natural entities with ownership > 25%"() {
@@ -307,4 +317,81 @@ N:102  N:103         L:203  N:102
         beneficiaries.toArray()[0].percent == 0.45
     }
 
+    def "getBeneficiaries should compare and report the unrounded share"() {
+        given:
+        def l1 = new LegalEntity(2L, 1L, "L1", "111", "Legal Entity 1")
+        def l2 = new LegalEntity(3L, 1L, "L2", "112", "Legal Entity 2")
+        def f1_via_l1 = new NaturalEntity(1L, 2L, "F1", "121", "F1", "")
+        def f1_via_l2 = new NaturalEntity(1L, 3L, "F1", "121", "F1", "")
+        l1.sharePercent = 0.1
+        l2.sharePercent = 0.2
+        f1_via_l1.sharePercent = 1.0
+        f1_via_l2.sharePercent = 1.0
+
+        when:
+        def manager = new CompanyGraphManager(headCompany, [2L: l1, 3L: l2])
+        [l1, l2].each { manager.addEntity(it) }
+        [f1_via_l1, f1_via_l2].each { manager.addEntity(it) }
+
+        and:
+        def beneficiaries = manager.getBeneficiaries(new PropagationOwnershipEngine(), 0.3d).getBeneficiaries()
+
+        then:
+        beneficiaries.size() == 1
+        beneficiaries.toArray()[0].percent == 0.1d + 0.2d
+        beneficiaries.toArray()[0].percent != 0.3d
+    }
+
+    def "getBeneficiaries should report the same registry as path enumeration on acyclic graphs"() {
+        given:
+        def managers = (1..5).collect { seed -> randomAcyclicManager(seed) }
+
+        when:
+        def propagated = managers.collect { shares(it.getBeneficiaries(new PropagationOwnershipEngine(), 0.01d)) }
+        def enumerated = managers.collect { shares(it.getBeneficiaries(new PathEnumerationOwnershipEngine(), 0.01d)) }
+
+        then:
+        propagated.every { !it.isEmpty() }
+        propagated == enumerated
+    }
+
+    def "Adding entities after the graph is frozen should fail"() {
+        given:
+        def manager = new CompanyGraphManager(headCompany, [:] as Map<Long, LegalEntity>)
+        manager.getGraph()
+
+        when:
+        manager.addEntity(new NaturalEntity(101L, 1L, "124", "Doe", "John", ""))
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    private CompanyGraphManager randomAcyclicManager(long seed) {
+        def random = new Random(seed)
+        def manager = new CompanyGraphManager(headCompany, [:] as Map<Long, LegalEntity>)
+        (2L..40L).each { id ->
+            (1..2).each {
+                def legalEntity = new LegalEntity(id, 1L + random.nextInt((int) id - 1), "L$id", "$id", "Legal Entity $id")
+                legalEntity.sharePercent = random.nextInt(100) / 100d
+                manager.addEntity(legalEntity)
+            }
+        }
+        (1L..30L).each { id ->
+            (1..3).each {
+                def naturalEntity = new NaturalEntity(id, 1L + random.nextInt(40), "F$id", "$id", "F$id", "")
+                naturalEntity.sharePercent = random.nextInt(100) / 100d
+                manager.addEntity(naturalEntity)
+            }
+        }
+        return manager
+    }
+
+    private static Map<Long, Double> shares(BenefeciarRegistry registry) {
+        return registry.getBeneficiaries().collectEntries { [it.naturalEntity.id(), it.percent] }
+    }
+
+    private static boolean containsEdge(OwnershipGraph graph, VertexType sourceType, long sourceId, VertexType targetType, long targetId) {
+        return graph.containsEdge(graph.vertex(sourceType, sourceId), graph.vertex(targetType, targetId))
+    }
 }
@@ -0,0 +1,52 @@
+package ru.bivchallenge.data
+
+import spock.lang.Specification
+
+class ComponentFingerprintsSpec extends Specification {
+
+    def "should fingerprint every component by its rows whatever their order"() {
+        given:
+        def companies = table([1L, 0L], [2L, 0L], [3L, 0L])
+        def legalEntities = table([10L, 1L, 0.5d])
+        def naturalEntities = table([100L, 10L, 1.0d], [101L, 1L, 0.5d], [102L, 2L, 1.0d])
+        def reversed = table([102L, 2L, 1.0d], [101L, 1L, 0.5d], [100L, 10L, 1.0d])
+
+        when:
+        def original = fingerprints(companies, legalEntities, naturalEntities)
+        def reordered = fingerprints(companies, legalEntities, reversed)
+
+        then:
+        original.component(1L) == original.component(10L)
+        original.component(1L) != original.component(2L)
+        original.component(3L) == -1
+        original.key(original.component(1L)) == reordered.key(reordered.component(1L))
+        original.key(original.component(2L)) == reordered.key(reordered.component(2L))
+        original.key(original.component(1L)) != original.key(original.component(2L))
+    }
+
+    def "should change the fingerprint of a component only when one of its rows changes"() {
+        given:
+        def companies = table([1L, 0L], [2L, 0L])
+        def legalEntities = table([10L, 1L, 0.5d])
+        def before = fingerprints(companies, legalEntities, table([100L, 10L, 1.0d], [102L, 2L, 1.0d]))
+
+        when:
+        def after = fingerprints(companies, legalEntities, table([100L, 10L, 0.9d], [102L, 2L, 1.0d]))
+
+        then:
+        before.key(before.component(1L)) != after.key(after.component(1L))
+        before.key(before.component(2L)) == after.key(after.component(2L))
+    }
+
+    private static ComponentFingerprints fingerprints(FounderTable companies, FounderTable legalEntities,
+                                                      FounderTable naturalEntities) {
+        def graph = new SharedGraphManager(legalEntities, naturalEntities).graph
+        new ComponentFingerprints(graph, companies, legalEntities, naturalEntities)
+    }
+
+    private static FounderTable table(List... rows) {
+        def builder = FounderTable.builder(1)
+        rows.each { builder.add(it[0], it[1], 0.0d, it.size() > 2 ? it[2] : 0.0d, "name" + it[0]) }
+        return builder.build { table, row -> null }
+    }
+}
@@ -0,0 +1,76 @@
+package ru.bivchallenge.data
+
+import ru.bivchallenge.dto.LegalEntity
+import ru.bivchallenge.dto.NaturalEntity
+
+/**
+ * Founder rows and the columnar tables of them shared by the specs of the graphs and the processors.
+ */
+class FounderFixtures {
+
+    static LegalEntity legal(long id, long companyId, double sharePercent) {
+        return legal(id, companyId, 0.0d, sharePercent)
+    }
+
+    static LegalEntity legal(long id, long companyId, double share, double sharePercent) {
+        def legalEntity = new LegalEntity(id, companyId, "ogrn" + id, "inn" + id, "Legal Entity " + id)
+        legalEntity.share = share
+        legalEntity.sharePercent = sharePercent
+        return legalEntity
+    }
+
+    static NaturalEntity natural(long id, long companyId, double sharePercent) {
+        return natural(id, companyId, 0.0d, sharePercent)
+    }
+
+    static NaturalEntity natural(long id, long companyId, double share, double sharePercent) {
+        def naturalEntity = new NaturalEntity(id, companyId, "inn" + id, "Last", "First", "")
+        naturalEntity.share = share
+        naturalEntity.sharePercent = sharePercent
+        return naturalEntity
+    }
+
+    /**
+     * Legal founders of the given {@code [id, company id]} pairs with random share percents.
+     */
+    static List<LegalEntity> legalRows(List<List<Long>> rows, Random random = new Random(0)) {
+        return rows.collect { legal(it[0], it[1], random.nextInt(100) / 100d) }
+    }
+
+    /**
+     * Natural founders of the given {@code [id, company id]} pairs with random share percents.
+     */
+    static List<NaturalEntity> naturalRows(List<List<Long>> rows, Random random = new Random(0)) {
+        return rows.collect { natural(it[0], it[1], random.nextInt(100) / 100d) }
+    }
+
+    static FounderTable<LegalEntity> legalTable(LegalEntity... legalEntities) {
+        return legalTable(legalEntities.toList())
+    }
+
+    static FounderTable<LegalEntity> legalTable(List<LegalEntity> legalEntities) {
+        def builder = FounderTable.builder(3)
+        legalEntities.each { builder.add(it.id(), it.companyId, it.share, it.sharePercent, it.ogrn, it.inn, it.fullName) }
+        return builder.build { table, row ->
+            def legalEntity = new LegalEntity(table.id(row), table.companyId(row), table.text(row, 0), table.text(row, 1), table.text(row, 2))
+            legalEntity.share = table.share(row)
+            legalEntity.sharePercent = table.sharePercent(row)
+            legalEntity
+        }
+    }
+
+    static FounderTable<NaturalEntity> naturalTable(NaturalEntity... naturalEntities) {
+        return naturalTable(naturalEntities.toList())
+    }
+
+    static FounderTable<NaturalEntity> naturalTable(List<NaturalEntity> naturalEntities) {
+        def builder = FounderTable.builder(4)
+        naturalEntities.each { builder.add(it.id(), it.companyId, it.share, it.sharePercent, it.inn, it.lastName, it.firstName, it.secondName) }
+        return builder.build { table, row ->
+            def naturalEntity = new NaturalEntity(table.id(row), table.companyId(row), table.text(row, 0), table.text(row, 1), table.text(row, 2), table.text(row, 3))
+            naturalEntity.share = table.share(row)
+            naturalEntity.sharePercent = table.sharePercent(row)
+            naturalEntity
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package ru.bivchallenge.data
+
+import ru.bivchallenge.dto.LegalEntity
+import ru.bivchallenge.util.ChannelDataOutput
+import ru.bivchallenge.util.MappedDataInput
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.charset.StandardCharsets
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+
+class FounderTableSpec extends Specification {
+
+    @TempDir
+    Path tempDir
+
+    def "should keep numeric columns and decode text fields"() {
+        given:
+        def table = FounderTable.builder(3)
+                .add(2L, 1L, 30.0, 0.3, "1027700132195", "7707083893", "ПАО \"СБЕРБАНК\"")
+                .add(3L, 1L, 70.0, 0.7, "", "7710140679", "АО \"ТИНЬКОФФ БАНК\"")
+                .build(FounderTableSpec.&legalEntity)
+
+        expect:
+        table.size() == 2
+        table.id(1) == 3L
+        table.companyId(1) == 1L
+        table.share(0) == 30.0d
+        table.sharePercent(1) == 0.7d
+        table.text(0, 2) == "ПАО \"СБЕРБАНК\""
+        table.text(1, 0) == ""
+        table.text(1, 2) == "АО \"ТИНЬКОФФ БАНК\""
+    }
+
+    def "should keep row order and text when chunk builders are appended"() {
+        given:
+        def chunks = (0..<5).collect { chunk ->
+            def builder = FounderTable.builder(2)
+            (0..<chunk).each { i -> builder.add(chunk * 10 + i, chunk, i, 0.0, "name-$chunk-$i".toString(), "x" * i) }
+            builder
+        }
+
+        when:
+        def merged = FounderTable.builder(2)
+        chunks.each { merged.append(it) }
+        merged.add(99L, 9L, 0.0, 0.0, "last", "")
+        def table = merged.build(FounderTableSpec.&legalEntity)
+
+        then:
+        table.size() == 11
+        (0..<table.size()).collect { table.text(it, 0) } == [1, 2, 3, 4].collectMany { chunk -> (0..<chunk).collect { "name-$chunk-$it".toString() } } + ["last"]
+        (0..<table.size() - 1).every { table.text(it, 1) == "x" * table.share(it) }
+        table.text(10, 1) == ""
+    }
+
+    def "should find rows by id and create entities on demand"() {
+        given:
+        def table = FounderTable.builder(3)
+                .add(5L, 1L, 10.0, 0.1, "ogrn", "inn", "First")
+                .add(5L, 2L, 20.0, 0.2, "ogrn", "inn", "Duplicate")
+                .add(6L, 1L, 30.0, 0.3, "ogrn", "inn", "Second")
+                .build(FounderTableSpec.&legalEntity)
+
+        when:
+        def entity = table.entity(table.row(6L))
+
+        then:
+        table.row(5L) == 0
+        table.row(7L) == -1
+        entity.id() == 6L
+        entity.fullName == "Second"
+        entity.sharePercent == 0.3d
+    }
+
+    def "should decode the text of source rows from the source"() {
+        given:
+        def source = ByteBuffer.wrap("1\t10\togrn-1\tinn-1\tПервое\t5\r\n2\t10\togrn-2\t\tВторое\n".getBytes(StandardCharsets.UTF_8))
+        def chunk = FounderTable.builder(3, source, [2, 3, 4] as int[])
+                .addSourceRow(1L, 10L, 5.0, 0.0, 0)
+                .add(7L, 10L, 0.0, 0.0, "ogrn-7", "inn-7", "Copied")
+                .addSourceRow(2L, 10L, 0.0, 0.0, 34)
+        def merged = FounderTable.builder(3).add(0L, 10L, 0.0, 0.0, "ogrn-0", "inn-0", "Before").append(chunk)
+
+        when:
+        def table = merged.build(FounderTableSpec.&legalEntity)
+
+        then:
+        table.size() == 4
+        (0..<4).collect { table.text(it, 2) } == ["Before", "Первое", "Copied", "Второе"]
+        table.text(1, 1) == "inn-1"
+        table.text(3, 1) == ""
+        table.entity(3).ogrn == "ogrn-2"
+    }
+
+    def "should copy the text of a source row appended to"() {
+        given:
+        def source = ByteBuffer.wrap("1\togrn-1\tinn-1\tПервое\n".getBytes(StandardCharsets.UTF_8))
+
+        when:
+        def table = FounderTable.builder(3, source, [1, 2, 3] as int[])
+                .addSourceRow(1L, 0L, 0.0, 0.0, 0)
+                .appendToText(2, " и продолжение")
+                .build(FounderTableSpec.&legalEntity)
+
+        then:
+        table.size() == 1
+        table.text(0, 0) == "ogrn-1"
+        table.text(0, 2) == "Первое и продолжение"
+    }
+
+    def "should write the text of source rows into the binary form"() {
+        given:
+        def source = ByteBuffer.wrap("1\t10\togrn-1\tinn-1\tПервое\n".getBytes(StandardCharsets.UTF_8))
+        def table = FounderTable.builder(3, source, [2, 3, 4] as int[])
+                .addSourceRow(1L, 10L, 5.0, 0.5, 0)
+                .build(FounderTableSpec.&legalEntity)
+        def file = tempDir.resolve("table.bin")
+
+        when:
+        FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE).withCloseable { channel ->
+            def output = new ChannelDataOutput(channel)
+            table.writeTo(output)
+            output.flush()
+        }
+        def restored = FileChannel.open(file, StandardOpenOption.READ).withCloseable { channel ->
+            FounderTable.readFrom(new MappedDataInput(channel), FounderTableSpec.&legalEntity)
+        }
+
+        then:
+        restored.size() == 1
+        restored.sharePercent(0) == 0.5d
+        (0..<3).collect { restored.text(0, it) } == ["ogrn-1", "inn-1", "Первое"]
+    }
+
+    def "should write source rows by their file offsets and map them again when read"() {
+        given:
+        def content = "header\n1\t10\togrn-1\tinn-1\tПервое\n2\t10\togrn-2\tinn-2\tВторое\n"
+        def tablePath = tempDir.resolve("table.tsv")
+        tablePath.toFile().setText(content, "UTF-8")
+        def secondRow = "header\n1\t10\togrn-1\tinn-1\tПервое\n".getBytes(StandardCharsets.UTF_8).length
+        def channel = FileChannel.open(tablePath, StandardOpenOption.READ)
+        def first = FounderTable.builder(3, channel.map(FileChannel.MapMode.READ_ONLY, 7, secondRow - 7), 7L, [2, 3, 4] as int[])
+                .addSourceRow(1L, 10L, 5.0, 0.5, 0)
+                .add(7L, 10L, 0.0, 0.0, "ogrn-7", "inn-7", "Copied")
+        def second = FounderTable.builder(3, channel.map(FileChannel.MapMode.READ_ONLY, secondRow, channel.size() - secondRow), secondRow, [2, 3, 4] as int[])
+                .addSourceRow(2L, 10L, 0.0, 0.0, 0)
+        def table = first.append(second).build(FounderTableSpec.&legalEntity)
+        def inflated = FounderTable.builder(3, ByteBuffer.wrap("1\t10\togrn-1\tinn-1\tПервое\n".getBytes(StandardCharsets.UTF_8)), [2, 3, 4] as int[])
+                .addSourceRow(1L, 10L, 5.0, 0.5, 0)
+                .build(FounderTableSpec.&legalEntity)
+
+        when:
+        def restored = writeAndReadReferences(table, channel)
+        def restoredInflated = writeAndReadReferences(inflated, channel)
+        def mapped = []
+        writeAndReadReferences(inflated, { offset, length -> mapped << offset; null } as FounderTable.SourceMapper)
+
+        then:
+        (0..<3).collect { restored.text(it, 2) } == ["Первое", "Copied", "Второе"]
+        restored.text(2, 0) == "ogrn-2"
+        restored.sharePercent(0) == 0.5d
+        restoredInflated.text(0, 2) == "Первое"
+        mapped.isEmpty()
+
+        cleanup:
+        channel?.close()
+    }
+
+    def "should reject rows with a wrong number of text fields"() {
+        when:
+        FounderTable.builder(3).add(1L, 1L, 0.0, 0.0, "only one")
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    private FounderTable<LegalEntity> writeAndReadReferences(FounderTable<LegalEntity> table, FileChannel source) {
+        return writeAndReadReferences(table, { offset, length -> source.map(FileChannel.MapMode.READ_ONLY, offset, length) } as FounderTable.SourceMapper)
+    }
+
+    private FounderTable<LegalEntity> writeAndReadReferences(FounderTable<LegalEntity> table, FounderTable.SourceMapper sourceMapper) {
+        def file = tempDir.resolve("references.bin")
+        FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE).withCloseable { channel ->
+            def output = new ChannelDataOutput(channel)
+            table.writeReferencesTo(output)
+            output.flush()
+        }
+        return FileChannel.open(file, StandardOpenOption.READ).withCloseable { channel ->
+            FounderTable.readFrom(new MappedDataInput(channel), FounderTableSpec.&legalEntity, sourceMapper)
+        }
+    }
+
+    private static LegalEntity legalEntity(FounderTable<LegalEntity> table, int row) {
+        def legalEntity = new LegalEntity(table.id(row), table.companyId(row), table.text(row, 0), table.text(row, 1), table.text(row, 2))
+        legalEntity.share = table.share(row)
+        legalEntity.sharePercent = table.sharePercent(row)
+        return legalEntity
+    }
+}
@@ -0,0 +1,155 @@
+package ru.bivchallenge.data
+
+import ru.bivchallenge.dto.Company
+import ru.bivchallenge.graph.PropagationOwnershipEngine
+import ru.bivchallenge.processor.FounderShareRepairProcessor
+import spock.lang.Specification
+
+import static ru.bivchallenge.data.FounderFixtures.*
+import static ru.bivchallenge.graph.VertexType.LEGAL
+import static ru.bivchallenge.graph.VertexType.NATURAL
+
+class SharedGraphManagerSpec extends Specification {
+
+    def "should keep a single vertex for a company reached from several heads"() {
+        given:
+        def holding = legal(3L, 1L, 0.5)
+        holding.share = 50
+        def manager = new SharedGraphManager(
+                legalTable(holding, legal(4L, 2L, 0.5)),
+                naturalTable(natural(101L, 3L, 1.0))
+        )
+
+        expect:
+        def graph = manager.getGraph()
+        graph.vertexCount() == 5
+        graph.edgeCount() == 3
+        graph.containsEdge(graph.vertex(LEGAL, 3L), graph.vertex(LEGAL, 1L))
+        graph.containsEdge(graph.vertex(NATURAL, 101L), graph.vertex(LEGAL, 3L))
+        graph.weight(graph.edge(graph.vertex(LEGAL, 3L), graph.vertex(LEGAL, 1L))) == 0.5d
+    }
+
+    def "should compute beneficiaries through chains of legal founders"() {
+        given:
+        /*
+            N:101 owns 60% of L:3, L:3 owns 50% of head 1, N:102 owns 50% of head 1.
+         */
+        def manager = new SharedGraphManager(
+                legalTable(legal(3L, 1L, 0.5)),
+                naturalTable(natural(101L, 3L, 0.6), natural(102L, 1L, 0.5))
+        )
+        def engine = new PropagationOwnershipEngine()
+
+        when:
+        def beneficiaries = manager.getBeneficiaries(new Company(1L, "1", "1", "Head"), engine).getBeneficiaries()
+
+        then:
+        beneficiaries.collectEntries { [(it.naturalEntity().id()): it.percent()] } == [101L: 0.3d, 102L: 0.5d]
+        beneficiaries.find { it.naturalEntity().id() == 101L }.naturalEntity().inn == "inn101"
+    }
+
+    def "should return an empty registry for a company without founders"() {
+        given:
+        def manager = new SharedGraphManager(legalTable(legal(3L, 1L, 1.0)), naturalTable())
+        def company = new Company(7L, "7", "7", "Lonely")
+
+        when:
+        def registry = manager.getBeneficiaries(company, new PropagationOwnershipEngine())
+
+        then:
+        registry.getCompany() == company
+        registry.getBeneficiaries().isEmpty()
+    }
+
+    def "should take the weights from the repaired tables"() {
+        given:
+        def l2 = legal(2L, 1L, 0.0)
+        l2.share = 30
+        def l3 = legal(3L, 1L, 0.0)
+        l3.share = 70
+
+        when:
+        def tables = new FounderShareRepairProcessor().apply(legalTable(l2, l3), naturalTable(natural(101L, 2L, 0.0)))
+        def manager = new SharedGraphManager(tables.legalEntityTable(), tables.naturalEntityTable())
+
+        then:
+        def graph = manager.getGraph()
+        graph.weight(graph.edge(graph.vertex(LEGAL, 2L), graph.vertex(LEGAL, 1L))) == 0.3
+        graph.weight(graph.edge(graph.vertex(LEGAL, 3L), graph.vertex(LEGAL, 1L))) == 0.7
+        graph.weight(graph.edge(graph.vertex(NATURAL, 101L), graph.vertex(LEGAL, 2L))) == 1.0
+    }
+
+    def "should repair the edges of a legal founder from the share of each of its rows"() {
+        given:
+        /*
+            L:3 holds 30 of company 1 and 10 of company 2, N:101 holds 70 of company 1 and N:102 90 of company 2;
+            no row has a percent.
+         */
+        def legalEntityTable = legalTable(legal(3L, 1L, 30, 0.0), legal(3L, 2L, 10, 0.0))
+        def naturalEntityTable = naturalTable(natural(101L, 1L, 70, 0.0), natural(102L, 2L, 90, 0.0))
+
+        when:
+        def tables = new FounderShareRepairProcessor().apply(legalEntityTable, naturalEntityTable)
+        def manager = new SharedGraphManager(tables.legalEntityTable(), tables.naturalEntityTable())
+
+        then:
+        def graph = manager.getGraph()
+        graph.weight(graph.edge(graph.vertex(LEGAL, 3L), graph.vertex(LEGAL, 1L))) == 0.3d
+        graph.weight(graph.edge(graph.vertex(LEGAL, 3L), graph.vertex(LEGAL, 2L))) == 0.1d
+        graph.weight(graph.edge(graph.vertex(NATURAL, 101L), graph.vertex(LEGAL, 1L))) == 0.7d
+        graph.weight(graph.edge(graph.vertex(NATURAL, 102L), graph.vertex(LEGAL, 2L))) == 0.9d
+    }
+
+    def "should build the same graph from blocks as from whole tables"() {
+        given:
+        def legalEntities = [legal(3L, 1L, 0.5), legal(4L, 3L, 0.4), legal(5L, 2L, 1.0), legal(4L, 5L, 0.3)]
+        def naturalEntities = [natural(101L, 4L, 1.0), natural(102L, 3L, 0.0), natural(101L, 5L, 0.7)]
+        def tables = new FounderShareRepairProcessor().apply(legalTable(*legalEntities), naturalTable(*naturalEntities))
+        def whole = new SharedGraphManager(tables.legalEntityTable(), tables.naturalEntityTable())
+
+        when:
+        def builder = new SharedGraphManager.Builder()
+        builder.addNaturalEntities(naturalTable(*naturalEntities.subList(0, 2)), 0)
+        builder.addLegalEntities(legalTable(*legalEntities.subList(0, 1)), 0)
+        builder.addLegalEntities(legalTable(*legalEntities.subList(1, 4)), 1)
+        builder.completeLegalEntities()
+        builder.addNaturalEntities(naturalTable(*naturalEntities.subList(2, 3)), 2)
+        def streamed = builder.build(tables.legalEntityTable(), tables.naturalEntityTable())
+
+        then:
+        def graph = streamed.getGraph()
+        def wholeGraph = whole.getGraph()
+        graph.vertexCount() == wholeGraph.vertexCount()
+        graph.edgeCount() == wholeGraph.edgeCount()
+        (0..<graph.vertexCount()).every { graph.id(it) == wholeGraph.id(it) && graph.type(it) == wholeGraph.type(it) }
+        (0..<graph.edgeCount()).every { graph.weight(it) == wholeGraph.weight(it) }
+        graph.weight(graph.edge(graph.vertex(NATURAL, 102L), graph.vertex(LEGAL, 3L))) == 0.6d
+        beneficiaries(streamed) == beneficiaries(whole)
+        beneficiaries(whole).size() == 1
+    }
+
+    def "should list the ownership chains of a person in the order of decreasing share"() {
+        given:
+        /*
+            N:101 owns 60% of L:3 and 40% of L:4; L:3 owns 50% of head 1, L:4 owns 100% of L:3
+         */
+        def manager = new SharedGraphManager(
+                legalTable(legal(3L, 1L, 0.5), legal(4L, 3L, 1.0)),
+                naturalTable(natural(101L, 3L, 0.6), natural(101L, 4L, 0.4))
+        )
+
+        when:
+        def chains = manager.getOwnershipChains(1L, 101L, 10)
+
+        then:
+        chains*.share() == [0.3d, 0.2d]
+        chains*.companyIds()*.toList() == [[3L, 1L], [4L, 3L, 1L]]
+        manager.getOwnershipChains(1L, 101L, 1).size() == 1
+        manager.getOwnershipChains(1L, 999L, 10).isEmpty()
+    }
+
+    private static Map<Long, Double> beneficiaries(SharedGraphManager manager) {
+        manager.getBeneficiaries(new Company(1L, "", "", ""), new PropagationOwnershipEngine()).getBeneficiaries()
+                .collectEntries { [(it.naturalEntity().id()): it.percent()] }
+    }
+}
@@ -0,0 +1,94 @@
+package ru.bivchallenge.graph
+
+import spock.lang.Specification
+
+import static ru.bivchallenge.graph.VertexType.HEAD
+import static ru.bivchallenge.graph.VertexType.LEGAL
+import static ru.bivchallenge.graph.VertexType.NATURAL
+
+class CondensationOwnershipEngineSpec extends Specification {
+
+    def "should count the share circulating in a cross-holding"() {
+        given:
+        /*
+            L:2 owns 60% of H:1, L:2 and L:3 own 50% of each other, N:1 owns 50% of L:3.
+            x(L:2) = 0.6 + 0.5 * x(L:3), x(L:3) = 0.5 * x(L:2)  =>  x(L:2) = 0.8, x(L:3) = 0.4
+         */
+        def builder = new OwnershipGraphBuilder()
+        def head = builder.addVertex(HEAD, 1L)
+        def a = builder.addVertex(LEGAL, 2L)
+        def b = builder.addVertex(LEGAL, 3L)
+        def person = builder.addVertex(NATURAL, 1L)
+        builder.addEdge(a, head, 0.6)
+        builder.addEdge(b, a, 0.5)
+        builder.addEdge(a, b, 0.5)
+        builder.addEdge(person, b, 0.5)
+        def graph = builder.build()
+        def report = new CycleReport()
+
+        when:
+        def shares = compute(new CondensationOwnershipEngine(1e-14, 1000, report), graph, head)
+
+        then:
+        shares.keySet() == [person] as Set
+        Math.abs(shares[person] - 0.2d) < 1e-12
+        report.getComponentCount() == 1
+        report.getComponentSizes() == [2: 1L]
+        report.getUnconvergedCount() == 0
+    }
+
+    def "should match propagation on acyclic graphs without reporting components"() {
+        given:
+        def random = new Random(7)
+        def builder = new OwnershipGraphBuilder()
+        def head = builder.addVertex(HEAD, 0L)
+        def companies = [head]
+        (1..30).each { id ->
+            def company = builder.addVertex(LEGAL, id)
+            (1..2).each { builder.addEdge(company, companies[random.nextInt(companies.size())], random.nextDouble()) }
+            companies << company
+        }
+        (1..20).each { id ->
+            def person = builder.addVertex(NATURAL, id)
+            (1..3).each { builder.addEdge(person, companies[random.nextInt(companies.size())], random.nextDouble()) }
+        }
+        def graph = builder.build()
+        def report = new CycleReport()
+
+        when:
+        def condensed = compute(new CondensationOwnershipEngine(1e-14, 1000, report), graph, head)
+        def propagated = compute(new PropagationOwnershipEngine(), graph, head)
+
+        then:
+        condensed == propagated
+        report.getComponentCount() == 0
+    }
+
+    def "should fall back to path enumeration when a component does not converge"() {
+        given:
+        def builder = new OwnershipGraphBuilder()
+        def head = builder.addVertex(HEAD, 1L)
+        def a = builder.addVertex(LEGAL, 2L)
+        def b = builder.addVertex(LEGAL, 3L)
+        def person = builder.addVertex(NATURAL, 1L)
+        builder.addEdge(a, head, 0.5)
+        builder.addEdge(b, a, 1.0)
+        builder.addEdge(a, b, 1.0)
+        builder.addEdge(person, b, 1.0)
+        def graph = builder.build()
+        def report = new CycleReport()
+
+        when:
+        def shares = compute(new CondensationOwnershipEngine(1e-14, 50, report), graph, head)
+
+        then:
+        shares == compute(new PathEnumerationOwnershipEngine(), graph, head)
+        report.getUnconvergedCount() == 1
+    }
+
+    private static Map<Integer, Double> compute(OwnershipEngine engine, OwnershipGraph graph, int head) {
+        def shares = [:]
+        engine.compute(graph, head, { vertex, share -> shares[vertex] = share } as OwnershipEngine.ShareConsumer)
+        return shares
+    }
+}
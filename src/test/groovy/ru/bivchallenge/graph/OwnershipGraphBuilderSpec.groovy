@@ -0,0 +1,119 @@
+package ru.bivchallenge.graph
+
+import spock.lang.Specification
+
+import static ru.bivchallenge.graph.VertexType.HEAD
+import static ru.bivchallenge.graph.VertexType.LEGAL
+import static ru.bivchallenge.graph.VertexType.NATURAL
+
+class OwnershipGraphBuilderSpec extends Specification {
+
+    def "should reuse existing vertices and keep types in separate id spaces"() {
+        given:
+        def builder = new OwnershipGraphBuilder()
+
+        when:
+        def head = builder.addVertex(HEAD, 1L)
+        def legal = builder.addVertex(LEGAL, 1L)
+        def again = builder.addVertex(LEGAL, 1L)
+
+        then:
+        head != legal
+        legal == again
+        builder.vertexCount() == 2
+    }
+
+    def "should build incoming and outgoing adjacency sharing the same weights"() {
+        given:
+        def builder = new OwnershipGraphBuilder()
+        def head = builder.addVertex(HEAD, 1L)
+        def legal = builder.addVertex(LEGAL, 2L)
+        def natural = builder.addVertex(NATURAL, 3L)
+        builder.addEdge(legal, head, 0.6)
+        builder.addEdge(natural, head, 0.4)
+        builder.addEdge(natural, legal, 1.0)
+
+        when:
+        def graph = builder.build()
+
+        then:
+        graph.vertexCount() == 3
+        graph.edgeCount() == 3
+        graph.inDegree(head) == 2
+        graph.source(graph.inStart(head)) == legal
+        graph.source(graph.inStart(head) + 1) == natural
+        graph.outDegree(natural) == 2
+        graph.outTarget(graph.outStart(natural)) == head
+        graph.weight(graph.outEdge(graph.outStart(natural))) == 0.4
+        graph.type(natural) == NATURAL
+        graph.id(natural) == 3L
+        graph.vertex(LEGAL, 2L) == legal
+        graph.vertex(LEGAL, 42L) == -1
+    }
+
+    def "should ignore self-loops and keep the first of duplicate edges"() {
+        given:
+        def builder = new OwnershipGraphBuilder()
+        def head = builder.addVertex(HEAD, 1L)
+        def legal = builder.addVertex(LEGAL, 2L)
+        builder.addEdge(legal, legal, 0.5)
+        builder.addEdge(legal, head, 0.3)
+        builder.addEdge(legal, head, 0.9)
+
+        when:
+        def graph = builder.build()
+
+        then:
+        graph.edgeCount() == 1
+        graph.weight(graph.edge(legal, head)) == 0.3
+        !graph.containsEdge(legal, legal)
+    }
+
+    def "should resolve added edges to the ids of the built graph"() {
+        given:
+        def builder = new OwnershipGraphBuilder()
+        def head = builder.addVertex(HEAD, 1L)
+        def legal = builder.addVertex(LEGAL, 2L)
+        def natural = builder.addVertex(NATURAL, 3L)
+        def selfLoop = builder.addEdge(legal, legal, 0.5)
+        def first = builder.addEdge(natural, legal, 1.0)
+        def second = builder.addEdge(legal, head, 0.3)
+        def duplicate = builder.addEdge(legal, head, 0.9)
+
+        when:
+        def graph = builder.build()
+
+        then:
+        selfLoop == -1
+        builder.builtEdge(first) == graph.edge(natural, legal)
+        builder.builtEdge(second) == graph.edge(legal, head)
+        builder.builtEdge(duplicate) == -1
+    }
+
+    def "should share weight updates between both directions"() {
+        given:
+        def builder = new OwnershipGraphBuilder()
+        def head = builder.addVertex(HEAD, 1L)
+        def legal = builder.addVertex(LEGAL, 2L)
+        builder.addEdge(legal, head, 0.0)
+        def graph = builder.build()
+
+        when:
+        graph.setWeight(graph.edge(legal, head), 1.0)
+
+        then:
+        graph.weight(graph.outEdge(graph.outStart(legal))) == 1.0
+    }
+
+    def "should not allow building twice"() {
+        given:
+        def builder = new OwnershipGraphBuilder()
+        builder.build()
+
+        when:
+        builder.build()
+
+        then:
+        thrown(IllegalStateException)
+    }
+}
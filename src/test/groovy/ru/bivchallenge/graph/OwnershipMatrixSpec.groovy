@@ -0,0 +1,130 @@
+package ru.bivchallenge.graph
+
+import ru.bivchallenge.persistence.OwnershipTripletWriter
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+import static ru.bivchallenge.graph.VertexType.LEGAL
+import static ru.bivchallenge.graph.VertexType.NATURAL
+
+class OwnershipMatrixSpec extends Specification {
+
+    @TempDir
+    Path tempDir
+
+    def "should multiply the shares along every chain of companies and add the paths of a diamond"() {
+        given:
+        def builder = new OwnershipGraphBuilder()
+        def head = builder.addVertex(LEGAL, 1L)
+        def left = builder.addVertex(LEGAL, 2L)
+        def right = builder.addVertex(LEGAL, 3L)
+        def person = builder.addVertex(NATURAL, 10L)
+        def other = builder.addVertex(NATURAL, 11L)
+        builder.addEdge(left, head, 0.5)
+        builder.addEdge(right, head, 0.5)
+        builder.addEdge(person, left, 0.6)
+        builder.addEdge(person, right, 0.2)
+        builder.addEdge(other, right, 0.8)
+
+        when:
+        def matrix = OwnershipMatrix.compute(builder.build(), 1e-4, 1e-14, 100)
+
+        then:
+        matrix.rowCount() == 2
+        matrix.entryCount() == 5
+        matrix.unconvergedRowCount() == 0
+        triplets(matrix) == [[10L, 1L, 0.4d], [10L, 2L, 0.6d], [10L, 3L, 0.2d], [11L, 1L, 0.4d], [11L, 3L, 0.8d]]
+    }
+
+    def "should count a cross-holding like the condensation engine"() {
+        given:
+        def builder = new OwnershipGraphBuilder()
+        def head = builder.addVertex(LEGAL, 1L)
+        def first = builder.addVertex(LEGAL, 2L)
+        def second = builder.addVertex(LEGAL, 3L)
+        def person = builder.addVertex(NATURAL, 10L)
+        def other = builder.addVertex(NATURAL, 11L)
+        builder.addEdge(first, head, 1.0)
+        builder.addEdge(first, second, 0.5)
+        builder.addEdge(second, first, 0.5)
+        builder.addEdge(person, first, 0.5)
+        builder.addEdge(other, second, 0.5)
+        def graph = builder.build()
+
+        and:
+        def expected = [:]
+        [head, first, second].each { company ->
+            new CondensationOwnershipEngine(1e-14, 100, new CycleReport()).compute(graph, company,
+                    { vertex, share -> expected[[graph.id(vertex), graph.id(company)]] = share } as OwnershipEngine.ShareConsumer)
+        }
+
+        when:
+        def matrix = OwnershipMatrix.compute(graph, 1e-4, 1e-14, 100)
+
+        then:
+        matrix.unconvergedRowCount() == 0
+        def shares = triplets(matrix).collectEntries { [[it[0], it[1]], it[2]] }
+        shares.keySet() == expected.keySet()
+        shares.every { key, share -> Math.abs(share - expected[key]) < 1e-12 }
+        Math.abs(expected[[10L, 1L]] - 2.0d / 3) < 1e-12
+    }
+
+    def "should drop the shares below the cutoff and count the rows cut off by the iteration limit"() {
+        given:
+        def builder = new OwnershipGraphBuilder()
+        def head = builder.addVertex(LEGAL, 1L)
+        def mutual = builder.addVertex(LEGAL, 2L)
+        def person = builder.addVertex(NATURAL, 10L)
+        def small = builder.addVertex(NATURAL, 11L)
+        builder.addEdge(head, mutual, 1.0)
+        builder.addEdge(mutual, head, 1.0)
+        builder.addEdge(person, head, 0.5)
+        builder.addEdge(small, head, 0.00005)
+
+        when:
+        def matrix = OwnershipMatrix.compute(builder.build(), 1e-4, 1e-14, 50)
+
+        then:
+        matrix.unconvergedRowCount() > 0
+        triplets(matrix).every { it[0] == 10L }
+    }
+
+    def "should write the shares as triplets readable after the writer is committed"() {
+        given:
+        def builder = new OwnershipGraphBuilder()
+        def head = builder.addVertex(LEGAL, 1L)
+        def person = builder.addVertex(NATURAL, 10L)
+        builder.addEdge(person, head, 0.75)
+        def matrix = OwnershipMatrix.compute(builder.build(), 1e-4, 1e-14, 100)
+        def matrixPath = tempDir.resolve("ownership.triplets")
+
+        when:
+        def writer = new OwnershipTripletWriter(matrixPath)
+        writer.write(matrix)
+        writer.write(matrix)
+
+        then:
+        !Files.exists(matrixPath)
+
+        when:
+        writer.commit()
+        writer.close()
+        def read = []
+        OwnershipTripletWriter.read(matrixPath, { personId, companyId, share -> read << [personId, companyId, share] }
+                as OwnershipMatrix.TripletConsumer)
+
+        then:
+        writer.tripletCount == 2
+        read == [[10L, 1L, 0.75d], [10L, 1L, 0.75d]]
+        !Files.exists(tempDir.resolve("ownership.triplets.tmp"))
+    }
+
+    private static List triplets(OwnershipMatrix matrix) {
+        def triplets = []
+        matrix.forEach({ personId, companyId, share -> triplets << [personId, companyId, share] } as OwnershipMatrix.TripletConsumer)
+        return triplets
+    }
+}
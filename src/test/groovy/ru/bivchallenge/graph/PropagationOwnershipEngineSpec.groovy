@@ -0,0 +1,282 @@
+package ru.bivchallenge.graph
+
+import spock.lang.Specification
+
+import static ru.bivchallenge.graph.VertexType.HEAD
+import static ru.bivchallenge.graph.VertexType.LEGAL
+import static ru.bivchallenge.graph.VertexType.NATURAL
+
+class PropagationOwnershipEngineSpec extends Specification {
+
+    def "should sum every path of a diamond once"() {
+        given:
+        /*
+            N:1 owns 50% of L:2 and 50% of L:3, both of which own 50% of H:1
+         */
+        def builder = new OwnershipGraphBuilder()
+        def head = builder.addVertex(HEAD, 1L)
+        def left = builder.addVertex(LEGAL, 2L)
+        def right = builder.addVertex(LEGAL, 3L)
+        def person = builder.addVertex(NATURAL, 1L)
+        builder.addEdge(left, head, 0.5)
+        builder.addEdge(right, head, 0.5)
+        builder.addEdge(person, left, 0.5)
+        builder.addEdge(person, right, 0.5)
+        def graph = builder.build()
+
+        when:
+        def shares = compute(new PropagationOwnershipEngine(), graph, head)
+
+        then:
+        shares == [(person): 0.5d]
+    }
+
+    def "should ignore owners that cannot reach the head"() {
+        given:
+        def builder = new OwnershipGraphBuilder()
+        def head = builder.addVertex(HEAD, 1L)
+        def other = builder.addVertex(LEGAL, 9L)
+        def owner = builder.addVertex(NATURAL, 1L)
+        def stranger = builder.addVertex(NATURAL, 2L)
+        builder.addEdge(owner, head, 1.0)
+        builder.addEdge(stranger, other, 1.0)
+        def graph = builder.build()
+
+        when:
+        def shares = compute(new PropagationOwnershipEngine(), graph, head)
+
+        then:
+        shares == [(owner): 1.0d]
+    }
+
+    def "should count the simple paths through a cross-holding like path enumeration"() {
+        given:
+        def builder = new OwnershipGraphBuilder()
+        def head = builder.addVertex(HEAD, 1L)
+        def a = builder.addVertex(LEGAL, 2L)
+        def b = builder.addVertex(LEGAL, 3L)
+        def person = builder.addVertex(NATURAL, 1L)
+        builder.addEdge(a, head, 0.6)
+        builder.addEdge(b, a, 0.5)
+        builder.addEdge(a, b, 0.5)
+        builder.addEdge(person, b, 0.5)
+        def graph = builder.build()
+
+        when:
+        def propagated = compute(new PropagationOwnershipEngine(), graph, head)
+        def enumerated = compute(new PathEnumerationOwnershipEngine(), graph, head)
+
+        then:
+        propagated == enumerated
+        propagated[person] == 0.15d
+    }
+
+    def "should report the cross-holdings it enumerates"() {
+        given:
+        def builder = new OwnershipGraphBuilder()
+        def head = builder.addVertex(HEAD, 1L)
+        def a = builder.addVertex(LEGAL, 2L)
+        def b = builder.addVertex(LEGAL, 3L)
+        def other = builder.addVertex(LEGAL, 4L)
+        def person = builder.addVertex(NATURAL, 1L)
+        builder.addEdge(a, head, 0.6)
+        builder.addEdge(a, other, 0.4)
+        builder.addEdge(b, a, 0.5)
+        builder.addEdge(a, b, 0.5)
+        builder.addEdge(person, b, 0.5)
+        def graph = builder.build()
+        def report = new CycleReport()
+        def engine = new PropagationOwnershipEngine(SearchBounds.EXACT, report)
+
+        when:
+        compute(engine, graph, head)
+        compute(engine, graph, other)
+
+        then:
+        report.getComponentCount() == 2
+        report.getComponentSizes() == [2: 2L]
+        report.getUnconvergedCount() == 0
+        report.summary() == "Cyclic ownership components: 2, iterations: 0, unconverged: 0, sizes (vertices=count): 2=2"
+    }
+
+    def "should match path enumeration on random acyclic graphs"() {
+        given:
+        def random = new Random(42)
+        def builder = new OwnershipGraphBuilder()
+        def head = builder.addVertex(HEAD, 0L)
+        def companies = [head]
+        (1..30).each { id ->
+            def company = builder.addVertex(LEGAL, id)
+            (1..2).each { builder.addEdge(company, companies[random.nextInt(companies.size())], random.nextDouble()) }
+            companies << company
+        }
+        (1..20).each { id ->
+            def person = builder.addVertex(NATURAL, id)
+            (1..3).each { builder.addEdge(person, companies[random.nextInt(companies.size())], random.nextDouble()) }
+        }
+        def graph = builder.build()
+
+        when:
+        def propagated = compute(new PropagationOwnershipEngine(), graph, head)
+        def enumerated = compute(new PathEnumerationOwnershipEngine(), graph, head)
+
+        then:
+        !propagated.isEmpty()
+        propagated == enumerated
+    }
+
+    def "should add the paths through negative shares like path enumeration"() {
+        given:
+        /*
+            N:1 owns 100% of H:1 and -20% of L:2, which owns 50% of H:1
+         */
+        def builder = new OwnershipGraphBuilder()
+        def head = builder.addVertex(HEAD, 1L)
+        def company = builder.addVertex(LEGAL, 2L)
+        def person = builder.addVertex(NATURAL, 1L)
+        builder.addEdge(person, head, 1.0)
+        builder.addEdge(person, company, -0.2)
+        builder.addEdge(company, head, 0.5)
+        def graph = builder.build()
+
+        when:
+        def propagated = compute(new PropagationOwnershipEngine(), graph, head)
+        def enumerated = compute(new PathEnumerationOwnershipEngine(), graph, head)
+
+        then:
+        propagated == [(person): 0.9d]
+        enumerated == propagated
+    }
+
+    def "should drop paths below the search epsilon in the bounded mode"() {
+        given:
+        /*
+            N:1 owns 100% of H:1, N:2 owns 0.1% of L:2, which owns 0.1% of H:1
+         */
+        def builder = new OwnershipGraphBuilder()
+        def head = builder.addVertex(HEAD, 1L)
+        def company = builder.addVertex(LEGAL, 2L)
+        def owner = builder.addVertex(NATURAL, 1L)
+        def minor = builder.addVertex(NATURAL, 2L)
+        builder.addEdge(owner, head, 1.0)
+        builder.addEdge(company, head, 0.001)
+        builder.addEdge(minor, company, 0.001)
+        def graph = builder.build()
+
+        when:
+        def exact = compute(new PropagationOwnershipEngine(), graph, head)
+        def unbounded = compute(new PropagationOwnershipEngine(new SearchBounds(0.0, 0.0)), graph, head)
+        def bounded = compute(new PropagationOwnershipEngine(new SearchBounds(0.25, 1e-4)), graph, head)
+
+        then:
+        exact == [(owner): 1.0d, (minor): 1e-6d]
+        unbounded == exact
+        bounded == [(owner): 1.0d]
+    }
+
+    def "should not release owners outside the bounded upstream when reused for another head"() {
+        given:
+        /*
+            N:1 owns H:1 and L:3, which holds H:1 through a cross-holding with L:4; N:1 owns 1% of H:2 and N:2 owns 50%
+         */
+        def builder = new OwnershipGraphBuilder()
+        def first = builder.addVertex(HEAD, 1L)
+        def second = builder.addVertex(HEAD, 2L)
+        def a = builder.addVertex(LEGAL, 3L)
+        def b = builder.addVertex(LEGAL, 4L)
+        def minor = builder.addVertex(NATURAL, 1L)
+        def owner = builder.addVertex(NATURAL, 2L)
+        builder.addEdge(a, first, 0.5)
+        builder.addEdge(a, b, 0.5)
+        builder.addEdge(b, a, 0.5)
+        builder.addEdge(minor, first, 1.0)
+        builder.addEdge(minor, a, 1.0)
+        builder.addEdge(minor, second, 0.01)
+        builder.addEdge(owner, second, 0.5)
+        def graph = builder.build()
+        def engine = new PropagationOwnershipEngine(new SearchBounds(0.25, 0.1))
+
+        when:
+        compute(engine, graph, first)
+        def shares = compute(engine, graph, second)
+
+        then:
+        shares == [(owner): 0.5d]
+    }
+
+    def "should only enumerate the paths inside the cross-holdings of random graphs"() {
+        given:
+        def random = new Random(7)
+        def builder = new OwnershipGraphBuilder()
+        def head = builder.addVertex(HEAD, 0L)
+        def companies = [head]
+        (1..40).each { id ->
+            def company = builder.addVertex(LEGAL, id)
+            (1..2).each { builder.addEdge(company, companies[random.nextInt(companies.size())], random.nextDouble() / 2) }
+            companies << company
+        }
+        (1..15).each {
+            def owned = companies[1 + random.nextInt(companies.size() - 1)]
+            def owner = companies[1 + random.nextInt(companies.size() - 1)]
+            if (owned != owner) {
+                builder.addEdge(owned, owner, random.nextDouble() / 2)
+            }
+        }
+        (1..20).each { id ->
+            def person = builder.addVertex(NATURAL, id)
+            (1..3).each { builder.addEdge(person, companies[random.nextInt(companies.size())], random.nextDouble()) }
+        }
+        def graph = builder.build()
+
+        when:
+        def propagated = compute(new PropagationOwnershipEngine(), graph, head)
+        def enumerated = compute(new PathEnumerationOwnershipEngine(), graph, head)
+
+        then:
+        !propagated.isEmpty()
+        propagated.keySet() == enumerated.keySet()
+        propagated.every { vertex, share -> Math.abs(share - enumerated[vertex]) < 1e-9 }
+    }
+
+    def "should evaluate the owners above a cross-holding in the bounded mode"() {
+        given:
+        def builder = new OwnershipGraphBuilder()
+        def head = builder.addVertex(HEAD, 1L)
+        def a = builder.addVertex(LEGAL, 2L)
+        def b = builder.addVertex(LEGAL, 3L)
+        def holding = builder.addVertex(LEGAL, 4L)
+        def person = builder.addVertex(NATURAL, 1L)
+        def minor = builder.addVertex(NATURAL, 2L)
+        builder.addEdge(a, head, 0.6)
+        builder.addEdge(b, a, 0.5)
+        builder.addEdge(a, b, 0.5)
+        builder.addEdge(holding, b, 0.4)
+        builder.addEdge(person, holding, 1.0)
+        builder.addEdge(minor, b, 0.1)
+        def graph = builder.build()
+
+        when:
+        def exact = compute(new PropagationOwnershipEngine(), graph, head)
+        def bounded = compute(new PropagationOwnershipEngine(new SearchBounds(0.1, 0.01)), graph, head)
+
+        then:
+        exact.keySet() == [person, minor] as Set
+        Math.abs(exact[person] - 0.12d) < 1e-12
+        Math.abs(exact[minor] - 0.03d) < 1e-12
+        bounded == exact
+    }
+
+    def "should reject negative search bounds"() {
+        when:
+        new SearchBounds(-0.1, 0.0)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    private static Map<Integer, Double> compute(OwnershipEngine engine, OwnershipGraph graph, int head) {
+        def shares = [:]
+        engine.compute(graph, head, { vertex, share -> shares[vertex] = share } as OwnershipEngine.ShareConsumer)
+        return shares
+    }
+}
@@ -0,0 +1,79 @@
+package ru.bivchallenge.graph
+
+import spock.lang.Specification
+
+import static ru.bivchallenge.graph.VertexType.LEGAL
+import static ru.bivchallenge.graph.VertexType.NATURAL
+
+class UpstreamCostSpec extends Specification {
+
+    def "should count the edge paths ending at every vertex"() {
+        given:
+        def builder = new OwnershipGraphBuilder()
+        def head = builder.addVertex(LEGAL, 1L)
+        def left = builder.addVertex(LEGAL, 2L)
+        def right = builder.addVertex(LEGAL, 3L)
+        def person = builder.addVertex(NATURAL, 4L)
+        builder.addEdge(left, head, 0.5)
+        builder.addEdge(right, head, 0.5)
+        builder.addEdge(person, left, 1.0)
+        builder.addEdge(person, right, 1.0)
+
+        when:
+        def costs = UpstreamCost.estimate(builder.build())
+
+        then:
+        costs[head] == 4
+        costs[left] == 1
+        costs[right] == 1
+        costs[person] == 0
+    }
+
+    def "should bound the paths of a deep lattice of shared owners by the size of its component"() {
+        given:
+        def builder = new OwnershipGraphBuilder()
+        def top = builder.addVertex(NATURAL, 0L)
+        def levels = 40
+        levels.times { level ->
+            def left = builder.addVertex(LEGAL, 3L * level + 1)
+            def right = builder.addVertex(LEGAL, 3L * level + 2)
+            def bottom = builder.addVertex(LEGAL, 3L * level + 3)
+            builder.addEdge(top, left, 1.0)
+            builder.addEdge(top, right, 1.0)
+            builder.addEdge(left, bottom, 0.5)
+            builder.addEdge(right, bottom, 0.5)
+            top = bottom
+        }
+        def graph = builder.build()
+
+        when:
+        def costs = UpstreamCost.estimate(graph)
+
+        then:
+        costs[top] == graph.vertexCount() + graph.edgeCount()
+    }
+
+    def "should bound a vertex with a cycle upstream by the size of its component only"() {
+        given:
+        def builder = new OwnershipGraphBuilder()
+        def head = builder.addVertex(LEGAL, 1L)
+        def first = builder.addVertex(LEGAL, 2L)
+        def second = builder.addVertex(LEGAL, 3L)
+        def person = builder.addVertex(NATURAL, 4L)
+        def stranger = builder.addVertex(NATURAL, 5L)
+        builder.addEdge(first, second, 0.5)
+        builder.addEdge(second, first, 0.5)
+        builder.addEdge(person, first, 0.5)
+        builder.addEdge(second, head, 1.0)
+
+        when:
+        def costs = UpstreamCost.estimate(builder.build())
+
+        then:
+        costs[head] == 8
+        costs[first] == 8
+        costs[second] == 8
+        costs[person] == 0
+        costs[stranger] == 0
+    }
+}
@@ -0,0 +1,80 @@
+package ru.bivchallenge.metrics
+
+import spock.lang.Specification
+
+import java.time.Duration
+
+class RunMetricsSpec extends Specification {
+
+    def "should sum labelled counters by name"() {
+        given:
+        def metrics = new RunMetrics()
+
+        when:
+        metrics.counter(RunMetrics.ROWS_PARSED, "table", "company.tsv").add(3)
+        metrics.counter(RunMetrics.ROWS_PARSED, "table", "founder_legal.tsv").add(4)
+        metrics.counter(RunMetrics.ROWS_PARSED, "table", "company.tsv").increment()
+
+        then:
+        metrics.total(RunMetrics.ROWS_PARSED) == 8
+        metrics.counter(RunMetrics.ROWS_PARSED, "table", "company.tsv").sum() == 4
+        metrics.total(RunMetrics.ROWS_REJECTED) == 0
+    }
+
+    def "should write stages, counters and the latency histogram in the Prometheus text format"() {
+        given:
+        def metrics = new RunMetrics()
+        metrics.stage("load").close()
+        metrics.stage("compute").close()
+        metrics.counter(RunMetrics.ROWS_REJECTED, "table", "company.tsv").add(2)
+        metrics.counter(RunMetrics.EDGES_REPAIRED).add(5)
+        metrics.companyLatency().record(3_000)
+        metrics.companyLatency().record(5_000_000)
+
+        when:
+        def out = new StringBuilder()
+        metrics.writePrometheus(out)
+        def lines = out.toString().readLines()
+
+        then:
+        lines.indexOf("# TYPE castle_stage_duration_seconds gauge") == 0
+        lines[1].startsWith('castle_stage_duration_seconds{stage="load"} ')
+        lines[2].startsWith('castle_stage_duration_seconds{stage="compute"} ')
+        lines.contains('castle_rows_rejected_total{table="company.tsv"} 2')
+        lines.contains("castle_edges_repaired_total 5")
+        lines.contains('castle_company_latency_seconds_bucket{le="0.000004000"} 1')
+        lines.contains('castle_company_latency_seconds_bucket{le="0.004096000"} 1')
+        lines.contains('castle_company_latency_seconds_bucket{le="0.008192000"} 2')
+        lines.contains('castle_company_latency_seconds_bucket{le="+Inf"} 2')
+        lines.contains("castle_company_latency_seconds_count 2")
+    }
+
+    def "should report latency quantiles as bucket upper bounds"() {
+        given:
+        def histogram = new LatencyHistogram()
+
+        when:
+        98.times { histogram.record(3_000) }
+        2.times { histogram.record(1_000_000) }
+
+        then:
+        histogram.count() == 100
+        histogram.quantileMicros(0.5) == 4
+        histogram.quantileMicros(0.99) == 1024
+        new LatencyHistogram().quantileMicros(0.5) == 0
+    }
+
+    def "should format progress with rate and ETA"() {
+        given:
+        def reporter = new ProgressReporter("compute", "companies", { 250L }, 1000, Duration.ZERO)
+        def unbounded = new ProgressReporter("load", "rows", { 500L }, -1, Duration.ZERO)
+
+        expect:
+        reporter.line(5_000_000_000L) == "compute: 250/1000 (25%) companies, 50 companies/s, ETA 0:15"
+        unbounded.line(1_000_000_000L) == "load: 500 rows, 500 rows/s"
+
+        cleanup:
+        reporter.close()
+        unbounded.close()
+    }
+}
@@ -1,11 +1,15 @@
 package ru.bivchallenge.persistence
 
 import de.siegmar.fastcsv.reader.CsvReader
+import ru.bivchallenge.data.FounderTable
 import spock.lang.Specification
 import spock.lang.TempDir
 
 import java.nio.file.Files
 import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.util.function.BiFunction
+import java.util.zip.GZIPOutputStream
 
 class AbstractLocalDataProviderSpec extends Specification {
 
@@ -67,4 +71,140 @@ class AbstractLocalDataProviderSpec extends Specification {
         def exception = thrown(RuntimeException)
         exception.message.contains("Failed to load legal entities from CSV file")
     }
+
+    def "should load the same entities whatever the chunk size"() {
+        given:
+        def csvFilePath = tempDir.resolve("chunked_entities.csv")
+        def content = "ID,Name,Description\n" + (1..20).collect { "$it,Entity$it,Description$it" }.join("\n") + "\n"
+        Files.write(csvFilePath, content.getBytes())
+
+        when:
+        def results = (1..content.length()).collect { chunkSize ->
+            def provider = new MockLocalDataProvider(CsvReader.builder(), csvFilePath, chunkSize)
+            provider.getDataFromCsvTable(csvFilePath, provider.parseFunction).collectEntries { id, entity -> [(id): entity.description] }
+        }
+
+        then:
+        results.every { it == (1..20).collectEntries { [(it as long): "Description$it".toString()] } }
+    }
+
+    def "should repair a continuation line that starts a new chunk"() {
+        given:
+        def csvFilePath = tempDir.resolve("broken_entities.csv")
+        def content = "ID,Name,Description\n1,Entity1,Description1\n2,Entity2,Broken\n line\n3,Entity3,Description3\n"
+        Files.write(csvFilePath, content.getBytes())
+        BiFunction<String, MockEntity, MockEntity> appendToDescription = { part, entity ->
+            new MockEntity(entity.id(), entity.name, entity.description + part)
+        }
+
+        when:
+        def results = (1..content.length()).collect { chunkSize ->
+            def provider = new MockLocalDataProvider(CsvReader.builder(), csvFilePath, chunkSize)
+            provider.getDataFromCsvTable(csvFilePath, provider.parseFunction, appendToDescription)
+                    .collectEntries { id, entity -> [(id): entity.description] }
+        }
+
+        then:
+        results.every { it == [1L: "Description1", 2L: "Broken line", 3L: "Description3"] }
+    }
+
+    def "should skip the header after a UTF-8 byte order mark"() {
+        given:
+        def csvFilePath = tempDir.resolve("bom_entities.csv")
+        Files.write(csvFilePath, [0xEF, 0xBB, 0xBF] as byte[])
+        Files.write(csvFilePath, "ID,Name,Description\n1,Entity1,Description1\n".getBytes(), StandardOpenOption.APPEND)
+
+        and:
+        def provider = new MockLocalDataProvider(CsvReader.builder(), csvFilePath, 8)
+
+        when:
+        def entityMap = provider.getDataFromCsvTable(csvFilePath, provider.parseFunction)
+
+        then:
+        entityMap.keySet() == [1L] as Set
+    }
+
+    def "should push the blocks of a columnar table in file order"() {
+        given:
+        def csvFilePath = tempDir.resolve("block_entities.csv")
+        def content = "ID,Name,Description\n" + (1..50).collect { "$it,Entity$it,Description$it" }.join("\n") + "\n"
+        Files.write(csvFilePath, content.getBytes())
+        FounderRowParser rowParser = { field, fieldCount, table -> table.add(Long.parseLong(field.apply(0)), 0L, 0.0d, 0.0d, field.apply(1)) }
+        FounderTable.RowMapper<MockEntity> rowMapper = { table, row -> new MockEntity(table.id(row), table.text(row, 0), "") }
+
+        when:
+        def results = [7, 64, 4096].collect { chunkSize ->
+            def provider = new MockLocalDataProvider(CsvReader.builder(), csvFilePath, chunkSize)
+            def blocks = []
+            def table = provider.getTableFromCsvTable(csvFilePath, 1, rowParser, rowMapper,
+                    { block, firstRow -> blocks << [firstRow, (0..<block.size()).collect { block.id(it) }] } as FounderTable.BlockConsumer)
+            [table, blocks]
+        }
+
+        then:
+        results.every { table, blocks -> blocks.collectMany { it[1] } == (1L..50L).toList() }
+        results.every { table, blocks -> blocks*.get(0) == firstRows(blocks*.get(1)*.size()) }
+        results.every { table, blocks -> (0..<table.size()).collect { table.id(it) } == (1L..50L).toList() }
+        results[0][1].size() > 1
+    }
+
+    def "should stream the blocks of a table and repair a continuation at the start of a block"() {
+        given:
+        def csvFilePath = tempDir.resolve("streamed_entities.csv")
+        def content = "ID,Name,Description\n1,Entity1,Description1\n2,Broken,Description2\n line\n3,Entity3,Description3\n"
+        Files.write(csvFilePath, content.getBytes())
+        FounderRowParser rowParser = { field, fieldCount, table ->
+            if (fieldCount == 3) table.add(Long.parseLong(field.apply(0)), 0L, 0.0d, 0.0d, field.apply(1))
+        }
+        FounderTable.RowMapper<MockEntity> rowMapper = { table, row -> new MockEntity(table.id(row), table.text(row, 0), "") }
+
+        when:
+        def results = (1..content.length()).collect { chunkSize ->
+            def provider = new MockLocalDataProvider(CsvReader.builder(), csvFilePath, chunkSize)
+            def blocks = []
+            provider.forEachBlockOfCsvTable(csvFilePath, 1, rowParser, 0, rowMapper,
+                    { block, firstRow -> blocks << [firstRow, (0..<block.size()).collect { block.text(it, 0) }] } as FounderTable.BlockConsumer)
+            blocks
+        }
+
+        then:
+        results.every { blocks -> blocks.collectMany { it[1] } == ["Entity1", "Broken line", "Entity3"] }
+        results.every { blocks -> blocks*.get(0) == firstRows(blocks*.get(1)*.size()) }
+    }
+
+    def "should load a gzip-compressed table like the plain one"() {
+        given:
+        def content = "ID,Name,Description\n" + (1..200).collect { "$it,Entity$it,Description$it" }.join("\n") + "\n"
+        def plainPath = tempDir.resolve("plain_entities.csv")
+        Files.write(plainPath, content.getBytes())
+        def gzipPath = tempDir.resolve("gzip_entities.csv.gz")
+        Files.write(gzipPath, gzip(content.getBytes()))
+        def membersPath = tempDir.resolve("members_entities.csv.gz")
+        def cut = content.indexOf("\n100,") + 3
+        Files.write(membersPath, gzip(content.substring(0, cut).getBytes()))
+        Files.write(membersPath, gzip(content.substring(cut).getBytes()), StandardOpenOption.APPEND)
+
+        when:
+        def results = [plainPath, gzipPath, membersPath].collect { path ->
+            def provider = new MockLocalDataProvider(CsvReader.builder(), path, 64)
+            provider.getDataFromCsvTable(path, provider.parseFunction).collectEntries { id, entity -> [(id): entity.description] }
+        }
+
+        then:
+        results[0].size() == 200
+        results[1] == results[0]
+        results[2] == results[0]
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        def out = new ByteArrayOutputStream()
+        new GZIPOutputStream(out).withCloseable { it.write(bytes) }
+        return out.toByteArray()
+    }
+
+    private static List<Integer> firstRows(List<Integer> blockSizes) {
+        def firstRows = [0]
+        blockSizes.each { firstRows << firstRows.last() + it }
+        return firstRows.dropRight(1)
+    }
 }
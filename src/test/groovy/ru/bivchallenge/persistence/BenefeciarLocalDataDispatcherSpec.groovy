@@ -56,4 +56,53 @@ class BenefeciarLocalDataDispatcherSpec extends Specification {
         lines[3] == beneficiary.separate().join(",")
     }
 
+    def "should write the table to a temporary file and move it into place only when the sink is closed"() {
+        given:
+        def csvFilePath = tempDir.resolve("beneficiaries.tsv")
+        def dispatcher = new BenefeciarLocalDataDispatcher(castleConfig(csvFilePath), CsvWriter.builder())
+        def registry = new BenefeciarRegistry(new Company(1L, "1234567890123", "1234567890", "Test Company"))
+        registry.getBeneficiaries().add(new Benefeciar(new NaturalEntity(1L, 1L, "123", "Doe", "John", ""), 0.5))
+
+        when:
+        def sink = dispatcher.open()
+        sink.accept(registry)
+
+        then:
+        !Files.exists(csvFilePath)
+        Files.exists(tempDir.resolve("beneficiaries.tsv.tmp"))
+
+        when:
+        sink.close()
+
+        then:
+        Files.readAllLines(csvFilePath).size() == 4
+        !Files.exists(tempDir.resolve("beneficiaries.tsv.tmp"))
+    }
+
+    def "should leave neither the table nor the temporary file when the sink is aborted"() {
+        given:
+        def csvFilePath = tempDir.resolve("beneficiaries.tsv")
+        def dispatcher = new BenefeciarLocalDataDispatcher(castleConfig(csvFilePath), CsvWriter.builder())
+
+        when:
+        def sink = dispatcher.open()
+        sink.accept(new BenefeciarRegistry(new Company(1L, "1234567890123", "1234567890", "Test Company")))
+        sink.abort()
+        sink.close()
+
+        then:
+        !Files.exists(csvFilePath)
+        !Files.exists(tempDir.resolve("beneficiaries.tsv.tmp"))
+    }
+
+    private CastleConfig castleConfig(Path csvFilePath) {
+        def castleConfigMock = Mock(CastleConfig)
+        def tableConfigMock = Mock(TableConfig)
+        def fastCSVConfig = Mock(FastCSVConfig)
+        tableConfigMock.getBeneficiariesTablePath() >> csvFilePath
+        fastCSVConfig.getWriterBufferSize() >> 1024
+        castleConfigMock.getTableConfig() >> tableConfigMock
+        castleConfigMock.getFastCSVConfig() >> fastCSVConfig
+        return castleConfigMock
+    }
 }
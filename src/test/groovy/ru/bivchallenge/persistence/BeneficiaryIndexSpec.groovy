@@ -0,0 +1,97 @@
+package ru.bivchallenge.persistence
+
+import ru.bivchallenge.data.BenefeciarRegistry
+import ru.bivchallenge.dto.Benefeciar
+import ru.bivchallenge.dto.Company
+import ru.bivchallenge.dto.NaturalEntity
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.stream.LongStream
+
+class BeneficiaryIndexSpec extends Specification {
+
+    @TempDir
+    Path tempDir
+
+    def "should list every company of a person accepted by many threads in company id order"() {
+        given:
+        def indexPath = tempDir.resolve("beneficiaries.index")
+        def builder = new BeneficiaryIndexBuilder()
+        def registries = (1L..3000L).collect { id ->
+            def registry = new BenefeciarRegistry(new Company(id, "ogrn" + id, "inn" + id, "Company " + id))
+            registry.getBeneficiaries().add(new Benefeciar(new NaturalEntity(id, id, String.valueOf(id % 100), "Last", "First", ""), id / 10000d))
+            registry.getBeneficiaries().add(new Benefeciar(new NaturalEntity(-id, id, "777", "Last", "First", ""), 0.5d))
+            registry
+        }
+
+        when:
+        LongStream.range(0, registries.size()).parallel().forEach { builder.accept(registries[(int) it]) }
+        builder.write(indexPath)
+        def index = BeneficiaryIndex.open(indexPath)
+
+        then:
+        index.personCount() == 101
+        index.entryCount() == 6000
+        index.lookup("42") == (1L..3000L).findAll { it % 100 == 42 }.collect { new BeneficiaryIndex.Entry(it, it / 10000d) }
+        index.lookup("777")*.companyId() == (1L..3000L).toList()
+        index.lookup("0").size() == 30
+        index.lookup("100").isEmpty()
+
+        cleanup:
+        index?.close()
+    }
+
+    def "should leave the persons without an INN out of the index"() {
+        given:
+        def indexPath = tempDir.resolve("beneficiaries.index")
+        def builder = new BeneficiaryIndexBuilder()
+        def registry = new BenefeciarRegistry(new Company(1L, "ogrn1", "inn1", "Company 1"))
+        registry.getBeneficiaries().add(new Benefeciar(new NaturalEntity(1L, 1L, null, "Last", "First", ""), 0.3d))
+        registry.getBeneficiaries().add(new Benefeciar(new NaturalEntity(2L, 1L, " ", "Last", "First", ""), 0.3d))
+        registry.getBeneficiaries().add(new Benefeciar(new NaturalEntity(3L, 1L, "42", "Last", "First", ""), 0.4d))
+
+        when:
+        builder.accept(registry)
+        builder.write(indexPath)
+        def index = BeneficiaryIndex.open(indexPath)
+
+        then:
+        index.personCount() == 1
+        index.entryCount() == 1
+        index.lookup(null).isEmpty()
+        index.lookup("").isEmpty()
+        index.lookup("42") == [new BeneficiaryIndex.Entry(1L, 0.4d)]
+
+        cleanup:
+        index?.close()
+    }
+
+    def "should write an empty index"() {
+        given:
+        def indexPath = tempDir.resolve("beneficiaries.index")
+        new BeneficiaryIndexBuilder().write(indexPath)
+        def index = BeneficiaryIndex.open(indexPath)
+
+        expect:
+        index.personCount() == 0
+        index.lookup("42").isEmpty()
+
+        cleanup:
+        index?.close()
+    }
+
+    def "should reject a file that is not an index"() {
+        given:
+        def tablePath = tempDir.resolve("beneficiaries.tsv")
+        Files.writeString(tablePath, "company_id\togrn\tinn\tfull_name\n")
+
+        when:
+        BeneficiaryIndex.open(tablePath)
+
+        then:
+        thrown(IOException)
+    }
+}
@@ -136,4 +136,37 @@ class CompanyLocalProviderSpec extends Specification {
         firstLoad.size() == 1
         firstLoad[42671L].id == 42671L
     }
+
+    def "should load and repair the same companies when lazy text is enabled"() {
+        given:
+        def csvFilePath = tempDir.resolve("lazy_companies.csv")
+        Files.write(csvFilePath, ("id\togrn\tinn\tfull_name\n" +
+                "42671\t1021000861144\t1003405007\tМУНИЦИПАЛЬНОЕ УЧРЕЖДЕНИЕ \"ЛИЦЕЙ\n" +
+                " ИМЕНИ А.С. ПУШКИНА\"\n" +
+                "53822\t1021300661910\t1308078876\tОТДЕЛ МВД\r\n").getBytes())
+
+        when:
+        def eager = provider(csvFilePath, false).get()
+        def lazy = provider(csvFilePath, true).get()
+
+        then:
+        lazy.keySet() == eager.keySet()
+        lazy.keySet() == [42671L, 53822L] as Set
+        lazy.every { id, company -> company.separate().toList() == eager[id].separate().toList() }
+        lazy[42671L].fullName == "МУНИЦИПАЛЬНОЕ УЧРЕЖДЕНИЕ \"ЛИЦЕЙ ИМЕНИ А.С. ПУШКИНА\""
+        lazy[53822L].fullName == "ОТДЕЛ МВД"
+    }
+
+    private CompanyLocalProvider provider(Path csvFilePath, boolean lazyText) {
+        def tableConfigMock = Mock(TableConfig) {
+            getCompanyTablePath() >> csvFilePath
+            isLazyTextEnabled() >> lazyText
+        }
+        def castleConfigMock = Mock(CastleConfig) {
+            getTableConfig() >> tableConfigMock
+        }
+        def builder = CsvReader.builder()
+        builder.fieldSeparator('\t' as char)
+        return new CompanyLocalProvider(castleConfigMock, builder)
+    }
 }
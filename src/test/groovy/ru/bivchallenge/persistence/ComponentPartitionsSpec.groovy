@@ -0,0 +1,108 @@
+package ru.bivchallenge.persistence
+
+import ru.bivchallenge.data.FounderTable
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+class ComponentPartitionsSpec extends Specification {
+
+    @TempDir
+    Path tempDir
+
+    /*
+        Company 10 is owned by L:20 and N:2, L:20 by N:1; company 30 by L:21, L:21 by N:3; company 40 by N:4.
+        Company 50 has no founders.
+     */
+    FounderTable companies = table([10L, 0L], [30L, 0L], [40L, 0L], [50L, 0L])
+    FounderTable legalEntities = table([20L, 10L], [21L, 30L])
+    FounderTable naturalEntities = table([1L, 20L], [2L, 10L], [3L, 30L], [4L, 40L])
+
+    def "should pack whole components into partitions in the order they were first seen"() {
+        when:
+        def partitions = write(3)
+
+        then:
+        partitions.partitionCount() == 2
+        partitions.companyCount() == 3
+        rows(partitions.load(0)) == [[10L], [20L], [1L, 2L]]
+        rows(partitions.load(1)) == [[30L, 40L], [21L], [3L, 4L]]
+
+        cleanup:
+        partitions?.close()
+    }
+
+    def "should give a component larger than the budget a partition of its own"() {
+        when:
+        def partitions = write(1)
+
+        then:
+        partitions.partitionCount() == 3
+        rows(partitions.load(0)) == [[10L], [20L], [1L, 2L]]
+        rows(partitions.load(1)) == [[30L], [21L], [3L]]
+        rows(partitions.load(2)) == [[40L], [], [4L]]
+
+        cleanup:
+        partitions?.close()
+    }
+
+    def "should keep the founder rows of a partition written in several frames in file order"() {
+        given:
+        def blocks = (0..<naturalEntities.size()).collect { table([naturalEntities.id(it), naturalEntities.companyId(it)]) }
+
+        when:
+        def partitions = ComponentPartitions.write(provider([companies]), provider([legalEntities]), provider(blocks),
+                tempDir.resolve("partitions"), ComponentPartitions.ROW_FOOTPRINT)
+
+        then:
+        partitions.partitionCount() == 3
+        partitions.load(0).naturalEntities().size() == 2
+        rows(partitions.load(0)) == [[10L], [20L], [1L, 2L]]
+
+        cleanup:
+        partitions?.close()
+    }
+
+    def "should remove the spill files when closed"() {
+        given:
+        def partitions = write(3)
+
+        when:
+        partitions.close()
+
+        then:
+        Files.list(tempDir.resolve("partitions")).count() == 0
+    }
+
+    private ComponentPartitions write(long partitionRows) {
+        ComponentPartitions.write(provider([companies]), provider([legalEntities]), provider([naturalEntities]),
+                tempDir.resolve("partitions"), partitionRows * ComponentPartitions.ROW_FOOTPRINT)
+    }
+
+    private static FounderDataProvider provider(List<FounderTable> blocks) {
+        [
+                forEachBlock: { FounderTable.BlockConsumer consumer ->
+                    int firstRow = 0
+                    blocks.each {
+                        consumer.accept(it, firstRow)
+                        firstRow += it.size()
+                    }
+                },
+                getRowMapper: { { table, row -> table.id(row) } as FounderTable.RowMapper }
+        ] as FounderDataProvider
+    }
+
+    private static FounderTable table(List<Long>... rows) {
+        def builder = FounderTable.builder(1)
+        rows.each { builder.add(it[0], it[1], 0.0d, 0.0d, "name" + it[0]) }
+        return builder.build { table, row -> table.id(row) }
+    }
+
+    private static List<List<Long>> rows(ComponentPartitions.Partition partition) {
+        [partition.companies(), partition.legalEntities(), partition.naturalEntities()].collect { table ->
+            (0..<table.size()).collect { table.id(it) }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package ru.bivchallenge.persistence
+
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.util.concurrent.ForkJoinPool
+import java.util.zip.CRC32
+import java.util.zip.Deflater
+import java.util.zip.DeflaterOutputStream
+import java.util.zip.GZIPOutputStream
+
+class GzipBlocksSpec extends Specification {
+
+    @TempDir
+    Path tempDir
+
+    def "should inflate a file of many members spanning several segments in file order"() {
+        given:
+        def content = table(new Random(3), 500_000)
+        def path = tempDir.resolve("members.tsv.gz")
+        def out = new ByteArrayOutputStream()
+        for (int start = 0; start < content.length; start += 100_000) {
+            out.write(gzip(Arrays.copyOfRange(content, start, Math.min(content.length, start + 100_000))))
+        }
+        Files.write(path, out.toByteArray())
+
+        when:
+        def inflated = inflate(path)
+
+        then:
+        Files.size(path) > 2 * GzipBlocks.SEGMENT_SIZE
+        inflated == content
+    }
+
+    def "should inflate a single member larger than a segment"() {
+        given:
+        def content = table(new Random(5), 500_000)
+        def path = tempDir.resolve("single.tsv.gz")
+        Files.write(path, gzip(content))
+
+        when:
+        def inflated = inflate(path)
+
+        then:
+        Files.size(path) > 2 * GzipBlocks.SEGMENT_SIZE
+        inflated == content
+    }
+
+    def "should inflate sequentially when a segment ends at bytes that only look like a member header"() {
+        given:
+        def random = new Random(7)
+        def fakeHeader = [0x1F, 0x8B, 0x08, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x03] as byte[]
+        def content = new ByteArrayOutputStream()
+        content.write(table(random, 150_000))
+        content.write(fakeHeader)
+        content.write(table(random, 150_000))
+        content.write(fakeHeader)
+        content.write(table(random, 100_000))
+        def path = tempDir.resolve("stored.tsv.gz")
+        Files.write(path, storedGzip(content.toByteArray()))
+
+        when:
+        def inflated = inflate(path)
+
+        then:
+        Files.size(path) > 2 * GzipBlocks.SEGMENT_SIZE
+        inflated == content.toByteArray()
+    }
+
+    private static byte[] inflate(Path path) {
+        def inflated = new ByteArrayOutputStream()
+        FileChannel.open(path, StandardOpenOption.READ).withCloseable { channel ->
+            GzipBlocks.start(channel, "table", 1 << 16, 2, ForkJoinPool.commonPool()).withCloseable { blocks ->
+                for (def block = blocks.take(); block != null; block = blocks.take()) {
+                    def bytes = new byte[block.remaining()]
+                    block.get(bytes)
+                    inflated.write(bytes)
+                }
+            }
+        }
+        return inflated.toByteArray()
+    }
+
+    /**
+     * Lines of random hexadecimal text, which compress to a bit more than half their size.
+     */
+    private static byte[] table(Random random, int lines) {
+        def text = new StringBuilder()
+        lines.times { text.append(Long.toHexString(random.nextLong())).append('\t').append(Long.toHexString(random.nextLong())).append('\n') }
+        return text.toString().getBytes("UTF-8")
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        def out = new ByteArrayOutputStream()
+        new GZIPOutputStream(out).withCloseable { it.write(bytes) }
+        return out.toByteArray()
+    }
+
+    /**
+     * Writes one member of stored deflate blocks, so the bytes of the content appear verbatim in the file.
+     */
+    private static byte[] storedGzip(byte[] bytes) {
+        def out = new ByteArrayOutputStream()
+        out.write([0x1F, 0x8B, 0x08, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x03] as byte[])
+        new DeflaterOutputStream(out, new Deflater(Deflater.NO_COMPRESSION, true)).withCloseable { it.write(bytes) }
+        def crc = new CRC32()
+        crc.update(bytes)
+        [crc.getValue(), bytes.length].each { value -> 4.times { out.write((int) ((value >>> (8 * it)) & 0xFF)) } }
+        return out.toByteArray()
+    }
+}
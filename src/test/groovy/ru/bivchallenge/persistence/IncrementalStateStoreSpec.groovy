@@ -0,0 +1,66 @@
+package ru.bivchallenge.persistence
+
+import ru.bivchallenge.data.CompanyDependencyIndex
+import ru.bivchallenge.data.FounderTable
+import ru.bivchallenge.data.IncrementalState
+import ru.bivchallenge.dto.LegalEntity
+import ru.bivchallenge.dto.NaturalEntity
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+class IncrementalStateStoreSpec extends Specification {
+
+    @TempDir
+    Path tempDir
+
+    def "should restore the stored state"() {
+        given:
+        def store = new IncrementalStateStore(tempDir.resolve("incremental.state"), LEGAL_MAPPER, NATURAL_MAPPER)
+        def legalTable = FounderTable.builder(3).add(3L, 1L, 50, 0.5d, "ogrn3", "inn3", "Legal 3").build(LEGAL_MAPPER)
+        def naturalTable = FounderTable.builder(4).add(101L, 3L, 10, 1.0d, "inn101", "Last", "First", "").build(NATURAL_MAPPER)
+
+        when:
+        store.store(new IncrementalState(legalTable, naturalTable, CompanyDependencyIndex.of(legalTable, naturalTable), [
+                1L: new IncrementalState.Beneficiaries([101L] as long[], [0.5d] as double[]),
+                2L: new IncrementalState.Beneficiaries(new long[0], new double[0])
+        ]))
+        def state = store.load().get()
+
+        then:
+        state.legalEntityTable().entity(0).fullName == "Legal 3"
+        state.naturalEntityTable().entity(0).inn == "inn101"
+        state.dependencyIndex().companyCount() == 2
+        state.dependencyIndex().downstreamCompanies([3L] as long[], state.legalEntityTable()) == [3L, 1L] as Set
+        state.dependencyIndex().upstreamRows([1L] as long[], state.legalEntityTable()).naturalRows() == [0] as int[]
+        state.beneficiaries().size() == 2
+        state.beneficiaries()[1L] == new IncrementalState.Beneficiaries([101L] as long[], [0.5d] as double[])
+        state.beneficiaries()[2L].isEmpty()
+        !Files.exists(tempDir.resolve("incremental.state.tmp"))
+    }
+
+    def "should return no state if there is no state file or it has an unknown format"() {
+        given:
+        def statePath = tempDir.resolve("incremental.state")
+        def store = new IncrementalStateStore(statePath, LEGAL_MAPPER, NATURAL_MAPPER)
+
+        expect:
+        store.load().isEmpty()
+
+        when:
+        Files.write(statePath, "not a state file".getBytes())
+
+        then:
+        store.load().isEmpty()
+    }
+
+    private static final FounderTable.RowMapper<LegalEntity> LEGAL_MAPPER = { table, row ->
+        new LegalEntity(table.id(row), table.companyId(row), table.text(row, 0), table.text(row, 1), table.text(row, 2))
+    }
+
+    private static final FounderTable.RowMapper<NaturalEntity> NATURAL_MAPPER = { table, row ->
+        new NaturalEntity(table.id(row), table.companyId(row), table.text(row, 0), table.text(row, 1), table.text(row, 2), table.text(row, 3))
+    }
+}
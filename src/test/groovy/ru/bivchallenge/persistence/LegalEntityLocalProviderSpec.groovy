@@ -3,6 +3,7 @@ package ru.bivchallenge.persistence
 import de.siegmar.fastcsv.reader.CsvReader
 import ru.bivchallenge.config.CastleConfig
 import ru.bivchallenge.config.TableConfig
+import ru.bivchallenge.data.FounderTable
 import ru.bivchallenge.dto.LegalEntity
 import spock.lang.Specification
 import spock.lang.TempDir
@@ -158,4 +159,104 @@ class LegalEntityLocalProviderSpec extends Specification {
         firstLoad.size() == 1
         firstLoad[1L].id == 1L
     }
+
+    def "should apply a delta of added, removed and changed rows to the table"() {
+        given:
+        def csvFilePath = tempDir.resolve("legal_entities.csv")
+        Files.write(csvFilePath, ("id\tcompany_id\togrn\tinn\tfull_name\tshare\tshare_percent\n" +
+                "1\t6\t1037401354671\t7423019252\tАКРОН-ИНВЕСТ\t100.00\t0.5\n" +
+                "2\t8\t1021602841402\t1654017170\tМИНЗДРАВ\t0.00\t1.0\n" +
+                "3\t9\t1027700132195\t7707083893\tСБЕРБАНК\t10.00\t0.1\n").getBytes())
+        def deltaPath = tempDir.resolve("legal_entities_delta.csv")
+        Files.write(deltaPath, ("action\tid\tcompany_id\togrn\tinn\tfull_name\tshare\tshare_percent\n" +
+                "remove\t2\t8\n" +
+                "change\t1\t6\t1037401354671\t7423019252\tАКРОН-ИНВЕСТ\t200.00\t0.75\n" +
+                "add\t4\t9\t1027739609391\t7702070139\tВТБ\t90.00\t0.9\n" +
+                "rename\t3\t9\n").getBytes())
+
+        and:
+        def tableConfigMock = Mock(TableConfig) {
+            getFounderLegalTablePath() >> csvFilePath
+        }
+        def castleConfigMock = Mock(CastleConfig) {
+            getTableConfig() >> tableConfigMock
+        }
+
+        and:
+        def builder = CsvReader.builder()
+        builder.fieldSeparator('\t' as char)
+        def provider = new LegalEntityLocalProvider(castleConfigMock, builder)
+
+        when:
+        def delta = provider.applyDelta(provider.getTable(), deltaPath)
+
+        then:
+        delta.changedCompanyIds() as List == [8L, 6L, 9L]
+        (0..<delta.table().size()).collect { delta.table().id(it) } == [3L, 1L, 4L]
+        delta.table().entity(1).share == 200.0d
+        delta.table().entity(1).sharePercent == 0.75d
+        delta.table().entity(2).fullName == "ВТБ"
+        delta.rowMapping() as List == [-1, -1, 0]
+        delta.firstAddedRow() == 1
+
+        and:
+        provider.applyDelta(provider.getTable(), tempDir.resolve("missing.csv")).table().is(provider.getTable())
+    }
+
+    def "should load the same rows without decoding their text when lazy text is enabled"() {
+        given:
+        def csvFilePath = tempDir.resolve("lazy_legal_entities.csv")
+        Files.write(csvFilePath, ("id\tcompany_id\togrn\tinn\tfull_name\tshare\tshare_percent\n" +
+                "1\t6\t1037401354671\t7423019252\tООО \"АКРОН-ИНВЕСТ\"\t44454000.00\r\n" +
+                "\n" +
+                "2\t8\t1021602841402\t1654017170\tМИНИСТЕРСТВО\t0.00\t0.125\n" +
+                "x\t8\t1021602841402\t1654017170\tINVALID ID\n" +
+                "3\t8\t1021602841403\n" +
+                "4\t9\t\t\t\t1e3\t-0.5").getBytes())
+
+        when:
+        def eager = rows(provider(csvFilePath, false).getTable())
+        def lazy = rows(provider(csvFilePath, true).getTable())
+
+        then:
+        lazy == eager
+        lazy*.getAt(0) == [1L, 2L, 4L]
+        lazy[0][6] == "ООО \"АКРОН-ИНВЕСТ\""
+        lazy[1][3] == 0.125d
+        lazy[2][2..3] == [1000.0d, -0.5d]
+    }
+
+    def "should parse a chunk with a quoted field like the CSV reader when lazy text is enabled"() {
+        given:
+        def csvFilePath = tempDir.resolve("quoted_legal_entities.csv")
+        Files.write(csvFilePath, ("id\tcompany_id\togrn\tinn\tfull_name\tshare\tshare_percent\n" +
+                "1\t6\t1037401354671\t7423019252\t\"ООО\tАКРОН\"\t10\n" +
+                "2\t8\t1021602841402\t1654017170\tМИНИСТЕРСТВО\t0.00\t0.5").getBytes())
+
+        when:
+        def lazy = rows(provider(csvFilePath, true).getTable())
+
+        then:
+        lazy == rows(provider(csvFilePath, false).getTable())
+        lazy[0][6] == "ООО\tАКРОН"
+    }
+
+    private LegalEntityLocalProvider provider(Path csvFilePath, boolean lazyText) {
+        def tableConfigMock = Mock(TableConfig) {
+            getFounderLegalTablePath() >> csvFilePath
+            isLazyTextEnabled() >> lazyText
+        }
+        def castleConfigMock = Mock(CastleConfig) {
+            getTableConfig() >> tableConfigMock
+        }
+        def builder = CsvReader.builder()
+        builder.fieldSeparator('\t' as char)
+        return new LegalEntityLocalProvider(castleConfigMock, builder)
+    }
+
+    private static List<List<Object>> rows(FounderTable<LegalEntity> table) {
+        (0..<table.size()).collect { row ->
+            [table.id(row), table.companyId(row), table.share(row), table.sharePercent(row)] + (0..<table.textFieldCount()).collect { table.text(row, it) }
+        }
+    }
 }
@@ -16,6 +16,11 @@ class MockLocalDataProvider extends AbstractLocalDataProvider<MockEntity> {
         this.csvFilePath = csvFilePath
     }
 
+    MockLocalDataProvider(CsvReader.CsvReaderBuilder csvReaderBuilder, Path csvFilePath, int chunkSize) {
+        super(csvReaderBuilder, chunkSize)
+        this.csvFilePath = csvFilePath
+    }
+
     @Override
     Map<Long, MockEntity> get() {
         return getDataFromCsvTable(csvFilePath, parseFunction, repairFunction)
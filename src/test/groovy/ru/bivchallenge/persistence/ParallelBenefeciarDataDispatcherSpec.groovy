@@ -0,0 +1,97 @@
+package ru.bivchallenge.persistence
+
+import ru.bivchallenge.data.BenefeciarRegistry
+import ru.bivchallenge.dto.Benefeciar
+import ru.bivchallenge.dto.Company
+import ru.bivchallenge.dto.NaturalEntity
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.Path
+
+class ParallelBenefeciarDataDispatcherSpec extends Specification {
+
+    @TempDir
+    Path tempDir
+
+    def "should write a single shard in the format of the sequential writer"() {
+        given:
+        def tablePath = tempDir.resolve("beneficiaries.tsv")
+        def dispatcher = new ParallelBenefeciarDataDispatcher(tablePath, 1)
+        def company = new Company(1L, "1234567890123", "1234567890", "Ромашка \"Юг\"\tООО")
+        def beneficiary = new Benefeciar(new NaturalEntity(1L, 1L, "123", "Иванов", "Иван", ""), 0.5)
+        def registry = new BenefeciarRegistry(company)
+        registry.getBeneficiaries().add(beneficiary)
+
+        when:
+        dispatcher.dispatch([registry, new BenefeciarRegistry(new Company(2L, "2", "2", "Empty"))] as Set)
+
+        then:
+        def lines = Files.readAllLines(tablePath, StandardCharsets.UTF_8)
+        lines.size() == 4
+        lines[0] == "company_id\togrn\tinn\tfull_name"
+        lines[1] == "\tinn\tfull_name\tpercent"
+        lines[2] == "1\t1234567890123\t1234567890\t\"Ромашка \"\"Юг\"\"\tООО\""
+        lines[3] == beneficiary.separate().join("\t")
+        !Files.exists(ParallelBenefeciarDataDispatcher.manifestPath(tablePath))
+    }
+
+    def "should spread registries accepted by many threads over the shards and list them in the manifest"() {
+        given:
+        def tablePath = tempDir.resolve("beneficiaries.tsv")
+        def dispatcher = new ParallelBenefeciarDataDispatcher(tablePath, 3)
+        def registries = (1L..2000L).collect { id ->
+            def registry = new BenefeciarRegistry(new Company(id, "ogrn" + id, "inn" + id, "Company " + id))
+            registry.getBeneficiaries().add(new Benefeciar(new NaturalEntity(id, id, "n" + id, "Last", "First", ""), 1.0))
+            registry
+        }
+
+        when:
+        dispatcher.dispatch(registries as Set)
+
+        then:
+        def shards = (0..2).collect { ParallelBenefeciarDataDispatcher.shardPath(tablePath, it, 3) }
+        shards*.fileName*.toString() == ["beneficiaries.00000.tsv", "beneficiaries.00001.tsv", "beneficiaries.00002.tsv"]
+        def records = shards.collectMany { Files.readAllLines(it).drop(2) }
+        records.size() == 4000
+        records.findAll { !it.startsWith("\t") }.collect { it.split("\t")[0] as long }.sort() == (1L..2000L).toList()
+
+        and:
+        def manifest = Files.readAllLines(ParallelBenefeciarDataDispatcher.manifestPath(tablePath))
+        manifest[0] == "file\tcompanies\trecords\tbytes"
+        manifest.drop(1).collect { it.split("\t")[1] as long }.sum() == 2000
+        manifest.drop(1).collect { it.split("\t")[2] as long }.sum() == 4000
+        manifest.drop(1).collect { it.split("\t")[3] as long } == shards.collect { Files.size(it) }
+    }
+
+    def "should leave no shard, manifest or temporary file behind when the sink is aborted"() {
+        given:
+        def tablePath = tempDir.resolve("beneficiaries.tsv")
+        def sink = new ParallelBenefeciarDataDispatcher(tablePath, 3).open()
+
+        when:
+        (1L..100L).each { id -> sink.accept(new BenefeciarRegistry(new Company(id, "ogrn" + id, "inn" + id, "Company " + id))) }
+        sink.abort()
+
+        then:
+        Files.list(tempDir).withCloseable { it.count() } == 0
+    }
+
+    def "should move the shards and the manifest into place only when the sink is closed"() {
+        given:
+        def tablePath = tempDir.resolve("beneficiaries.tsv")
+        def sink = new ParallelBenefeciarDataDispatcher(tablePath, 2).open()
+
+        when:
+        (1L..100L).each { id -> sink.accept(new BenefeciarRegistry(new Company(id, "ogrn" + id, "inn" + id, "Company " + id))) }
+        def beforeClose = Files.list(tempDir).withCloseable { files -> files.collect { it.fileName.toString() }.sort() }
+        sink.close()
+        def afterClose = Files.list(tempDir).withCloseable { files -> files.collect { it.fileName.toString() }.sort() }
+
+        then:
+        beforeClose == ["beneficiaries.00000.tsv.tmp", "beneficiaries.00001.tsv.tmp"]
+        afterClose == ["beneficiaries.00000.tsv", "beneficiaries.00001.tsv", ParallelBenefeciarDataDispatcher.manifestPath(tablePath).fileName.toString()].sort()
+    }
+}
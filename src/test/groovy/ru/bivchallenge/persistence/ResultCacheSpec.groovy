@@ -0,0 +1,90 @@
+package ru.bivchallenge.persistence
+
+import ru.bivchallenge.data.ComponentFingerprints
+import ru.bivchallenge.data.IncrementalState
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+class ResultCacheSpec extends Specification {
+
+    @TempDir
+    Path tempDir
+
+    def "should reuse the beneficiaries of a component stored by an earlier run and count hits and misses"() {
+        given:
+        def cachePath = tempDir.resolve("results.cache")
+        def first = ResultCache.load(cachePath, SETTINGS)
+        first.put(key(1), entry(10L, 20L))
+        first.store(1 << 20)
+
+        when:
+        def second = ResultCache.load(cachePath, SETTINGS)
+        def hit = second.get(key(1))
+        def miss = second.get(key(2))
+
+        then:
+        hit.get(10L) == new IncrementalState.Beneficiaries([101L] as long[], [0.5d] as double[])
+        hit.get(20L).isEmpty()
+        hit.get(30L) == null
+        miss == null
+        second.hitCount == 1
+        second.missCount == 1
+        !Files.exists(tempDir.resolve("results.cache.tmp"))
+    }
+
+    def "should discard a cache written with other settings or of an unknown format"() {
+        given:
+        def cachePath = tempDir.resolve("results.cache")
+        def first = ResultCache.load(cachePath, SETTINGS)
+        first.put(key(1), entry(10L))
+        first.store(1 << 20)
+
+        expect:
+        ResultCache.load(cachePath, "threshold=0.5").get(key(1)) == null
+
+        when:
+        Files.write(cachePath, "not a cache file".getBytes())
+
+        then:
+        ResultCache.load(cachePath, SETTINGS).get(key(1)) == null
+    }
+
+    def "should evict the components least recently used when the cache outgrows its size"() {
+        given:
+        def cachePath = tempDir.resolve("results.cache")
+        def first = ResultCache.load(cachePath, SETTINGS)
+        first.put(key(1), entry(10L))
+        first.put(key(2), entry(20L))
+        first.store(1 << 20)
+        def fullSize = Files.size(cachePath)
+
+        def second = ResultCache.load(cachePath, SETTINGS)
+        second.get(key(2))
+        second.put(key(3), entry(30L))
+
+        when:
+        second.store(fullSize)
+        def third = ResultCache.load(cachePath, SETTINGS)
+
+        then:
+        third.get(key(1)) == null
+        third.get(key(2)) != null
+        third.get(key(3)) != null
+    }
+
+    private static final String SETTINGS = "threshold=0.25"
+
+    private static ComponentFingerprints.Key key(long value) {
+        new ComponentFingerprints.Key(value, -value)
+    }
+
+    private static ResultCache.Entry entry(long... companyIds) {
+        new ResultCache.Entry(companyIds, companyIds.collect {
+            it == 10L ? new IncrementalState.Beneficiaries([101L] as long[], [0.5d] as double[])
+                    : new IncrementalState.Beneficiaries(new long[0], new double[0])
+        } as IncrementalState.Beneficiaries[])
+    }
+}
@@ -0,0 +1,159 @@
+package ru.bivchallenge.persistence
+
+import spock.lang.Specification
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class StreamingDataSinkSpec extends Specification {
+
+    def "should write every item accepted by concurrent producers"() {
+        given:
+        def written = new CopyOnWriteArrayList<Integer>()
+        def sink = new StreamingDataSink<Integer>(listSink(written), 4, false)
+        def pool = Executors.newFixedThreadPool(4)
+
+        when:
+        (0..<4).collect { producer -> pool.submit { (0..<250).each { sink.accept(producer * 250 + it) } } }*.get()
+        sink.close()
+
+        then:
+        written.size() == 1000
+        written.toSet() == (0..<1000).toSet()
+
+        cleanup:
+        pool.shutdown()
+    }
+
+    def "should write items in sequence order and skip null items"() {
+        given:
+        def written = new CopyOnWriteArrayList<Integer>()
+        def sink = new StreamingDataSink<Integer>(listSink(written), 3, true)
+        def cursor = new AtomicInteger()
+        def pool = Executors.newFixedThreadPool(4)
+
+        when:
+        (0..<4).collect {
+            pool.submit {
+                for (int sequence = cursor.getAndIncrement(); sequence < 1000; sequence = cursor.getAndIncrement()) {
+                    Thread.sleep(sequence % 7 == 0 ? 1 : 0)
+                    sink.accept(sequence, sequence % 10 == 0 ? null : Integer.valueOf(sequence))
+                }
+            }
+        }*.get()
+        sink.close()
+
+        then:
+        written == (0..<1000).findAll { it % 10 != 0 }
+
+        cleanup:
+        pool.shutdown()
+    }
+
+    def "should rethrow a failure of the writer to producers and on close"() {
+        given:
+        def failing = new DataSink<Integer>() {
+            @Override
+            void accept(Integer item) {
+                throw new IllegalStateException("disk full")
+            }
+
+            @Override
+            void close() {
+            }
+        }
+        def sink = new StreamingDataSink<Integer>(failing, 1, false)
+        Exception producerFailure = null
+
+        when:
+        sink.accept(1)
+        producerFailure = acceptUntilFailure(sink)
+        sink.close()
+
+        then:
+        producerFailure.message == "disk full"
+        def e = thrown(IllegalStateException)
+        e.message == "disk full"
+    }
+
+    def "should abort the wrapped sink instead of closing it when the sink is aborted"() {
+        given:
+        def written = new CopyOnWriteArrayList<Integer>()
+        def events = new CopyOnWriteArrayList<String>()
+        def sink = new StreamingDataSink<Integer>(listSink(written, events), 4, false)
+
+        when:
+        sink.accept(1)
+        sink.abort()
+        sink.close()
+        sink.accept(2)
+
+        then:
+        def e = thrown(IllegalStateException)
+        e.message == "Dispatch aborted"
+        events == ["abort"]
+    }
+
+    def "should abort the wrapped sink when the writer fails and not close it"() {
+        given:
+        def events = new CopyOnWriteArrayList<String>()
+        def failing = new DataSink<Integer>() {
+            @Override
+            void accept(Integer item) {
+                throw new IllegalStateException("disk full")
+            }
+
+            @Override
+            void close() {
+                events << "close"
+            }
+
+            @Override
+            void abort() {
+                events << "abort"
+            }
+        }
+        def sink = new StreamingDataSink<Integer>(failing, 1, false)
+
+        when:
+        sink.accept(1)
+        acceptUntilFailure(sink)
+        sink.abort()
+
+        then:
+        events == ["abort"]
+    }
+
+    private static Exception acceptUntilFailure(StreamingDataSink<Integer> sink) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5)
+        try {
+            while (System.nanoTime() < deadline) {
+                sink.accept(2)
+            }
+        } catch (IllegalStateException e) {
+            return e
+        }
+        return null
+    }
+
+    private static DataSink<Integer> listSink(List<Integer> written, List<String> events = []) {
+        return new DataSink<Integer>() {
+            @Override
+            void accept(Integer item) {
+                written.add(item)
+            }
+
+            @Override
+            void close() {
+                events << "close"
+            }
+
+            @Override
+            void abort() {
+                events << "abort"
+            }
+        }
+    }
+}
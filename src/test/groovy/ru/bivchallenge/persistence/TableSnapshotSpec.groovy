@@ -0,0 +1,118 @@
+package ru.bivchallenge.persistence
+
+import ru.bivchallenge.data.FounderTable
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.nio.file.attribute.FileTime
+
+class TableSnapshotSpec extends Specification {
+
+    @TempDir
+    Path tempDir
+
+    def "should restore a table from its snapshot"() {
+        given:
+        def tablePath = tempDir.resolve("founder_legal.tsv")
+        Files.writeString(tablePath, "id\tcompany_id\n1\t2\n")
+        def table = FounderTable.builder(2)
+                .add(1L, 2L, 30.0, 0.3, "ОГРН", "")
+                .add(3L, 4L, 70.0, 0.7, "second", "row")
+                .build(TableSnapshotSpec.&toList)
+
+        when:
+        TableSnapshot.store(snapshotDirectory(), tablePath, table)
+        def restored = TableSnapshot.load(snapshotDirectory(), tablePath, TableSnapshotSpec.&toList)
+
+        then:
+        Files.exists(snapshotDirectory().resolve("founder_legal.tsv.snapshot"))
+        !Files.exists(tempDir.resolve("founder_legal.tsv.snapshot"))
+        restored.isPresent()
+        (0..<2).collect { restored.get().entity(it) } == [[1L, 2L, 30.0d, 0.3d, "ОГРН", ""], [3L, 4L, 70.0d, 0.7d, "second", "row"]]
+    }
+
+    def "should ignore a snapshot whose source content changed"() {
+        given:
+        def tablePath = tempDir.resolve("company.tsv")
+        Files.writeString(tablePath, "id\n1\n")
+        def modifiedTime = Files.getLastModifiedTime(tablePath)
+        TableSnapshot.store(snapshotDirectory(), tablePath, FounderTable.builder(0).add(1L, 0L, 0.0, 0.0).build(TableSnapshotSpec.&toList))
+
+        when:
+        Files.writeString(tablePath, "id\n2\n")
+        Files.setLastModifiedTime(tablePath, modifiedTime)
+
+        then:
+        !TableSnapshot.load(snapshotDirectory(), tablePath, TableSnapshotSpec.&toList).isPresent()
+    }
+
+    def "should ignore a missing or foreign snapshot"() {
+        given:
+        def tablePath = tempDir.resolve("founder_natural.tsv")
+        Files.writeString(tablePath, "id\n1\n")
+
+        expect:
+        !TableSnapshot.load(snapshotDirectory(), tablePath, TableSnapshotSpec.&toList).isPresent()
+
+        when:
+        Files.createDirectories(snapshotDirectory())
+        Files.writeString(snapshotDirectory().resolve("founder_natural.tsv.snapshot"), "not a snapshot at all")
+
+        then:
+        !TableSnapshot.load(snapshotDirectory(), tablePath, TableSnapshotSpec.&toList).isPresent()
+    }
+
+    def "should store the rows of a lazy table by their offsets in the source table"() {
+        given:
+        def tablePath = tempDir.resolve("founder_natural.tsv")
+        def lines = ["id\tcompany_id\tinn\tname"] + (1..1000).collect { "$it\t${it % 7}\t${1000000 + it}\tФамилия Имя $it" }
+        Files.writeString(tablePath, lines.join("\n") + "\n")
+        def table = lazyTable(tablePath)
+
+        when:
+        TableSnapshot.store(snapshotDirectory(), tablePath, table)
+        def restored = TableSnapshot.load(snapshotDirectory(), tablePath, TableSnapshotSpec.&toList).get()
+
+        then:
+        !new String(Files.readAllBytes(snapshotDirectory().resolve("founder_natural.tsv.snapshot")), "UTF-8").contains("Фамилия")
+        restored.size() == 1000
+        (0..<1000).findAll { restored.entity(it) != table.entity(it) }.isEmpty()
+        restored.entity(41) == [42L, 0L, 42.0d, 0.5d, "1000042", "Фамилия Имя 42"]
+    }
+
+    private Path snapshotDirectory() {
+        return tempDir.resolve("snapshots")
+    }
+
+    /**
+     * Builds a table of a mapped tab-separated file whose rows keep their text fields in the file.
+     */
+    private static FounderTable<List<Object>> lazyTable(Path tablePath) {
+        def bytes = FileChannel.open(tablePath, StandardOpenOption.READ).withCloseable { it.map(FileChannel.MapMode.READ_ONLY, 0, it.size()) }
+        def builder = FounderTable.builder(2, bytes, 0L, [2, 3] as int[])
+        int rowStart = 0
+        while (bytes.get(rowStart) != (byte) '\n') {
+            rowStart++
+        }
+        rowStart++
+        long id = 1
+        while (rowStart < bytes.limit()) {
+            builder.addSourceRow(id, id % 7, id, 0.5d, rowStart)
+            while (bytes.get(rowStart) != (byte) '\n') {
+                rowStart++
+            }
+            rowStart++
+            id++
+        }
+        return builder.build(TableSnapshotSpec.&toList)
+    }
+
+    private static List<Object> toList(FounderTable<List<Object>> table, int row) {
+        return [table.id(row), table.companyId(row), table.share(row), table.sharePercent(row)] +
+                (0..<table.textFieldCount()).collect { table.text(row, it) }
+    }
+}
@@ -0,0 +1,67 @@
+package ru.bivchallenge.processor
+
+import ru.bivchallenge.dto.LegalEntity
+import ru.bivchallenge.dto.NaturalEntity
+import spock.lang.Specification
+
+import static ru.bivchallenge.data.FounderFixtures.*
+
+class FounderShareRepairProcessorSpec extends Specification {
+
+    def "should repair the founders of every company by the graph repair rules"() {
+        given:
+        def loneLegal = legal(2L, 10L, 0, 0)
+        def proportionalLegal = legal(3L, 20L, 30, 0)
+        def proportionalNatural = natural(4L, 20L, 70, 0)
+        def remainderLegal = legal(5L, 30L, 0, 0.4)
+        def remainderNatural = natural(6L, 30L, 0, 0)
+        def intactNatural = natural(7L, 40L, 50, 0.5)
+
+        when:
+        def processor = new FounderShareRepairProcessor()
+        processor.apply(
+                [2L: loneLegal, 3L: proportionalLegal, 5L: remainderLegal] as Map<Long, LegalEntity>,
+                [4L: proportionalNatural, 6L: remainderNatural, 7L: intactNatural] as Map<Long, NaturalEntity>)
+
+        then:
+        loneLegal.sharePercent == 1.0d
+        proportionalLegal.sharePercent == 0.3d
+        proportionalNatural.sharePercent == 0.7d
+        remainderLegal.sharePercent == 0.4d
+        remainderNatural.sharePercent == 0.6d
+        intactNatural.sharePercent == 0.5d
+        processor.getRepairedEdgeCount() == 4
+    }
+
+    def "should repair the founder tables into new tables"() {
+        given:
+        def legalEntityTable = legalTable(legal(2L, 10L, 0, 0), legal(3L, 20L, 30, 0), legal(3L, 30L, 0, 0))
+        def naturalEntityTable = naturalTable(natural(4L, 20L, 70, 0), natural(5L, 30L, 0, 0.5))
+
+        when:
+        def processor = new FounderShareRepairProcessor()
+        def tables = processor.apply(legalEntityTable, naturalEntityTable)
+
+        then:
+        (0..<3).collect { tables.legalEntityTable().sharePercent(it) } == [1.0d, 0.3d, 0.5d]
+        (0..<2).collect { tables.naturalEntityTable().sharePercent(it) } == [0.7d, 0.5d]
+        tables.legalEntityTable().entity(2).sharePercent == 0.5d
+        (0..<3).every { legalEntityTable.sharePercent(it) == 0.0d }
+        processor.getRepairedEdgeCount() == 4
+    }
+
+    def "should leave several founders without weights and shares unrepaired"() {
+        given:
+        def first = natural(1L, 10L, 0, 0)
+        def second = natural(2L, 10L, 0, 0)
+
+        when:
+        def processor = new FounderShareRepairProcessor()
+        processor.apply([:] as Map<Long, LegalEntity>, [1L: first, 2L: second] as Map<Long, NaturalEntity>)
+
+        then:
+        first.sharePercent == 0.0d
+        second.sharePercent == 0.0d
+        processor.getRepairedEdgeCount() == 0
+    }
+}
@@ -0,0 +1,178 @@
+package ru.bivchallenge.processor
+
+import ru.bivchallenge.data.BenefeciarRegistry
+import ru.bivchallenge.data.CompanyGraphManager
+import ru.bivchallenge.data.SharedGraphManager
+import ru.bivchallenge.dto.Company
+import ru.bivchallenge.dto.LegalEntity
+import ru.bivchallenge.dto.NaturalEntity
+import ru.bivchallenge.graph.PropagationOwnershipEngine
+import spock.lang.Specification
+
+import static ru.bivchallenge.data.FounderFixtures.*
+import static ru.bivchallenge.graph.VertexType.HEAD
+import static ru.bivchallenge.graph.VertexType.LEGAL
+import static ru.bivchallenge.graph.VertexType.NATURAL
+
+class GraphPopulationProcessorSpec extends Specification {
+
+    def "should add every founder to the graph of its company only"() {
+        given:
+        Map<Long, LegalEntity> legalEntityMap = [
+                3L: legal(3L, 1L, 0.5),
+                4L: legal(4L, 2L, 1.0),
+                5L: legal(5L, 9L, 1.0)
+        ]
+        Map<Long, NaturalEntity> naturalEntityMap = [
+                101L: natural(101L, 1L, 0.5),
+                102L: natural(102L, 2L, 1.0)
+        ]
+        Map<Long, CompanyGraphManager> companyGraphMap = [
+                1L: new CompanyGraphManager(new Company(1L, "1", "1", "Head 1"), legalEntityMap),
+                2L: new CompanyGraphManager(new Company(2L, "2", "2", "Head 2"), legalEntityMap)
+        ]
+
+        when:
+        def result = new GraphPopulationProcessor(legalEntityMap, naturalEntityMap).apply(companyGraphMap)
+
+        then:
+        def first = result[1L].getGraph()
+        first.edgeCount() == 2
+        first.containsEdge(first.vertex(LEGAL, 3L), first.vertex(HEAD, 1L))
+        first.containsEdge(first.vertex(NATURAL, 101L), first.vertex(HEAD, 1L))
+
+        and:
+        def second = result[2L].getGraph()
+        second.edgeCount() == 2
+        second.containsEdge(second.vertex(LEGAL, 4L), second.vertex(HEAD, 2L))
+        second.containsEdge(second.vertex(NATURAL, 102L), second.vertex(HEAD, 2L))
+        !second.containsVertex(LEGAL, 5L)
+    }
+
+    def "should follow legal founders up to the natural persons behind them"() {
+        given:
+        /*
+            N:101 owns 50% of L:3, L:3 owns 80% of L:4, L:4 owns 50% of head 1 and head 1 owns 10% of L:3.
+         */
+        Map<Long, LegalEntity> legalEntityMap = [
+                1L: legal(1L, 3L, 0.1),
+                3L: legal(3L, 4L, 0.8),
+                4L: legal(4L, 1L, 0.5),
+                5L: legal(5L, 9L, 1.0)
+        ]
+        Map<Long, NaturalEntity> naturalEntityMap = [101L: natural(101L, 3L, 0.5)]
+        Map<Long, CompanyGraphManager> companyGraphMap = [
+                1L: new CompanyGraphManager(new Company(1L, "1", "1", "Head 1"), legalEntityMap)
+        ]
+
+        when:
+        def result = new GraphPopulationProcessor(legalEntityMap, naturalEntityMap).apply(companyGraphMap)
+
+        then:
+        def graph = result[1L].getGraph()
+        graph.vertexCount() == 4
+        graph.edgeCount() == 4
+        graph.containsEdge(graph.vertex(LEGAL, 4L), graph.vertex(HEAD, 1L))
+        graph.containsEdge(graph.vertex(LEGAL, 3L), graph.vertex(LEGAL, 4L))
+        graph.containsEdge(graph.vertex(HEAD, 1L), graph.vertex(LEGAL, 3L))
+        graph.containsEdge(graph.vertex(NATURAL, 101L), graph.vertex(LEGAL, 3L))
+        !graph.containsVertex(LEGAL, 1L)
+        !graph.containsVertex(LEGAL, 5L)
+    }
+
+    def "should report the same beneficiaries as the shared graph on the same tables"() {
+        given:
+        def legalRows = { randomLegalEntities(7L) }
+        def naturalRows = { randomNaturalEntities(7L) }
+        def companies = (1L..60L).collectEntries { [(it): new Company(it, "$it", "$it", "Company $it")] }
+
+        and:
+        def tables = new FounderShareRepairProcessor().apply(legalTable(legalRows()), naturalTable(naturalRows()))
+        def sharedGraph = new SharedGraphManager(tables.legalEntityTable(), tables.naturalEntityTable())
+
+        and: "founders own several companies, so the per-company maps are keyed by row rather than by id"
+        Map<Long, LegalEntity> legalEntityMap = legalRows().withIndex().collectEntries { row, i -> [(i as long): row] }
+        Map<Long, NaturalEntity> naturalEntityMap = naturalRows().withIndex().collectEntries { row, i -> [(i as long): row] }
+        new FounderShareRepairProcessor().apply(legalEntityMap, naturalEntityMap)
+        def companyGraphs = new GraphPopulationProcessor(legalEntityMap, naturalEntityMap)
+                .apply(new GraphInitializerProcessor(legalEntityMap).apply(companies))
+
+        when:
+        def shared = companies.collectEntries { id, company ->
+            [(id): shares(sharedGraph.getBeneficiaries(company, new PropagationOwnershipEngine(), 0.01))]
+        }
+        def perCompany = companies.collectEntries { id, company ->
+            [(id): shares(companyGraphs[id].getBeneficiaries(new PropagationOwnershipEngine(), 0.01))]
+        }
+
+        then:
+        legalRows().countBy { it.id() }.values().count { it > 1 } > 10
+        perCompany == shared
+        shared.values().count { it.size() > 1 } > 10
+    }
+
+    def "should build the same graphs as sequential population"() {
+        given:
+        def random = new Random(42)
+        Map<Long, LegalEntity> legalEntityMap = (1L..2000L).collectEntries { [(it + 1000L): legal(it + 1000L, random.nextInt(300) as long, random.nextDouble())] }
+        Map<Long, NaturalEntity> naturalEntityMap = (1L..5000L).collectEntries { [(it): natural(it, random.nextInt(300) as long, random.nextDouble())] }
+        def companies = (0L..<300L).collectEntries { [(it): new Company(it, "$it", "$it", "Company $it")] }
+
+        when:
+        def parallel = new GraphPopulationProcessor(legalEntityMap, naturalEntityMap)
+                .apply(new GraphInitializerProcessor(legalEntityMap).apply(companies))
+        def sequential = new GraphInitializerProcessor(legalEntityMap).apply(companies)
+        legalEntityMap.values().each { sequential[it.companyId]?.addEntity(it) }
+        naturalEntityMap.values().each { sequential[it.companyId]?.addEntity(it) }
+
+        then:
+        companies.keySet().every { id -> describe(parallel[id].getGraph()) == describe(sequential[id].getGraph()) }
+    }
+
+    private static List<String> describe(graph) {
+        (0..<graph.vertexCount()).collectMany { target ->
+            (graph.inStart(target)..<graph.inEnd(target)).collect { edge ->
+                "${graph.type(graph.source(edge))}:${graph.id(graph.source(edge))}->${graph.type(target)}:${graph.id(target)}=${graph.weight(edge)}"
+            }
+        }
+    }
+
+    private static Map<Long, Double> shares(BenefeciarRegistry registry) {
+        return registry.getBeneficiaries().collectEntries { [it.naturalEntity().id(), Math.round(it.percent() * 1e12) / 1e12] }
+    }
+
+    /**
+     * Companies 11 to 40 own 50 companies between them, picked at random, so the ownership has chains and
+     * cross-holdings and most legal founders have several rows; a third of the rows only carry a share that
+     * the repair turns into a percent.
+     */
+    private static List<LegalEntity> randomLegalEntities(long seed) {
+        def random = new Random(seed)
+        def pairs = new LinkedHashSet<List<Long>>()
+        while (pairs.size() < 50) {
+            def id = 11L + random.nextInt(30)
+            def companyId = 1L + random.nextInt(60)
+            if (companyId != id) {
+                pairs << [id, companyId]
+            }
+        }
+        return pairs.collect { pair ->
+            def legalEntity = legal(pair[0], pair[1], random.nextInt(3) == 0 ? 0.0d : random.nextInt(100) / 100d)
+            legalEntity.share = 1 + random.nextInt(100)
+            legalEntity
+        }
+    }
+
+    private static List<NaturalEntity> randomNaturalEntities(long seed) {
+        def random = new Random(seed + 1)
+        def pairs = new LinkedHashSet<List<Long>>()
+        while (pairs.size() < 150) {
+            pairs << [101L + random.nextInt(100), 1L + random.nextInt(60)]
+        }
+        return pairs.collect { pair ->
+            def naturalEntity = natural(pair[0], pair[1], random.nextInt(3) == 0 ? 0.0d : random.nextInt(100) / 100d)
+            naturalEntity.share = 1 + random.nextInt(100)
+            naturalEntity
+        }
+    }
+}
@@ -4,8 +4,15 @@ package ru.bivchallenge.processor
 import ru.bivchallenge.data.CompanyGraphManager
 import ru.bivchallenge.dto.Company
 import ru.bivchallenge.dto.LegalEntity
+import ru.bivchallenge.dto.NaturalEntity
+import ru.bivchallenge.graph.OwnershipGraph
+import ru.bivchallenge.graph.VertexType
 import spock.lang.Specification
 
+import static ru.bivchallenge.graph.VertexType.HEAD
+import static ru.bivchallenge.graph.VertexType.LEGAL
+import static ru.bivchallenge.graph.VertexType.NATURAL
+
 class GraphRepairProcessorSpec extends Specification {
 
     def "should repair single missing weight"() {
@@ -19,8 +26,9 @@ class GraphRepairProcessorSpec extends Specification {
 
         then:
         def graph = manager.getGraph()
-        graph.getEdge("L:2", "H:1").getWeight() == 0.3
-        graph.getEdge("L:3", "H:1").getWeight() == 0.7
+        weight(graph, 2L, HEAD, 1L) == 0.3
+        weight(graph, 3L, HEAD, 1L) == 0.7
+        processor.getRepairedEdgeCount() == 1
     }
 
     def "should repair multiple missing weights proportionally"() {
@@ -34,10 +42,8 @@ class GraphRepairProcessorSpec extends Specification {
 
         then:
         def graph = manager.getGraph()
-        def edgeL2 = graph.getEdge("L:2", "H:1")
-        def edgeL3 = graph.getEdge("L:3", "H:1")
-        edgeL2.getWeight() == 0.3
-        edgeL3.getWeight() == 0.7
+        weight(graph, 2L, HEAD, 1L) == 0.3
+        weight(graph, 3L, HEAD, 1L) == 0.7
     }
 
     def "should repair complex graph with missing weights"() {
@@ -51,14 +57,49 @@ class GraphRepairProcessorSpec extends Specification {
 
         then:
         def graph = manager.getGraph()
-        def edgeL2 = graph.getEdge("L:2", "H:1")
-        def edgeL3 = graph.getEdge("L:3", "H:1")
-        def edgeL4 = graph.getEdge("L:4", "L:3")
-        def edgeL5 = graph.getEdge("L:5", "L:3")
-        edgeL2.getWeight() == 0.5
-        edgeL3.getWeight() == 0.5
-        edgeL4.getWeight() == 0.5
-        edgeL5.getWeight() == 0.5
+        weight(graph, 2L, HEAD, 1L) == 0.5
+        weight(graph, 3L, HEAD, 1L) == 0.5
+        weight(graph, 4L, LEGAL, 3L) == 0.5
+        weight(graph, 5L, LEGAL, 3L) == 0.5
+    }
+
+    def "should repair the share a head company holds of its own owner"() {
+        given:
+        /*
+            L:2 and L:3 hold 40 and 60 of head 1, head 1 holds 25 of L:2 and N:101 holds 75 of L:2; no row has a percent.
+         */
+        def company = new Company(1L, "321", "123", "Head Company")
+        def registry = [:] as Map<Long, LegalEntity>
+        def manager = new CompanyGraphManager(company, registry)
+        def head = new LegalEntity(1L, 2L, "L1", "122", "Head Company")
+        head.share = 25
+        def L2 = new LegalEntity(2L, 1L, "L2", "123", "Legal Entity 2")
+        L2.share = 40
+        def L3 = new LegalEntity(3L, 1L, "L3", "124", "Legal Entity 3")
+        L3.share = 60
+        def N101 = new NaturalEntity(101L, 2L, "inn101", "Last", "First", "")
+        N101.share = 75
+        registry.put(1L, head)
+        registry.put(2L, L2)
+        registry.put(3L, L3)
+        manager.addEntity(L2)
+        manager.addEntity(L3)
+        manager.addEntity(head)
+        manager.addEntity(N101)
+
+        when:
+        new GraphRepairProcessor().apply(manager)
+
+        then:
+        def graph = manager.getGraph()
+        weight(graph, 2L, HEAD, 1L) == 0.4
+        weight(graph, 3L, HEAD, 1L) == 0.6
+        graph.weight(graph.edge(graph.vertex(HEAD, 1L), graph.vertex(LEGAL, 2L))) == 0.25
+        graph.weight(graph.edge(graph.vertex(NATURAL, 101L), graph.vertex(LEGAL, 2L))) == 0.75
+    }
+
+    private static double weight(OwnershipGraph graph, long legalId, VertexType targetType, long targetId) {
+        return graph.weight(graph.edge(graph.vertex(LEGAL, legalId), graph.vertex(targetType, targetId)))
     }
 
     private static CompanyGraphManager createGraphWithSingleMissingWeight(Company company) {
@@ -0,0 +1,122 @@
+package ru.bivchallenge.server
+
+import de.siegmar.fastcsv.reader.CsvReader
+import ru.bivchallenge.config.CastleConfig
+import ru.bivchallenge.config.OwnershipConfig
+import ru.bivchallenge.config.ServerConfig
+import ru.bivchallenge.config.TableConfig
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.net.http.HttpClient
+import java.net.http.HttpRequest
+import java.net.http.HttpResponse
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.attribute.FileTime
+import java.time.Duration
+
+class OwnershipQueryServerSpec extends Specification {
+
+    @TempDir
+    Path tempDir
+
+    def "should answer beneficiary and chain queries from the loaded graph"() {
+        given:
+        /*
+            N:101 owns 60% of L:3, L:3 owns 50% of head 1, N:102 owns 50% of head 1.
+         */
+        writeTables(0.5)
+        def server = new OwnershipQueryServer(castleConfig(), new QueryDatasetLoader(castleConfig(), csvReaderBuilder()))
+        server.start()
+
+        when:
+        def beneficiaries = get(server, "/beneficiaries?company=1")
+        def chains = get(server, "/chains?company=1&person=101")
+
+        then:
+        beneficiaries.statusCode() == 200
+        beneficiaries.body().readLines()[0] == "1\togrn1\tinn1\tHead"
+        beneficiaries.body().readLines().drop(1).sort() == ["\tinn101\tIvanov Ivan Ivanovich\t0.3", "\tinn102\tPetrov Petr Petrovich\t0.5"]
+        chains.body().readLines() == ["percent\tcompanies", "0.3\t3 1"]
+
+        and:
+        get(server, "/beneficiaries?company=9").statusCode() == 404
+        get(server, "/beneficiaries?company=x").statusCode() == 400
+        get(server, "/chains?company=1").statusCode() == 400
+
+        cleanup:
+        server.close()
+    }
+
+    def "should swap in the dataset of changed tables"() {
+        given:
+        writeTables(0.5)
+        def server = new OwnershipQueryServer(castleConfig(), new QueryDatasetLoader(castleConfig(), csvReaderBuilder()))
+        server.start()
+
+        when:
+        server.requestRefresh(false).get()
+
+        then:
+        server.getDataset().version() == 1
+
+        when:
+        writeTables(0.2)
+        tempDir.toFile().listFiles().each { Files.setLastModifiedTime(it.toPath(), FileTime.fromMillis(System.currentTimeMillis() + 10_000)) }
+        server.requestRefresh(false).get()
+
+        then:
+        server.getDataset().version() == 2
+        get(server, "/beneficiaries?company=1").body().readLines().drop(1) == ["\tinn101\tIvanov Ivan Ivanovich\t0.3"]
+
+        cleanup:
+        server.close()
+    }
+
+    private void writeTables(double headSharePercent) {
+        Files.write(tempDir.resolve("company.tsv"), ("id\togrn\tinn\tfull_name\n" +
+                "1\togrn1\tinn1\tHead\n" +
+                "3\togrn3\tinn3\tHolding\n").getBytes())
+        Files.write(tempDir.resolve("founder_legal.tsv"), ("id\tcompany_id\togrn\tinn\tfull_name\tshare\tshare_percent\n" +
+                "3\t1\togrn3\tinn3\tHolding\t50\t0.5\n").getBytes())
+        Files.write(tempDir.resolve("founder_natural.tsv"), ("id\tcompany_id\tinn\tlast_name\tfirst_name\tsecond_name\tshare\tshare_percent\n" +
+                "101\t3\tinn101\tIvanov\tIvan\tIvanovich\t60\t0.6\n" +
+                "102\t1\tinn102\tPetrov\tPetr\tPetrovich\t${headSharePercent * 100}\t${headSharePercent}\n").getBytes())
+    }
+
+    private CastleConfig castleConfig() {
+        def tableConfigMock = Mock(TableConfig) {
+            getCompanyTablePath() >> tempDir.resolve("company.tsv")
+            getFounderLegalTablePath() >> tempDir.resolve("founder_legal.tsv")
+            getFounderNaturalTablePath() >> tempDir.resolve("founder_natural.tsv")
+        }
+        def ownershipConfigMock = Mock(OwnershipConfig) {
+            getCycleMode() >> OwnershipConfig.CycleMode.ENUMERATE
+            getSearchMode() >> OwnershipConfig.SearchMode.EXACT
+            getBeneficiaryThreshold() >> 0.25d
+        }
+        def serverConfigMock = Mock(ServerConfig) {
+            getHost() >> "127.0.0.1"
+            getPort() >> 0
+            getRefreshInterval() >> Duration.ZERO
+            getChainLimit() >> 10
+        }
+        return Mock(CastleConfig) {
+            getTableConfig() >> tableConfigMock
+            getOwnershipConfig() >> ownershipConfigMock
+            getServerConfig() >> serverConfigMock
+        }
+    }
+
+    private static CsvReader.CsvReaderBuilder csvReaderBuilder() {
+        def builder = CsvReader.builder()
+        builder.fieldSeparator('\t' as char)
+        return builder
+    }
+
+    private static HttpResponse<String> get(OwnershipQueryServer server, String path) {
+        def uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path)
+        return HttpClient.newHttpClient().send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofString())
+    }
+}
@@ -0,0 +1,45 @@
+package ru.bivchallenge.util
+
+import spock.lang.Specification
+
+class KeyGroupsSpec extends Specification {
+
+    def "should group the positions by key in their input order and skip negative keys"() {
+        when:
+        def groups = KeyGroups.of([2, 0, -1, 2, 0, 4] as int[], 6)
+
+        then:
+        groups.keyCount() == 6
+        positions(groups, 0) == [1, 4]
+        positions(groups, 1) == []
+        positions(groups, 2) == [0, 3]
+        positions(groups, 3) == []
+        positions(groups, 4) == [5]
+        positions(groups, 5) == []
+    }
+
+    def "should group a large array the same way as a sequential grouping"() {
+        given:
+        def random = new Random(42)
+        int[] keys = (0..<300_000).collect { random.nextInt(1000) - 1 } as int[]
+        def expected = (0..<keys.length).findAll { keys[it] >= 0 }.groupBy { keys[it] }
+
+        when:
+        def groups = KeyGroups.of(keys, 999)
+
+        then:
+        (0..<999).every { key -> positions(groups, key) == (expected[key] ?: []) }
+    }
+
+    def "should return empty groups for no positions"() {
+        when:
+        def groups = KeyGroups.of(new int[0], 3)
+
+        then:
+        (0..<3).every { groups.start(it) == 0 && groups.end(it) == 0 }
+    }
+
+    private static List<Integer> positions(KeyGroups groups, int key) {
+        (groups.start(key)..<groups.end(key)).collect { groups.position(it) }
+    }
+}
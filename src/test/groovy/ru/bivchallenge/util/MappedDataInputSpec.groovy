@@ -0,0 +1,104 @@
+package ru.bivchallenge.util
+
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.channels.FileChannel
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+
+class MappedDataInputSpec extends Specification {
+
+    @TempDir
+    Path tempDir
+
+    def "should read values and arrays written by the output in order and at any offset"() {
+        given:
+        def path = tempDir.resolve("data.bin")
+        FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE).withCloseable { channel ->
+            def output = new ChannelDataOutput(channel)
+            output.writeLong(42L)
+            output.writeInt(7)
+            output.writeLongs([1L, 2L, 3L] as long[], 3)
+            output.writeDoubles([0.5d, 0.25d] as double[], 2)
+            output.writeBytes([1, 2, 3] as byte[], 3)
+            output.flush()
+        }
+
+        when:
+        def channel = FileChannel.open(path, StandardOpenOption.READ)
+        def input = new MappedDataInput(channel)
+        def values = [input.readLong(), input.readInt()]
+        def arrays = [input.readLongs(3) as List, input.readDoubles(2) as List, input.readBytes(3) as List]
+        def position = input.position()
+        input.seek(Long.BYTES)
+        def afterSeek = input.readInt()
+
+        then:
+        values == [42L, 7]
+        arrays == [[1L, 2L, 3L], [0.5d, 0.25d], [1, 2, 3]]
+        position == 55
+        afterSeek == 7
+        input.getLong(Long.BYTES + Integer.BYTES + Long.BYTES) == 2L
+        input.getDouble(Long.BYTES + Integer.BYTES + 3 * Long.BYTES + Double.BYTES) == 0.25d
+        input.getByte(54) == 3 as byte
+
+        cleanup:
+        channel?.close()
+    }
+
+    def "should fail to read past the end of the file"() {
+        given:
+        def path = tempDir.resolve("data.bin")
+        FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE).withCloseable { channel ->
+            def output = new ChannelDataOutput(channel)
+            output.writeLong(42L)
+            output.writeInt(7)
+            output.flush()
+        }
+        def channel = FileChannel.open(path, StandardOpenOption.READ)
+        def input = new MappedDataInput(channel)
+
+        when:
+        input.getLong(Long.BYTES)
+
+        then:
+        thrown(EOFException)
+
+        cleanup:
+        channel?.close()
+    }
+
+    def "should read values and arrays crossing the boundary of a mapped segment"() {
+        given:
+        def path = tempDir.resolve("sparse.bin")
+        long boundary = 1L << 30
+        long start = boundary - 12
+        FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE).withCloseable { channel ->
+            channel.position(start)
+            def output = new ChannelDataOutput(channel)
+            output.writeLongs((1L..5L) as long[], 5)
+            output.writeBytes((0..<20) as byte[], 20)
+            output.flush()
+        }
+
+        when:
+        def channel = FileChannel.open(path, StandardOpenOption.READ)
+        def input = new MappedDataInput(channel)
+        input.seek(start)
+        def longs = input.readLongs(5) as List
+        def bytes = input.readBytes(20) as List
+        input.seek(start + Long.BYTES)
+        def straddling = input.readLong()
+
+        then:
+        longs == (1L..5L).toList()
+        bytes == (0..<20).toList()
+        straddling == 2L
+        input.getLong(start + 2 * Long.BYTES) == 3L
+        input.getByte(start + 5 * Long.BYTES + 19) == 19 as byte
+
+        cleanup:
+        channel?.close()
+    }
+}